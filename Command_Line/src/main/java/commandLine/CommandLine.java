@@ -9,13 +9,19 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import fileMetadata.FileMetadata;
+import specification.DiskUsage;
+import specification.ListingEntry;
+import specification.ProjectedResult;
 import specification.Storage;
+import storageManager.StorageHandle;
 import storageManager.StorageManager;
 
 public class CommandLine {
@@ -97,6 +103,13 @@ public class CommandLine {
 	            		if(storage.connectToStorage(src))
 	            			System.out.println("Connected to storage successfully!");
 	            	}
+	            	else if(commArray.length == 1 && commArray[0].equals("strgs")) {
+	            		// otvoreni storage-i, trenutni je oznacen sa *
+	            		for(StorageHandle handle : StorageManager.getInstance().getOpenStorages()) {
+	            			boolean current = handle.getStorageInformation() == StorageManager.getInstance().getStorageInformation();
+	            			System.out.println((current ? "* " : "  ") + handle.getStoragePath());
+	            		}
+	            	}
 	            	else if(commArray.length == 1 && commArray[0].equals("discon")) {
 	            		if(storage.disconnectFromStorage())
 	            			System.out.println("Successfully disconnected from the storage!");
@@ -235,6 +248,11 @@ public class CommandLine {
 	            		for(String s : map.keySet()) 
 	            			System.out.println(s + " : " + map.get(s));	            		
 	            	}
+	            	else if((commArray.length == 1 || commArray.length == 2) && commArray[0].equals("du")) {
+	            		// bez putanje se prikazuje trenutni direktorijum
+	            		DiskUsage usage = storage.diskUsage((commArray.length == 2) ? commArray[1] : "");
+	            		System.out.println(usage.getSize() + " B, " + usage.getNumberOfFiles() + " files : " + usage.getRelativePath());
+	            	}
 	            	else if(commArray.length == 2 && commArray[0].equals("dest")) {	          
 	            		String filePath = commArray[1];
 	            		List<String> list = storage.findDestinantions(filePath);
@@ -248,14 +266,15 @@ public class CommandLine {
 	            			resultSet = storage.listDirectory(src, false, false, false, null, null, null, null);	            			
 	            		}
 	            		else {
-		            		boolean onlyDirs=false, onlyFiles=false, searchSubDirecories=false;
+		            		boolean onlyDirs=false, onlyFiles=false, searchSubDirecories=false, stream=false;
 		            		String ext=null, pref=null, suf=null, sub=null;
 	
 		            		String[] subArr = Arrays.copyOfRange(commArray, 2, commArray.length);
 		            		
 		            		for(int i=0 ; i<subArr.length ; i++) {
 		            			
-		            			if(subArr[i].contains("-d")) onlyDirs = true;
+		            			if(subArr[i].equals("-st")) stream = true;
+		            			else if(subArr[i].contains("-d")) onlyDirs = true;
 		            			else if(subArr[i].contains("-f")) onlyFiles = true;
 		            			else if(subArr[i].contains("-ssd")) searchSubDirecories = true;
 		            			else if(subArr[i].contains("-ex:")) ext = subArr[i].split("-ex:")[1];
@@ -265,7 +284,13 @@ public class CommandLine {
 		            			
 		            		}		
 		            		
-		            		resultSet = storage.listDirectory(src, onlyDirs, onlyFiles, searchSubDirecories, ext, pref, suf, sub);
+		            		if(stream) {
+		            			// rezultat se ispisuje dok se pronalazi i ne cuva se za rez komande
+		            			resultSet = new ArrayList<>();
+		            			printResult(storage.listDirectoryStream(src, onlyDirs, onlyFiles, searchSubDirecories, ext, pref, suf, sub));
+		            		}
+		            		else
+		            			resultSet = storage.listDirectory(src, onlyDirs, onlyFiles, searchSubDirecories, ext, pref, suf, sub);
 	            		}	            		
 	            		
 	            		printResult(resultSet);
@@ -274,25 +299,38 @@ public class CommandLine {
 	            	else if(commArray.length > 2 && commArray[0].equals("rez") && commArray[1].equals("-sort")) {	          
 	            		if(commArray.length==2){
 	            			resultSet = storage.resultSort(resultSet, true, false, false, true, false);
+	            			printResult(resultSet);
 	            		}
 	            		else {
 	            			
-	            			boolean byName=false, byCreation=false, byModification=false, asc=true, desc=false;	            			
-	            			String[] subArr = Arrays.copyOfRange(commArray, 3, commArray.length);
+	            			boolean byName=false, byCreation=false, byModification=false, asc=true, desc=false, global=false;
+	            			int top = 0;
+	            			String[] subArr = Arrays.copyOfRange(commArray, 2, commArray.length);
 	            			
 	            			for(int i=0 ; i<subArr.length ; i++) {
-	            				if(subArr[i].contains("-n")) byName = true;
+	            				if(subArr[i].equals("-g")) global = true;
+	            				else if(subArr[i].startsWith("-top:")) top = Integer.parseInt(subArr[i].split("-top:")[1]);
+	            				else if(subArr[i].contains("-n")) byName = true;
 	            				else if(subArr[i].contains("-ct")) byCreation = true;
 	            				else if(subArr[i].contains("-mt")) byModification = true;
 	            				else if(subArr[i].contains("-asc")) asc = true;
 	            				else if(subArr[i].contains("-desc")) desc = true;
 	            			}
 	            			
-	            			resultSet = storage.resultSort(resultSet, byName, byCreation, byModification, asc, desc);
+	            			// ceo rezultat u jednoj listi, rezultat za naredne rez komande ostaje isti
+	            			if(top > 0 || global) {
+	            				List<FileMetadata> list = (top > 0) ? storage.resultTop(resultSet, byName, byCreation, byModification, asc, desc, top)
+	            						: storage.resultSortGlobal(resultSet, byName, byCreation, byModification, asc, desc);
+	            				
+	            				for(FileMetadata ff : list)
+	            					System.out.println(ff.getRelativePath());
+	            			}
+	            			else {
+	            				resultSet = storage.resultSort(resultSet, byName, byCreation, byModification, asc, desc);
+	            				printResult(resultSet);
+	            			}
 	            		}
 	            		
-	            		printResult(resultSet);
-	            		
 	            	}
 	            	else if(commArray.length > 2 && commArray[0].equals("rez") && commArray[1].equals("-fil")) {	          
 	            		String[] subArr = Arrays.copyOfRange(commArray, 2, commArray.length);
@@ -334,7 +372,9 @@ public class CommandLine {
 	            			
 	            		}            		
 	            		
-	            		List<Map<String, List<FileMetadata>>> resultClone = storage.filterAttributes(resultSet, attributes, periods);
+	            		// atributi se biraju tek pri ispisu, rezultat za naredne rez komande ostaje isti
+	            		ProjectedResult projected = storage.projectAttributes(resultSet, attributes, periods);
+	            		List<Map<String, List<FileMetadata>>> resultClone = projected.getResult();
 	            		
 	            		for(int depth = 0 ; depth < resultClone.size() ; depth++) {
 	            			Map<String, List<FileMetadata>> map =  resultClone.get(depth);
@@ -347,7 +387,7 @@ public class CommandLine {
 	                			System.out.println(relativePath);
 	            				
 	                			for(FileMetadata ff : map.get(relativePath))
-	            					System.out.println("-"+ff.toString());
+	            					System.out.println("-"+projected.format(ff));
 	            	    	}   
 	            		}
 	            	}
@@ -390,17 +430,24 @@ public class CommandLine {
 		        }
 				
 		    	else if (command.equals("?con")) {
-		    		System.out.println("Connects to the existing storage.");
+		    		System.out.println("Connects to the existing storage, which becomes the current storage.");
 		    		System.out.println("syntax: 'con <absolute_path_to_the_storage>'.");
-		    		System.out.println("Connection to the storage is not possigle if:");
-		    		System.out.println("a) some storage is already connected. (command 'discon' will solve the problem!)");
+		    		System.out.println("Storages which are already connected stay open, so connecting to one of them again only makes it the current storage.");
 		    		System.out.println("Examples:");
 		    		System.out.println("1. con C:\\Users\\Luka\\Desktop\\<storage_name>");
 		            continue;
 		        }
 		    	
+		    	else if (command.equals("?strgs")) {
+		    		System.out.println("Lists the open storages. Current storage is marked with '*'.");
+		    		System.out.println("syntax: 'strgs'.");
+		    		System.out.println("Examples:");
+		    		System.out.println("1. strgs");
+		            continue;
+		        }
+		    	
 		    	else if (command.equals("?discon")) {
-		    		System.out.println("Disconnects from the storage.");
+		    		System.out.println("Disconnects from the current storage and closes it.");
 		    		System.out.println("syntax: 'discon'.");		    		
 		    		System.out.println("Examples:");
 		    		System.out.println("1. discon");
@@ -548,6 +595,16 @@ public class CommandLine {
 		            continue;
 		        }
 		    	
+		    	else if (command.equals("?du")) {
+		    		System.out.println("Returns the total size and the number of files of the file|folder, including all of its subfolders.");
+		    		System.out.println("syntax: 'du <absolute|relative_path_of_the_target_file|folder>'. Without the path current folder is used.");
+		    		System.out.println("Examples:");
+		    		System.out.println("1. du C:\\Users\\Luka\\Desktop\\<storage_name>\\dataRootDirectory\\folder1");
+		    		System.out.println("2. du folder1\\folder2");
+		    		System.out.println("3. du");
+		            continue;
+		        }
+		    	
 		    	else if (command.equals("?dest")) {
 		    		System.out.println("Returns all locatins that contains file|folder with a given name.");
 		    		System.out.println("syntax: 'dest <file|folder_name>'.");
@@ -567,6 +624,7 @@ public class CommandLine {
 		    		System.out.println("-p:<prefix> -files or folders with the specified prefix.");
 		    		System.out.println("-s:<sufix> -files or folders with the specified sufix.");
 		    		System.out.println("-sw:<sub_word> -files or folders with the specified sub_word.");
+		    		System.out.println("-st -prints items while they are found, without keeping the result for 'rez' commands.");
 		    		System.out.println("Examples:");
 		    		System.out.println("2. ls C:\\Users\\Luka\\Desktop\\<storage_name>\\dataRootDirectory\\folder1\\folder2\\folder3");
 		    		System.out.println("2. ls C:\\Users\\Luka\\Desktop\\<storage_name>\\dataRootDirectory\\folder1\\folder2\\folder3 -d -ssb");
@@ -584,10 +642,13 @@ public class CommandLine {
 		    		System.out.println("-cm -sort by time modification.");
 		    		System.out.println("-asc -ascending");
 		    		System.out.println("-desc -descending");
+		    		System.out.println("-g -sorts all items together instead of sorting each directory.");
+		    		System.out.println("-top:<k> -prints only the first k items of all items sorted together.");
 		    		System.out.println("Examples:");
 		    		System.out.println("1. rez -sort");
 		    		System.out.println("2. rez -sort -n -desc");
 		    		System.out.println("3. rez -sort -ct -asc");
+		    		System.out.println("4. rez -sort -mt -desc -top:50");
 		            continue;
 		        }
 				
@@ -635,6 +696,23 @@ public class CommandLine {
 		}
 	}
 	
+	static void printResult(Stream<ListingEntry> result) {
+		
+		String parentPath = null;
+		Iterator<ListingEntry> iterator = result.iterator();
+		
+		while(iterator.hasNext()) {
+			ListingEntry entry = iterator.next();
+			
+			if(!entry.getParentPath().equals(parentPath)) {
+				parentPath = entry.getParentPath();
+				System.out.println(parentPath);
+			}
+			
+			System.out.println("  " + entry.getFileMetadata().getName());
+		}
+	}
+	
 	static void help() {		
 		System.out.println("Type '?<command_name>' to see command explanation and it's usage examples.");		
 		System.out.println("You can use absolute and relative paths for storage operations. Relative paths are relative to the location of the current directory.");
@@ -643,6 +721,7 @@ public class CommandLine {
 		System.out.println("COMMANDS:");
 		System.out.println("mkstrg");
 		System.out.println("con");
+		System.out.println("strgs");
 		System.out.println("discon");
 		System.out.println("mkdir");
 		System.out.println("mkdirs");
@@ -658,6 +737,7 @@ public class CommandLine {
 		System.out.println("hit");
 		System.out.println("hit -l");
 		System.out.println("des");
+		System.out.println("du");
 		System.out.println("ls");
 		System.out.println("rez -sort");
 		System.out.println("rez -fil");//rez -sort	
@@ -8,7 +8,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -28,8 +30,11 @@ import exception.StoragePathException;
 import exception.StorageSizeException;
 import exception.UnsupportedFileException;
 import fileMetadata.FileMetadata;
+import fileMetadata.FileMetadataTypeAdapterFactory;
 import specification.Storage;
 import storageInformation.StorageInformation;
+import storageInformation.StorageSnapshot;
+import storageManager.StorageHandle;
 import storageManager.StorageManager;
 
 public class LocalStorageImplementation extends Storage {
@@ -46,9 +51,6 @@ public class LocalStorageImplementation extends Storage {
 	public boolean createStorage(String dest) 
 			throws NamingPolicyException, PathException, StorageConnectionException, StoragePathException {
 		
-		if(StorageManager.getInstance().getStorageInformation().isStorageConnected())
-			throw new StorageConnectionException("Disconnect from the current storage in order to create the new  one storage!");
-		
 		if(!dest.startsWith(FileUtils.getUserDirectoryPath()))
 			throw new PathException(String.format("Storage must reside in the User's directory! Make sure that storage path starts with '%s'", FileUtils.getUserDirectoryPath()));
 		
@@ -68,6 +70,10 @@ public class LocalStorageImplementation extends Storage {
 				throw new NamingPolicyException("Naming policy violation. Choose different storage name!");
 		}
 		
+		// novi storage postaje podrazumevani, storage koji je do sada bio podrazumevani ostaje otvoren
+		if(StorageManager.getInstance().getStorageInformation().getStorageDirectory() != null)
+			StorageManager.getInstance().setStorageInformation(new StorageInformation());
+		
 		File storage = new File(dest);
 		storage.mkdir();
 		
@@ -82,19 +88,29 @@ public class LocalStorageImplementation extends Storage {
 		}
 		
 		createStorageTreeStructure(dest);
+		try {
+			openJournal(StorageManager.getInstance().getStorageInformation());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 		StorageManager.getInstance().getStorageInformation().setStorageConnected(true);
+		StorageManager.getInstance().openStorage(dest, StorageManager.getInstance().getStorageInformation());
 		return true;
 	}
 
 	@Override
 	public boolean connectToStorage(String src) throws NotFound, StorageException, StorageConnectionException, PathException {
 		
-		if(StorageManager.getInstance().getStorageInformation().isStorageConnected())
-			throw new StorageConnectionException("Disconnection from the current storage is requiered in order to connect to the new one!");
-		
 		if(!src.startsWith(FileUtils.getUserDirectoryPath()))
 			throw new PathException(String.format("Given path is incorrect! Make sure that storage path starts with '%s'", FileUtils.getUserDirectoryPath()));
 		
+		// storage koji je vec otvoren postaje podrazumevani, bez ponovnog citanja JSON-a
+		StorageHandle handle = StorageManager.getInstance().getOpenStorage(src);
+		if(handle != null) {
+			StorageManager.getInstance().setStorageInformation(handle.getStorageInformation());
+			return true;
+		}
+		
 		Path path = Paths.get(src);		
 		File directory = new File(path.toString());
 		if(!directory.exists())
@@ -114,7 +130,17 @@ public class LocalStorageImplementation extends Storage {
 		if(numOfDefaultFiles < 2)
 			throw new StorageException("Given path does not represent the storage!");
 		
-		readFromJSON(new StorageInformation(), src);	
+		// binarni snimak se cita ako postoji, JSON se uvozi samo kada ga nema (stari storage-i ili snimak u JSON formatu)
+		List<Path> snapshots;
+		try {
+			snapshots = listSnapshots(path);
+		} catch (IOException e) {
+			throw new StorageConnectionException("Storage directory can not be read!");
+		}
+		if(!snapshots.isEmpty())
+			readSnapshot(src, snapshots.get(snapshots.size() - 1));
+		else
+			readFromJSON(new StorageInformation(), src);	
 		return true;
 	}
 	
@@ -124,8 +150,13 @@ public class LocalStorageImplementation extends Storage {
 		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
 			return true;
 		
-		saveToJSON(new StorageInformation());
+		// promene su vec u dnevniku, pa se ceo JSON ne pise ponovo
+		if(StorageManager.getInstance().getStorageInformation().isJournalOpen())
+			StorageManager.getInstance().getStorageInformation().closeJournal();
+		else
+			saveToJSON(new StorageInformation());
 		StorageManager.getInstance().getStorageInformation().setStorageConnected(false);
+		StorageManager.getInstance().closeStorage(StorageManager.getInstance().getStorageInformation());
 		
 		return true;
 	}
@@ -380,36 +411,98 @@ public class LocalStorageImplementation extends Storage {
 	@Override
 	public void saveToJSON(Object obj) {
 		
-		String path = null;
-		String jsonString = null;
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		if(!(obj instanceof StorageInformation))
+			return;
 		
-		if(obj instanceof StorageInformation) { 
-			
-			path = StorageManager.getInstance().getStorageInformation().getStorageDirectory().getAbsolutePath() + File.separator + StorageInformation.storageInformationJSONFileName;
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+		storageInformation.setCurrentDirectory(storageInformation.getDatarootDirectory());
 		
-			StorageManager.getInstance().getStorageInformation().setCurrentDirectory(StorageManager.getInstance().getStorageInformation().getDatarootDirectory());
-			jsonString = gson.toJson(StorageManager.getInstance().getStorageInformation());
+		try {
+			// snimak mora da zapocne novi dnevnik, inace bi se promene iz dnevnika primenile dva puta
+			if(storageInformation.isJournalOpen())
+				storageInformation.compactJournal();
+			else
+				writeSnapshot(storageInformation);
+		} catch (Exception e) {
+			e.printStackTrace();
 		}
-		
-		if(path == null || jsonString == null)
+	}
+	
+	// binarni snimak se brise tek kada je JSON upisan, do tada se i dalje cita stari snimak
+	private void writeSnapshot(StorageInformation storageInformation) throws IOException {
+		
+		Path directory = Paths.get(storageInformation.getStorageDirectory().getAbsolutePath());
+		if(storageInformation.isJsonSnapshot()) {
+			writeJSON(storageInformation);
+			// snimak koji ne moze da se obrise bi se citao umesto JSON-a, pa je to greska i dnevnik ostaje kakav je bio
+			for(Path snapshot : listSnapshots(directory))
+				Files.deleteIfExists(snapshot);
 			return;
+		}
 		
-		try (FileWriter fileOut = new FileWriter(path, false)) {
-           
-			fileOut.write(jsonString);
-	    
-		} catch (Exception e) {
-			e.printStackTrace();
-	    }
+		// novi snimak nikad ne zamenjuje stari, jer stari moze da bude mapiran u memoriju (lenjo stablo), a na Windows-u se takav fajl ne menja
+		Path path = StorageSnapshot.nextGeneration(directory, StorageInformation.snapshotFileName);
+		Path written = path.resolveSibling(path.getFileName() + ".tmp");
+		storageInformation.writeSnapshot(written);
+		Files.move(written, path, StandardCopyOption.ATOMIC_MOVE);
+		
+		// stariji snimak koji je jos mapiran se brise pri nekom od sledecih snimaka
+		for(Path snapshot : listSnapshots(directory)) {
+			if(snapshot.equals(path))
+				break;
+			try {
+				Files.deleteIfExists(snapshot);
+			} catch (IOException e) {
+				
+			}
+		}
+	}
+	
+	private List<Path> listSnapshots(Path directory) throws IOException {
+		return StorageSnapshot.generations(directory, StorageInformation.snapshotFileName);
+	}
 	
+	// JSON se pise pored starog i zamenjuje ga tek kada je ceo upisan
+	private void writeJSON(StorageInformation storageInformation) throws IOException {
+		
+		// JSON sadrzi celo stablo, pa se lenjo stablo prvo ucitava do kraja
+		storageInformation.loadStorageTree(false);
+		Gson gson = new GsonBuilder().registerTypeAdapterFactory(new FileMetadataTypeAdapterFactory()).setPrettyPrinting().create();
+		Path path = Paths.get(storageInformation.getStorageDirectory().getAbsolutePath(), StorageInformation.storageInformationJSONFileName);
+		Path written = path.resolveSibling(path.getFileName() + ".tmp");
+		
+		try (FileWriter fileOut = new FileWriter(written.toFile(), false)) {
+			gson.toJson(storageInformation, fileOut);
+		}
+		Files.move(written, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	private void openJournal(StorageInformation storageInformation) throws IOException {
+		Path journal = Paths.get(storageInformation.getStorageDirectory().getAbsolutePath(), StorageInformation.journalFileName);
+		storageInformation.openJournal(journal, () -> writeSnapshot(storageInformation));
+	}
+
+	private void readSnapshot(String src, Path snapshot) {
+		
+		try {
+			StorageInformation storageInformation = StorageInformation.readSnapshot(snapshot);
+			openJournal(storageInformation);
+			if(storageInformation.isWarmUpStorageTree())
+				storageInformation.loadStorageTree(true);
+			storageInformation.setStorageConnected(true);
+			StorageManager.getInstance().setStorageInformation(storageInformation);
+			StorageManager.getInstance().openStorage(src, storageInformation);
+			
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	@Override
 	public void readFromJSON(Object obj, String src) {
 		
 		String path = null;
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		Gson gson = new GsonBuilder().registerTypeAdapterFactory(new FileMetadataTypeAdapterFactory()).setPrettyPrinting().create();
 		
 		if(obj instanceof StorageInformation) 
 			path = src + File.separator + StorageInformation.storageInformationJSONFileName;
@@ -420,8 +513,12 @@ public class LocalStorageImplementation extends Storage {
 		try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
 		
 			if(obj instanceof StorageInformation) {
-				StorageManager.getInstance().setStorageInformation(gson.fromJson(reader, StorageInformation.class));
-				StorageManager.getInstance().getStorageInformation().setStorageConnected(true);
+				StorageInformation storageInformation = gson.fromJson(reader, StorageInformation.class);
+				storageInformation.linkStorageTree();
+				openJournal(storageInformation);
+				storageInformation.setStorageConnected(true);
+				StorageManager.getInstance().setStorageInformation(storageInformation);
+				StorageManager.getInstance().openStorage(src, storageInformation);
 			}			
 
 		} catch (IOException e) {
@@ -35,6 +35,7 @@ import com.google.api.services.drive.DriveScopes;
 import com.google.api.services.drive.model.File;
 import com.google.api.services.drive.model.FileList;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 
 import exception.DirectoryException;
@@ -48,8 +49,10 @@ import exception.StoragePathException;
 import exception.StorageSizeException;
 import exception.UnsupportedFileException;
 import fileMetadata.FileMetadata;
+import fileMetadata.FileMetadataTypeAdapterFactory;
 import specification.Storage;
 import storageInformation.StorageInformation;
+import storageManager.StorageHandle;
 import storageManager.StorageManager;
 
 public class GoogleDriveStorage extends Storage {
@@ -143,10 +146,6 @@ public class GoogleDriveStorage extends Storage {
 	public boolean createStorage(String dest)
 			throws NamingPolicyException, PathException, StorageConnectionException, StoragePathException {
 			
-			if(StorageManager.getInstance().getStorageInformation().isStorageConnected())
-				throw new StorageConnectionException("Disconnect from the current storage in order to create new one storage!");	
-			
-			
 			// u lokalu cuvamo podatke o remote skladistima
 			java.io.File file = new java.io.File(StorageInformation.storageInformationJSONFileName);
 			if(!file.exists()) {				
@@ -163,6 +162,10 @@ public class GoogleDriveStorage extends Storage {
 			if(!checkStorageExistence(dest))
 				throw new StoragePathException("Storage path exception!");			
 			
+			// novi storage postaje podrazumevani, storage koji je do sada bio podrazumevani ostaje otvoren
+			if(StorageManager.getInstance().getStorageInformation().getStorageDirectory() != null)
+				StorageManager.getInstance().setStorageInformation(new StorageInformation());
+			
 			try {						
 				File storageMetadata = new File();
 				storageMetadata.setName(dest);
@@ -180,6 +183,7 @@ public class GoogleDriveStorage extends Storage {
 																
 				createStorageTreeStructure(dest);
 				StorageManager.getInstance().getStorageInformation().setStorageConnected(true);
+				StorageManager.getInstance().openStorage(dest, StorageManager.getInstance().getStorageInformation());
 				
 			} catch (IOException e) {
 				e.printStackTrace();
@@ -191,8 +195,12 @@ public class GoogleDriveStorage extends Storage {
 	@Override
 	public boolean connectToStorage(String src) throws NotFound, StorageException, StorageConnectionException {
 		
-		if(StorageManager.getInstance().getStorageInformation().isStorageConnected())
-			throw new StorageConnectionException("Disconnection from the current storage is requiered in order to connect to the new one!");
+		// storage koji je vec otvoren postaje podrazumevani, bez ponovnog citanja JSON-a
+		StorageHandle handle = StorageManager.getInstance().getOpenStorage(Paths.get(src).getFileName().toString());
+		if(handle != null) {
+			StorageManager.getInstance().setStorageInformation(handle.getStorageInformation());
+			return true;
+		}
 		
 		readFromJSON(new StorageInformation(), src);		
 		return (StorageManager.getInstance().getStorageInformation().isStorageConnected()==true) ? true : false;
@@ -206,6 +214,7 @@ public class GoogleDriveStorage extends Storage {
 		
 		saveToJSON(new StorageInformation());
 		StorageManager.getInstance().getStorageInformation().setStorageConnected(false);		
+		StorageManager.getInstance().closeStorage(StorageManager.getInstance().getStorageInformation());
 		return true;
 	}
 
@@ -593,7 +602,7 @@ public class GoogleDriveStorage extends Storage {
 		try {
 			Path path = Paths.get(dest); 						
 			java.io.File file = new java.io.File(StorageInformation.storageInformationJSONFileName);												
-			Gson gson = new Gson();			
+			Gson gson = new GsonBuilder().registerTypeAdapterFactory(new FileMetadataTypeAdapterFactory()).create();			
 			BufferedReader reader = new BufferedReader(new FileReader(file));
 			Type type = new TypeToken<ArrayList<StorageInformation>>() {}.getType();
 			ArrayList<StorageInformation> list = gson.fromJson(reader, type);
@@ -616,7 +625,7 @@ public class GoogleDriveStorage extends Storage {
 	protected void saveToJSON(Object obj) {
 
 		String jsonString = null;
-		Gson gson = new Gson();
+		Gson gson = new GsonBuilder().registerTypeAdapterFactory(new FileMetadataTypeAdapterFactory()).create();
 		
 		if(obj instanceof StorageInformation) { 						
 			
@@ -698,7 +707,7 @@ public class GoogleDriveStorage extends Storage {
 			try {
 				Path path = Paths.get(src); 						
 				java.io.File file = new java.io.File(StorageInformation.storageInformationJSONFileName);												
-				Gson gson = new Gson();			
+				Gson gson = new GsonBuilder().registerTypeAdapterFactory(new FileMetadataTypeAdapterFactory()).create();			
 				BufferedReader reader = new BufferedReader(new FileReader(file));
 				Type type = new TypeToken<ArrayList<StorageInformation>>() {}.getType();
 				ArrayList<StorageInformation> list = gson.fromJson(reader, type);
@@ -709,8 +718,10 @@ public class GoogleDriveStorage extends Storage {
 				for(StorageInformation si : list) {
 					
 					if(si.getStorageDirectory().getName().equals(path.getFileName().toString())) {						
+						si.linkStorageTree();
+						si.setStorageConnected(true);
 						StorageManager.getInstance().setStorageInformation(si);
-						StorageManager.getInstance().getStorageInformation().setStorageConnected(true);
+						StorageManager.getInstance().openStorage(path.getFileName().toString(), si);
 						return;
 					}
 				}				
@@ -1,8 +1,9 @@
 package fileMetadata;
 
+import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 /**
@@ -13,25 +14,35 @@ import java.util.Set;
  */
 public class FileMetadata {
 	
+	// bits of the flags field
+	static final int FILE = 1;
+	static final int DIRECTORY = 1 << 1;
+	static final int STORAGE = 1 << 2;
+	static final int DATA_ROOT = 1 << 3;
+	// flag << DEFINED marks that the flag is given, builder leaves the flags which are not given undefined (e.g. filterAttributes projections)
+	static final int DEFINED = 4;
+	
+	static final long NO_TIME = 0L;
+	static final int NO_LIMIT = -1;
+	
 	private String fileID;
 	private String name;
+	// set only for the storage and for FileMetadata which are not in the storage tree, otherwise computed from parent
 	private String absolutePath;
 	private String relativePath;
-	private Long size = 0L;
-	private FileMetadata parent;
-	private Date timeCreated;
-	private Date timeModified;
-	private Boolean isFile = false;
-	private Boolean isDirectory = false;
-	private Boolean isStorage = false;
-	private Boolean isDataRoot = false;
+	// not written to JSON, the storage tree structure already keeps every FileMetadata under the ID of its parent
+	private transient FileMetadata parent;
+	private long size;
+	// epoch millis, NO_TIME if not given
+	private long timeCreated = NO_TIME;
+	private long timeModified = NO_TIME;
+	private int flags = (FILE | DIRECTORY) << DEFINED;
 	
-	//if directory
-	private Integer numOfFilesLimit;
+	//if directory, NO_LIMIT if directory has no limit
+	private int numOfFilesLimit = NO_LIMIT;
 	
-	// if storage
-	private Long storageSize;
-	private Set<String> unsupportedFiles = new HashSet<>();
+	// if storage, null otherwise
+	private StorageAttributes storageAttributes;
 	
 	
 	public FileMetadata() {
@@ -40,24 +51,47 @@ public class FileMetadata {
 	
 	public FileMetadata(FileMetadataBuilder builder) {
 		this.fileID = builder.fileID;
-		this.name = builder.name;
-		this.timeCreated = builder.timeCreated;
-		this.timeModified = builder.timeModified;
+		this.name = PathSegments.intern(builder.name);
+		this.timeCreated = toMillis(builder.timeCreated);
+		this.timeModified = toMillis(builder.timeModified);
 		this.absolutePath = builder.absolutePath;
 		this.relativePath = builder.relativePath;
 		this.parent = builder.parent;
-		this.isFile = builder.isFile;
-		this.isDirectory = builder.isDirectory;
-		this.isStorage = builder.isStorage;
-		this.isDataRoot = builder.isDataRoot;
+		this.flags = 0;
+		setFlag(FILE, builder.isFile);
+		setFlag(DIRECTORY, builder.isDirectory);
+		setFlag(STORAGE, builder.isStorage);
+		setFlag(DATA_ROOT, builder.isDataRoot);
 		
-		this.numOfFilesLimit = builder.numOfFilesLimit;
+		setNumOfFilesLimit(builder.numOfFilesLimit);
 		
-		this.storageSize = builder.storageSize;
-		this.unsupportedFiles = builder.unsupportedFiles;
+		if(builder.storageSize != null || (builder.unsupportedFiles != null && !builder.unsupportedFiles.isEmpty()))
+			this.storageAttributes = new StorageAttributes(builder.storageSize, builder.unsupportedFiles);
+	}
+	
+	private static long toMillis(Date date) {
+		return (date != null) ? date.getTime() : NO_TIME;
+	}
+	
+	private static Date toDate(long millis) {
+		return (millis != NO_TIME) ? new Date(millis) : null;
 	}
 	
+	private boolean getFlag(int flag) {
+		return (flags & flag) != 0;
+	}
 	
+	private boolean isDefined(int flag) {
+		return (flags & (flag << DEFINED)) != 0;
+	}
+	
+	private void setFlag(int flag, Boolean value) {
+		if(value == null) {
+			flags &= ~(flag | (flag << DEFINED));
+			return;
+		}
+		flags = (value ? (flags | flag) : (flags & ~flag)) | (flag << DEFINED);
+	}
 	
 	public String getFileID() {
 		return fileID;
@@ -71,31 +105,82 @@ public class FileMetadata {
 		return name;
 	}
 	public void setName(String name) {
-		this.name = name;
+		this.name = PathSegments.intern(name);
 	}
 	public Date getTimeCreated() {
-		return timeCreated;
+		return toDate(timeCreated);
 	}
 	public void setTimeCreated(Date timeCreated) {
-		this.timeCreated = timeCreated;
+		this.timeCreated = toMillis(timeCreated);
 	}
 	public Date getTimeModified() {
-		return timeModified;
+		return toDate(timeModified);
 	}
 	public void setTimeModified(Date timeModified) {
+		this.timeModified = toMillis(timeModified);
+	}
+	
+	/**
+	 * Same as getTimeCreated(), without allocating the Date
+	 * @return creation time in epoch millis, 0 if it is not given
+	 */
+	public long getTimeCreatedMillis() {
+		return timeCreated;
+	}
+	
+	/**
+	 * Same as getTimeModified(), without allocating the Date
+	 * @return modification time in epoch millis, 0 if it is not given
+	 */
+	public long getTimeModifiedMillis() {
+		return timeModified;
+	}
+	
+	public void setTimeCreatedMillis(long timeCreated) {
+		this.timeCreated = timeCreated;
+	}
+	
+	public void setTimeModifiedMillis(long timeModified) {
 		this.timeModified = timeModified;
 	}
 
+	/**
+	 * Absolute path is computed from the parent, so it stays correct after the parent is moved or renamed
+	 * @return absolute path of the file or directory
+	 */
 	public String getAbsolutePath() {
-		return absolutePath;
+		if(parent == null)
+			return absolutePath;
+		
+		return appendPath(new StringBuilder(), true).toString();
 	}
 
 	public void setAbsolutePath(String absolutePath) {
 		this.absolutePath = absolutePath;
 	}
 	
+	/**
+	 * Relative path is computed from the parent, so it stays correct after the parent is moved or renamed
+	 * @return relative path of the file or directory
+	 */
 	public String getRelativePath() {
-		return relativePath;
+		if(parent == null)
+			return relativePath;
+		
+		return appendPath(new StringBuilder(), false).toString();
+	}
+	
+	/**
+	 * Appends the path of the FileMetadata to the builder, starting from the storage
+	 * @param sb is the builder
+	 * @param absolute whether the absolute or the relative path is appended
+	 * @return the builder
+	 */
+	protected StringBuilder appendPath(StringBuilder sb, boolean absolute) {
+		if(parent == null)
+			return sb.append(absolute ? absolutePath : relativePath);
+		
+		return parent.appendPath(sb, absolute).append(File.separator).append(name);
 	}
 
 	public void setRelativePath(String relativePath) {
@@ -107,7 +192,7 @@ public class FileMetadata {
 	}
 
 	public void setSize(Long size) {
-		this.size = size;
+		this.size = (size != null) ? size : 0L;
 	}
 
 	public FileMetadata getParent() {
@@ -119,59 +204,63 @@ public class FileMetadata {
 	}
 
 	public boolean isFile() {
-		return isFile;
+		return getFlag(FILE);
 	}
 
 	public void setFile(boolean isFile) {
-		this.isFile = isFile;
+		setFlag(FILE, isFile);
 	}
 
 	public boolean isDirectory() {
-		return isDirectory;
+		return getFlag(DIRECTORY);
 	}
 
 	public void setDirectory(boolean isDirectory) {
-		this.isDirectory = isDirectory;
+		setFlag(DIRECTORY, isDirectory);
 	}
 
 	public boolean isStorage() {
-		return isStorage;
+		return getFlag(STORAGE);
 	}
 
 	public void setStorage(boolean isStorage) {
-		this.isStorage = isStorage;
+		setFlag(STORAGE, isStorage);
 	}
 
 	public boolean isDataRoot() {
-		return isDataRoot;
+		return getFlag(DATA_ROOT);
 	}
 
 	public void setDataRoot(boolean isDataRoot) {
-		this.isDataRoot = isDataRoot;
+		setFlag(DATA_ROOT, isDataRoot);
 	}
 
 	public Integer getNumOfFilesLimit() {
-		return numOfFilesLimit;
+		return (numOfFilesLimit != NO_LIMIT) ? numOfFilesLimit : null;
 	}
 
 	public void setNumOfFilesLimit(Integer numOfFilesLimit) {
-		this.numOfFilesLimit = numOfFilesLimit;
+		this.numOfFilesLimit = (numOfFilesLimit != null && numOfFilesLimit >= 0) ? numOfFilesLimit : NO_LIMIT;
 	}
 
 	public Long getStorageSize() {
-		return storageSize;
+		return (storageAttributes != null) ? storageAttributes.storageSize : null;
 	}
 
 	public void setStorageSize(Long storageSize) {
-		this.storageSize = storageSize;
+		if(storageAttributes == null)
+			storageAttributes = new StorageAttributes(null, null);
+		storageAttributes.storageSize = storageSize;
 	}
 
 	public Set<String> getUnsupportedFiles() {
-		return unsupportedFiles;
+		return (storageAttributes != null && storageAttributes.unsupportedFiles != null) ? storageAttributes.unsupportedFiles : Collections.emptySet();
 	}
 
 	public void setUnsupportedFiles(Set<String> unsupportedFiles) {
-		this.unsupportedFiles = unsupportedFiles;
+		if(storageAttributes == null)
+			storageAttributes = new StorageAttributes(null, null);
+		storageAttributes.unsupportedFiles = unsupportedFiles;
 	}
 	
 
@@ -187,8 +276,7 @@ public class FileMetadata {
 		file.parent = this.parent;
 		file.timeCreated = this.timeCreated;
 		file.timeModified = this.timeModified;
-		file.isFile = this.isFile;
-		file.isDirectory = this.isDirectory;
+		file.flags = this.flags;
 		file.numOfFilesLimit = this.numOfFilesLimit;
 		
 		return file;
@@ -197,18 +285,18 @@ public class FileMetadata {
 	@Override
 	public String toString() {
 		final int maxLen = 10;
-		return (fileID != null ? "fileID=" + fileID + ", " : "")
-				+ (name != null ? "name=" + name + ", " : "")
-				+ (absolutePath != null ? "absolutePath=" + absolutePath + ", " : "")
-				+ (relativePath != null ? "relativePath=" + relativePath + ", " : "")
-				+ (size != null && size!=0L ? "size=" + size + ", " : "") + (parent != null ? "parent=" + parent + ", " : "")
-				+ (timeCreated != null ? "timeCreated=" + timeCreated + ", " : "")
-				+ (timeModified != null ? "timeModified=" + timeModified + ", " : "")
-				+ (isFile != null ? "isFile=" + isFile + ", " : "")
-				+ (isDirectory != null ? "isDirectory=" + isDirectory + ", " : "")
-				+ (numOfFilesLimit != null ? "numOfFilesLimit=" + numOfFilesLimit + ", " : "")
-				+ (storageSize != null ? "storageSize=" + storageSize + ", " : "")
-				+ (unsupportedFiles != null && !unsupportedFiles.isEmpty() ? "unsupportedFiles=" + toString(unsupportedFiles, maxLen) : "") ;
+		return (getFileID() != null ? "fileID=" + getFileID() + ", " : "")
+				+ (getName() != null ? "name=" + getName() + ", " : "")
+				+ (getAbsolutePath() != null ? "absolutePath=" + getAbsolutePath() + ", " : "")
+				+ (getRelativePath() != null ? "relativePath=" + getRelativePath() + ", " : "")
+				+ (getSize() != 0L ? "size=" + getSize() + ", " : "") + (getParent() != null ? "parent=" + getParent() + ", " : "")
+				+ (getTimeCreatedMillis() != NO_TIME ? "timeCreated=" + getTimeCreated() + ", " : "")
+				+ (getTimeModifiedMillis() != NO_TIME ? "timeModified=" + getTimeModified() + ", " : "")
+				+ (isDefined(FILE) ? "isFile=" + isFile() + ", " : "")
+				+ (isDefined(DIRECTORY) ? "isDirectory=" + isDirectory() + ", " : "")
+				+ (getNumOfFilesLimit() != null ? "numOfFilesLimit=" + getNumOfFilesLimit() + ", " : "")
+				+ (getStorageSize() != null ? "storageSize=" + getStorageSize() + ", " : "")
+				+ (!getUnsupportedFiles().isEmpty() ? "unsupportedFiles=" + toString(getUnsupportedFiles(), maxLen) : "") ;
 	}
 
 	private String toString(Collection<?> collection, int maxLen) {
@@ -224,6 +312,20 @@ public class FileMetadata {
 		return builder.toString();
 	}
 
+	/**
+	 * Attributes which only the storage directory has, kept out of the other FileMetadata
+	 */
+	static class StorageAttributes {
+		
+		private Long storageSize;
+		private Set<String> unsupportedFiles;
+		
+		StorageAttributes(Long storageSize, Set<String> unsupportedFiles) {
+			this.storageSize = storageSize;
+			this.unsupportedFiles = unsupportedFiles;
+		}
+	}
+
 	// Builder
 	public static class FileMetadataBuilder{
 		
@@ -244,7 +346,7 @@ public class FileMetadata {
 		
 		// if storage
 		private Long storageSize;
-		private Set<String> unsupportedFiles = new HashSet<>();
+		private Set<String> unsupportedFiles;
 		
 		public FileMetadataBuilder withFileID(String ID) {
 			this.fileID = ID;
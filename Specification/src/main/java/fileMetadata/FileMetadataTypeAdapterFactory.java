@@ -0,0 +1,113 @@
+package fileMetadata;
+
+import java.io.IOException;
+import java.util.Date;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Gson factory for FileMetadata. Writes the compact form and reads both the compact form
+ * and the storage JSON written before it (Boolean flags, formatted dates and storage attributes on the node itself).
+ * Subclasses of FileMetadata are written through their clone().
+ * Parent is not written (StorageInformation links the parents by the directory IDs of the storage tree structure),
+ * the whole chain of parents which the older JSON holds inside every node is skipped while reading.
+ * Register it on every Gson which reads or writes StorageInformation.
+ * 
+ * @author Luka Pavlovic
+ *
+ */
+public class FileMetadataTypeAdapterFactory implements TypeAdapterFactory {
+	
+	private static final String[] LEGACY_FLAGS = { "isFile", "isDirectory", "isStorage", "isDataRoot" };
+	private static final int[] FLAGS = { FileMetadata.FILE, FileMetadata.DIRECTORY, FileMetadata.STORAGE, FileMetadata.DATA_ROOT };
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		if(!FileMetadata.class.isAssignableFrom(type.getRawType()))
+			return null;
+		
+		TypeAdapter<FileMetadata> delegate = gson.getDelegateAdapter(this, TypeToken.get(FileMetadata.class));
+		TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+		TypeAdapter<Date> dateAdapter = gson.getAdapter(Date.class);
+		
+		return (TypeAdapter<T>) new TypeAdapter<FileMetadata>() {
+
+			@Override
+			public void write(JsonWriter out, FileMetadata value) throws IOException {
+				// FileMetadata koji nisu na heap-u (npr. OffHeapStorageTree) se upisuju preko kopije
+				if(value != null && value.getClass() != FileMetadata.class)
+					value = value.clone();
+				delegate.write(out, value);
+			}
+
+			@Override
+			public FileMetadata read(JsonReader in) throws IOException {
+				if(in.peek() != JsonToken.BEGIN_OBJECT)
+					return delegate.fromJsonTree(elementAdapter.read(in));
+				
+				JsonObject json = new JsonObject();
+				in.beginObject();
+				while(in.hasNext()) {
+					String name = in.nextName();
+					// lanac roditelja se preskace bez pravljenja stabla, roditelji se povezuju posle citanja
+					if(name.equals("parent"))
+						in.skipValue();
+					else
+						json.add(name, elementAdapter.read(in));
+				}
+				in.endObject();
+				
+				upgrade(json, dateAdapter);
+				return delegate.fromJsonTree(json);
+			}
+		};
+	}
+	
+	private static void upgrade(JsonObject json, TypeAdapter<Date> dateAdapter) {
+		
+		if(!json.has("flags")) {
+			int flags = 0;
+			for(int i = 0 ; i < LEGACY_FLAGS.length ; i++) {
+				JsonElement value = json.remove(LEGACY_FLAGS[i]);
+				// fajlovi koje je Gson procitao bez ovih polja su ih imali postavljene na false
+				flags |= FLAGS[i] << FileMetadata.DEFINED;
+				if(value != null && !value.isJsonNull() && value.getAsBoolean())
+					flags |= FLAGS[i];
+			}
+			json.addProperty("flags", flags);
+		}
+		
+		for(String field : new String[] { "timeCreated", "timeModified" }) {
+			JsonElement value = json.get(field);
+			if(value != null && value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+				try {
+					json.addProperty(field, dateAdapter.fromJsonTree(value).getTime());
+				} catch (RuntimeException e) {
+					json.remove(field);
+				}
+			}
+		}
+		
+		JsonElement storageSize = json.remove("storageSize");
+		JsonElement unsupportedFiles = json.remove("unsupportedFiles");
+		boolean hasUnsupportedFiles = unsupportedFiles != null && unsupportedFiles.isJsonArray() && unsupportedFiles.getAsJsonArray().size() > 0;
+		if(!json.has("storageAttributes") && (storageSize != null || hasUnsupportedFiles)) {
+			JsonObject storageAttributes = new JsonObject();
+			if(storageSize != null)
+				storageAttributes.add("storageSize", storageSize);
+			if(hasUnsupportedFiles)
+				storageAttributes.add("unsupportedFiles", unsupportedFiles);
+			json.add("storageAttributes", storageAttributes);
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package fileMetadata;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of interned path segments. FileMetadata keeps only its own segment (name) and a link to the parent,
+ * so the parent links form a trie of paths and equal names across the storage share a single String.
+ * Segments are looked up and added without locks: every bucket holds a chain which is never changed,
+ * and the new segment is put in front of the chain with compare-and-set. Segments which are no longer used by any FileMetadata
+ * are removed by the garbage collector and dropped from the table when it is built again.
+ * Segment which is added while the table is built again can get the second instance, which only costs the memory of that String
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public final class PathSegments {
+
+	private static final int INITIAL_BUCKETS = 1 << 12;
+	// prosecna duzina lanca posle koje se tabela pravi ponovo
+	private static final int MAX_LOAD = 2;
+
+	private static volatile AtomicReferenceArray<Segment> table = new AtomicReferenceArray<>(INITIAL_BUCKETS);
+	// segmenti u tabeli, zajedno sa onima koje je garbage collector vec uklonio
+	private static final AtomicInteger count = new AtomicInteger();
+
+	private PathSegments() {
+
+	}
+
+	/**
+	 * Returns the shared instance of the segment
+	 * @param segment is the name of the file or directory
+	 * @return String which is equal to the segment and shared by all FileMetadata with the same name
+	 */
+	public static String intern(String segment) {
+
+		if(segment == null)
+			return null;
+
+		int hash = spread(segment.hashCode());
+		for(;;) {
+			AtomicReferenceArray<Segment> buckets = table;
+			int bucket = hash & (buckets.length() - 1);
+			Segment head = buckets.get(bucket);
+
+			for(Segment s = head ; s != null ; s = s.next) {
+				if(s.hash == hash) {
+					String interned = s.get();
+					if(segment.equals(interned))
+						return interned;
+				}
+			}
+
+			// lanac se u medjuvremenu promenio, segment se trazi ponovo
+			if(buckets.compareAndSet(bucket, head, new Segment(segment, hash, head))) {
+				if(count.incrementAndGet() > buckets.length() * MAX_LOAD)
+					rebuild(buckets);
+				return segment;
+			}
+		}
+	}
+
+	// nova tabela dobija samo segmente koji se jos koriste, i duplo vise mesta ako ih je i dalje previse
+	private static synchronized void rebuild(AtomicReferenceArray<Segment> buckets) {
+
+		if(table != buckets)
+			return;
+
+		int live = 0;
+		for(int i = 0 ; i < buckets.length() ; i++) {
+			for(Segment s = buckets.get(i) ; s != null ; s = s.next) {
+				if(s.get() != null)
+					live++;
+			}
+		}
+
+		int length = INITIAL_BUCKETS;
+		while(live > length * MAX_LOAD / 2)
+			length <<= 1;
+
+		AtomicReferenceArray<Segment> rebuilt = new AtomicReferenceArray<>(length);
+		int added = 0;
+		for(int i = 0 ; i < buckets.length() ; i++) {
+			for(Segment s = buckets.get(i) ; s != null ; s = s.next) {
+				String segment = s.get();
+				if(segment == null)
+					continue;
+
+				int bucket = s.hash & (length - 1);
+				rebuilt.set(bucket, new Segment(segment, s.hash, rebuilt.get(bucket)));
+				added++;
+			}
+		}
+
+		count.set(added);
+		table = rebuilt;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static final class Segment extends WeakReference<String> {
+
+		private final int hash;
+		private final Segment next;
+
+		private Segment(String segment, int hash, Segment next) {
+			super(segment);
+			this.hash = hash;
+			this.next = next;
+		}
+	}
+}
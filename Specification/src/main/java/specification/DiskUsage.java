@@ -0,0 +1,44 @@
+package specification;
+
+/**
+ * Disk usage of the file or directory, including everything in its subdirectories
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class DiskUsage {
+
+	private final String relativePath;
+	private final long size;
+	private final long numberOfFiles;
+
+	public DiskUsage(String relativePath, long size, long numberOfFiles) {
+		this.relativePath = relativePath;
+		this.size = size;
+		this.numberOfFiles = numberOfFiles;
+	}
+
+	public String getRelativePath() {
+		return relativePath;
+	}
+
+	/**
+	 * @return size of the file, or the total size of the files under the directory, in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return 1 for the file, or the number of the files under the directory
+	 */
+	public long getNumberOfFiles() {
+		return numberOfFiles;
+	}
+
+	@Override
+	public String toString() {
+		return "DiskUsage [relativePath=" + relativePath + ", size=" + size + ", numberOfFiles=" + numberOfFiles + "]";
+	}
+
+}
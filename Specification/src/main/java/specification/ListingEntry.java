@@ -0,0 +1,46 @@
+package specification;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * One item of the streamed directory listing
+ * 
+ * @author Luka Pavlovic
+ *
+ */
+public class ListingEntry {
+	
+	private final int depth;
+	private final String parentPath;
+	private final FileMetadata fileMetadata;
+	
+	public ListingEntry(int depth, String parentPath, FileMetadata fileMetadata) {
+		this.depth = depth;
+		this.parentPath = parentPath;
+		this.fileMetadata = fileMetadata;
+	}
+	
+	/**
+	 * @return depth of the parent directory, 0 for the listed directory
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * @return relative path of the directory which holds the item
+	 */
+	public String getParentPath() {
+		return parentPath;
+	}
+	
+	public FileMetadata getFileMetadata() {
+		return fileMetadata;
+	}
+
+	@Override
+	public String toString() {
+		return "ListingEntry [depth=" + depth + ", parentPath=" + parentPath + ", fileMetadata=" + fileMetadata + "]";
+	}
+
+}
@@ -0,0 +1,123 @@
+package specification;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+import fileMetadata.FileMetadata;
+import storageInformation.StorageInformation;
+import storageInformation.StorageTree;
+
+/**
+ * Goes through the directory in the same order as listDirectory, one directory at a time. Only the directories which 
+ * are still to be listed are kept, so the memory does not depend on the size of the listed subtree.
+ * Storage tree structure must not be changed while the listing is in progress, unless the concurrent access is enabled 
+ * or the listing goes through the version of the persistent storage tree
+ * 
+ * @author Luka Pavlovic
+ *
+ */
+class ListingIterator implements Iterator<ListingEntry> {
+	
+	private final StorageTree storageTree;
+	private final StorageInformation storageInformation;
+	private final boolean onlyDirs;
+	private final boolean onlyFiles;
+	private final boolean searchSubDirecories;
+	private final String extension;
+	private final String prefix;
+	private final String sufix;
+	private final String subWord;
+	
+	private final Queue<FileMetadata> dirQueue = new LinkedList<>();
+	private final Queue<Integer> depthQueue = new LinkedList<>();
+	private Iterator<FileMetadata> content = Collections.emptyIterator();
+	private String parentPath;
+	private int depth;
+	private ListingEntry next;
+	
+	ListingIterator(FileMetadata directory, boolean onlyDirs, boolean onlyFiles, boolean searchSubDirecories, 
+			String extension, String prefix, String sufix, String subWord, StorageTree storageTree, StorageInformation storageInformation) {
+		
+		this.storageTree = storageTree;
+		this.storageInformation = storageInformation;
+		this.onlyDirs = onlyDirs;
+		this.onlyFiles = onlyFiles;
+		this.searchSubDirecories = searchSubDirecories;
+		this.extension = extension;
+		this.prefix = prefix;
+		this.sufix = sufix;
+		this.subWord = subWord;
+		
+		dirQueue.add(directory);
+		depthQueue.add(0);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if(next == null)
+			next = advance();
+		
+		return next != null;
+	}
+
+	@Override
+	public ListingEntry next() {
+		if(!hasNext())
+			throw new NoSuchElementException();
+		
+		ListingEntry ans = next;
+		next = null;
+		return ans;
+	}
+	
+	private ListingEntry advance() {
+		
+		for(;;) {
+			
+			while(content.hasNext()) {
+				FileMetadata f = content.next();
+				
+				if(searchSubDirecories && f.isDirectory()) {
+					dirQueue.add(f);
+					depthQueue.add(depth + 1);
+				}
+				
+				if(matches(f))
+					return new ListingEntry(depth, parentPath, f);
+			}
+			
+			if(dirQueue.isEmpty())
+				return null;
+			
+			FileMetadata dir = dirQueue.poll();
+			depth = depthQueue.poll();
+			parentPath = dir.getRelativePath();
+			
+			List<FileMetadata> list = storageInformation.readDirectoryContent(storageTree, dir);
+			content = (list == null) ? Collections.emptyIterator() : list.iterator();
+		}
+	}
+	
+	private boolean matches(FileMetadata f) {
+		
+		if(onlyDirs && !f.isDirectory())
+			return false;
+		if(onlyFiles && !f.isFile())
+			return false;
+		if(extension != null && !f.getName().endsWith(extension))
+			return false;
+		if(prefix != null && !f.getName().startsWith(prefix))
+			return false;
+		if(sufix != null && !f.getName().endsWith(sufix))
+			return false;
+		if(subWord != null && !f.getName().contains(subWord))
+			return false;
+		
+		return true;
+	}
+
+}
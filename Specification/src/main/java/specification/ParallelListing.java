@@ -0,0 +1,122 @@
+package specification;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+import fileMetadata.FileMetadata;
+import storageInformation.StorageInformation;
+import storageInformation.StorageTree;
+
+/**
+ * Recursive listing of the directory where every subdirectory is listed by its own fork/join task.
+ * Result is the same as the one of the sequential BFS in listDirectory, including the order in which directories are put in the maps.
+ * Storage tree structure must not be changed while the listing is in progress, unless the concurrent access is enabled
+ *
+ * @author Luka Pavlovic
+ *
+ */
+class ParallelListing {
+
+	private ParallelListing() {
+
+	}
+
+	/**
+	 * Lists the directory and all of its subdirectories
+	 * @param directory is the directory
+	 * @param filter if not null only FileMetadata which satisfy it are included, otherwise directory content is included as it is
+	 * @param storageTree is the storage tree to be read
+	 * @param storageInformation is the storage information
+	 * @return list of maps where the map at index i holds the directories at depth i, by their relative paths
+	 */
+	static List<Map<String, List<FileMetadata>>> list(FileMetadata directory, Predicate<FileMetadata> filter, StorageTree storageTree, StorageInformation storageInformation) {
+
+		List<Map<String, List<FileMetadata>>> result = new ArrayList<>();
+		int levels = 1;
+
+		// redosled obilaska u dubinu, ogranicen na jedan nivo, isti je kao redosled BFS-a na tom nivou
+		for(ListedDirectory listed : ForkJoinPool.commonPool().invoke(new ListingTask(directory, 0, filter, storageTree, storageInformation))) {
+			if(result.size() == listed.depth)
+				result.add(new HashMap<>());
+
+			result.get(listed.depth).put(listed.relativePath, listed.content);
+			if(listed.hasSubdirectories)
+				levels++;
+		}
+
+		// BFS u listDirectory dodaje po jedan nivo za svaki direktorijum koji ima poddirektorijume
+		while(result.size() < levels)
+			result.add(new HashMap<>());
+
+		return result;
+	}
+
+	private static class ListedDirectory {
+
+		private final int depth;
+		private final String relativePath;
+		private final List<FileMetadata> content;
+		private final boolean hasSubdirectories;
+
+		private ListedDirectory(int depth, String relativePath, List<FileMetadata> content, boolean hasSubdirectories) {
+			this.depth = depth;
+			this.relativePath = relativePath;
+			this.content = content;
+			this.hasSubdirectories = hasSubdirectories;
+		}
+	}
+
+	private static class ListingTask extends RecursiveTask<List<ListedDirectory>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FileMetadata directory;
+		private final int depth;
+		private final Predicate<FileMetadata> filter;
+		private final StorageTree storageTree;
+		private final StorageInformation storageInformation;
+
+		private ListingTask(FileMetadata directory, int depth, Predicate<FileMetadata> filter, StorageTree storageTree, StorageInformation storageInformation) {
+			this.directory = directory;
+			this.depth = depth;
+			this.filter = filter;
+			this.storageTree = storageTree;
+			this.storageInformation = storageInformation;
+		}
+
+		@Override
+		protected List<ListedDirectory> compute() {
+
+			List<FileMetadata> content = storageInformation.readDirectoryContent(storageTree, directory);
+			if(content == null)
+				content = new ArrayList<>();
+			List<FileMetadata> listed = content;
+			List<ListingTask> subdirectories = new ArrayList<>();
+
+			if(filter != null)
+				listed = new ArrayList<>();
+
+			for(FileMetadata f : content) {
+				if(filter != null && filter.test(f))
+					listed.add(f);
+				if(f.isDirectory())
+					subdirectories.add(new ListingTask(f, depth + 1, filter, storageTree, storageInformation));
+			}
+
+			List<ListedDirectory> result = new ArrayList<>();
+			result.add(new ListedDirectory(depth, directory.getRelativePath(), listed, !subdirectories.isEmpty()));
+
+			invokeAll(subdirectories);
+			for(ListingTask task : subdirectories)
+				result.addAll(task.join());
+
+			return result;
+		}
+	}
+
+}
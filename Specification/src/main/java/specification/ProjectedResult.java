@@ -0,0 +1,69 @@
+package specification;
+
+import java.util.List;
+import java.util.Map;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Result of filterAttributes in the projection mode. Items are the original FileMetadata from the result,
+ * chosen attributes are applied only when an item is formatted, so no FileMetadata is copied
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class ProjectedResult {
+
+	private final List<Map<String, List<FileMetadata>>> result;
+	private final boolean[] atributes;
+
+	ProjectedResult(List<Map<String, List<FileMetadata>>> result, boolean[] atributes) {
+		this.result = result;
+		this.atributes = atributes.clone();
+	}
+
+	/**
+	 * @return filtered result with the original FileMetadata, the same maps and lists must not be changed
+	 */
+	public List<Map<String, List<FileMetadata>>> getResult() {
+		return result;
+	}
+
+	/**
+	 * @param atribute is the index of the attribute, same as in filterAttributes
+	 * @return whether the attribute is included
+	 */
+	public boolean isIncluded(int atribute) {
+		return atribute < atributes.length && atributes[atribute];
+	}
+
+	/**
+	 * Formats only the included attributes of the item
+	 * @param fileMetadata is the item from the result
+	 * @return same text as toString() of the FileMetadata which filterAttributes builds for the item
+	 */
+	public String format(FileMetadata fileMetadata) {
+
+		StringBuilder sb = new StringBuilder();
+
+		if(isIncluded(0) && fileMetadata.getFileID() != null)
+			sb.append("fileID=").append(fileMetadata.getFileID()).append(", ");
+		if(isIncluded(1) && fileMetadata.getName() != null)
+			sb.append("name=").append(fileMetadata.getName()).append(", ");
+		if(isIncluded(3) && fileMetadata.getAbsolutePath() != null)
+			sb.append("absolutePath=").append(fileMetadata.getAbsolutePath()).append(", ");
+		if(isIncluded(2) && fileMetadata.getRelativePath() != null)
+			sb.append("relativePath=").append(fileMetadata.getRelativePath()).append(", ");
+		if(isIncluded(4) && fileMetadata.getTimeCreatedMillis() != 0L)
+			sb.append("timeCreated=").append(fileMetadata.getTimeCreated()).append(", ");
+		if(isIncluded(5) && fileMetadata.getTimeModifiedMillis() != 0L)
+			sb.append("timeModified=").append(fileMetadata.getTimeModified()).append(", ");
+		if(isIncluded(6))
+			sb.append("isFile=").append(fileMetadata.isFile()).append(", ");
+		if(isIncluded(7))
+			sb.append("isDirectory=").append(fileMetadata.isDirectory()).append(", ");
+
+		return sb.toString();
+	}
+
+}
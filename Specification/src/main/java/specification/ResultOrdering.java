@@ -0,0 +1,155 @@
+package specification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Orders the results of listDirectory. Name and times are read from each FileMetadata only once,
+ * so comparing does not allocate anything (FileMetadata outside of the heap builds the name on every call).
+ * Items which are equal by the requirements keep the order in which they appear in the result
+ *
+ * @author Luka Pavlovic
+ *
+ */
+class ResultOrdering {
+
+	private final Comparator<SortKey> comparator;
+
+	/**
+	 * If none of the requirements is set, items are ordered by name
+	 * @param byName if true items are compared by name
+	 * @param byCreationDate if true items are compared by time of creation, after the name
+	 * @param byModificationDate if true items are compared by time of modification, after the name and the time of creation
+	 * @param descending if true the order is reversed
+	 */
+	ResultOrdering(boolean byName, boolean byCreationDate, boolean byModificationDate, boolean descending) {
+
+		Comparator<SortKey> comparator = null;
+
+		if(byName || (!byCreationDate && !byModificationDate))
+			comparator = Comparator.comparing(k -> k.name);
+		if(byCreationDate)
+			comparator = (comparator == null) ? Comparator.comparingLong(k -> k.timeCreated) : comparator.thenComparingLong(k -> k.timeCreated);
+		if(byModificationDate)
+			comparator = (comparator == null) ? Comparator.comparingLong(k -> k.timeModified) : comparator.thenComparingLong(k -> k.timeModified);
+
+		if(descending)
+			comparator = comparator.reversed();
+
+		this.comparator = comparator.thenComparingInt(k -> k.order);
+	}
+
+	private static class SortKey {
+
+		private final FileMetadata fileMetadata;
+		private final String name;
+		private final long timeCreated;
+		private final long timeModified;
+		// polozaj u rezultatu, odlucuje kada su ostali kljucevi jednaki
+		private final int order;
+
+		private SortKey(FileMetadata fileMetadata, int order) {
+			this.fileMetadata = fileMetadata;
+			this.name = fileMetadata.getName();
+			this.timeCreated = fileMetadata.getTimeCreatedMillis();
+			this.timeModified = fileMetadata.getTimeModifiedMillis();
+			this.order = order;
+		}
+	}
+
+	/**
+	 * Sorts the list
+	 * @param list is the list to be sorted, it is not changed
+	 * @return new sorted list
+	 */
+	List<FileMetadata> sort(List<FileMetadata> list) {
+		return unwrap(sortedKeys(list, 0));
+	}
+
+	/**
+	 * Orders all items of the result together, no matter in which directory or depth they are. Directory lists which are already sorted 
+	 * (e.g. by resultSort) are sorted runs of the keys, so the sort only merges them
+	 * @param data is the result of listDirectory
+	 * @return all items from the result in one sorted list
+	 */
+	List<FileMetadata> sortAll(List<Map<String, List<FileMetadata>>> data) {
+
+		int size = 0;
+		for(Map<String, List<FileMetadata>> map : data) {
+			for(List<FileMetadata> list : map.values())
+				size += list.size();
+		}
+
+		SortKey[] keys = new SortKey[size];
+		int order = 0;
+		for(Map<String, List<FileMetadata>> map : data) {
+			for(List<FileMetadata> list : map.values()) {
+				for(FileMetadata f : list) {
+					keys[order] = new SortKey(f, order);
+					order++;
+				}
+			}
+		}
+
+		Arrays.sort(keys, comparator);
+		return unwrap(keys);
+	}
+
+	/**
+	 * Finds the first k items of the whole result, no matter in which directory or depth they are, without sorting the whole result
+	 * @param data is the result of listDirectory
+	 * @param k is the number of items to be found, must be positive
+	 * @return at most k items, sorted
+	 */
+	List<FileMetadata> top(List<Map<String, List<FileMetadata>>> data, int k) {
+
+		// poslednji od k prvih je na vrhu i izbacuje se cim se nadje bolji
+		PriorityQueue<SortKey> heap = new PriorityQueue<>(k, comparator.reversed());
+
+		int order = 0;
+		for(Map<String, List<FileMetadata>> map : data) {
+			for(List<FileMetadata> list : map.values()) {
+				for(FileMetadata f : list) {
+					SortKey key = new SortKey(f, order++);
+
+					if(heap.size() < k)
+						heap.add(key);
+					else if(comparator.compare(key, heap.peek()) < 0) {
+						heap.poll();
+						heap.add(key);
+					}
+				}
+			}
+		}
+
+		SortKey[] keys = heap.toArray(new SortKey[heap.size()]);
+		Arrays.sort(keys, comparator);
+		return unwrap(keys);
+	}
+
+	private SortKey[] sortedKeys(List<FileMetadata> list, int order) {
+
+		SortKey[] keys = new SortKey[list.size()];
+		for(int i = 0 ; i < keys.length ; i++)
+			keys[i] = new SortKey(list.get(i), order + i);
+
+		Arrays.sort(keys, comparator);
+		return keys;
+	}
+
+	private static List<FileMetadata> unwrap(SortKey[] keys) {
+
+		List<FileMetadata> result = new ArrayList<>(keys.length);
+		for(SortKey key : keys)
+			result.add(key.fileMetadata);
+
+		return result;
+	}
+
+}
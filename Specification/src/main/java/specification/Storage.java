@@ -3,17 +3,23 @@ import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import exception.DirectoryException;
 import exception.InvalidArgumentsExcpetion;
@@ -28,7 +34,12 @@ import exception.StorageSizeException;
 import exception.UnsupportedFileException;
 import fileMetadata.FileMetadata;
 import fileMetadata.FileMetadata.FileMetadataBuilder;
+import storageInformation.LazyStorageTree;
+import storageInformation.OffHeapStorageTree;
+import storageInformation.QuotaReservation;
 import storageInformation.StorageInformation;
+import storageInformation.StorageLocks;
+import storageInformation.StorageTree;
 import storageManager.StorageManager;
 
 /**
@@ -38,10 +49,21 @@ import storageManager.StorageManager;
  * 
  */
 
+// brave se drze kao resurs try bloka (StorageLocks.Held), telo bloka ga ne koristi i ne treba da ga koristi
+@SuppressWarnings("try")
 public abstract class Storage {
 	
+	// indeks imena se koristi za ls kada pogodaka ima najvise 1/ratio od FileMetadata koji bi se pregledali (ListDirectoryBenchmark ih menja)
+	int nameIndexRatio = 32;
+	int offHeapNameIndexRatio = 8;
+	// rekurzivni ls i filter se izvrsavaju na vise niti
+	private boolean parallelTraversal = false;
+	// skladiste se koristi sa vise niti, direktorijumi se zakljucavaju
+	private volatile boolean concurrentAccess = false;
+	
     /**
-     * Creates a new storage and connects to it upon its creation. 
+     * Creates a new storage and connects to it upon its creation, so it becomes the default storage. Storages which are already connected 
+     * stay open (see StorageManager). 
      * Creation of the storage also requires creation of one more directory which will be root directory for the data and
      * one more file which will hold the information necessary to storage works properly. 
      * After that, it is necessary to call function 'createStorageTreeStructure(dest)' which will create structure which describes storage paths and it's content if some of paths denotes directories
@@ -49,14 +71,16 @@ public abstract class Storage {
      * @return true if storage is successfully created, false otherwise
      * @throws NamingPolicyException if parent directory contains a file or a folder with the same name as storage name
      * @throws PathException if path is incorret
-     * @throws StorageConnectionException if other storage is already connected
+     * @throws StorageConnectionException if the new storage can not be connected to
      * @throws StoragePathException if some storage already exists along the path
      */
 	public abstract boolean createStorage(String dest) 
 			throws NamingPolicyException, PathException, StorageConnectionException, StoragePathException; // mkstrg
 	
 	/**
-	 * Connects to the storage which reside on the path given by src
+	 * Connects to the storage which reside on the path given by src and makes it the default storage. Storages which are already connected 
+	 * stay open (see StorageManager), so connecting to one of them again does not read its information again. 
+	 * Operations work with the default storage, unless other open storage is selected for the current thread (see StorageHandle)
 	 * @param src is path to the existing storage
 	 * @return true if successfully connected, false otherwise
 	 * @throws NotFound if some directory along the path does not exist
@@ -68,7 +92,7 @@ public abstract class Storage {
 	
 	
 	/**
-	 * Disconnects from the currently connected storage
+	 * Disconnects from the currently connected storage and closes it
 	 * @return true if successfully disconnected, false otherwise
 	 */
 	public abstract boolean disconnectFromStorage(); // discon
@@ -243,7 +267,8 @@ public abstract class Storage {
 	
 	
 	/**
-	 * Changes current directory to the specified one
+	 * Changes current directory to the specified one. If a session is selected for the current thread (see StorageSession), 
+	 * only its current directory is changed
 	 * @param dest is the path to the directory to be changed in
 	 * @return true if the directory is successfully changed, false otherwise
 	 * @throws NotFound if the directory does not exist
@@ -253,21 +278,23 @@ public abstract class Storage {
 		
 		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
 			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
-					
+		
+		getStorageLocks(StorageManager.getInstance().getStorageInformation());
 		if(dest.equals("cd..")) {
-			if(StorageManager.getInstance().getStorageInformation().getCurrentDirectory().isStorage())
+			if(StorageManager.getInstance().getCurrentDirectory().isStorage())
 				return true;
 
-			StorageManager.getInstance().getStorageInformation().setCurrentDirectory(StorageManager.getInstance().getStorageInformation().getCurrentDirectory().getParent());
+			StorageManager.getInstance().setCurrentDirectory(StorageManager.getInstance().getCurrentDirectory().getParent());
 			return true;
 		}
 								
-		FileMetadata directory = getLastFileMetadataOnPath(getRelativePath(dest), StorageManager.getInstance().getStorageInformation().getStorageTreeStructure());
+		// tekuci direktorijum se cuva i posle ove operacije, pa se uzima iz stabla koje se menja, a ne iz verzije koja se samo cita
+		FileMetadata directory = getLastFileMetadataOnPath(getRelativePath(dest), StorageManager.getInstance().getStorageInformation());
 		
 		if(directory == null)
 			throw new NotFound("Location does not exist!");
 		
-		StorageManager.getInstance().getStorageInformation().setCurrentDirectory(directory);
+		StorageManager.getInstance().setCurrentDirectory(directory);
 		return true;
 	}
 	
@@ -283,27 +310,68 @@ public abstract class Storage {
 		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
 			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
 
-		return checkPath(getRelativePath(src), StorageManager.getInstance().getStorageInformation().getStorageTreeStructure());
+		getStorageLocks(StorageManager.getInstance().getStorageInformation());
+		return checkPath(getRelativePath(src), StorageManager.getInstance().getStorageInformation().readStorageTree(), StorageManager.getInstance().getStorageInformation());
 	}
 	
 	/**
-	 * Checks whether the files or directories exists
+	 * Checks whether the files or directories exists. Every directory which holds some of the paths is looked up only once,
+	 * so the paths which share the directories do not walk the same part of the tree again
 	 * @param filePaths are the paths to the potential files or directories
 	 * @return for every path returns true if the file or directory exist, false otherwise
 	 * @throws StorageConnectionException if storage is not connected
 	 */
 	public Map<String, Boolean> find(List<String> filePaths) throws StorageConnectionException { // hit -l
 		
-		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+		if(storageInformation.isStorageConnected() == false)
 			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
 		
+		getStorageLocks(storageInformation);
+		StorageTree storageTree = storageInformation.readStorageTree();
+		String dataRootAbsolutePath = storageInformation.getDatarootDirectory().getAbsolutePath();
+		String dataRootRelativePath = storageInformation.getDatarootDirectory().getRelativePath();
+		String currentDirectoryRelativePath = StorageManager.getInstance().getCurrentDirectory().getRelativePath();
+		
+		// pronadjeni direktorijumi po putanjama, null ako direktorijum ne postoji
+		Map<Path, FileMetadata> directories = new HashMap<>();
 		Map<String, Boolean> result = new HashMap<>();
-		for(String path : filePaths) 
-			result.put(path, find(path));
+		
+		for(String filePath : filePaths) {
+			Path path = getRelativePath(filePath, dataRootAbsolutePath, dataRootRelativePath, currentDirectoryRelativePath);
+			
+			// kao u checkPath, koren putanje se preskace
+			if(path.getRoot() != null)
+				path = path.getRoot().relativize(path);
+			
+			result.put(filePath, findOnPath(path, directories, storageTree, storageInformation) != null);
+		}
 		
 		return result;
 	}
 	
+	private FileMetadata findOnPath(Path path, Map<Path, FileMetadata> directories, StorageTree storageTree, StorageInformation storageInformation) {
+		
+		Path parentPath = path.getParent();
+		if(parentPath == null) {
+			FileMetadata storageDirectory = storageInformation.getStorageDirectory();
+			return path.toString().equals(storageDirectory.getName()) ? storageDirectory : null;
+		}
+		
+		FileMetadata parent;
+		if(directories.containsKey(parentPath)) {
+			parent = directories.get(parentPath);
+		}
+		else {
+			parent = findOnPath(parentPath, directories, storageTree, storageInformation);
+			directories.put(parentPath, parent);
+		}
+		
+		// vecina putanja koje se proveravaju ne postoji, filter odgovara bez trazenja u direktorijumu
+		String name = path.getFileName().toString();
+		return (parent == null || !storageInformation.mightContain(parent, name)) ? null : lookup(parent, name, storageTree, storageInformation);
+	}
+	
 	/**
 	 * Tries to find all destionatios for the file or directory with a specified name
 	 * @param name is the name to be searched for
@@ -315,19 +383,11 @@ public abstract class Storage {
 		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
 			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
 		
+		StorageLocks locks = getStorageLocks(StorageManager.getInstance().getStorageInformation());
 		List<String> result = new ArrayList<>();
-		Map<String, List<FileMetadata>> storageTreeStracture = StorageManager.getInstance().getStorageInformation().getStorageTreeStructure();
-		
-		for(String relativePath : storageTreeStracture.keySet()) {
-			
-			for(FileMetadata f : storageTreeStracture.get(relativePath)) {
-				
-				Path path = Paths.get(f.getAbsolutePath());
-				
-				if(path.getFileName().toString().equals(name))
-					result.add(f.getAbsolutePath());
-					
-			}
+		try(StorageLocks.Held held = locks.readDirectories()) {
+			for(FileMetadata f : StorageManager.getInstance().getStorageInformation().readStorageTree().getFileMetadataByName(name))
+				result.add(f.getAbsolutePath());
 		}
 		
 		return result;
@@ -354,9 +414,10 @@ public abstract class Storage {
 			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
 
 		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
-		Map<String, List<FileMetadata>> storageTreeStracture = storageInformation.getStorageTreeStructure();	
+		StorageLocks locks = getStorageLocks(storageInformation);
+		StorageTree storageTree = storageInformation.readStorageTree();
 
-		FileMetadata directory = getLastFileMetadataOnPath(getRelativePath(src), storageTreeStracture);
+		FileMetadata directory = getLastFileMetadataOnPath(getRelativePath(src), storageTree, storageInformation);
 		if(directory == null)
 			throw new NotFound("Source directory not found!");
 		if(!directory.isDirectory())
@@ -372,32 +433,66 @@ public abstract class Storage {
 		if(sufix != null && sufix.length()>0)
 			subWord = null;
 		
+		// filteri po imenu se primenjuju preko indeksa imena kada je pogodaka malo u odnosu na fajlove koji bi se inace pregledali.
+		// Pregled stabla na heap-u je jeftin, pa se indeks tamo isplati tek za redje pogotke nego van heap-a.
+		// Indeks i velicina stabla ucitavaju sve direktorijume lenjog stabla, pa se dok ono nije ucitano pregleda samo podstablo
+		boolean lazy = (storageTree instanceof LazyStorageTree) && !((LazyStorageTree) storageTree).isLoaded();
+		if(!lazy && ((extension != null) || (prefix != null) || (sufix != null) || (subWord != null))) {
+			int scanned;
+			try(StorageLocks.Held held = locks.readDirectories(directory)) {
+				scanned = searchSubDirecories ? storageTree.size() : storageTree.getDirectorySize(directory);
+			}
+			int limit = scanned / ((storageTree instanceof OffHeapStorageTree) ? offHeapNameIndexRatio : nameIndexRatio);
+			List<FileMetadata> matches = storageInformation.searchNames(directory, searchSubDirecories, prefix, new String[] { extension, sufix }, subWord, limit);
+			if(matches != null)
+				return listDirectoryByName(directory, onlyDirs, onlyFiles, searchSubDirecories, matches, storageTree, storageInformation);
+		}
+		
+		if(parallelTraversal && searchSubDirecories) {
+			
+			Predicate<FileMetadata> filter = null;
+			if(onlyDirs || onlyFiles || (extension != null) || (prefix != null) || (sufix != null) || (subWord != null)) {
+				boolean dirs = onlyDirs, files = onlyFiles;
+				String ext = extension, pref = prefix, suf = sufix, sub = subWord;
+				
+				filter = f -> !(dirs && !f.isDirectory()) && !(files && !f.isFile()) 
+						&& (ext == null || f.getName().endsWith(ext)) && (pref == null || f.getName().startsWith(pref)) 
+						&& (suf == null || f.getName().endsWith(suf)) && (sub == null || f.getName().contains(sub));
+			}
+			
+			return ParallelListing.list(directory, filter, storageTree, storageInformation);
+		}
 		
 		List<Map<String, List<FileMetadata>>> result = new ArrayList<Map<String, List<FileMetadata>>>();
-		Queue<String> pathQueue = new LinkedList<>();
+		Queue<FileMetadata> dirQueue = new LinkedList<>();
 		Queue<Integer> depthQueue = new LinkedList<>();
-		pathQueue.add(directory.getRelativePath());
+		dirQueue.add(directory);
 		depthQueue.add(0);
 		
 		result.add(new HashMap<>());
 		
 		// BFS
-		while(!pathQueue.isEmpty()) {
+		while(!dirQueue.isEmpty()) {
 			
-			String relativePath = pathQueue.poll();
+			FileMetadata dir = dirQueue.poll();
 			Integer depth = depthQueue.poll();
 			
+			// sa konkurentnim pristupom u rezultat ide kopija sadrzaja
+			List<FileMetadata> content = storageInformation.readDirectoryContent(storageTree, dir);
+			if(content == null)
+				content = new ArrayList<>();
+			
 			Map<String, List<FileMetadata>> map = result.get(depth);			
-			map.put(relativePath, storageTreeStracture.get(relativePath));
+			map.put(dir.getRelativePath(), content);
 			
 			if(searchSubDirecories==false)
 				break;
 			
 			boolean flag = false;
 			
-			for(FileMetadata f : storageTreeStracture.get(relativePath)) {
+			for(FileMetadata f : content) {
 				if(f.isDirectory()) {
-					pathQueue.add(f.getRelativePath());
+					dirQueue.add(f);
 					depthQueue.add(depth + 1);
 					
 					if(!flag) {
@@ -451,6 +546,132 @@ public abstract class Storage {
 		return result;
 	}
 	
+	/**
+	 * Lists all items from the directory that meet the requirements, as listDirectory does, without building the whole result. 
+	 * Items are found while the stream is being consumed, directory by directory, level by level. 
+	 * Storage must not be changed until the stream is consumed
+	 * @param src is the path to the directory
+	 * @param onlyDirs if true searches only for directories
+	 * @param onlyFiles if true searches only for files
+	 * @param searchSubDirecories if true search continues to the subdirectories
+	 * @param extension if not null searches only for the items that have given extension
+	 * @param prefix if not null searches only for the items that have given prefix
+	 * @param sufix if not null searches only for the items that have given sufix
+	 * @param subWord if not null searches only for the items that have given subWord
+	 * @return stream of the found items together with their depth and the relative path of their directory
+	 * @throws NotFound if the directory does not exist
+	 * @throws OperationNotAllowed if the path does not represent directory
+	 * @throws StorageConnectionException if storage is not connected
+	 */
+	public Stream<ListingEntry> listDirectoryStream(String src, boolean onlyDirs, boolean onlyFiles, boolean searchSubDirecories, 
+				String extension, String prefix, String sufix, String subWord) throws NotFound, OperationNotAllowed, StorageConnectionException { // ls -st
+		
+		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
+			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
+
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+		getStorageLocks(storageInformation);
+		StorageTree storageTree = storageInformation.readStorageTree();
+
+		FileMetadata directory = getLastFileMetadataOnPath(getRelativePath(src), storageTree, storageInformation);
+		if(directory == null)
+			throw new NotFound("Source directory not found!");
+		if(!directory.isDirectory())
+			throw new OperationNotAllowed("Given path does not represent directory!");
+		
+		// fix parameters
+		if(onlyDirs)
+			onlyFiles = false;
+		if(prefix !=null && prefix.length()>0) {
+			sufix = null;
+			subWord = null;
+		}
+		if(sufix != null && sufix.length()>0)
+			subWord = null;
+		
+		Iterator<ListingEntry> iterator = new ListingIterator(directory, onlyDirs, onlyFiles, searchSubDirecories, extension, prefix, sufix, subWord, storageTree, storageInformation);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+	
+	private List<Map<String, List<FileMetadata>>> listDirectoryByName(FileMetadata directory, boolean onlyDirs, boolean onlyFiles, boolean searchSubDirecories, 
+				List<FileMetadata> matches, StorageTree storageTree, StorageInformation storageInformation) {
+		
+		List<Map<String, List<FileMetadata>>> result = new ArrayList<Map<String, List<FileMetadata>>>();
+		Map<FileMetadata, List<FileMetadata>> lists = new HashMap<>();
+		Queue<FileMetadata> dirQueue = new LinkedList<>();
+		Queue<Integer> depthQueue = new LinkedList<>();
+		dirQueue.add(directory);
+		depthQueue.add(0);
+		
+		result.add(new HashMap<>());
+		
+		// BFS samo po direktorijumima, svaki direktorijum ima svoju listu u rezultatu kao i bez indeksa
+		while(!dirQueue.isEmpty()) {
+			
+			FileMetadata dir = dirQueue.poll();
+			Integer depth = depthQueue.poll();
+			
+			List<FileMetadata> list = new ArrayList<>();
+			result.get(depth).put(dir.getRelativePath(), list);
+			lists.put(dir, list);
+			
+			if(searchSubDirecories==false)
+				break;
+			
+			boolean flag = false;
+			
+			List<FileMetadata> subdirectories = storageInformation.readSubdirectories(storageTree, dir);
+			if(subdirectories == null)
+				continue;
+			
+			for(FileMetadata f : subdirectories) {
+				dirQueue.add(f);
+				depthQueue.add(depth + 1);
+				
+				if(!flag) {
+					flag = true;
+					result.add(new HashMap<>());
+				}
+			}
+		}
+		
+		Map<FileMetadata, List<FileMetadata>> found = new HashMap<>();
+		for(FileMetadata f : matches) {
+			if(onlyDirs && !f.isDirectory())
+				continue;
+			if(onlyFiles && !f.isFile())
+				continue;
+			
+			found.computeIfAbsent(f.getParent(), k -> new ArrayList<>(1)).add(f);
+		}
+		
+		for(Map.Entry<FileMetadata, List<FileMetadata>> entry : found.entrySet()) {
+			
+			// pogodak je u medjuvremenu premesten van pregledanog podstabla
+			List<FileMetadata> list = lists.get(entry.getKey());
+			if(list == null)
+				continue;
+			
+			if(entry.getValue().size() == 1) {
+				list.add(entry.getValue().get(0));
+				continue;
+			}
+			
+			// vise pogodaka u direktorijumu se redja kao u sadrzaju direktorijuma
+			Set<FileMetadata> candidates = new HashSet<>(entry.getValue());
+			List<FileMetadata> content = storageInformation.readDirectoryContent(storageTree, entry.getKey());
+			if(content == null)
+				continue;
+			
+			for(FileMetadata f : content) {
+				if(candidates.contains(f))
+					list.add(f);
+			}
+		}
+		
+		return result;
+	}
+	
 	/**
 	 * Sorts result by the given requirements. If some of the requirements are set to true then that requirements is considered in the sorting process
 	 * @param data is the data upon which the sort is applied
@@ -468,52 +689,68 @@ public abstract class Storage {
 		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
 			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
 		
-		Comparator<FileMetadata> comparator = Comparator.comparing(FileMetadata::getName);
-		
-		if(byName && byCreationDate && byModificationDate)
-			comparator.thenComparing(FileMetadata::getTimeCreated).thenComparing(FileMetadata::getTimeModified);
-		
-		else if(!byName && byCreationDate && byModificationDate)
-			comparator = Comparator.comparing(FileMetadata::getTimeCreated).thenComparing(FileMetadata::getTimeModified);
-		
-		else if(byName && !byCreationDate && byModificationDate)
-			comparator.thenComparing(FileMetadata::getTimeModified);
-		
-		else if(byName && byCreationDate && !byModificationDate)
-			comparator.thenComparing(FileMetadata::getTimeCreated);
-		
-		else if(byName && !byCreationDate && !byModificationDate)
-			comparator = Comparator.comparing(FileMetadata::getName);
-		
-		else if(!byName && byCreationDate && !byModificationDate)
-			comparator = Comparator.comparing(FileMetadata::getTimeCreated);
-		
-		else if(!byName && !byCreationDate && byModificationDate)
-			comparator = Comparator.comparing(FileMetadata::getTimeModified);
-		
+		ResultOrdering ordering = new ResultOrdering(byName, byCreationDate, byModificationDate, descending);
 		
 		for(int i = 0 ; i < data.size() ; i++) {
 			
 			Map<String, List<FileMetadata>> map = data.get(i);
 			
-			for(String relativePath : map.keySet()) {
-				List<FileMetadata> list = map.get(relativePath);
-				if(descending) {
-					list = list.stream().sorted(comparator).collect(Collectors.toList());
-					Collections.reverse(list);
-					map.put(relativePath, list);
-				}
-				else 
-					map.put(relativePath, list.stream().sorted(comparator).collect(Collectors.toList()));
-			}
+			for(String relativePath : map.keySet())
+				map.put(relativePath, ordering.sort(map.get(relativePath)));
 		}
 	
 		return data;
 	}
 	
+	/**
+	 * Sorts all items of the result together, no matter in which directory or depth they are. 
+	 * If the directories are already sorted by resultSort with the same requirements, their lists are only merged. Requirements are the same as in resultSort
+	 * @param data is the data upon which the sort is applied
+	 * @param byName
+	 * @param byCreationDate
+	 * @param byModificationDate
+	 * @param ascending
+	 * @param descending
+	 * @return all items from the data in one sorted list
+	 * @throws StorageConnectionException if storage is not connected
+	 */
+	public List<FileMetadata> resultSortGlobal(List<Map<String, List<FileMetadata>>> data, boolean byName, boolean byCreationDate, 
+			boolean byModificationDate, boolean ascending, boolean descending) throws StorageConnectionException{ // sort -g
+		
+		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
+			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
+		
+		return new ResultOrdering(byName, byCreationDate, byModificationDate, descending).sortAll(data);
+	}
+	
+	/**
+	 * Finds the first k items of the result sorted as a whole, without sorting the whole result (e.g. 50 newest files in the storage). 
+	 * Requirements are the same as in resultSort
+	 * @param data is the data upon which the sort is applied
+	 * @param byName
+	 * @param byCreationDate
+	 * @param byModificationDate
+	 * @param ascending
+	 * @param descending
+	 * @param k is the number of items to be found
+	 * @return at most k items from the data, sorted
+	 * @throws InvalidArgumentsExcpetion if k is not positive
+	 * @throws StorageConnectionException if storage is not connected
+	 */
+	public List<FileMetadata> resultTop(List<Map<String, List<FileMetadata>>> data, boolean byName, boolean byCreationDate, 
+			boolean byModificationDate, boolean ascending, boolean descending, int k) throws InvalidArgumentsExcpetion, StorageConnectionException{ // sort -top
+		
+		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
+			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
+		if(k < 1)
+			throw new InvalidArgumentsExcpetion("Invalid arguments! k < 1");
+		
+		return new ResultOrdering(byName, byCreationDate, byModificationDate, descending).top(data, k);
+	}
+	
 	/**
 	 * Filters attributes of the data.
-	 * @param data is the data upon which filter is applied
+	 * @param data is the data upon which filter is applied, it is not changed
 	 * @param atributes : 
 	 * if atributes[0] is set to true then file ID is included
 	 * if atributes[1] is set to true then file name is included
@@ -536,6 +773,35 @@ public abstract class Storage {
 		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
 			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
 		
+		long[][] bounds = periodBounds(periods);
+		
+		return filterLevels(data, content -> filterAttributes(content, atributes, bounds[0], bounds[1]));
+	}
+	
+	/**
+	 * Same as filterAttributes, but FileMetadata are not copied. Result holds the original items which satisfy the periods,
+	 * chosen attributes are applied only when the items are formatted
+	 * @param data is the data upon which filter is applied, it is not changed
+	 * @param atributes same as in filterAttributes
+	 * @param periods same as in filterAttributes
+	 * @return the original items which satisfy the periods, together with the chosen attributes
+	 * @throws InvalidArgumentsExcpetion if some of periods are not valid
+	 * @throws StorageConnectionException if storage is not connected
+	 */
+	public ProjectedResult projectAttributes(List<Map<String, List<FileMetadata>>> data, boolean[] atributes, Date[][] periods) 
+			throws InvalidArgumentsExcpetion, StorageConnectionException{ // filter
+		
+		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
+			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
+		
+		long[][] bounds = periodBounds(periods);
+		
+		return new ProjectedResult(filterLevels(data, content -> filterAttributes(content, null, bounds[0], bounds[1])), atributes);
+	}
+	
+	// [period kreiranja, period izmene] u milisekundama, period je null ako nije zadat
+	private long[][] periodBounds(Date[][] periods) throws InvalidArgumentsExcpetion {
+		
 		Date createdTimeLowerBound = null;
 		Date createdTimeUpperBound = null;
 		if(periods[0][0] != null && periods[0][1] != null) {
@@ -556,60 +822,279 @@ public abstract class Storage {
 				throw new InvalidArgumentsExcpetion("Invalid arguments! modifedTimeLowerBound > modifiedTimeUpperBound");
 		}		
 		
+		long[] created = (createdTimeLowerBound != null) ? new long[] { createdTimeLowerBound.getTime(), createdTimeUpperBound.getTime() } : null;
+		long[] modified = (modifedTimeLowerBound != null) ? new long[] { modifedTimeLowerBound.getTime(), modifiedTimeUpperBound.getTime() } : null;
+		
+		return new long[][] { created, modified };
+	}
+	
+	// ulazne mape se ne menjaju, redosled direktorijuma ostaje isti
+	private List<Map<String, List<FileMetadata>>> filterLevels(List<Map<String, List<FileMetadata>>> data, UnaryOperator<List<FileMetadata>> filter) {
+		
 		List<Map<String, List<FileMetadata>>> resultClone = new ArrayList<>();
 		
 		for(int depth = 0 ; depth < data.size() ; depth++) {
 			
 			Map<String, List<FileMetadata>> map = data.get(depth);
+			Map<String, List<FileMetadata>> filteredMap = new LinkedHashMap<>();
 			
-			for(String relativePath : map.keySet()) {
-			
-				List<FileMetadata> filtered = new ArrayList<>();
-				
-				for(FileMetadata f : map.get(relativePath)) {
-					
-					if(createdTimeLowerBound != null && createdTimeUpperBound != null) {
-						Date time = f.getTimeCreated();
-						if(time.before(createdTimeLowerBound) || time.after(createdTimeUpperBound))
-							continue;
-					}
-					if(modifedTimeLowerBound != null && modifiedTimeUpperBound != null) {
-						Date time = f.getTimeModified();
-						if(time.before(modifedTimeLowerBound) || time.after(modifiedTimeUpperBound))
-							continue;
-					}
-					
-					FileMetadataBuilder builder = new FileMetadataBuilder();
-					
-					if(atributes[0])
-						builder.withFileID(f.getFileID());
-					if(atributes[1])
-						builder.withName(f.getName());
-					if(atributes[2])
-						builder.withRelativePath(f.getRelativePath());
-					if(atributes[3])
-						builder.withAbsolutePath(f.getAbsolutePath());
-					if(atributes[4])
-						builder.withTimeCreated(f.getTimeCreated());
-					if(atributes[5])
-						builder.withTimeModified(f.getTimeModified());
-					if(atributes[6])
-						builder.withIsFile(f.isFile());
-					if(atributes[7])
-						builder.withIsDirectory(f.isDirectory());								
-					
-					filtered.add(builder.build());
-				}
+			if(parallelTraversal) {
+				// direktorijumi se filtriraju paralelno, a rezultati se upisuju redom
+				List<String> relativePaths = new ArrayList<>(map.keySet());
+				List<List<FileMetadata>> filtered = relativePaths.parallelStream()
+						.map(relativePath -> filter.apply(map.get(relativePath)))
+						.collect(Collectors.toList());
 				
-				map.put(relativePath, filtered);
+				for(int i = 0 ; i < relativePaths.size() ; i++)
+					filteredMap.put(relativePaths.get(i), filtered.get(i));
+			}
+			else {
+				for(String relativePath : map.keySet())
+					filteredMap.put(relativePath, filter.apply(map.get(relativePath)));
 			}
 			
-			resultClone.add(depth, map);
+			resultClone.add(filteredMap);
 		}
 		
 		return resultClone;
 	}
 	
+	// created i modified su [donja granica, gornja granica] u milisekundama, null ako period nije zadat
+	// ako je atributes null, FileMetadata se ne kopiraju
+	private List<FileMetadata> filterAttributes(List<FileMetadata> content, boolean[] atributes, long[] created, long[] modified) {
+		
+		if(atributes == null && created == null && modified == null)
+			return content;
+		
+		List<FileMetadata> filtered = new ArrayList<>();
+		
+		for(FileMetadata f : content) {
+			
+			if(created != null) {
+				long time = f.getTimeCreatedMillis();
+				if(time < created[0] || time > created[1])
+					continue;
+			}
+			if(modified != null) {
+				long time = f.getTimeModifiedMillis();
+				if(time < modified[0] || time > modified[1])
+					continue;
+			}
+			
+			if(atributes == null) {
+				filtered.add(f);
+				continue;
+			}
+			
+			FileMetadataBuilder builder = new FileMetadataBuilder();
+			
+			if(atributes[0])
+				builder.withFileID(f.getFileID());
+			if(atributes[1])
+				builder.withName(f.getName());
+			if(atributes[2])
+				builder.withRelativePath(f.getRelativePath());
+			if(atributes[3])
+				builder.withAbsolutePath(f.getAbsolutePath());
+			if(atributes[4])
+				builder.withTimeCreated(f.getTimeCreated());
+			if(atributes[5])
+				builder.withTimeModified(f.getTimeModified());
+			if(atributes[6])
+				builder.withIsFile(f.isFile());
+			if(atributes[7])
+				builder.withIsDirectory(f.isDirectory());								
+			
+			filtered.add(builder.build());
+		}
+		
+		return filtered;
+	}
+	
+	/**
+	 * Finds files and directories created in the given period
+	 * @param from is the beginning of the period
+	 * @param to is the end of the period
+	 * @return files and directories from the data root directory, sorted by the time of creation
+	 * @throws InvalidArgumentsExcpetion if from is after to
+	 * @throws StorageConnectionException if storage is not connected
+	 */
+	public List<FileMetadata> findCreatedBetween(Date from, Date to) throws InvalidArgumentsExcpetion, StorageConnectionException {
+		
+		checkPeriod(from, to);
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+		
+		getStorageLocks(storageInformation);
+		return inDataRoot(storageInformation.getTimeCreatedRange(from.getTime(), to.getTime()), storageInformation);
+	}
+	
+	/**
+	 * Finds files and directories modified in the given period
+	 * @param from is the beginning of the period
+	 * @param to is the end of the period
+	 * @return files and directories from the data root directory, sorted by the time of modification
+	 * @throws InvalidArgumentsExcpetion if from is after to
+	 * @throws StorageConnectionException if storage is not connected
+	 */
+	public List<FileMetadata> findModifiedBetween(Date from, Date to) throws InvalidArgumentsExcpetion, StorageConnectionException {
+		
+		checkPeriod(from, to);
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+		
+		getStorageLocks(storageInformation);
+		return inDataRoot(storageInformation.getTimeModifiedRange(from.getTime(), to.getTime()), storageInformation);
+	}
+	
+	/**
+	 * Finds files whose size is between the given bounds
+	 * @param minSize is the smallest size in bytes
+	 * @param maxSize is the largest size in bytes
+	 * @return files from the data root directory, sorted by the size
+	 * @throws InvalidArgumentsExcpetion if minSize is greater than maxSize
+	 * @throws StorageConnectionException if storage is not connected
+	 */
+	public List<FileMetadata> findSizeBetween(long minSize, long maxSize) throws InvalidArgumentsExcpetion, StorageConnectionException {
+		
+		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
+			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
+		if(minSize > maxSize)
+			throw new InvalidArgumentsExcpetion("Invalid arguments! minSize > maxSize");
+		
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+		List<FileMetadata> result = new ArrayList<>();
+		getStorageLocks(storageInformation);
+		for(FileMetadata f : inDataRoot(storageInformation.getSizeRange(minSize, maxSize), storageInformation)) {
+			if(f.isFile())
+				result.add(f);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Finds the largest files in the storage
+	 * @param n is the number of files to be found
+	 * @return at most n files from the data root directory, from the largest to the smallest one
+	 * @throws InvalidArgumentsExcpetion if n is not positive
+	 * @throws StorageConnectionException if storage is not connected
+	 */
+	public List<FileMetadata> findLargestFiles(int n) throws InvalidArgumentsExcpetion, StorageConnectionException {
+		
+		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
+			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
+		if(n < 1)
+			throw new InvalidArgumentsExcpetion("Invalid arguments! n < 1");
+		
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+		FileMetadata dataroot = storageInformation.getDatarootDirectory();
+		List<FileMetadata> result = new ArrayList<>();
+		
+		// indeks po velicini se prolazi dok se skladiste ne menja
+		try(StorageLocks.Held held = getStorageLocks(storageInformation).exclusive()) {
+			for(FileMetadata f : storageInformation.getFileMetadataBySizeDescending()) {
+				if(f.isFile() && isSubdirectory(f, dataroot))
+					result.add(f);
+				if(result.size() == n)
+					break;
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the disk usage of the file or directory. Totals of the directories are kept up to date while the storage changes, 
+	 * so the subtree is not walked
+	 * @param path is the path to the file or directory
+	 * @return size and number of files of the file, or of everything under the directory
+	 * @throws NotFound if the file or directory does not exist
+	 * @throws StorageConnectionException if storage is not connected
+	 */
+	public DiskUsage diskUsage(String path) throws NotFound, StorageConnectionException { // du
+		
+		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
+			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
+		
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+		StorageLocks locks = getStorageLocks(storageInformation);
+		
+		FileMetadata file = getLastFileMetadataOnPath(getRelativePath(path), storageInformation.readStorageTree(), storageInformation);
+		if(file == null)
+			throw new NotFound("Path does not exist!");
+		
+		if(!file.isDirectory()) {
+			try(StorageLocks.Held held = locks.readDirectories(file.getParent())) {
+				return new DiskUsage(file.getRelativePath(), file.getSize(), 1);
+			}
+		}
+		
+		// zbirovi se citaju pre zakljucavanja, jer se mogu praviti samo dok je skladiste zakljucano celo
+		long size = storageInformation.getSubtreeSize(file);
+		long numberOfFiles = storageInformation.getSubtreeNumberOfFiles(file);
+		try(StorageLocks.Held held = locks.readDirectories()) {
+			return new DiskUsage(file.getRelativePath(), size, numberOfFiles);
+		}
+	}
+	
+	private void checkPeriod(Date from, Date to) throws InvalidArgumentsExcpetion, StorageConnectionException {
+		
+		if(StorageManager.getInstance().getStorageInformation().isStorageConnected() == false)
+			throw new StorageConnectionException("Storage is currently disconnected! Connection is required.");
+		if(from == null || to == null)
+			throw new InvalidArgumentsExcpetion("Invalid arguments! Period is not given");
+		if(from.after(to))
+			throw new InvalidArgumentsExcpetion("Invalid arguments! from > to");
+	}
+	
+	// konfiguracioni fajlovi skladista nisu deo rezultata
+	private List<FileMetadata> inDataRoot(List<FileMetadata> found, StorageInformation storageInformation) {
+		
+		FileMetadata dataroot = storageInformation.getDatarootDirectory();
+		List<FileMetadata> result = new ArrayList<>();
+		// roditelji se ne menjaju dok se proverava gde se FileMetadata nalazi
+		try(StorageLocks.Held held = storageInformation.getStorageLocks().readDirectories()) {
+			for(FileMetadata f : found) {
+				if(!f.equals(dataroot) && isSubdirectory(f, dataroot))
+					result.add(f);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Chooses whether recursive listDirectory and filterAttributes go through the directories on multiple threads. 
+	 * Result is the same in both cases. Storage must not be changed while they are in progress
+	 * @param parallelTraversal if true directories are processed in parallel, otherwise sequentially
+	 */
+	public void setParallelTraversal(boolean parallelTraversal) {
+		this.parallelTraversal = parallelTraversal;
+	}
+	
+	public boolean isParallelTraversal() {
+		return parallelTraversal;
+	}
+	
+	/**
+	 * Chooses whether the storage can be used from multiple threads at once. Every directory is locked only while it is read or changed, 
+	 * so lookups and listings go on while unrelated directories are changed, and changes of files in different directories do not wait 
+	 * for each other. Removing, moving, renaming and copying of a directory changes its whole subtree, so it waits for all other operations. 
+	 * With the persistent storage tree (see StorageInformation.setPersistentStorageTree) operations which only read the storage 
+	 * are never locked, every one of them looks up the paths and the directories in the version of the storage tree from the moment 
+	 * when it started. Found files give the attributes from that version, including the name, the parent and the size, 
+	 * and can only be read. 
+	 * Creating, connecting to and disconnecting from the storage must not be in progress at the same time with the other operations
+	 * @param concurrentAccess if true directories are locked, otherwise storage must be used from one thread at a time
+	 */
+	public void setConcurrentAccess(boolean concurrentAccess) {
+		this.concurrentAccess = concurrentAccess;
+		StorageManager.getInstance().getStorageInformation().setConcurrentAccess(concurrentAccess);
+	}
+	
+	public boolean isConcurrentAccess() {
+		return concurrentAccess;
+	}
+	
 	/**
 	 * Sets the storage configuration
 	 * @param size is the maximum number of bytes which storage can hold
@@ -628,11 +1113,10 @@ public abstract class Storage {
 	protected boolean createStorageTreeStructure(String dest) {
 		
 		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
-		Map<String, List<FileMetadata>> storageTreeStracture = storageInformation.getStorageTreeStructure();
 		Path path = Paths.get(dest);
 
 		FileMetadata storage = new FileMetadataBuilder()
-			.withFileID(storageInformation.getStorageDirectoryID())
+			.withFileID((storageInformation.getStorageDirectoryID() != null) ? storageInformation.getStorageDirectoryID() : storageInformation.generateFileID())
 			.withName(path.getFileName().toString())
 			.withAbsolutePath(dest)
 			.withRelativePath(path.getFileName().toString())
@@ -645,10 +1129,8 @@ public abstract class Storage {
 			.build();
 		
 		FileMetadata dataRoot = new FileMetadataBuilder()
-			.withFileID(storageInformation.getDatarootDirectoryID())
+			.withFileID((storageInformation.getDatarootDirectoryID() != null) ? storageInformation.getDatarootDirectoryID() : storageInformation.generateFileID())
 			.withName(StorageInformation.datarootDirName)
-			.withAbsolutePath(storage.getAbsolutePath() + File.separator + StorageInformation.datarootDirName)
-			.withRelativePath(storage.getRelativePath() + File.separator + StorageInformation.datarootDirName)
 			.withParent(storage)
 			.withTimeCreated(new Date())
 			.withTimeModified(new Date())
@@ -657,9 +1139,8 @@ public abstract class Storage {
 			.build();
 	
 		FileMetadata strorageInformationJSONfile = new FileMetadataBuilder()
+			.withFileID(storageInformation.generateFileID())
 			.withName(StorageInformation.storageInformationJSONFileName)
-			.withAbsolutePath(storage.getAbsolutePath() + File.separator + StorageInformation.storageInformationJSONFileName)
-			.withRelativePath(storage.getRelativePath() + File.separator + StorageInformation.storageInformationJSONFileName)
 			.withParent(storage)
 			.withTimeCreated(new Date())
 			.withTimeModified(new Date())
@@ -667,14 +1148,13 @@ public abstract class Storage {
 			.build();
 
 		
-		List<FileMetadata> storageAdjacent = new ArrayList<FileMetadata>();
-		storageAdjacent.add(dataRoot);
-		storageAdjacent.add(strorageInformationJSONfile);
-		
-		storageTreeStracture.put(storage.getRelativePath(), storageAdjacent);
-		storageTreeStracture.put(dataRoot.getRelativePath(), new ArrayList<FileMetadata>());
-		
+		storageInformation.setStorageTreeVersion(StorageInformation.STORAGE_TREE_VERSION);
 		storageInformation.setStorageDirectory(storage);
+		storageInformation.addDirectory(storage);
+		storageInformation.addToDirectory(storage, dataRoot);
+		storageInformation.addToDirectory(storage, strorageInformationJSONfile);
+		storageInformation.addDirectory(dataRoot);
+		
 		storageInformation.setDatarootDirectory(dataRoot);
 		storageInformation.setStorageInformationJSONfile(strorageInformationJSONfile);
 		storageInformation.setCurrentDirectory(dataRoot);
@@ -702,22 +1182,20 @@ public abstract class Storage {
 		String name = Paths.get(path).getFileName().toString();
 		path = Paths.get(path).getParent().toString(); // parent path
 		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
-		Map<String, List<FileMetadata>> storageTreeStracture = storageInformation.getStorageTreeStructure();
-		FileMetadata storage = StorageManager.getInstance().getStorageInformation().getStorageDirectory();
 
-		if(storage.getStorageSize() != null) {
-			if(storage.getStorageSize() < 1)
-				throw new StorageSizeException("Storage size limit has been reached!");
-		}
+		Long storageSize = storageInformation.getStorageSize();
+		if(storageSize != null && storageSize < 1)
+			throw new StorageSizeException("Storage size limit has been reached!");
 
-		if(fileMetadata.isFile() && !storage.getUnsupportedFiles().isEmpty()) {
-			for(String extension : storage.getUnsupportedFiles()) {
+		if(fileMetadata.isFile() && storageInformation.getUnsupportedFiles() != null && !storageInformation.getUnsupportedFiles().isEmpty()) {
+			for(String extension : storageInformation.getUnsupportedFiles()) {
 				if(name.endsWith(extension))
 					throw new UnsupportedFileException("Unsupported file!");
 			}
 		}
 
-		FileMetadata parent = getLastFileMetadataOnPath(getRelativePath(path), storageTreeStracture);
+		StorageLocks locks = getStorageLocks(storageInformation);
+		FileMetadata parent = getLastFileMetadataOnPath(getRelativePath(path), storageInformation);
 		
 		// implementiraj da se naprave svi direktorijumi na putanji ako ne postoje
 		if(parent == null)
@@ -725,35 +1203,38 @@ public abstract class Storage {
 		if(!parent.isDirectory())
 			throw new OperationNotAllowed("Given path does not represent directory!");
 		
-		if(parent.getNumOfFilesLimit() != null) {
-			if(parent.getNumOfFilesLimit() < 1)
-				throw new DirectoryException("Number of files limit has been reached!");
+		try(StorageLocks.Held held = locks.writeDirectories(parent)) {
 			
-			parent.setNumOfFilesLimit(parent.getNumOfFilesLimit() - 1);
-		}
-		
-		// ako se u direktorijumu vec nalazi fajl sa imenom fajla koji se kreira		
-		name = changeNameIfNameExist(parent.getRelativePath(), name);
+			if(!isStillInStorage(parent, storageInformation))
+				throw new NotFound("Path is not correct!");
 			
-		fileMetadata.setName(name);
-		fileMetadata.setSize(0L);
-		fileMetadata.setAbsolutePath(parent.getAbsolutePath() + File.separator + name);
-		fileMetadata.setRelativePath(parent.getRelativePath() + File.separator + name);
-		fileMetadata.setParent(parent);
-		fileMetadata.setTimeCreated(new Date());
-		fileMetadata.setTimeModified(new Date());
-		
-		if(fileMetadata.isDirectory()) {
-			storageTreeStracture.put(fileMetadata.getRelativePath(), new ArrayList<FileMetadata>());
+			if(parent.getNumOfFilesLimit() != null) {
+				if(parent.getNumOfFilesLimit() < 1)
+					throw new DirectoryException("Number of files limit has been reached!");
+				
+				storageInformation.setNumOfFilesLimit(parent, parent.getNumOfFilesLimit() - 1);
+			}
+			
+			// ako se u direktorijumu vec nalazi fajl sa imenom fajla koji se kreira		
+			name = changeNameIfNameExist(parent, name);
+				
+			if(fileMetadata.getFileID() == null)
+				fileMetadata.setFileID(storageInformation.generateFileID());
+			fileMetadata.setName(name);
+			fileMetadata.setSize(0L);
+			fileMetadata.setTimeCreated(new Date());
+			fileMetadata.setTimeModified(new Date());
 			
-			if(filesLimit.length>0) {
-				Map<String, Integer> map = StorageManager.getInstance().getStorageInformation().getDirNumberOfFilesLimit();
-				map.put(fileMetadata.getRelativePath(), filesLimit[0]);
+			if(fileMetadata.isDirectory()) {
+				storageInformation.addDirectory(fileMetadata);
+				
+				if(filesLimit.length>0)
+					storageInformation.putDirNumberOfFilesLimit(fileMetadata, filesLimit[0]);
 			}
+			
+			storageInformation.addToDirectory(parent, fileMetadata);
+			return fileMetadata.getAbsolutePath();
 		}
-		
-		storageTreeStracture.get(parent.getRelativePath()).add(fileMetadata);		
-		return fileMetadata.getAbsolutePath();
 	}
 	
 	/**
@@ -765,15 +1246,29 @@ public abstract class Storage {
 	protected boolean removeFileMetadataFromStorage(String path) throws NotFound {
 				
 		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
-		Map<String, List<FileMetadata>> storageTreeStracture = storageInformation.getStorageTreeStructure();
-								
-		FileMetadata file = getLastFileMetadataOnPath(getRelativePath(path), storageTreeStracture);
-		
-		if(file == null)
-			throw new NotFound("Path does not exist!");
+		StorageLocks locks = getStorageLocks(storageInformation);
 		
-		storageTreeStracture.get(file.getParent().getRelativePath()).remove(file);
-		return true;
+		// ako je FileMetadata premesten pre nego sto je direktorijum zakljucan, trazi se ponovo
+		for(;;) {
+			FileMetadata file = getLastFileMetadataOnPath(getRelativePath(path), storageInformation);
+			
+			if(file == null)
+				throw new NotFound("Path does not exist!");
+			
+			// brisanje direktorijuma menja celo njegovo podstablo
+			FileMetadata parent = file.getParent();
+			try(StorageLocks.Held held = file.isDirectory() ? locks.exclusive() : locks.writeDirectories(parent)) {
+				
+				if(!isStillInDirectory(file, parent, storageInformation))
+					continue;
+				
+				storageInformation.removeFromDirectory(file);
+				if(file.isDirectory())
+					storageInformation.removeDirectory(file);
+				
+				return true;
+			}
+		}
 	}
 	
 	/**
@@ -788,42 +1283,49 @@ public abstract class Storage {
 	protected String moveFileMetadata(String src, String newDest) throws NotFound, DirectoryException, OperationNotAllowed {
 		
 	
-		Map<String, List<FileMetadata>> storageTreeStracture = StorageManager.getInstance().getStorageInformation().getStorageTreeStructure();		
-
-		FileMetadata srcFile = getLastFileMetadataOnPath(getRelativePath(src), storageTreeStracture);
-		FileMetadata destFile = getLastFileMetadataOnPath(getRelativePath(newDest), storageTreeStracture);
-		
-		if(srcFile == null)
-			throw new NotFound("File path not correct!");
-		if(destFile == null)
-			throw new NotFound("Destination path not correct!");
-		if(!destFile.isDirectory())
-			throw new DirectoryException("Destination path does not represent the directory!");
-		if(destFile.getRelativePath().startsWith(srcFile.getRelativePath())) 
-			throw new OperationNotAllowed("The destination folder is a subfolder of the source folder!");
-		
-		
-		if(destFile.getNumOfFilesLimit() != null) {
-			if(destFile.getNumOfFilesLimit() < 1)
-				throw new DirectoryException("Number of files limit has been reached!");
-			
-			destFile.setNumOfFilesLimit(destFile.getNumOfFilesLimit() - 1);
-		}
-		
-		// ako se u direktorijumu vec nalazi fajl sa imenom fajla koji se premesta	
-		srcFile.setName(changeNameIfNameExist(destFile.getRelativePath(), srcFile.getName()));
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();		
+		StorageLocks locks = getStorageLocks(storageInformation);
 		
-		if(srcFile.isDirectory()) 
-			pathFix(srcFile.getRelativePath(), destFile.getRelativePath() + File.separator + srcFile.getName(), storageTreeStracture);
+		for(;;) {
+			FileMetadata srcFile = getLastFileMetadataOnPath(getRelativePath(src), storageInformation);
+			FileMetadata destFile = getLastFileMetadataOnPath(getRelativePath(newDest), storageInformation);
+			
+			if(srcFile == null)
+				throw new NotFound("File path not correct!");
+			if(destFile == null)
+				throw new NotFound("Destination path not correct!");
+			if(!destFile.isDirectory())
+				throw new DirectoryException("Destination path does not represent the directory!");
+			
+			// dva premestanja direktorijuma koja se ukrste mogla bi da naprave ciklus, pa se direktorijum premesta sam
+			FileMetadata srcParent = srcFile.getParent();
+			try(StorageLocks.Held held = srcFile.isDirectory() ? locks.exclusive() : locks.writeDirectories(srcParent, destFile)) {
 				
-		storageTreeStracture.get(srcFile.getParent().getRelativePath()).remove(srcFile);
-		storageTreeStracture.get(destFile.getRelativePath()).add(srcFile);
-		srcFile.setParent(destFile);
-		srcFile.setAbsolutePath(destFile.getAbsolutePath() + File.separator + srcFile.getName());
-		srcFile.setRelativePath(destFile.getRelativePath() + File.separator + srcFile.getName());		
-		srcFile.setTimeModified(new Date());
-
-		return srcFile.getName();
+				if(!isStillInDirectory(srcFile, srcParent, storageInformation))
+					continue;
+				if(!isStillInStorage(destFile, storageInformation))
+					throw new NotFound("Destination path not correct!");
+				if(isSubdirectory(destFile, srcFile)) 
+					throw new OperationNotAllowed("The destination folder is a subfolder of the source folder!");
+				
+				
+				if(destFile.getNumOfFilesLimit() != null) {
+					if(destFile.getNumOfFilesLimit() < 1)
+						throw new DirectoryException("Number of files limit has been reached!");
+					
+					storageInformation.setNumOfFilesLimit(destFile, destFile.getNumOfFilesLimit() - 1);
+				}
+				
+				// ako se u direktorijumu vec nalazi fajl sa imenom fajla koji se premesta	
+				String name = changeNameIfNameExist(destFile, srcFile.getName());
+				
+				// putanje potomaka se racunaju preko roditelja, pa se podstablo ne menja
+				storageInformation.moveToDirectory(srcFile, destFile, name);
+				storageInformation.setTimeModified(srcFile, new Date());
+	
+				return srcFile.getName();
+			}
+		}
 	}
 	
 	
@@ -837,43 +1339,40 @@ public abstract class Storage {
 	 */
 	protected String renameFileMetadata(String src, String newName) throws NotFound{
 		
-		Map<String, List<FileMetadata>> storageTreeStracture = StorageManager.getInstance().getStorageInformation().getStorageTreeStructure();
-		
-		FileMetadata file = getLastFileMetadataOnPath(getRelativePath(src), storageTreeStracture);
-		
-		if(file == null)
-			throw new NotFound("File path not correct!");
-
-		newName = changeNameIfNameExist(file.getParent().getRelativePath(), newName);
-		
-		if(file.isDirectory()) 
-			pathFix(file.getRelativePath(), file.getParent().getRelativePath() + File.separator + newName, storageTreeStracture);	
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+		StorageLocks locks = getStorageLocks(storageInformation);
 		
-		file.setName(newName);
-		file.setTimeModified(new Date());
-		file.setAbsolutePath(file.getParent().getAbsolutePath() + File.separator + newName);
-		file.setRelativePath(file.getParent().getRelativePath() + File.separator + newName);
-		file.setTimeModified(new Date());
-
-		return newName;
+		for(;;) {
+			FileMetadata file = getLastFileMetadataOnPath(getRelativePath(src), storageInformation);
+			
+			if(file == null)
+				throw new NotFound("File path not correct!");
+			
+			// preimenovanjem direktorijuma menjaju se putanje celog podstabla
+			FileMetadata parent = file.getParent();
+			try(StorageLocks.Held held = file.isDirectory() ? locks.exclusive() : locks.writeDirectories(parent)) {
+				
+				if(!isStillInDirectory(file, parent, storageInformation))
+					continue;
+				
+				String name = changeNameIfNameExist(parent, newName);
+				
+				storageInformation.renameInDirectory(file, name);
+				storageInformation.setTimeModified(file, new Date());
+				
+				return name;
+			}
+		}
 	}
 	
-	// mozda je ovde pozeljnije da se odradi BFS...???
-	private void pathFix(String oldKey, String newKey, Map<String, List<FileMetadata>> storageTreeStracture) {
+	private boolean isSubdirectory(FileMetadata directory, FileMetadata ancestor) {
 		
-		List<FileMetadata> list = storageTreeStracture.get(oldKey);
-		storageTreeStracture.put(newKey, list);
-		storageTreeStracture.remove(oldKey);
-
-		for(FileMetadata f : list) {
-
-			if(f.isDirectory()) 
-				pathFix(f.getRelativePath(), newKey + File.separator + f.getName(), storageTreeStracture);
-
-			// newKey je relativna putanja
-			f.setAbsolutePath(newKey + File.separator + f.getName());
-			f.setRelativePath(newKey + File.separator + f.getName());
+		for(FileMetadata f = directory ; f != null ; f = f.getParent()) {
+			if(f.equals(ancestor))
+				return true;
 		}
+		
+		return false;
 	}
 
 	/**
@@ -887,85 +1386,93 @@ public abstract class Storage {
 	 */
 	protected void copyFileMetadata(String src, String dest) throws NotFound, DirectoryException, StorageSizeException, OperationNotAllowed {
 		
-		Map<String, List<FileMetadata>> storageTreeStracture = StorageManager.getInstance().getStorageInformation().getStorageTreeStructure();		
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();		
+		StorageLocks locks = getStorageLocks(storageInformation);
 		
-		FileMetadata srcFile = getLastFileMetadataOnPath(getRelativePath(src), storageTreeStracture);
-		FileMetadata destDir = getLastFileMetadataOnPath(getRelativePath(dest), storageTreeStracture);				
-		
-		if(srcFile == null)
-			throw new NotFound("File path not correct!");
-		if(destDir == null)
-			throw new NotFound("Destination path not correct!");
-		if(!destDir.isDirectory())
-			throw new DirectoryException("Destination path does not represent the directory!");		
-		if(destDir.getRelativePath().startsWith(srcFile.getRelativePath())) 
-			throw new OperationNotAllowed("The destination folder is a subfolder of the source folder!");
-		
-		Long storageSize = StorageManager.getInstance().getStorageInformation().getStorageSize();
-		if(storageSize != null) {
-			if(storageSize - srcFile.getSize() < 0)
-				throw new StorageSizeException("Storage size limit has been reached!");
+		for(;;) {
+			FileMetadata srcFile = getLastFileMetadataOnPath(getRelativePath(src), storageInformation);
+			FileMetadata destDir = getLastFileMetadataOnPath(getRelativePath(dest), storageInformation);				
 			
-			 StorageManager.getInstance().getStorageInformation().setStorageSize(storageSize - srcFile.getSize());
-		}
-		
-		if(destDir.getNumOfFilesLimit() != null) {
-			if(destDir.getNumOfFilesLimit() < 1)
-				throw new DirectoryException("Number of files limit has been reached!");
+			if(srcFile == null)
+				throw new NotFound("File path not correct!");
+			if(destDir == null)
+				throw new NotFound("Destination path not correct!");
+			if(!destDir.isDirectory())
+				throw new DirectoryException("Destination path does not represent the directory!");		
 			
-			destDir.setNumOfFilesLimit(destDir.getNumOfFilesLimit() - 1);
+			// kopiranje direktorijuma cita celo njegovo podstablo, a fajl se cita iz svog direktorijuma i upisuje u odredisni
+			FileMetadata srcParent = srcFile.getParent();
+			try(StorageLocks.Held held = srcFile.isDirectory() ? locks.exclusive() 
+					: locks.lock(new FileMetadata[] { srcParent }, new FileMetadata[] { destDir })) {
+				
+				if(!isStillInDirectory(srcFile, srcParent, storageInformation))
+					continue;
+				if(!isStillInStorage(destDir, storageInformation))
+					throw new NotFound("Destination path not correct!");
+				if(isSubdirectory(destDir, srcFile)) 
+					throw new OperationNotAllowed("The destination folder is a subfolder of the source folder!");
+				
+				// kopija direktorijuma zauzima onoliko koliko svi fajlovi ispod njega
+				long size = srcFile.isDirectory() ? storageInformation.getSubtreeSize(srcFile) : srcFile.getSize();
+				
+				// ako kopiranje ne uspe, rezervisani prostor se vraca
+				try(QuotaReservation reservation = storageInformation.reserveStorageSize(size)) {
+					
+					if(destDir.getNumOfFilesLimit() != null) {
+						if(destDir.getNumOfFilesLimit() < 1)
+							throw new DirectoryException("Number of files limit has been reached!");
+						
+						storageInformation.setNumOfFilesLimit(destDir, destDir.getNumOfFilesLimit() - 1);
+					}
+					
+					FileMetadata srcFileClone = srcFile.clone();		
+					srcFileClone.setFileID(storageInformation.generateFileID());
+					srcFileClone.setName(changeNameIfNameExist(destDir, srcFileClone.getName()));
+					storageInformation.addToDirectory(destDir, srcFileClone);		
+					
+					if(srcFileClone.isDirectory()) 
+						pathClone(srcFile, srcFileClone, storageInformation);
+					
+					reservation.commit();
+				}
+				return;
+			}
 		}
-		
-		FileMetadata srcFileClone = srcFile.clone();		
-		srcFileClone.setName(changeNameIfNameExist(destDir.getRelativePath(), srcFileClone.getName()));
-
-		srcFileClone.setParent(destDir);
-		srcFileClone.setAbsolutePath(destDir.getAbsolutePath() + File.separator + srcFileClone.getName());
-		srcFileClone.setRelativePath(destDir.getRelativePath() + File.separator + srcFileClone.getName());
-		storageTreeStracture.get(destDir.getRelativePath()).add(srcFileClone);		
-		
-		if(srcFileClone.isDirectory()) 
-			pathClone(srcFile.getRelativePath(), srcFileClone.getRelativePath(), srcFileClone, storageTreeStracture);								
 	}
 	
-	private void pathClone(String fromKey, String toKey, FileMetadata parent, Map<String, List<FileMetadata>> storageTreeStracture) {
+	private void pathClone(FileMetadata from, FileMetadata to, StorageInformation storageInformation) {
 				
-		Queue<String> fromKeys = new LinkedList<>();
-		Queue<String> toKeys = new LinkedList<>();
-		Queue<FileMetadata> parents = new LinkedList<>();				
+		Queue<FileMetadata> fromDirs = new LinkedList<>();
+		Queue<FileMetadata> toDirs = new LinkedList<>();
 				
 		for(;;) {	
 			
-			storageTreeStracture.put(toKey, new ArrayList<>());
+			storageInformation.addDirectory(to);
 			
-			for(FileMetadata f : storageTreeStracture.get(fromKey)) {
+			for(FileMetadata f : storageInformation.getDirectoryContent(from)) {
 				
 				FileMetadata clone = f.clone();
-				clone.setParent(parent);
-				clone.setAbsolutePath(parent.getAbsolutePath() + File.separator + clone.getName());
-				clone.setRelativePath(parent.getRelativePath() + File.separator + clone.getName());		
-				storageTreeStracture.get(toKey).add(clone);		
+				clone.setFileID(storageInformation.generateFileID());
+				storageInformation.addToDirectory(to, clone);		
 				
 				if(f.isDirectory()) {
-					fromKeys.add(f.getRelativePath());
-					toKeys.add(clone.getRelativePath());
-					parents.add(clone);
+					fromDirs.add(f);
+					toDirs.add(clone);
 				}
 					
 			}
 			
-			if(fromKeys.isEmpty())
+			if(fromDirs.isEmpty())
 				return;
 			
-			fromKey = fromKeys.poll();
-			toKey = toKeys.poll();
-			parent = parents.poll();
+			from = fromDirs.poll();
+			to = toDirs.poll();
 		}		
 	}
 	
 	
 	/**
-	 * Sets new size to the FileMetadata
+	 * Sets new size to the FileMetadata. Storage size is taken only for the bytes by which the file grows, and given back if it shrinks
 	 * @param filePath is the path to the file
 	 * @param text is the data to be written
 	 * @param append if true adds new bytes to the existing bytes in the file, otherwise set FileMetadata size to the size of the text
@@ -976,103 +1483,126 @@ public abstract class Storage {
 	 */
 	protected boolean writeToFileMetadata(String filePath, String text, boolean append) throws NotFound, OperationNotAllowed, StorageSizeException {
 
-		FileMetadata file = getLastFileMetadataOnPath(getRelativePath(filePath), StorageManager.getInstance().getStorageInformation().getStorageTreeStructure());
-		if(file == null)
-			throw new NotFound("File path not correct!");
-		if(file.isDirectory())
-			throw new OperationNotAllowed("Writing not possible! Given path represents directory.");
-		
-		Long size = text.length() + ((append == true) ? file.getSize() : 0L);
-		
-		Long storageSize = StorageManager.getInstance().getStorageInformation().getStorageSize();
-		if(storageSize != null) {
-			if(storageSize - size < 0)
-				throw new StorageSizeException("Storage size limit has been reached!");
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+		StorageLocks locks = getStorageLocks(storageInformation);
+		
+		for(;;) {
+			FileMetadata file = getLastFileMetadataOnPath(getRelativePath(filePath), storageInformation);
+			if(file == null)
+				throw new NotFound("File path not correct!");
+			if(file.isDirectory())
+				throw new OperationNotAllowed("Writing not possible! Given path represents directory.");
 			
-			StorageManager.getInstance().getStorageInformation().setStorageSize(storageSize - size);
+			// velicina fajla se menja pod zakljucavanjem njegovog direktorijuma
+			FileMetadata parent = file.getParent();
+			try(StorageLocks.Held held = locks.writeDirectories(parent)) {
+				
+				if(!isStillInDirectory(file, parent, storageInformation))
+					continue;
+				
+				long oldSize = file.getSize();
+				long size = text.length() + ((append == true) ? oldSize : 0L);
+				
+				// rezervise se samo ono za sta se fajl povecava, a ako se smanjuje prostor se vraca
+				try(QuotaReservation reservation = storageInformation.reserveStorageSize(Math.max(size - oldSize, 0L))) {
+					storageInformation.setSize(file, size);
+					reservation.commit();
+				}
+				if(size < oldSize)
+					storageInformation.releaseStorageSize(oldSize - size);
+				
+				return true;
+			}
 		}
-		
-		file.setSize(size);
-		
-		return true;
 	}
 
 	
-	private FileMetadata getLastFileMetadataOnPath(Path path, final Map<String, List<FileMetadata>> storageTreeStracture) {
+	private FileMetadata getLastFileMetadataOnPath(Path path, final StorageInformation storageInformation) {
+		return getLastFileMetadataOnPath(path, storageInformation.getStorageTree(), storageInformation);
+	}
+	
+	// operacije koje samo citaju traze putanju u verziji stabla iz readStorageTree
+	private FileMetadata getLastFileMetadataOnPath(Path path, StorageTree storageTree, final StorageInformation storageInformation) {
 	
 		FileMetadata ans = null;
 		Iterator<Path> iterator = path.iterator();		
 	
 		if(!iterator.hasNext())
 			return null;
-		String parent = iterator.next().toString();		
+		FileMetadata parent = storageInformation.getStorageDirectory();
+		if(!iterator.next().toString().equals(parent.getName()))
+			return null;
 		
+		// svaki segment putanje se trazi u indeksu direktorijuma, bez prolaska kroz sadrzaj direktorijuma
 		while(iterator.hasNext()) {
 									
-			String nextDirName = iterator.next().toString();
-			List<FileMetadata> list = storageTreeStracture.get(parent);
+			ans = lookup(parent, iterator.next().toString(), storageTree, storageInformation);
+			if(ans == null)
+				return null;
 			
-			for(int i=0 ; i<list.size() ; i++) {				
-				FileMetadata f = list.get(i);					
-				if(f.getName().equals(nextDirName)){
-					parent += (File.separator + nextDirName);
-					ans = f;
-					break;
-				}
-				
-				if(i == list.size() - 1)
-					return null;
-			}			
+			parent = ans;
 		}	
 		
 		return ans;
 	}
 	
-	private boolean checkPath(Path path, final Map<String, List<FileMetadata>> storageTreeStracture) {
+	private boolean checkPath(Path path, StorageTree storageTree, final StorageInformation storageInformation) {
 		
 		Iterator<Path> iterator = path.iterator();		
 	
 		if(!iterator.hasNext())
 			return false;
-		String parent = iterator.next().toString();		
+		FileMetadata parent = storageInformation.getStorageDirectory();
+		if(!iterator.next().toString().equals(parent.getName()))
+			return false;
 				
 		while(iterator.hasNext()) {
 	
-			String nextDirName = iterator.next().toString();
-			List<FileMetadata> list = storageTreeStracture.get(parent);
-		
-			for(int i=0 ; i<list.size() ; i++) {				
-				FileMetadata f = list.get(i);							
-				if(f.getName().equals(nextDirName)){
-					parent += (File.separator + nextDirName);
-					break;
-				}
-				
-				if(i == list.size() - 1)
-					return false;
-			}			
+			// vecina putanja koje se proveravaju ne postoji, filter odgovara bez trazenja u direktorijumu
+			String name = iterator.next().toString();
+			if(!storageInformation.mightContain(parent, name))
+				return false;
+			
+			parent = lookup(parent, name, storageTree, storageInformation);
+			if(parent == null)
+				return false;
 		}	
 		
 		return true;
 	}
 	
-	protected String changeNameIfNameExist(String destination, String name) {
+	// direktorijum je zakljucan samo dok se u njemu trazi ime, pa putanja ne drzi zakljucane sve direktorijume na njoj
+	private FileMetadata lookup(FileMetadata directory, String name, StorageTree storageTree, StorageInformation storageInformation) {
 		
-		List<FileMetadata> directoryContent = StorageManager.getInstance().getStorageInformation().getStorageTreeStructure().get(destination);
-		String ans = name;
-		Integer k = 1;
+		if(!storageInformation.isConcurrentAccess())
+			return storageTree.getFileMetadata(directory, name);
 		
-		for(int i = 0 ; i < directoryContent.size() ; i++) {
-			
-			FileMetadata f = directoryContent.get(i);
-			
-			if(f.getName().equals(ans)) {
-				ans = name + "(" + (k++) + ")";
-				i = 0;
-			}
+		try(StorageLocks.Held held = storageInformation.getStorageLocks().readDirectories(directory)) {
+			return storageTree.getFileMetadata(directory, name);
 		}
+	}
+	
+	// posle povezivanja na skladiste StorageInformation je nov, pa se nacin pristupa postavlja ponovo
+	private StorageLocks getStorageLocks(StorageInformation storageInformation) {
+		if(storageInformation.isConcurrentAccess() != concurrentAccess)
+			storageInformation.setConcurrentAccess(concurrentAccess);
 		
-		return ans;
+		return storageInformation.getStorageLocks();
+	}
+	
+	// FileMetadata je jos uvek u direktorijumu u kome je pronadjen, ili je u medjuvremenu premesten ili obrisan
+	private boolean isStillInDirectory(FileMetadata fileMetadata, FileMetadata directory, StorageInformation storageInformation) {
+		return !storageInformation.isConcurrentAccess() 
+				|| (directory.equals(fileMetadata.getParent()) && fileMetadata.equals(storageInformation.getFileMetadata(directory, fileMetadata.getName())));
+	}
+	
+	// direktorijum nije obrisan u medjuvremenu
+	private boolean isStillInStorage(FileMetadata directory, StorageInformation storageInformation) {
+		return !storageInformation.isConcurrentAccess() || storageInformation.getDirectoryContent(directory) != null;
+	}
+	
+	protected String changeNameIfNameExist(FileMetadata destination, String name) {
+		return StorageManager.getInstance().getStorageInformation().getUniqueName(destination, name);
 	}
 	
 	
@@ -1084,13 +1614,18 @@ public abstract class Storage {
 	protected Path getRelativePath(String path) {
 		
 		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
-		String dataRootAbsolutePath = storageInformation.getDatarootDirectory().getAbsolutePath();
-		String dataRootRelativePath = storageInformation.getDatarootDirectory().getRelativePath();
+		
+		return getRelativePath(path, storageInformation.getDatarootDirectory().getAbsolutePath(), 
+				storageInformation.getDatarootDirectory().getRelativePath(), StorageManager.getInstance().getCurrentDirectory().getRelativePath());
+	}
+	
+	private Path getRelativePath(String path, String dataRootAbsolutePath, String dataRootRelativePath, String currentDirectoryRelativePath) {
+		
 		Path relativePath = null;
 
 		// racunamo relativnu putanju u odnosu na trenutni direktorijum	
 		if(!path.startsWith(dataRootAbsolutePath) && !path.startsWith(dataRootRelativePath)) 
-			relativePath = Paths.get(storageInformation.getCurrentDirectory().getRelativePath()).resolve(Paths.get(path));
+			relativePath = Paths.get(currentDirectoryRelativePath).resolve(Paths.get(path));
 		
 		else if(path.startsWith(dataRootRelativePath)) 
 			relativePath = Paths.get(path);
@@ -1100,7 +1635,7 @@ public abstract class Storage {
 			*/
 		else if(path.startsWith(dataRootAbsolutePath)){
 			path = path.substring(dataRootAbsolutePath.length() + (path.equals(dataRootAbsolutePath) ? 0 : File.separator.length()));
-			relativePath = Paths.get(storageInformation.getDatarootDirectory().getRelativePath()).resolve(path);		
+			relativePath = Paths.get(dataRootRelativePath).resolve(path);		
 			 /* npr. ako je:
 							       path = C:\Users\Luka\Desktop\storage\dataRootDirectory\dir1\dir2
 				   dataRootAbsolutePath = C:\Users\Luka\Desktop\storage\dataRootDirectory
@@ -1125,7 +1660,7 @@ public abstract class Storage {
 		String dataRootRelativePath = storageInformation.getDatarootDirectory().getRelativePath();
 			
 		if(!path.startsWith(dataRootAbsolutePath) && !path.startsWith(dataRootRelativePath))
-			path = storageInformation.getCurrentDirectory().getAbsolutePath() + File.separator + path;		
+			path = StorageManager.getInstance().getCurrentDirectory().getAbsolutePath() + File.separator + path;		
 		else if(path.startsWith(dataRootRelativePath)) {
 			path = path.substring(dataRootRelativePath.length() + (path.equals(dataRootRelativePath) ? 0 : File.separator.length()));
 			path = storageInformation.getDatarootDirectory().getAbsolutePath() + File.separator + path;
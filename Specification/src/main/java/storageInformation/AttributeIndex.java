@@ -0,0 +1,91 @@
+package storageInformation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.ToLongFunction;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Sorted indexes of the FileMetadata by the time of creation, the time of modification and the size. FileMetadata with
+ * the same value are ordered by their IDs. FileMetadata has to be removed from the index before any of these values is changed,
+ * and added back afterwards, otherwise it can not be found anymore
+ *
+ * @author Luka Pavlovic
+ *
+ */
+class AttributeIndex {
+
+	private static final ToLongFunction<FileMetadata> TIME_CREATED = FileMetadata::getTimeCreatedMillis;
+	private static final ToLongFunction<FileMetadata> TIME_MODIFIED = FileMetadata::getTimeModifiedMillis;
+	private static final ToLongFunction<FileMetadata> SIZE = f -> f.getSize();
+
+	private final TreeSet<FileMetadata> byTimeCreated = new TreeSet<>(comparator(TIME_CREATED));
+	private final TreeSet<FileMetadata> byTimeModified = new TreeSet<>(comparator(TIME_MODIFIED));
+	private final TreeSet<FileMetadata> bySize = new TreeSet<>(comparator(SIZE));
+
+	// ID granice je null, pa je granica ispred svih FileMetadata sa istom vrednoscu
+	private static Comparator<FileMetadata> comparator(ToLongFunction<FileMetadata> key) {
+		return Comparator.comparingLong(key).thenComparing(FileMetadata::getFileID, Comparator.nullsFirst(Comparator.naturalOrder()));
+	}
+
+	void add(FileMetadata fileMetadata) {
+		byTimeCreated.add(fileMetadata);
+		byTimeModified.add(fileMetadata);
+		bySize.add(fileMetadata);
+	}
+
+	void remove(FileMetadata fileMetadata) {
+		byTimeCreated.remove(fileMetadata);
+		byTimeModified.remove(fileMetadata);
+		bySize.remove(fileMetadata);
+	}
+
+	List<FileMetadata> getTimeCreatedRange(long from, long to) {
+		return range(byTimeCreated, from, to, (f, time) -> f.setTimeCreatedMillis(time));
+	}
+
+	List<FileMetadata> getTimeModifiedRange(long from, long to) {
+		return range(byTimeModified, from, to, (f, time) -> f.setTimeModifiedMillis(time));
+	}
+
+	List<FileMetadata> getSizeRange(long from, long to) {
+		return range(bySize, from, to, (f, size) -> f.setSize(size));
+	}
+
+	/**
+	 * @return FileMetadata from the largest to the smallest one
+	 */
+	Iterable<FileMetadata> descendingBySize() {
+		return bySize.descendingSet();
+	}
+
+	private static List<FileMetadata> range(TreeSet<FileMetadata> index, long from, long to, Bound bound) {
+
+		if(from > to)
+			return new ArrayList<>();
+
+		FileMetadata lower = new FileMetadata();
+		bound.set(lower, from);
+
+		NavigableSet<FileMetadata> found;
+		if(to == Long.MAX_VALUE) {
+			found = index.tailSet(lower, true);
+		}
+		else {
+			FileMetadata upper = new FileMetadata();
+			bound.set(upper, to + 1);
+			found = index.subSet(lower, true, upper, false);
+		}
+
+		return new ArrayList<>(found);
+	}
+
+	private interface Bound {
+		void set(FileMetadata fileMetadata, long value);
+	}
+
+}
@@ -0,0 +1,222 @@
+package storageInformation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Storage tree which keeps FileMetadata on the heap, in the map of directory ID -> content of the directory. 
+ * Maps by directory ID can be changed concurrently, while the content of one directory is guarded by the lock of that directory 
+ * (see StorageLocks). Name index is shared by all directories, so it is changed under its own lock
+ * 
+ * @author Luka Pavlovic
+ *
+ */
+public class HeapStorageTree implements StorageTree {
+	
+	// directory ID -> content of the directory
+	private final Map<String, List<FileMetadata>> storageTreeStructure;
+	// directory ID -> (name -> FileMetadata), rebuilt from storageTreeStructure when needed
+	private Map<String, Map<String, FileMetadata>> storageTreeIndex;
+	// name -> FileMetadata with that name, built on the first search by name and maintained afterwards
+	private Map<String, Set<FileMetadata>> nameIndex;
+	private final Object nameIndexLock = new Object();
+	// directory ID -> subdirectories, built on the first request and maintained afterwards
+	private Map<String, List<FileMetadata>> subdirectories;
+	// number of FileMetadata in all directories, directories are changed concurrently under their own locks
+	private final AtomicInteger size = new AtomicInteger();
+	
+	public HeapStorageTree(Map<String, List<FileMetadata>> storageTreeStructure) {
+		this.storageTreeStructure = storageTreeStructure;
+		for(List<FileMetadata> content : storageTreeStructure.values())
+			size.addAndGet(content.size());
+	}
+
+	@Override
+	public List<FileMetadata> getDirectoryContent(FileMetadata directory) {
+		return storageTreeStructure.get(directory.getFileID());
+	}
+
+	@Override
+	public int size() {
+		return size.get();
+	}
+
+	@Override
+	public int getDirectorySize(FileMetadata directory) {
+		List<FileMetadata> content = storageTreeStructure.get(directory.getFileID());
+		return (content == null) ? 0 : content.size();
+	}
+
+	@Override
+	public List<FileMetadata> getSubdirectories(FileMetadata directory) {
+		return getSubdirectoriesIndex().get(directory.getFileID());
+	}
+
+	@Override
+	public FileMetadata getFileMetadata(FileMetadata directory, String name) {
+		Map<String, FileMetadata> names = getStorageTreeIndex().get(directory.getFileID());
+		return (names == null) ? null : names.get(name);
+	}
+
+	@Override
+	public List<FileMetadata> getFileMetadataByName(String name) {
+		synchronized(nameIndexLock) {
+			if(nameIndex == null) {
+				nameIndex = new HashMap<>();
+				for(List<FileMetadata> content : storageTreeStructure.values()) {
+					for(FileMetadata f : content)
+						index(f);
+				}
+			}
+			
+			Set<FileMetadata> found = nameIndex.get(name);
+			return (found == null) ? new ArrayList<FileMetadata>() : new ArrayList<FileMetadata>(found);
+		}
+	}
+
+	@Override
+	public void addDirectory(FileMetadata directory) {
+		List<FileMetadata> content = storageTreeStructure.put(directory.getFileID(), new ArrayList<FileMetadata>());
+		if(content != null) {
+			size.addAndGet(-content.size());
+			for(FileMetadata f : content)
+				unindex(f);
+		}
+		if(subdirectories != null)
+			subdirectories.put(directory.getFileID(), new ArrayList<FileMetadata>());
+
+		getStorageTreeIndex().put(directory.getFileID(), new HashMap<String, FileMetadata>());
+	}
+
+	@Override
+	public void removeDirectory(FileMetadata directory) {
+		List<FileMetadata> content = storageTreeStructure.remove(directory.getFileID());
+		getStorageTreeIndex().remove(directory.getFileID());
+		if(subdirectories != null)
+			subdirectories.remove(directory.getFileID());
+		
+		if(content == null)
+			return;
+		
+		size.addAndGet(-content.size());
+		for(FileMetadata f : content) {
+			unindex(f);
+			if(f.isDirectory())
+				removeDirectory(f);
+		}
+	}
+
+	@Override
+	public void addToDirectory(FileMetadata directory, FileMetadata fileMetadata) {
+		storageTreeStructure.get(directory.getFileID()).add(fileMetadata);
+		size.incrementAndGet();
+		getStorageTreeIndex().get(directory.getFileID()).put(fileMetadata.getName(), fileMetadata);
+		fileMetadata.setParent(directory);
+		index(fileMetadata);
+		if(subdirectories != null && fileMetadata.isDirectory())
+			subdirectories.get(directory.getFileID()).add(fileMetadata);
+	}
+
+	@Override
+	public void removeFromDirectory(FileMetadata fileMetadata) {
+		String directory = fileMetadata.getParent().getFileID();
+		if(storageTreeStructure.get(directory).remove(fileMetadata))
+			size.decrementAndGet();
+		getStorageTreeIndex().get(directory).remove(fileMetadata.getName());
+		unindex(fileMetadata);
+		if(subdirectories != null && fileMetadata.isDirectory())
+			subdirectories.get(directory).remove(fileMetadata);
+	}
+
+	@Override
+	public void moveToDirectory(FileMetadata fileMetadata, FileMetadata directory, String name) {
+		removeFromDirectory(fileMetadata);
+		fileMetadata.setName(name);
+		addToDirectory(directory, fileMetadata);
+	}
+
+	@Override
+	public void renameInDirectory(FileMetadata fileMetadata, String name) {
+		Map<String, FileMetadata> names = getStorageTreeIndex().get(fileMetadata.getParent().getFileID());
+		names.remove(fileMetadata.getName());
+		unindex(fileMetadata);
+		fileMetadata.setName(name);
+		names.put(name, fileMetadata);
+		index(fileMetadata);
+	}
+
+	@Override
+	public Map<String, List<FileMetadata>> getStorageTreeStructure() {
+		return storageTreeStructure;
+	}
+	
+	/**
+	 * Builds all indexes which are otherwise built on the first use, so they are not built while the storage tree is used concurrently
+	 */
+	void buildIndexes() {
+		getStorageTreeIndex();
+		getFileMetadataByName("");
+		getSubdirectoriesIndex();
+	}
+	
+	private void index(FileMetadata fileMetadata) {
+		synchronized(nameIndexLock) {
+			if(nameIndex != null)
+				nameIndex.computeIfAbsent(fileMetadata.getName(), k -> new HashSet<>()).add(fileMetadata);
+		}
+	}
+	
+	private void unindex(FileMetadata fileMetadata) {
+		synchronized(nameIndexLock) {
+			if(nameIndex == null)
+				return;
+			
+			Set<FileMetadata> found = nameIndex.get(fileMetadata.getName());
+			if(found != null && found.remove(fileMetadata) && found.isEmpty())
+				nameIndex.remove(fileMetadata.getName());
+		}
+	}
+	
+	private Map<String, List<FileMetadata>> getSubdirectoriesIndex() {
+		
+		if(subdirectories == null) {
+			subdirectories = new ConcurrentHashMap<>();
+			for(String key : storageTreeStructure.keySet()) {
+				List<FileMetadata> found = new ArrayList<>();
+				for(FileMetadata f : storageTreeStructure.get(key)) {
+					if(f.isDirectory())
+						found.add(f);
+				}
+				subdirectories.put(key, found);
+			}
+		}
+		
+		return subdirectories;
+	}
+	
+	private Map<String, Map<String, FileMetadata>> getStorageTreeIndex() {
+		
+		if(storageTreeIndex == null) {
+			storageTreeIndex = new ConcurrentHashMap<>();
+			
+			for(String directory : storageTreeStructure.keySet()) {
+				Map<String, FileMetadata> names = new HashMap<>();
+				for(FileMetadata f : storageTreeStructure.get(directory))
+					names.put(f.getName(), f);
+				
+				storageTreeIndex.put(directory, names);
+			}
+		}
+		
+		return storageTreeIndex;
+	}
+
+}
@@ -0,0 +1,251 @@
+package storageInformation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Storage tree which is read from the binary snapshot (see StorageSnapshot) one directory at a time. Content of the directory is loaded
+ * to the heap the first time the directory is read or changed, the directories which are never used stay only in the snapshot file.
+ * Operations which go through the whole storage tree (search by name, size, the storage tree structure) load all directories first.
+ * Loaded directories are kept in the HeapStorageTree, so the loaded part of the tree behaves the same as the heap storage tree
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class LazyStorageTree implements StorageTree {
+
+	private final HeapStorageTree loaded;
+	private final StorageSnapshot snapshot;
+	// directory ID -> node of the directory in the snapshot, for the directories whose content is not loaded yet
+	private final Map<String, Integer> unloaded = new ConcurrentHashMap<>();
+	// directory ID -> directory, for the directories which are read from the snapshot
+	private final Map<String, FileMetadata> directories = new ConcurrentHashMap<>();
+	private volatile boolean allLoaded = false;
+
+
+	/**
+	 * Creates the storage tree with the storage directory, whose content is loaded right away
+	 * @param snapshot is the snapshot which the storage tree is read from
+	 * @param storageDirectory is the storage directory, read from the node 0 of the snapshot
+	 */
+	LazyStorageTree(StorageSnapshot snapshot, FileMetadata storageDirectory) {
+		this.snapshot = snapshot;
+		this.loaded = new HeapStorageTree(new ConcurrentHashMap<String, List<FileMetadata>>());
+		if(snapshot.getChildCount(0) >= 0) {
+			unloaded.put(storageDirectory.getFileID(), 0);
+			directories.put(storageDirectory.getFileID(), storageDirectory);
+		}
+		load(storageDirectory);
+	}
+
+	@Override
+	public List<FileMetadata> getDirectoryContent(FileMetadata directory) {
+		load(directory);
+		return loaded.getDirectoryContent(directory);
+	}
+
+	@Override
+	public int size() {
+		loadAll();
+		return loaded.size();
+	}
+
+	@Override
+	public int getDirectorySize(FileMetadata directory) {
+		load(directory);
+		return loaded.getDirectorySize(directory);
+	}
+
+	@Override
+	public List<FileMetadata> getSubdirectories(FileMetadata directory) {
+		load(directory);
+		return loaded.getSubdirectories(directory);
+	}
+
+	@Override
+	public FileMetadata getFileMetadata(FileMetadata directory, String name) {
+		load(directory);
+		return loaded.getFileMetadata(directory, name);
+	}
+
+	@Override
+	public List<FileMetadata> getFileMetadataByName(String name) {
+		loadAll();
+		return loaded.getFileMetadataByName(name);
+	}
+
+	@Override
+	public void addDirectory(FileMetadata directory) {
+		// postojeci sadrzaj se odbacuje, pa ni ne treba da se ucita
+		forget(directory);
+		loaded.addDirectory(directory);
+	}
+
+	@Override
+	public void removeDirectory(FileMetadata directory) {
+		forget(directory);
+		loaded.removeDirectory(directory);
+	}
+
+	@Override
+	public void addToDirectory(FileMetadata directory, FileMetadata fileMetadata) {
+		load(directory);
+		loaded.addToDirectory(directory, fileMetadata);
+	}
+
+	@Override
+	public void removeFromDirectory(FileMetadata fileMetadata) {
+		load(fileMetadata.getParent());
+		loaded.removeFromDirectory(fileMetadata);
+	}
+
+	@Override
+	public void moveToDirectory(FileMetadata fileMetadata, FileMetadata directory, String name) {
+		load(fileMetadata.getParent());
+		load(directory);
+		loaded.moveToDirectory(fileMetadata, directory, name);
+	}
+
+	@Override
+	public void renameInDirectory(FileMetadata fileMetadata, String name) {
+		load(fileMetadata.getParent());
+		loaded.renameInDirectory(fileMetadata, name);
+	}
+
+	@Override
+	public Map<String, List<FileMetadata>> getStorageTreeStructure() {
+		loadAll();
+		return loaded.getStorageTreeStructure();
+	}
+
+	/**
+	 * Finds FileMetadata by its ID. Only the directories on the path to the FileMetadata in the snapshot are loaded.
+	 * FileMetadata which is not in the snapshot, or was moved from the directory where the snapshot holds it, is not found
+	 * @param fileID is the ID
+	 * @return FileMetadata with the given ID, null if it is not found
+	 */
+	public FileMetadata getFileMetadata(String fileID) {
+		FileMetadata directory = directories.get(fileID);
+		if(directory != null)
+			return directory;
+
+		int node = snapshot.findNode(fileID);
+		return (node < 0) ? null : find(node);
+	}
+
+	/**
+	 * @return true if the content of all directories is loaded
+	 */
+	public boolean isLoaded() {
+		return allLoaded;
+	}
+
+	/**
+	 * Loads the content of all directories which are not loaded yet
+	 */
+	public void loadAll() {
+		// direktorijum je u snimku uvek posle svog roditelja, pa je do tada vec poznat
+		for(int node = 0 ; node < snapshot.getNodeCount() && !allLoaded ; node++) {
+			if(snapshot.getChildCount(node) < 0)
+				continue;
+
+			FileMetadata directory = directories.get(snapshot.getFileID(node));
+			if(directory != null)
+				load(directory);
+		}
+	}
+
+	/**
+	 * @return map of directory ID -> content of the directory, for the directories which are loaded
+	 */
+	Map<String, List<FileMetadata>> getLoadedStorageTreeStructure() {
+		return loaded.getStorageTreeStructure();
+	}
+
+	/**
+	 * Builds the indexes of the loaded part of the tree, which are then kept up to date while the directories are loaded
+	 */
+	void buildIndexes() {
+		loaded.buildIndexes();
+	}
+
+	private FileMetadata find(int node) {
+		String fileID = snapshot.getFileID(node);
+		FileMetadata directory = directories.get(fileID);
+		if(directory != null || node == 0)
+			return directory;
+
+		FileMetadata parent = find(snapshot.getParent(node));
+		if(parent == null)
+			return null;
+
+		load(parent);
+		directory = directories.get(fileID);
+		if(directory != null)
+			return directory;
+
+		List<FileMetadata> content = loaded.getDirectoryContent(parent);
+		if(content != null) {
+			for(FileMetadata f : content) {
+				if(fileID.equals(f.getFileID()))
+					return f;
+			}
+		}
+
+		return null;
+	}
+
+	// sadrzaj se ucitava jednom, drugi koji traze isti direktorijum cekaju da se ucita
+	private void load(FileMetadata directory) {
+		if(allLoaded || directory == null || !unloaded.containsKey(directory.getFileID()))
+			return;
+
+		synchronized(this) {
+			Integer node = unloaded.get(directory.getFileID());
+			if(node == null)
+				return;
+
+			loaded.addDirectory(directory);
+			int firstChild = snapshot.getFirstChild(node);
+			int children = snapshot.getChildCount(node);
+			for(int child = firstChild ; child < firstChild + children ; child++) {
+				FileMetadata f = snapshot.getFileMetadata(child, directory);
+				loaded.addToDirectory(directory, f);
+				if(snapshot.getChildCount(child) >= 0) {
+					directories.put(f.getFileID(), f);
+					unloaded.put(f.getFileID(), child);
+				}
+			}
+
+			unloaded.remove(directory.getFileID());
+			if(unloaded.isEmpty())
+				allLoaded = true;
+		}
+	}
+
+	// direktorijumi ispod obrisanog se vise ne ucitavaju
+	private void forget(FileMetadata directory) {
+		synchronized(this) {
+			directories.remove(directory.getFileID());
+			if(unloaded.remove(directory.getFileID()) != null)
+				return;
+
+			List<FileMetadata> content = loaded.getDirectoryContent(directory);
+			if(content == null)
+				return;
+
+			for(FileMetadata f : new ArrayList<>(content)) {
+				if(f.isDirectory())
+					forget(f);
+			}
+
+			if(unloaded.isEmpty())
+				allLoaded = true;
+		}
+	}
+
+}
@@ -0,0 +1,328 @@
+package storageInformation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import fileMetadata.FileMetadata;
+import fileMetadata.FileMetadataTypeAdapterFactory;
+
+/**
+ * Append-only journal of the changes of the storage tree structure, kept next to the snapshot of the storage information (the JSON file).
+ * Every change is written as one line and flushed right away, so the changes are not lost if the process stops before the snapshot is written.
+ * The first line holds the sequence of the journal, which must be the same as the one written in the snapshot,
+ * otherwise the journal is older than the snapshot and its changes are already in it.
+ * When the journal grows long, the snapshot is written again and the journal starts from the beginning with the next sequence.
+ * Line which was not written whole, because the process stopped or the disk failed, ends the journal: it is cut off before the new changes are appended
+ *
+ * @author Luka Pavlovic
+ *
+ */
+class MetadataJournal {
+
+	// broj promena posle kojeg se pravi novi snimak
+	static final int COMPACTION_THRESHOLD = 10000;
+
+	private static final Gson gson = new GsonBuilder().registerTypeAdapterFactory(new FileMetadataTypeAdapterFactory()).create();
+
+	private final Path path;
+	private final StorageInformation.SnapshotWriter snapshot;
+	private FileOutputStream out;
+	private Writer writer;
+	private int records = 0;
+	// posle neuspelog snimka sledeci se pokusava tek kada dnevnik naraste jos toliko
+	private int compactionThreshold = COMPACTION_THRESHOLD;
+	private boolean compactionScheduled = false;
+	// promena koja nije upisana, posle nje se ne upisuje nista dok novi snimak ne pocne novi dnevnik
+	private IOException failure;
+	// snimak se pravi na posebnoj niti samo kada su brave ukljucene
+	private ExecutorService compactor;
+
+	private MetadataJournal(Path path, StorageInformation.SnapshotWriter snapshot) {
+		this.path = path;
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Opens the journal for appending. Journal which does not exist or has the other sequence is started again. 
+	 * Journal of the snapshot is cut off after the last change which was read, so the new changes are not appended 
+	 * to the line which was not written whole and are read on the next connection
+	 * @param path is the path of the journal file
+	 * @param sequence is the sequence of the snapshot
+	 * @param replayed is what replay read from the journal
+	 * @param snapshot writes the snapshot when the journal is compacted
+	 * @return the journal
+	 * @throws IOException if the journal can not be opened
+	 */
+	static MetadataJournal open(Path path, int sequence, Replayed replayed, StorageInformation.SnapshotWriter snapshot) throws IOException {
+		MetadataJournal journal = new MetadataJournal(path, snapshot);
+
+		if(!replayed.belongs) {
+			journal.start(sequence);
+			return journal;
+		}
+
+		FileOutputStream out = new FileOutputStream(path.toFile(), true);
+		try {
+			if(out.getChannel().size() > replayed.end) {
+				out.getChannel().truncate(replayed.end);
+				out.getFD().sync();
+			}
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+		journal.out = out;
+		journal.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		journal.records = replayed.records;
+		return journal;
+	}
+
+	/**
+	 * Reads the changes written after the snapshot. Reading stops at the first line which is not complete (not ended with the new line) 
+	 * or can not be applied, the changes after it are not read
+	 * @param path is the path of the journal file
+	 * @param sequence is the sequence of the snapshot
+	 * @param replay is called for every change
+	 * @return number of changes which are read and where they end in the journal
+	 * @throws IOException if the journal can not be read
+	 */
+	static Replayed replay(Path path, int sequence, Replay replay) throws IOException {
+		try(InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			Header header = readLine(in, line) ? parse(line, Header.class) : null;
+			if(header == null || header.sequence != sequence)
+				return new Replayed(false, 0, 0);
+
+			int count = 0;
+			long end = line.size() + 1;
+			while(readLine(in, line)) {
+				Record record = parse(line, Record.class);
+				if(record == null || record.op == null || !replay.apply(record))
+					break;
+				count++;
+				end += line.size() + 1;
+			}
+			return new Replayed(true, count, end);
+		} catch (NoSuchFileException e) {
+			return new Replayed(false, 0, 0);
+		}
+	}
+
+	interface Replay {
+		boolean apply(Record record);
+	}
+
+	/**
+	 * Result of the replay
+	 */
+	static class Replayed {
+
+		// dnevnik pripada snimku
+		final boolean belongs;
+		final int records;
+		// bajt posle poslednje procitane promene
+		final long end;
+
+		Replayed(boolean belongs, int records, long end) {
+			this.belongs = belongs;
+			this.records = records;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * Appends the change and flushes it. After the change which can not be written, the journal accepts no changes 
+	 * until it is compacted, since the changes after it could not be applied without it
+	 * @param record is the change
+	 * @return true if the journal should be compacted
+	 * @throws IOException if the change can not be written
+	 */
+	synchronized boolean append(Record record) throws IOException {
+		if(writer == null)
+			return false;
+		if(failure != null)
+			throw new IOException("Journal accepts no changes until the snapshot is written", failure);
+
+		try {
+			writer.write(gson.toJson(record));
+			writer.write('\n');
+			writer.flush();
+		} catch (IOException e) {
+			failure = e;
+			throw e;
+		}
+
+		return ++records >= compactionThreshold && startCompaction();
+	}
+
+	/**
+	 * Marks the compaction as scheduled
+	 * @return false if the compaction is already scheduled
+	 */
+	synchronized boolean startCompaction() {
+		if(compactionScheduled)
+			return false;
+
+		compactionScheduled = true;
+		return true;
+	}
+
+	/**
+	 * Writes the snapshot and starts the journal again with the next sequence
+	 * @param sequence is the next sequence, which the snapshot is written with
+	 * @throws IOException if the snapshot or the journal can not be written, the journal then stays as it was 
+	 * and the compaction is not tried again until the journal grows twice as long
+	 */
+	synchronized void compact(int sequence) throws IOException {
+		try {
+			snapshot.write();
+			start(sequence);
+			compactionThreshold = COMPACTION_THRESHOLD;
+		} catch (IOException e) {
+			compactionThreshold = (int) Math.min(Integer.MAX_VALUE, (long) Math.max(records, compactionThreshold) * 2);
+			throw e;
+		}
+		finally {
+			compactionScheduled = false;
+		}
+	}
+
+	synchronized void scheduleCompaction(Runnable compaction) {
+		if(compactor == null) {
+			compactor = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "storage-journal-compaction");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		compactor.execute(compaction);
+	}
+
+	/**
+	 * Flushes the journal to the disk and closes it
+	 */
+	synchronized void close() {
+		if(compactor != null)
+			compactor.shutdown();
+		if(writer == null)
+			return;
+
+		try {
+			writer.flush();
+			out.getFD().sync();
+			writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		writer = null;
+		out = null;
+	}
+
+	int getRecords() {
+		return records;
+	}
+
+	// novi dnevnik se pise pored starog i zamenjuje ga tek kada ima zaglavlje
+	private void start(int sequence) throws IOException {
+		Path started = path.resolveSibling(path.getFileName() + ".tmp");
+		FileOutputStream out = new FileOutputStream(started.toFile(), false);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		try {
+			writer.write(gson.toJson(new Header(sequence)));
+			writer.write('\n');
+			writer.flush();
+			Files.move(started, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			writer.close();
+			throw e;
+		}
+
+		if(this.writer != null)
+			this.writer.close();
+		this.out = out;
+		this.writer = writer;
+		this.records = 0;
+		this.failure = null;
+	}
+
+	// false ako linija nije zavrsena novim redom, tada je upis prekinut
+	private static boolean readLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+		line.reset();
+		int b;
+		while((b = in.read()) != -1) {
+			if(b == '\n')
+				return true;
+			line.write(b);
+		}
+		return false;
+	}
+
+	private static <T> T parse(ByteArrayOutputStream line, Class<T> type) {
+		try {
+			return gson.fromJson(new String(line.toByteArray(), StandardCharsets.UTF_8), type);
+		} catch (JsonParseException e) {
+			return null;
+		}
+	}
+
+	private static class Header {
+
+		private final int sequence;
+
+		Header(int sequence) {
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * One change of the storage tree structure. FileMetadata are written without the parent, directories and files are referred to by their IDs
+	 */
+	static class Record {
+
+		static final String ADD_DIRECTORY = "dir";
+		static final String REMOVE_DIRECTORY = "rmdir";
+		static final String ADD = "add";
+		static final String REMOVE = "rm";
+		static final String MOVE = "mv";
+		static final String RENAME = "ren";
+		static final String SIZE = "size";
+		static final String TIME_MODIFIED = "time";
+		static final String FILES_LIMIT = "limit";
+		static final String DIR_FILES_LIMIT = "dirLimit";
+		static final String STORAGE_SIZE = "quota";
+		static final String CONFIGURATION = "config";
+		static final String STORAGE_TREE = "tree";
+
+		String op;
+		String id;
+		String to;
+		String name;
+		Long value;
+		FileMetadata file;
+		Set<String> unsupportedFiles;
+
+		Record(String op, String id) {
+			this.op = op;
+			this.id = id;
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+package storageInformation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the distinct names in the storage by their trigrams. Name is indexed together with the marks of its start and end, 
+ * so prefixes and suffixes shorter than three characters also have trigrams. Names which are no longer in the storage 
+ * are removed by the caller when it finds them
+ * 
+ * @author Luka Pavlovic
+ *
+ */
+class NameSearchIndex {
+	
+	private static final char START = '\u0002';
+	private static final char END = '\u0003';
+	
+	// trigram -> names which contain it
+	private final Map<String, Set<String>> trigrams = new HashMap<>();
+	private final Set<String> names = new HashSet<>();
+	
+	void add(String name) {
+		if(!names.add(name))
+			return;
+		
+		String marked = START + name + END;
+		for(int i = 0 ; i + 3 <= marked.length() ; i++)
+			trigrams.computeIfAbsent(marked.substring(i, i + 3), k -> new HashSet<>()).add(name);
+	}
+	
+	void remove(String name) {
+		if(!names.remove(name))
+			return;
+		
+		String marked = START + name + END;
+		for(int i = 0 ; i + 3 <= marked.length() ; i++) {
+			Set<String> found = trigrams.get(marked.substring(i, i + 3));
+			if(found != null && found.remove(name) && found.isEmpty())
+				trigrams.remove(marked.substring(i, i + 3));
+		}
+	}
+	
+	/**
+	 * Finds the names which satisfy all given conditions
+	 * @param prefix if not null names start with it
+	 * @param suffixes names end with all of them, null elements are skipped
+	 * @param subWord if not null names contain it
+	 * @return names which satisfy the conditions
+	 */
+	List<String> find(String prefix, String[] suffixes, String subWord) {
+		
+		// najmanji skup imena koja imaju jedan od trigrama iz uslova, ostali uslovi se proveravaju nad njim
+		Set<String> candidates = names;
+		if(prefix != null)
+			candidates = smallest(candidates, START + prefix);
+		for(String suffix : suffixes) {
+			if(suffix != null)
+				candidates = smallest(candidates, suffix + END);
+		}
+		if(subWord != null)
+			candidates = smallest(candidates, subWord);
+		
+		List<String> found = new ArrayList<>();
+		for(String name : candidates) {
+			if(prefix != null && !name.startsWith(prefix))
+				continue;
+			if(subWord != null && !name.contains(subWord))
+				continue;
+			
+			boolean matches = true;
+			for(String suffix : suffixes) {
+				if(suffix != null && !name.endsWith(suffix)) {
+					matches = false;
+					break;
+				}
+			}
+			if(matches)
+				found.add(name);
+		}
+		
+		return found;
+	}
+	
+	private Set<String> smallest(Set<String> candidates, String word) {
+		for(int i = 0 ; i + 3 <= word.length() ; i++) {
+			Set<String> found = trigrams.get(word.substring(i, i + 3));
+			if(found == null)
+				return new HashSet<>();
+			if(found.size() < candidates.size())
+				candidates = found;
+		}
+		return candidates;
+	}
+
+}
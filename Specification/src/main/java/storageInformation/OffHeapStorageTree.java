@@ -0,0 +1,1074 @@
+package storageInformation;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Storage tree which keeps FileMetadata records outside of the heap, in direct buffers with one column per attribute
+ * (parent, name, flags, size, time created, time modified...). Names and IDs which are not numbers are kept UTF-8 encoded in a separate buffer.
+ * FileMetadata handed out by the tree are views of the records, so only the FileMetadata in use are on the heap.
+ * Record of the removed FileMetadata is used again for the next added one, the view of the removed FileMetadata is not equal 
+ * to the views of the new one and the tree does not change it, but it must not be read after the removal. 
+ * Space of the names and IDs which are changed or removed is taken back when the strings buffer is full
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class OffHeapStorageTree implements StorageTree {
+
+	private static final int NONE = -1;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// flags column
+	private static final int FILE = 1;
+	private static final int DIRECTORY = 1 << 1;
+	private static final int STORAGE = 1 << 2;
+	private static final int DATA_ROOT = 1 << 3;
+	private static final int FREE = 1 << 31;
+
+	// storage directory, holds the paths and storage attributes of the root record
+	private FileMetadata storageDirectory;
+	private int root = NONE;
+
+	private int capacity;
+	private int records; // records below are used or free
+	private int freeRecords = NONE; // free records are chained through nextSiblings
+	private int size;
+
+	// columns
+	private ByteBuffer ids; // long: ID if it is a number, otherwise -(offset of the ID in strings + 1)
+	private ByteBuffer parents; // int
+	private ByteBuffer names; // int: offset of the name in strings
+	private ByteBuffer nameHashes; // int
+	private ByteBuffer flags; // int
+	private ByteBuffer sizes; // long
+	private ByteBuffer timesCreated; // long
+	private ByteBuffer timesModified; // long
+	private ByteBuffer filesLimits; // int
+	private ByteBuffer firstChildren; // int
+	private ByteBuffer lastChildren; // int
+	private ByteBuffer nextSiblings; // int
+	private ByteBuffer previousSiblings; // int
+	private ByteBuffer nameChains; // int: next record in the same bucket of nameBuckets
+	private ByteBuffer sameNameChains; // int: next record in the same bucket of sameNameBuckets
+	private ByteBuffer idChains; // int: next record in the same bucket of idBuckets
+	private ByteBuffer generations; // int: incremented every time the record is freed
+
+	// (parent, name) -> record, name -> records and ID -> record hash tables
+	private ByteBuffer nameBuckets;
+	private ByteBuffer sameNameBuckets;
+	private ByteBuffer idBuckets;
+	private int buckets;
+
+	// [length][UTF-8 bytes]
+	private ByteBuffer strings;
+	private int stringsEnd;
+	// bytes of the names and IDs which no record refers to anymore
+	private int stringsGarbage;
+
+	private Map<String, List<FileMetadata>> storageTreeStructure;
+
+
+	public OffHeapStorageTree() {
+		capacity = INITIAL_CAPACITY;
+		ids = allocate(capacity * 8);
+		parents = allocate(capacity * 4);
+		names = allocate(capacity * 4);
+		nameHashes = allocate(capacity * 4);
+		flags = allocate(capacity * 4);
+		sizes = allocate(capacity * 8);
+		timesCreated = allocate(capacity * 8);
+		timesModified = allocate(capacity * 8);
+		filesLimits = allocate(capacity * 4);
+		firstChildren = allocate(capacity * 4);
+		lastChildren = allocate(capacity * 4);
+		nextSiblings = allocate(capacity * 4);
+		previousSiblings = allocate(capacity * 4);
+		nameChains = allocate(capacity * 4);
+		sameNameChains = allocate(capacity * 4);
+		idChains = allocate(capacity * 4);
+		generations = allocate(capacity * 4);
+
+		buckets = INITIAL_CAPACITY;
+		nameBuckets = allocateBuckets(buckets);
+		sameNameBuckets = allocateBuckets(buckets);
+		idBuckets = allocateBuckets(buckets);
+
+		strings = allocate(INITIAL_CAPACITY * 16);
+	}
+
+	/**
+	 * @return view of the storage directory, null if the tree is empty
+	 */
+	public FileMetadata getStorageDirectory() {
+		return (root == NONE) ? null : new Node(root);
+	}
+
+	/**
+	 * Finds FileMetadata by its ID
+	 * @param fileID is the ID
+	 * @return view of the FileMetadata, null if there is no FileMetadata with the given ID
+	 */
+	public FileMetadata getFileMetadata(String fileID) {
+		int record = findID(fileID);
+		return (record == NONE) ? null : new Node(record);
+	}
+
+	@Override
+	public int size() {
+		// zapis skladista nije ni u jednom direktorijumu
+		return (root == NONE) ? size : size - 1;
+	}
+
+	@Override
+	public List<FileMetadata> getDirectoryContent(FileMetadata directory) {
+		int record = recordOf(directory);
+		if(record == NONE || (getInt(flags, record) & DIRECTORY) == 0)
+			return null;
+
+		return content(record);
+	}
+
+	@Override
+	public int getDirectorySize(FileMetadata directory) {
+		int record = recordOf(directory);
+		if(record == NONE)
+			return 0;
+
+		int count = 0;
+		for(int child = getInt(firstChildren, record) ; child != NONE ; child = getInt(nextSiblings, child))
+			count++;
+		return count;
+	}
+
+	@Override
+	public List<FileMetadata> getSubdirectories(FileMetadata directory) {
+		int record = recordOf(directory);
+		if(record == NONE || (getInt(flags, record) & DIRECTORY) == 0)
+			return null;
+
+		List<FileMetadata> subdirectories = new ArrayList<>();
+		for(int child = getInt(firstChildren, record) ; child != NONE ; child = getInt(nextSiblings, child)) {
+			if((getInt(flags, child) & DIRECTORY) != 0)
+				subdirectories.add(new Node(child));
+		}
+		return subdirectories;
+	}
+
+	@Override
+	public FileMetadata getFileMetadata(FileMetadata directory, String name) {
+		int record = recordOf(directory);
+		if(record == NONE)
+			return null;
+
+		int child = findName(record, name.getBytes(StandardCharsets.UTF_8));
+		return (child == NONE) ? null : new Node(child);
+	}
+
+	@Override
+	public List<FileMetadata> getFileMetadataByName(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		int nameHash = hash(bytes);
+
+		List<FileMetadata> found = new ArrayList<>();
+		for(int record = getInt(sameNameBuckets, nameHash & (buckets - 1)) ; record != NONE ; record = getInt(sameNameChains, record)) {
+			if(getInt(nameHashes, record) == nameHash && stringEquals(getInt(names, record), bytes))
+				found.add(new Node(record));
+		}
+		return found;
+	}
+
+	@Override
+	public void addDirectory(FileMetadata directory) {
+
+		if(root == NONE) {
+			storageDirectory = directory;
+			root = newRecord(directory);
+			return;
+		}
+
+		// direktorijum koji jos nije u stablu dobija zapis kada se doda u roditelja
+		int record = recordOf(directory);
+		if(record != NONE)
+			freeContent(record);
+	}
+
+	@Override
+	public void removeDirectory(FileMetadata directory) {
+		int record = recordOf(directory);
+		if(record == NONE)
+			return;
+
+		freeContent(record);
+		if(record != root && getInt(parents, record) == NONE)
+			free(record);
+	}
+
+	@Override
+	public void addToDirectory(FileMetadata directory, FileMetadata fileMetadata) {
+		int parent = recordOf(directory);
+		int record = recordOf(fileMetadata);
+
+		if(record == NONE)
+			record = newRecord(fileMetadata);
+		else
+			unlink(record);
+
+		link(record, parent);
+
+		if(!(fileMetadata instanceof Node))
+			fileMetadata.setParent(directory);
+	}
+
+	@Override
+	public void removeFromDirectory(FileMetadata fileMetadata) {
+		int record = recordOf(fileMetadata);
+		if(record == NONE)
+			return;
+
+		unlink(record);
+		// zapis direktorijuma se oslobadja tek u removeDirectory
+		if((getInt(flags, record) & DIRECTORY) == 0)
+			free(record);
+	}
+
+	@Override
+	public void moveToDirectory(FileMetadata fileMetadata, FileMetadata directory, String name) {
+		int record = recordOf(fileMetadata);
+		int parent = recordOf(directory);
+
+		unlink(record);
+		setName(record, name);
+		link(record, parent);
+	}
+
+	@Override
+	public void renameInDirectory(FileMetadata fileMetadata, String name) {
+		int record = recordOf(fileMetadata);
+		int parent = getInt(parents, record);
+
+		if(parent != NONE)
+			removeName(record);
+		setName(record, name);
+		if(parent != NONE)
+			insertName(record);
+	}
+
+	@Override
+	public Map<String, List<FileMetadata>> getStorageTreeStructure() {
+		if(storageTreeStructure == null)
+			storageTreeStructure = new StorageTreeStructure();
+
+		return storageTreeStructure;
+	}
+
+	private List<FileMetadata> content(int directory) {
+		List<FileMetadata> content = new ArrayList<>();
+		for(int child = getInt(firstChildren, directory) ; child != NONE ; child = getInt(nextSiblings, child))
+			content.add(new Node(child));
+
+		return content;
+	}
+
+	private int recordOf(FileMetadata fileMetadata) {
+		// pogled uklonjenog zapisa ne menja zapis koji je u medjuvremenu dobila druga FileMetadata
+		if(fileMetadata instanceof Node && ((Node) fileMetadata).tree() == this) {
+			Node node = (Node) fileMetadata;
+			return (node.generation == getInt(generations, node.record)) ? node.record : NONE;
+		}
+
+		return (fileMetadata.getFileID() == null) ? NONE : findID(fileMetadata.getFileID());
+	}
+
+	// ============================ records ============================
+
+	private int newRecord(FileMetadata fileMetadata) {
+
+		byte[] name = fileMetadata.getName().getBytes(StandardCharsets.UTF_8);
+		reserveStrings(4 + name.length + idLength(fileMetadata.getFileID()));
+
+		int record;
+		if(freeRecords != NONE) {
+			record = freeRecords;
+			freeRecords = getInt(nextSiblings, record);
+		}
+		else {
+			if(records == capacity)
+				grow();
+			record = records++;
+		}
+
+		int recordFlags = (fileMetadata.isFile() ? FILE : 0) | (fileMetadata.isDirectory() ? DIRECTORY : 0)
+				| (fileMetadata.isStorage() ? STORAGE : 0) | (fileMetadata.isDataRoot() ? DATA_ROOT : 0);
+		Integer filesLimit = fileMetadata.getNumOfFilesLimit();
+
+		putInt(parents, record, NONE);
+		putInt(flags, record, recordFlags);
+		putLong(sizes, record, (fileMetadata.getSize() != null) ? fileMetadata.getSize() : 0L);
+		putLong(timesCreated, record, fileMetadata.getTimeCreatedMillis());
+		putLong(timesModified, record, fileMetadata.getTimeModifiedMillis());
+		putInt(filesLimits, record, (filesLimit != null) ? filesLimit : NONE);
+		putInt(firstChildren, record, NONE);
+		putInt(lastChildren, record, NONE);
+		putInt(nextSiblings, record, NONE);
+		putInt(previousSiblings, record, NONE);
+
+		putInt(names, record, putString(name));
+		putInt(nameHashes, record, hash(name));
+
+		putLong(ids, record, encodeID(fileMetadata.getFileID()));
+		insertID(record);
+
+		if(++size > buckets * 3 / 4)
+			rehash();
+
+		return record;
+	}
+
+	private void free(int record) {
+		removeID(record);
+		releaseString(getInt(names, record));
+		long id = getLong(ids, record);
+		if(id < 0)
+			releaseString((int) (-id - 1));
+		putInt(generations, record, getInt(generations, record) + 1);
+		putInt(flags, record, FREE);
+		putInt(nextSiblings, record, freeRecords);
+		freeRecords = record;
+		size--;
+	}
+
+	private void freeContent(int directory) {
+
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = directory;
+
+		while(top > 0) {
+			int current = stack[--top];
+			int child = getInt(firstChildren, current);
+
+			while(child != NONE) {
+				int next = getInt(nextSiblings, child);
+
+				removeName(child);
+				if((getInt(flags, child) & DIRECTORY) != 0) {
+					if(top == stack.length) {
+						int[] larger = new int[stack.length * 2];
+						System.arraycopy(stack, 0, larger, 0, top);
+						stack = larger;
+					}
+					stack[top++] = child;
+				}
+
+				// sadrzaj oslobodjenog direktorijuma se jos cita preko firstChildren, koji free ne menja
+				free(child);
+				child = next;
+			}
+
+			putInt(firstChildren, current, NONE);
+			putInt(lastChildren, current, NONE);
+		}
+	}
+
+	private void link(int record, int parent) {
+		int last = getInt(lastChildren, parent);
+
+		putInt(parents, record, parent);
+		putInt(previousSiblings, record, last);
+		putInt(nextSiblings, record, NONE);
+
+		if(last == NONE)
+			putInt(firstChildren, parent, record);
+		else
+			putInt(nextSiblings, last, record);
+		putInt(lastChildren, parent, record);
+
+		insertName(record);
+	}
+
+	private void unlink(int record) {
+		int parent = getInt(parents, record);
+		if(parent == NONE)
+			return;
+
+		removeName(record);
+
+		int previous = getInt(previousSiblings, record);
+		int next = getInt(nextSiblings, record);
+
+		if(previous == NONE)
+			putInt(firstChildren, parent, next);
+		else
+			putInt(nextSiblings, previous, next);
+
+		if(next == NONE)
+			putInt(lastChildren, parent, previous);
+		else
+			putInt(previousSiblings, next, previous);
+
+		putInt(parents, record, NONE);
+		putInt(previousSiblings, record, NONE);
+		putInt(nextSiblings, record, NONE);
+	}
+
+	private void setName(int record, String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		reserveStrings(4 + bytes.length);
+		releaseString(getInt(names, record));
+		putInt(names, record, putString(bytes));
+		putInt(nameHashes, record, hash(bytes));
+	}
+
+	private String getName(int record) {
+		return getString(getInt(names, record));
+	}
+
+	private String getID(int record) {
+		long id = getLong(ids, record);
+		return (id >= 0) ? String.valueOf(id) : getString((int) (-id - 1));
+	}
+
+	private void setID(int record, String fileID) {
+		reserveStrings(idLength(fileID));
+		removeID(record);
+		long id = getLong(ids, record);
+		if(id < 0)
+			releaseString((int) (-id - 1));
+		putLong(ids, record, encodeID(fileID));
+		insertID(record);
+	}
+
+	private long encodeID(String fileID) {
+		long id = numericID(fileID);
+		return (id >= 0) ? id : -((long) putString(fileID.getBytes(StandardCharsets.UTF_8)) + 1);
+	}
+
+	// broj bajtova koje ID zauzima u strings
+	private static int idLength(String fileID) {
+		return (numericID(fileID) >= 0) ? 0 : 4 + fileID.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	// ID kao broj ako je zapisan bez vodecih nula, -1 inace
+	private static long numericID(String fileID) {
+		if(fileID.isEmpty() || fileID.length() > 18 || (fileID.length() > 1 && fileID.charAt(0) == '0'))
+			return -1;
+
+		long id = 0;
+		for(int i = 0 ; i < fileID.length() ; i++) {
+			char c = fileID.charAt(i);
+			if(c < '0' || c > '9')
+				return -1;
+			id = id * 10 + (c - '0');
+		}
+		return id;
+	}
+
+	// ============================ hash tables ============================
+
+	private int nameBucket(int parent, int nameHash) {
+		return (parent * 31 + nameHash) & (buckets - 1);
+	}
+
+	// zapis je u obe tabele imena dok god ima roditelja
+	private void insertName(int record) {
+		int nameHash = getInt(nameHashes, record);
+		insert(nameBuckets, nameChains, nameBucket(getInt(parents, record), nameHash), record);
+		insert(sameNameBuckets, sameNameChains, nameHash & (buckets - 1), record);
+	}
+
+	private void removeName(int record) {
+		int nameHash = getInt(nameHashes, record);
+		remove(nameBuckets, nameChains, nameBucket(getInt(parents, record), nameHash), record);
+		remove(sameNameBuckets, sameNameChains, nameHash & (buckets - 1), record);
+	}
+
+	private static void insert(ByteBuffer buckets, ByteBuffer chains, int bucket, int record) {
+		putInt(chains, record, getInt(buckets, bucket));
+		putInt(buckets, bucket, record);
+	}
+
+	private static void remove(ByteBuffer buckets, ByteBuffer chains, int bucket, int record) {
+		int current = getInt(buckets, bucket);
+
+		if(current == record) {
+			putInt(buckets, bucket, getInt(chains, record));
+			return;
+		}
+		while(current != NONE) {
+			int next = getInt(chains, current);
+			if(next == record) {
+				putInt(chains, current, getInt(chains, record));
+				return;
+			}
+			current = next;
+		}
+	}
+
+	private int findName(int parent, byte[] name) {
+		int nameHash = hash(name);
+		for(int record = getInt(nameBuckets, nameBucket(parent, nameHash)) ; record != NONE ; record = getInt(nameChains, record)) {
+			if(getInt(parents, record) == parent && getInt(nameHashes, record) == nameHash && stringEquals(getInt(names, record), name))
+				return record;
+		}
+		return NONE;
+	}
+
+	private int idBucket(int record) {
+		long id = getLong(ids, record);
+		return ((id >= 0) ? Long.hashCode(id) : stringHash((int) (-id - 1))) & (buckets - 1);
+	}
+
+	private void insertID(int record) {
+		insert(idBuckets, idChains, idBucket(record), record);
+	}
+
+	private void removeID(int record) {
+		remove(idBuckets, idChains, idBucket(record), record);
+	}
+
+	private int findID(String fileID) {
+		long id = numericID(fileID);
+		byte[] bytes = (id >= 0) ? null : fileID.getBytes(StandardCharsets.UTF_8);
+		int bucket = ((id >= 0) ? Long.hashCode(id) : hash(bytes)) & (buckets - 1);
+
+		for(int record = getInt(idBuckets, bucket) ; record != NONE ; record = getInt(idChains, record)) {
+			long recordID = getLong(ids, record);
+			if(id >= 0 ? recordID == id : recordID < 0 && stringEquals((int) (-recordID - 1), bytes))
+				return record;
+		}
+		return NONE;
+	}
+
+	private void rehash() {
+		buckets *= 2;
+		nameBuckets = allocateBuckets(buckets);
+		sameNameBuckets = allocateBuckets(buckets);
+		idBuckets = allocateBuckets(buckets);
+
+		for(int record = 0 ; record < records ; record++) {
+			if(getInt(flags, record) == FREE)
+				continue;
+
+			insertID(record);
+			if(getInt(parents, record) != NONE)
+				insertName(record);
+		}
+	}
+
+	// ============================ buffers ============================
+
+	private void grow() {
+		int larger = capacity * 2;
+		ids = grow(ids, larger * 8);
+		parents = grow(parents, larger * 4);
+		names = grow(names, larger * 4);
+		nameHashes = grow(nameHashes, larger * 4);
+		flags = grow(flags, larger * 4);
+		sizes = grow(sizes, larger * 8);
+		timesCreated = grow(timesCreated, larger * 8);
+		timesModified = grow(timesModified, larger * 8);
+		filesLimits = grow(filesLimits, larger * 4);
+		firstChildren = grow(firstChildren, larger * 4);
+		lastChildren = grow(lastChildren, larger * 4);
+		nextSiblings = grow(nextSiblings, larger * 4);
+		previousSiblings = grow(previousSiblings, larger * 4);
+		nameChains = grow(nameChains, larger * 4);
+		sameNameChains = grow(sameNameChains, larger * 4);
+		idChains = grow(idChains, larger * 4);
+		generations = grow(generations, larger * 4);
+		capacity = larger;
+	}
+
+	private static ByteBuffer allocate(int bytes) {
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+
+	private static ByteBuffer allocateBuckets(int buckets) {
+		ByteBuffer buffer = allocate(buckets * 4);
+		for(int i = 0 ; i < buckets ; i++)
+			buffer.putInt(i * 4, NONE);
+
+		return buffer;
+	}
+
+	private static ByteBuffer grow(ByteBuffer buffer, int bytes) {
+		ByteBuffer larger = allocate(bytes);
+		larger.put(buffer.duplicate().clear());
+		return larger;
+	}
+
+	/**
+	 * Makes room for the strings which are written next. If at least half of the buffer is taken by the strings which no record
+	 * refers to, the strings are compacted before the buffer is grown. It is called before the record starts to change, 
+	 * so the compacting sees only the records which are whole
+	 */
+	private void reserveStrings(int bytes) {
+		if(stringsEnd + bytes <= strings.capacity())
+			return;
+
+		if(stringsGarbage >= stringsEnd / 2)
+			compactStrings();
+		if(stringsEnd + bytes > strings.capacity())
+			strings = grow(strings, Math.max(strings.capacity() * 2, stringsEnd + bytes));
+	}
+
+	// prepisuje imena i ID-jeve zapisa koji se koriste jedno za drugim, bez onih na koje vise niko ne upucuje
+	private void compactStrings() {
+		ByteBuffer compacted = allocate(strings.capacity());
+		int end = 0;
+
+		for(int record = 0 ; record < records ; record++) {
+			if(getInt(flags, record) == FREE)
+				continue;
+
+			int name = getInt(names, record);
+			putInt(names, record, end);
+			end = copyString(name, compacted, end);
+
+			long id = getLong(ids, record);
+			if(id < 0) {
+				putLong(ids, record, -((long) end + 1));
+				end = copyString((int) (-id - 1), compacted, end);
+			}
+		}
+
+		strings = compacted;
+		stringsEnd = end;
+		stringsGarbage = 0;
+	}
+
+	private int copyString(int offset, ByteBuffer target, int at) {
+		int length = 4 + strings.getInt(offset);
+		ByteBuffer source = strings.duplicate();
+		source.position(offset).limit(offset + length);
+		ByteBuffer destination = target.duplicate();
+		destination.position(at);
+		destination.put(source);
+
+		return at + length;
+	}
+
+	private void releaseString(int offset) {
+		stringsGarbage += 4 + strings.getInt(offset);
+	}
+
+	private int putString(byte[] bytes) {
+		if(stringsEnd + 4 + bytes.length > strings.capacity())
+			strings = grow(strings, Math.max(strings.capacity() * 2, stringsEnd + 4 + bytes.length));
+
+		int offset = stringsEnd;
+		strings.putInt(offset, bytes.length);
+		ByteBuffer target = strings.duplicate();
+		target.position(offset + 4);
+		target.put(bytes);
+		stringsEnd += 4 + bytes.length;
+
+		return offset;
+	}
+
+	private String getString(int offset) {
+		byte[] bytes = new byte[strings.getInt(offset)];
+		ByteBuffer source = strings.duplicate();
+		source.position(offset + 4);
+		source.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private boolean stringEquals(int offset, byte[] bytes) {
+		if(strings.getInt(offset) != bytes.length)
+			return false;
+
+		for(int i = 0 ; i < bytes.length ; i++) {
+			if(strings.get(offset + 4 + i) != bytes[i])
+				return false;
+		}
+		return true;
+	}
+
+	private int stringHash(int offset) {
+		int length = strings.getInt(offset);
+		int h = 0x811c9dc5;
+		for(int i = 0 ; i < length ; i++)
+			h = (h ^ strings.get(offset + 4 + i)) * 0x01000193;
+
+		return h;
+	}
+
+	private static int hash(byte[] bytes) {
+		int h = 0x811c9dc5;
+		for(byte b : bytes)
+			h = (h ^ b) * 0x01000193;
+
+		return h;
+	}
+
+	private static int getInt(ByteBuffer column, int record) {
+		return column.getInt(record << 2);
+	}
+
+	private static void putInt(ByteBuffer column, int record, int value) {
+		column.putInt(record << 2, value);
+	}
+
+	private static long getLong(ByteBuffer column, int record) {
+		return column.getLong(record << 3);
+	}
+
+	private static void putLong(ByteBuffer column, int record, long value) {
+		column.putLong(record << 3, value);
+	}
+
+	// ============================ views ============================
+
+	/**
+	 * FileMetadata which reads and writes the record in the tree
+	 */
+	private final class Node extends FileMetadata {
+
+		private final int record;
+		// zapis se posle oslobadjanja koristi za drugu FileMetadata
+		private final int generation;
+
+		private Node(int record) {
+			this.record = record;
+			this.generation = getInt(generations, record);
+		}
+
+		private OffHeapStorageTree tree() {
+			return OffHeapStorageTree.this;
+		}
+
+		private boolean getFlag(int flag) {
+			return (getInt(flags, record) & flag) != 0;
+		}
+
+		private void setFlag(int flag, boolean value) {
+			int recordFlags = getInt(flags, record);
+			putInt(flags, record, value ? (recordFlags | flag) : (recordFlags & ~flag));
+		}
+
+		@Override
+		public String getFileID() {
+			return getID(record);
+		}
+
+		@Override
+		public void setFileID(String fileID) {
+			setID(record, fileID);
+		}
+
+		@Override
+		public String getName() {
+			return OffHeapStorageTree.this.getName(record);
+		}
+
+		@Override
+		public void setName(String name) {
+			renameInDirectory(this, name);
+		}
+
+		@Override
+		public Date getTimeCreated() {
+			long time = getTimeCreatedMillis();
+			return (time != 0L) ? new Date(time) : null;
+		}
+
+		@Override
+		public void setTimeCreated(Date timeCreated) {
+			setTimeCreatedMillis((timeCreated != null) ? timeCreated.getTime() : 0L);
+		}
+
+		@Override
+		public Date getTimeModified() {
+			long time = getTimeModifiedMillis();
+			return (time != 0L) ? new Date(time) : null;
+		}
+
+		@Override
+		public void setTimeModified(Date timeModified) {
+			setTimeModifiedMillis((timeModified != null) ? timeModified.getTime() : 0L);
+		}
+
+		@Override
+		public long getTimeCreatedMillis() {
+			return getLong(timesCreated, record);
+		}
+
+		@Override
+		public long getTimeModifiedMillis() {
+			return getLong(timesModified, record);
+		}
+
+		@Override
+		public void setTimeCreatedMillis(long timeCreated) {
+			putLong(timesCreated, record, timeCreated);
+		}
+
+		@Override
+		public void setTimeModifiedMillis(long timeModified) {
+			putLong(timesModified, record, timeModified);
+		}
+
+		@Override
+		public String getAbsolutePath() {
+			return appendPath(new StringBuilder(), true).toString();
+		}
+
+		@Override
+		public String getRelativePath() {
+			return appendPath(new StringBuilder(), false).toString();
+		}
+
+		@Override
+		protected StringBuilder appendPath(StringBuilder sb, boolean absolute) {
+
+			int[] path = new int[16];
+			int length = 0;
+			int current = record;
+
+			for(; current != root && current != NONE ; current = getInt(parents, current)) {
+				if(length == path.length) {
+					int[] longer = new int[path.length * 2];
+					System.arraycopy(path, 0, longer, 0, length);
+					path = longer;
+				}
+				path[length++] = current;
+			}
+
+			if(current == root)
+				sb.append(absolute ? storageDirectory.getAbsolutePath() : storageDirectory.getRelativePath());
+
+			for(int i = length - 1 ; i >= 0 ; i--) {
+				if(current == root || i < length - 1)
+					sb.append(File.separator);
+				sb.append(OffHeapStorageTree.this.getName(path[i]));
+			}
+
+			return sb;
+		}
+
+		@Override
+		public Long getSize() {
+			return getLong(sizes, record);
+		}
+
+		@Override
+		public void setSize(Long size) {
+			putLong(sizes, record, (size != null) ? size : 0L);
+		}
+
+		@Override
+		public FileMetadata getParent() {
+			int parent = getInt(parents, record);
+			return (parent == NONE) ? null : new Node(parent);
+		}
+
+		@Override
+		public void setParent(FileMetadata parent) {
+			unlink(record);
+			if(parent != null)
+				link(record, recordOf(parent));
+		}
+
+		@Override
+		public boolean isFile() {
+			return getFlag(FILE);
+		}
+
+		@Override
+		public void setFile(boolean isFile) {
+			setFlag(FILE, isFile);
+		}
+
+		@Override
+		public boolean isDirectory() {
+			return getFlag(DIRECTORY);
+		}
+
+		@Override
+		public void setDirectory(boolean isDirectory) {
+			setFlag(DIRECTORY, isDirectory);
+		}
+
+		@Override
+		public boolean isStorage() {
+			return getFlag(STORAGE);
+		}
+
+		@Override
+		public void setStorage(boolean isStorage) {
+			setFlag(STORAGE, isStorage);
+		}
+
+		@Override
+		public boolean isDataRoot() {
+			return getFlag(DATA_ROOT);
+		}
+
+		@Override
+		public void setDataRoot(boolean isDataRoot) {
+			setFlag(DATA_ROOT, isDataRoot);
+		}
+
+		@Override
+		public Integer getNumOfFilesLimit() {
+			int filesLimit = getInt(filesLimits, record);
+			return (filesLimit != NONE) ? filesLimit : null;
+		}
+
+		@Override
+		public void setNumOfFilesLimit(Integer numOfFilesLimit) {
+			putInt(filesLimits, record, (numOfFilesLimit != null && numOfFilesLimit >= 0) ? numOfFilesLimit : NONE);
+		}
+
+		@Override
+		public Long getStorageSize() {
+			return (record == root) ? storageDirectory.getStorageSize() : null;
+		}
+
+		@Override
+		public void setStorageSize(Long storageSize) {
+			if(record == root)
+				storageDirectory.setStorageSize(storageSize);
+		}
+
+		@Override
+		public Set<String> getUnsupportedFiles() {
+			return (record == root) ? storageDirectory.getUnsupportedFiles() : super.getUnsupportedFiles();
+		}
+
+		@Override
+		public void setUnsupportedFiles(Set<String> unsupportedFiles) {
+			if(record == root)
+				storageDirectory.setUnsupportedFiles(unsupportedFiles);
+		}
+
+		/**
+		 * @return copy of the record on the heap
+		 */
+		@Override
+		public FileMetadata clone() {
+			FileMetadata file = new FileMetadata();
+
+			file.setFileID(getFileID());
+			file.setName(getName());
+			file.setSize(getSize());
+			file.setParent(getParent());
+			file.setTimeCreatedMillis(getTimeCreatedMillis());
+			file.setTimeModifiedMillis(getTimeModifiedMillis());
+			file.setFile(isFile());
+			file.setDirectory(isDirectory());
+			file.setStorage(isStorage());
+			file.setDataRoot(isDataRoot());
+			file.setNumOfFilesLimit(getNumOfFilesLimit());
+
+			if(record == root) {
+				file.setAbsolutePath(storageDirectory.getAbsolutePath());
+				file.setRelativePath(storageDirectory.getRelativePath());
+				if(storageDirectory.getStorageSize() != null)
+					file.setStorageSize(storageDirectory.getStorageSize());
+				if(!storageDirectory.getUnsupportedFiles().isEmpty())
+					file.setUnsupportedFiles(storageDirectory.getUnsupportedFiles());
+			}
+
+			return file;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Node && ((Node) obj).tree() == tree() && ((Node) obj).record == record 
+					&& ((Node) obj).generation == generation;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * record + generation;
+		}
+	}
+
+	/**
+	 * Map of directory ID -> content of the directory over the records, content is read when it is asked for
+	 */
+	private final class StorageTreeStructure extends AbstractMap<String, List<FileMetadata>> {
+
+		private boolean isDirectory(int record) {
+			int recordFlags = getInt(flags, record);
+			return recordFlags != FREE && (recordFlags & DIRECTORY) != 0 && (record == root || getInt(parents, record) != NONE);
+		}
+
+		@Override
+		public List<FileMetadata> get(Object key) {
+			if(!(key instanceof String))
+				return null;
+
+			int record = findID((String) key);
+			return (record != NONE && isDirectory(record)) ? content(record) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof String && findID((String) key) != NONE && isDirectory(findID((String) key));
+		}
+
+		@Override
+		public Set<Entry<String, List<FileMetadata>>> entrySet() {
+			return new AbstractSet<Entry<String, List<FileMetadata>>>() {
+
+				@Override
+				public Iterator<Entry<String, List<FileMetadata>>> iterator() {
+					return new Iterator<Entry<String, List<FileMetadata>>>() {
+
+						private int next = advance(0);
+
+						private int advance(int record) {
+							while(record < records && !isDirectory(record))
+								record++;
+							return record;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return next < records;
+						}
+
+						@Override
+						public Entry<String, List<FileMetadata>> next() {
+							if(!hasNext())
+								throw new NoSuchElementException();
+
+							int record = next;
+							next = advance(next + 1);
+							return new SimpleImmutableEntry<>(getID(record), content(record));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					int directories = 0;
+					for(int record = 0 ; record < records ; record++) {
+						if(isDirectory(record))
+							directories++;
+					}
+					return directories;
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package storageInformation;
+
+/**
+ * Bloom filter of the FileMetadata in the storage. Every FileMetadata is hashed by the ID of its parent and its name, 
+ * so the path is checked name by name while it is looked up, and moving or renaming the directory adds only one entry, 
+ * whatever is under it. All bits of one entry are in the same block of 512 bits, so the check reads only one cache line. 
+ * If the filter does not contain the name in the directory, there is no such FileMetadata. 
+ * Entries can not be removed, removed ones stay in the filter until it is built again
+ *
+ * @author Luka Pavlovic
+ *
+ */
+class PathFilter {
+
+	private static final long SEED = 0x9E3779B97F4A7C15L;
+	private static final int HASH_FUNCTIONS = 7;
+	// oko 1% laznih pozitivnih dok broj dodatih ne predje capacity
+	private static final int BITS_PER_ENTRY = 10;
+	private static final int WORDS_PER_BLOCK = 8;
+
+	private final long[] bits;
+	private final int blockMask;
+	private final int capacity;
+	private int added = 0;
+
+	/**
+	 * @param capacity is the number of entries after which the filter should be built again
+	 */
+	PathFilter(int capacity) {
+		this.capacity = Math.max(capacity, 1024);
+
+		int blocks = Integer.highestOneBit(this.capacity * BITS_PER_ENTRY / (WORDS_PER_BLOCK * 64)) << 1;
+		this.bits = new long[blocks * WORDS_PER_BLOCK];
+		this.blockMask = blocks - 1;
+	}
+
+	/**
+	 * @param parentID is the ID of the directory
+	 * @param name is the name of the FileMetadata in the directory
+	 * @return hash of the FileMetadata which is added to the filter
+	 */
+	static long hash(String parentID, String name) {
+		return mix(mix(SEED, parentID.hashCode()), name.hashCode());
+	}
+
+	private static long mix(long hash, int value) {
+		// fmix64 iz MurmurHash3
+		long h = hash * SEED + value;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	void add(long hash) {
+		int block = ((int) (hash >>> 40) & blockMask) * WORDS_PER_BLOCK;
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 20) | 1;
+
+		for(int i = 0 ; i < HASH_FUNCTIONS ; i++) {
+			int bit = (h1 + i * h2) & 511;
+			bits[block + (bit >>> 6)] |= 1L << bit;
+		}
+		added++;
+	}
+
+	boolean mightContain(long hash) {
+		int block = ((int) (hash >>> 40) & blockMask) * WORDS_PER_BLOCK;
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 20) | 1;
+
+		for(int i = 0 ; i < HASH_FUNCTIONS ; i++) {
+			int bit = (h1 + i * h2) & 511;
+			if((bits[block + (bit >>> 6)] & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if more entries are added than the filter was built for
+	 */
+	boolean isFull() {
+		return added > capacity;
+	}
+
+}
@@ -0,0 +1,307 @@
+package storageInformation;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Map which is never changed: put and remove return a new map, which shares with the old one everything except the nodes
+ * on the path to the changed key (hash array mapped trie). Every node holds up to 32 keys or subnodes, chosen by 5 bits of the hash
+ * of the key. Sorted map is meant for the keys which are not negative Integers, it takes the bits of the key starting
+ * from the highest ones, so it goes through the keys in their ascending order
+ *
+ * @author Luka Pavlovic
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+final class PersistentMap<K, V> {
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+	// najvisi nivo uzima dva najvisa bita, pa je ovo pomeraj poslednjeg nivoa na kome se hash jos deli
+	private static final int LAST_SHIFT = 30;
+
+	private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0, false);
+	private static final PersistentMap<?, ?> EMPTY_SORTED = new PersistentMap<>(BitmapNode.EMPTY, 0, true);
+
+	private final Node root;
+	private final int size;
+	private final boolean sorted;
+
+	private PersistentMap(Node root, int size, boolean sorted) {
+		this.root = root;
+		this.size = size;
+		this.sorted = sorted;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <K, V> PersistentMap<K, V> empty() {
+		return (PersistentMap<K, V>) EMPTY;
+	}
+
+	/**
+	 * @return empty map of the Integer keys which are not negative, which goes through them in the ascending order
+	 */
+	@SuppressWarnings("unchecked")
+	static <V> PersistentMap<Integer, V> sorted() {
+		return (PersistentMap<Integer, V>) EMPTY_SORTED;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	V get(K key) {
+		return (V) root.get(key, hash(key), 0, this);
+	}
+
+	boolean containsKey(K key) {
+		return root.get(key, hash(key), 0, this) != null;
+	}
+
+	/**
+	 * @param key is the key
+	 * @param value is the value, must not be null
+	 * @return map with the value under the key, this map if the same value is already under the key
+	 */
+	PersistentMap<K, V> put(K key, V value) {
+		boolean[] added = new boolean[1];
+		Node changed = root.put(key, hash(key), value, 0, this, added);
+		if(changed == root)
+			return this;
+
+		return new PersistentMap<>(changed, added[0] ? size + 1 : size, sorted);
+	}
+
+	/**
+	 * @param key is the key
+	 * @return map without the key, this map if the key is not in it
+	 */
+	PersistentMap<K, V> remove(K key) {
+		Node changed = root.remove(key, hash(key), 0, this);
+		if(changed == root)
+			return this;
+
+		return new PersistentMap<>((changed == null) ? BitmapNode.EMPTY : changed, size - 1, sorted);
+	}
+
+	/**
+	 * Goes through the keys and values, in the ascending order of the keys if the map is sorted
+	 * @param action is called for every key and value
+	 */
+	@SuppressWarnings("unchecked")
+	void forEach(BiConsumer<? super K, ? super V> action) {
+		root.forEach((BiConsumer<Object, Object>) action);
+	}
+
+	private int hash(Object key) {
+		if(sorted)
+			return (Integer) key;
+
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private int index(int hash, int shift) {
+		return sorted ? (hash >>> (LAST_SHIFT - shift)) & MASK : (hash >>> shift) & MASK;
+	}
+
+	private abstract static class Node {
+
+		abstract Object get(Object key, int hash, int shift, PersistentMap<?, ?> map);
+
+		abstract Node put(Object key, int hash, Object value, int shift, PersistentMap<?, ?> map, boolean[] added);
+
+		// vraca null kada u cvoru ne ostane nista
+		abstract Node remove(Object key, int hash, int shift, PersistentMap<?, ?> map);
+
+		abstract void forEach(BiConsumer<Object, Object> action);
+	}
+
+	// u nizu su parovi (kljuc, vrednost), a kljuc null znaci da je na mestu vrednosti podcvor
+	private static final class BitmapNode extends Node {
+
+		private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+		private final int bitmap;
+		private final Object[] array;
+
+		private BitmapNode(int bitmap, Object[] array) {
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+
+		@Override
+		Object get(Object key, int hash, int shift, PersistentMap<?, ?> map) {
+			int bit = 1 << map.index(hash, shift);
+			if((bitmap & bit) == 0)
+				return null;
+
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+			if(array[i] == null)
+				return ((Node) array[i + 1]).get(key, hash, shift + BITS, map);
+
+			return key.equals(array[i]) ? array[i + 1] : null;
+		}
+
+		@Override
+		Node put(Object key, int hash, Object value, int shift, PersistentMap<?, ?> map, boolean[] added) {
+			int bit = 1 << map.index(hash, shift);
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+
+			if((bitmap & bit) == 0) {
+				Object[] changed = new Object[array.length + 2];
+				System.arraycopy(array, 0, changed, 0, i);
+				changed[i] = key;
+				changed[i + 1] = value;
+				System.arraycopy(array, i, changed, i + 2, array.length - i);
+				added[0] = true;
+				return new BitmapNode(bitmap | bit, changed);
+			}
+
+			Object existingKey = array[i];
+			Object existing = array[i + 1];
+
+			if(existingKey == null) {
+				Node child = ((Node) existing).put(key, hash, value, shift + BITS, map, added);
+				return (child == existing) ? this : with(i + 1, null, child);
+			}
+
+			if(key.equals(existingKey))
+				return (value == existing) ? this : with(i + 1, key, value);
+
+			added[0] = true;
+			Node child = createNode(existingKey, map.hash(existingKey), existing, key, hash, value, shift + BITS, map);
+			return with(i + 1, null, child);
+		}
+
+		@Override
+		Node remove(Object key, int hash, int shift, PersistentMap<?, ?> map) {
+			int bit = 1 << map.index(hash, shift);
+			if((bitmap & bit) == 0)
+				return this;
+
+			int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+			Object existingKey = array[i];
+
+			if(existingKey == null) {
+				Node child = ((Node) array[i + 1]).remove(key, hash, shift + BITS, map);
+				if(child == array[i + 1])
+					return this;
+				if(child != null)
+					return with(i + 1, null, child);
+			}
+			else if(!key.equals(existingKey)) {
+				return this;
+			}
+
+			if(bitmap == bit)
+				return null;
+
+			Object[] changed = new Object[array.length - 2];
+			System.arraycopy(array, 0, changed, 0, i);
+			System.arraycopy(array, i + 2, changed, i, array.length - i - 2);
+			return new BitmapNode(bitmap & ~bit, changed);
+		}
+
+		@Override
+		void forEach(BiConsumer<Object, Object> action) {
+			for(int i = 0 ; i < array.length ; i += 2) {
+				if(array[i] == null)
+					((Node) array[i + 1]).forEach(action);
+				else
+					action.accept(array[i], array[i + 1]);
+			}
+		}
+
+		private BitmapNode with(int i, Object key, Object value) {
+			Object[] changed = array.clone();
+			changed[i - 1] = key;
+			changed[i] = value;
+			return new BitmapNode(bitmap, changed);
+		}
+	}
+
+	// kljucevi sa istim hash-om, kojih u mapi imena ima samo kada se hash-evi imena potpuno poklope
+	private static final class CollisionNode extends Node {
+
+		private final int hash;
+		private final Object[] array;
+
+		private CollisionNode(int hash, Object[] array) {
+			this.hash = hash;
+			this.array = array;
+		}
+
+		@Override
+		Object get(Object key, int hash, int shift, PersistentMap<?, ?> map) {
+			for(int i = 0 ; i < array.length ; i += 2) {
+				if(key.equals(array[i]))
+					return array[i + 1];
+			}
+			return null;
+		}
+
+		@Override
+		Node put(Object key, int hash, Object value, int shift, PersistentMap<?, ?> map, boolean[] added) {
+			// kljuc sa drugim hash-om razdvaja cvor, pa ovaj cvor ide nivo nize
+			if(hash != this.hash) {
+				int bit = 1 << map.index(this.hash, shift);
+				return new BitmapNode(bit, new Object[] { null, this }).put(key, hash, value, shift, map, added);
+			}
+
+			for(int i = 0 ; i < array.length ; i += 2) {
+				if(key.equals(array[i])) {
+					if(array[i + 1] == value)
+						return this;
+
+					Object[] changed = array.clone();
+					changed[i + 1] = value;
+					return new CollisionNode(this.hash, changed);
+				}
+			}
+
+			added[0] = true;
+			Object[] changed = new Object[array.length + 2];
+			System.arraycopy(array, 0, changed, 0, array.length);
+			changed[array.length] = key;
+			changed[array.length + 1] = value;
+			return new CollisionNode(this.hash, changed);
+		}
+
+		@Override
+		Node remove(Object key, int hash, int shift, PersistentMap<?, ?> map) {
+			for(int i = 0 ; i < array.length ; i += 2) {
+				if(key.equals(array[i])) {
+					if(array.length == 2)
+						return null;
+
+					Object[] changed = new Object[array.length - 2];
+					System.arraycopy(array, 0, changed, 0, i);
+					System.arraycopy(array, i + 2, changed, i, array.length - i - 2);
+					return new CollisionNode(this.hash, changed);
+				}
+			}
+			return this;
+		}
+
+		@Override
+		void forEach(BiConsumer<Object, Object> action) {
+			for(int i = 0 ; i < array.length ; i += 2)
+				action.accept(array[i], array[i + 1]);
+		}
+	}
+
+	private static Node createNode(Object key1, int hash1, Object value1, Object key2, int hash2, Object value2, int shift, PersistentMap<?, ?> map) {
+		if(hash1 == hash2 || shift > LAST_SHIFT)
+			return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+
+		boolean[] added = new boolean[1];
+		return BitmapNode.EMPTY.put(key1, hash1, value1, shift, map, added).put(key2, hash2, value2, shift, map, added);
+	}
+
+}
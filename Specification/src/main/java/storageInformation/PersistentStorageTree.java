@@ -0,0 +1,952 @@
+package storageInformation;
+
+import java.io.File;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Storage tree which is never changed in place. Every change makes a new version of the storage tree, which shares with the old
+ * version everything except the path to the changed directory (see PersistentMap), and the new version replaces the old one
+ * with compare-and-set of the single reference. Readers take the current version without any lock, and the version given
+ * by snapshot() stays the same while the storage tree is changed. Changes which the thread makes between startChanges() and publishChanges() 
+ * are seen only by that thread until they are published all at once, so no version has the FileMetadata in two directories or in none.
+ * The tree keeps its own copy of every added FileMetadata, which the writers change in place, and every version holds the copy 
+ * of the attributes (parent, name, size...) which is never changed. Change of the attribute puts the new copy into the next version, 
+ * so the storage tree given by snapshot() returns FileMetadata which can only be read and which give the attributes of that version,
+ * also when the FileMetadata is moved, renamed or changed afterwards
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class PersistentStorageTree implements StorageTree {
+
+	// null for the snapshot
+	private final AtomicReference<Version> version;
+	// version of the snapshot which is only read, null for the storage tree which is changed
+	private final Version snapshot;
+	// storage tree whose version is the snapshot, this for the storage tree which is changed
+	private final PersistentStorageTree origin;
+	// changes of the thread which are not published yet
+	private final ThreadLocal<Changes> changes;
+	// null if the tree is empty
+	private volatile Live storageDirectory;
+
+	public PersistentStorageTree() {
+		this.version = new AtomicReference<>(new Version(PersistentMap.<String, Directory>empty(), 
+				PersistentMap.<String, PersistentMap<String, FileMetadata>>empty(), PersistentMap.<String, Value>empty(), 0));
+		this.snapshot = null;
+		this.origin = this;
+		this.changes = new ThreadLocal<>();
+	}
+
+	private PersistentStorageTree(Version snapshot, PersistentStorageTree origin) {
+		this.version = null;
+		this.snapshot = snapshot;
+		this.origin = origin;
+		this.changes = null;
+	}
+
+	/**
+	 * @return copy of the storage directory which the tree keeps, null if the tree is empty
+	 */
+	public FileMetadata getStorageDirectory() {
+		return view(storageDirectory);
+	}
+
+	@Override
+	public List<FileMetadata> getDirectoryContent(FileMetadata directory) {
+		Directory found = current().directories.get(directory.getFileID());
+		return (found == null) ? null : view(found.getContent());
+	}
+
+	@Override
+	public int size() {
+		return current().size;
+	}
+
+	@Override
+	public int getDirectorySize(FileMetadata directory) {
+		Directory found = current().directories.get(directory.getFileID());
+		return (found == null) ? 0 : found.content.size();
+	}
+
+	@Override
+	public List<FileMetadata> getSubdirectories(FileMetadata directory) {
+		Directory found = current().directories.get(directory.getFileID());
+		return (found == null) ? null : view(found.getSubdirectories());
+	}
+
+	@Override
+	public FileMetadata getFileMetadata(FileMetadata directory, String name) {
+		Directory found = current().directories.get(directory.getFileID());
+		return (found == null) ? null : view(found.get(name));
+	}
+
+	@Override
+	public List<FileMetadata> getFileMetadataByName(String name) {
+		List<FileMetadata> result = new ArrayList<>();
+		PersistentMap<String, FileMetadata> found = current().names.get(name);
+		if(found != null)
+			found.forEach((id, f) -> result.add(view(f)));
+
+		return result;
+	}
+
+	/**
+	 * Registers an empty directory. The first directory which is registered is the storage directory, the tree keeps its copy
+	 * (see getStorageDirectory). Directory which is not in the tree yet gets its copy when it is added to its parent
+	 */
+	@Override
+	public void addDirectory(FileMetadata directory) {
+		String id = directory.getFileID();
+
+		if(storageDirectory == null) {
+			Live root = new Live(directory);
+			Value value = new Value(root, root.getName(), null);
+			update(current -> new Version(current.directories.put(id, Directory.EMPTY), current.names, current.values.put(id, value), current.size));
+			root.attached = true;
+			storageDirectory = root;
+			return;
+		}
+
+		update(current -> {
+			PersistentMap<String, PersistentMap<String, FileMetadata>> names = current.names;
+			PersistentMap<String, Value> values = current.values;
+			int size = current.size;
+
+			Directory existing = current.directories.get(id);
+			if(existing != null) {
+				for(FileMetadata f : existing.getContent()) {
+					names = unindex(names, f, f.getName());
+					values = values.remove(f.getFileID());
+				}
+				size -= existing.content.size();
+			}
+
+			return new Version(current.directories.put(id, Directory.EMPTY), names, values, size);
+		});
+	}
+
+	@Override
+	public void removeDirectory(FileMetadata directory) {
+		update(current -> removeDirectory(current, directory.getFileID()));
+	}
+
+	/**
+	 * Adds the copy of the FileMetadata to the directory, the given FileMetadata gets the directory as its parent
+	 */
+	@Override
+	public void addToDirectory(FileMetadata directory, FileMetadata fileMetadata) {
+		String id = directory.getFileID();
+		String name = fileMetadata.getName();
+		FileMetadata parent = live(directory);
+		Live added = (fileMetadata instanceof Live && ((Live) fileMetadata).tree() == this) ? (Live) fileMetadata : new Live(fileMetadata);
+		Value value = new Value(added, name, id);
+
+		update(current -> new Version(current.directories.put(id, current.directories.get(id).add(added, name)),
+				index(current.names, added, name), current.values.put(value.id(), value), current.size + 1));
+		added.setParent(parent);
+		added.attached = true;
+		if(added != fileMetadata)
+			fileMetadata.setParent(parent);
+	}
+
+	@Override
+	public void removeFromDirectory(FileMetadata fileMetadata) {
+		FileMetadata removed = live(fileMetadata);
+		String id = removed.getParent().getFileID();
+		String name = removed.getName();
+
+		update(current -> {
+			Directory directory = current.directories.get(id);
+			Directory changed = directory.remove(removed, name);
+			if(changed == directory)
+				return current;
+
+			return new Version(current.directories.put(id, changed), unindex(current.names, removed, name), 
+					current.values.remove(removed.getFileID()), current.size - 1);
+		});
+	}
+
+	@Override
+	public void moveToDirectory(FileMetadata fileMetadata, FileMetadata directory, String name) {
+		FileMetadata moved = live(fileMetadata);
+		FileMetadata destination = live(directory);
+		String id = moved.getFileID();
+		String sourceID = moved.getParent().getFileID();
+		String destinationID = destination.getFileID();
+		String oldName = moved.getName();
+
+		// premestanje je jedna izmena, pa nijedna verzija nema FileMetadata u oba direktorijuma ili ni u jednom
+		update(current -> {
+			PersistentMap<String, Directory> directories = current.directories;
+			directories = directories.put(sourceID, directories.get(sourceID).remove(moved, oldName));
+			directories = directories.put(destinationID, directories.get(destinationID).add(moved, name));
+
+			return new Version(directories, index(unindex(current.names, moved, oldName), moved, name), 
+					moved(current.values, id, name, destinationID), current.size);
+		});
+		moved.setName(name);
+		moved.setParent(destination);
+	}
+
+	@Override
+	public void renameInDirectory(FileMetadata fileMetadata, String name) {
+		FileMetadata renamed = live(fileMetadata);
+		String id = renamed.getParent().getFileID();
+		String oldName = renamed.getName();
+
+		update(current -> new Version(current.directories.put(id, current.directories.get(id).rename(renamed, oldName, name)),
+				index(unindex(current.names, renamed, oldName), renamed, name), moved(current.values, renamed.getFileID(), name, id), current.size));
+		renamed.setName(name);
+	}
+
+	/**
+	 * Returns the view of the current version, where every directory is given in the order in which its content was added
+	 */
+	@Override
+	public Map<String, List<FileMetadata>> getStorageTreeStructure() {
+		return new AbstractMap<String, List<FileMetadata>>() {
+
+			@Override
+			public List<FileMetadata> get(Object key) {
+				Directory found = (key instanceof String) ? current().directories.get((String) key) : null;
+				return (found == null) ? null : found.getContent();
+			}
+
+			@Override
+			public Set<Entry<String, List<FileMetadata>>> entrySet() {
+				return new AbstractSet<Entry<String, List<FileMetadata>>>() {
+
+					@Override
+					public Iterator<Entry<String, List<FileMetadata>>> iterator() {
+						List<Entry<String, List<FileMetadata>>> entries = new ArrayList<>();
+						current().directories.forEach((id, directory) -> entries.add(new SimpleImmutableEntry<>(id, directory.getContent())));
+						return entries.iterator();
+					}
+
+					@Override
+					public int size() {
+						return current().directories.size();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Returns the current version of the storage tree, which is read without locks and is not changed by the later changes
+	 * of the storage tree. Changing the returned storage tree throws UnsupportedOperationException
+	 */
+	@Override
+	public StorageTree snapshot() {
+		return (snapshot != null) ? this : new PersistentStorageTree(current(), this);
+	}
+
+	/**
+	 * Starts collecting the changes of the calling thread. Until they are published, the changes are seen only by the calling thread
+	 * @return true if the collecting is started, false if the thread already collects the changes
+	 */
+	boolean startChanges() {
+		if(snapshot != null || changes.get() != null)
+			return false;
+
+		changes.set(new Changes(version.get()));
+		return true;
+	}
+
+	/**
+	 * Publishes all changes collected by the calling thread as one new version. If other threads have published their versions 
+	 * in the meantime, the changes are made again on the top of the latest version
+	 */
+	void publishChanges() {
+		Changes collected = (snapshot != null) ? null : changes.get();
+		if(collected == null)
+			return;
+
+		changes.remove();
+		if(collected.list.isEmpty())
+			return;
+
+		for(;;) {
+			Version current = version.get();
+			Version changed = collected.version;
+			if(current != collected.base) {
+				changed = current;
+				for(UnaryOperator<Version> change : collected.list)
+					changed = change.apply(changed);
+			}
+
+			if(version.compareAndSet(current, changed))
+				return;
+		}
+	}
+
+	private Version current() {
+		if(snapshot != null)
+			return snapshot;
+
+		Changes collected = changes.get();
+		return (collected != null) ? collected.version : version.get();
+	}
+
+	// izmena se ponavlja ako je druga izmena u medjuvremenu zamenila verziju, pa mora da bude bez sporednih efekata
+	private void update(UnaryOperator<Version> change) {
+		if(snapshot != null)
+			throw new UnsupportedOperationException("Version of the storage tree can not be changed!");
+
+		Changes collected = changes.get();
+		if(collected != null) {
+			collected.version = change.apply(collected.version);
+			collected.list.add(change);
+			return;
+		}
+
+		for(;;) {
+			Version current = version.get();
+			Version changed = change.apply(current);
+			if(changed == current || version.compareAndSet(current, changed))
+				return;
+		}
+	}
+
+	// FileMetadata iz stabla koje se menja, sa istim ID-jem kao data
+	private FileMetadata live(FileMetadata fileMetadata) {
+		if(fileMetadata instanceof Live && ((Live) fileMetadata).tree() == this)
+			return fileMetadata;
+
+		Value value = current().values.get(fileMetadata.getFileID());
+		return (value == null) ? fileMetadata : value.live;
+	}
+
+	// verzija koja se samo cita vraca atribute iz te verzije
+	private FileMetadata view(FileMetadata fileMetadata) {
+		if(snapshot == null || fileMetadata == null)
+			return fileMetadata;
+
+		Value value = snapshot.values.get(fileMetadata.getFileID());
+		return (value == null) ? fileMetadata : new Frozen(value);
+	}
+
+	private List<FileMetadata> view(List<FileMetadata> list) {
+		if(snapshot == null)
+			return list;
+
+		List<FileMetadata> views = new ArrayList<>(list.size());
+		for(FileMetadata f : list)
+			views.add(view(f));
+		return views;
+	}
+
+	private static PersistentMap<String, Value> moved(PersistentMap<String, Value> values, String id, String name, String parentID) {
+		Value value = values.get(id);
+		return (value == null) ? values : values.put(id, new Value(value.live, value.attributes, name, parentID));
+	}
+
+	private static Version removeDirectory(Version current, String id) {
+		Directory directory = current.directories.get(id);
+		if(directory == null)
+			return current;
+
+		PersistentMap<String, PersistentMap<String, FileMetadata>> names = current.names;
+		PersistentMap<String, Value> values = current.values;
+		for(FileMetadata f : directory.getContent()) {
+			names = unindex(names, f, f.getName());
+			values = values.remove(f.getFileID());
+		}
+
+		Version changed = new Version(current.directories.remove(id), names, values, current.size - directory.content.size());
+		for(FileMetadata f : directory.getSubdirectories())
+			changed = removeDirectory(changed, f.getFileID());
+
+		return changed;
+	}
+
+	private static PersistentMap<String, PersistentMap<String, FileMetadata>> index(PersistentMap<String, PersistentMap<String, FileMetadata>> names,
+			FileMetadata fileMetadata, String name) {
+
+		PersistentMap<String, FileMetadata> found = names.get(name);
+		if(found == null)
+			found = PersistentMap.empty();
+
+		return names.put(name, found.put(fileMetadata.getFileID(), fileMetadata));
+	}
+
+	private static PersistentMap<String, PersistentMap<String, FileMetadata>> unindex(PersistentMap<String, PersistentMap<String, FileMetadata>> names,
+			FileMetadata fileMetadata, String name) {
+
+		PersistentMap<String, FileMetadata> found = names.get(name);
+		if(found == null)
+			return names;
+
+		found = found.remove(fileMetadata.getFileID());
+		return found.isEmpty() ? names.remove(name) : names.put(name, found);
+	}
+
+	// ============================ views ============================
+
+	/**
+	 * Copy of the FileMetadata which the tree keeps. Writers change it in place, and every change of the attribute
+	 * puts the new copy of the attributes into the version
+	 */
+	private final class Live extends FileMetadata {
+
+		// attributes are put into the version only after the FileMetadata is added to the tree
+		private boolean attached;
+
+		private Live(FileMetadata fileMetadata) {
+			setFileID(fileMetadata.getFileID());
+			setName(fileMetadata.getName());
+			super.setSize(fileMetadata.getSize());
+			super.setTimeCreatedMillis(fileMetadata.getTimeCreatedMillis());
+			super.setTimeModifiedMillis(fileMetadata.getTimeModifiedMillis());
+			super.setFile(fileMetadata.isFile());
+			super.setDirectory(fileMetadata.isDirectory());
+			super.setStorage(fileMetadata.isStorage());
+			super.setDataRoot(fileMetadata.isDataRoot());
+			super.setNumOfFilesLimit(fileMetadata.getNumOfFilesLimit());
+
+			if(fileMetadata.isStorage()) {
+				super.setAbsolutePath(fileMetadata.getAbsolutePath());
+				super.setRelativePath(fileMetadata.getRelativePath());
+				if(fileMetadata.getStorageSize() != null)
+					super.setStorageSize(fileMetadata.getStorageSize());
+				if(!fileMetadata.getUnsupportedFiles().isEmpty())
+					super.setUnsupportedFiles(fileMetadata.getUnsupportedFiles());
+			}
+		}
+
+		private PersistentStorageTree tree() {
+			return PersistentStorageTree.this;
+		}
+
+		// ime i roditelj se menjaju zajedno sa strukturom, ostali atributi ovde
+		private void changed() {
+			if(!attached)
+				return;
+
+			String id = getFileID();
+			FileMetadata attributes = StorageInformation.copyFileMetadata(this);
+			update(current -> {
+				Value value = current.values.get(id);
+				if(value == null)
+					return current;
+
+				return new Version(current.directories, current.names, 
+						current.values.put(id, new Value(this, attributes, value.name, value.parentID)), current.size);
+			});
+		}
+
+		@Override
+		public void setTimeCreated(Date timeCreated) {
+			super.setTimeCreated(timeCreated);
+			changed();
+		}
+
+		@Override
+		public void setTimeModified(Date timeModified) {
+			super.setTimeModified(timeModified);
+			changed();
+		}
+
+		@Override
+		public void setTimeCreatedMillis(long timeCreated) {
+			super.setTimeCreatedMillis(timeCreated);
+			changed();
+		}
+
+		@Override
+		public void setTimeModifiedMillis(long timeModified) {
+			super.setTimeModifiedMillis(timeModified);
+			changed();
+		}
+
+		@Override
+		public void setAbsolutePath(String absolutePath) {
+			super.setAbsolutePath(absolutePath);
+			changed();
+		}
+
+		@Override
+		public void setRelativePath(String relativePath) {
+			super.setRelativePath(relativePath);
+			changed();
+		}
+
+		@Override
+		public void setSize(Long size) {
+			super.setSize(size);
+			changed();
+		}
+
+		@Override
+		public void setFile(boolean isFile) {
+			super.setFile(isFile);
+			changed();
+		}
+
+		@Override
+		public void setDirectory(boolean isDirectory) {
+			super.setDirectory(isDirectory);
+			changed();
+		}
+
+		@Override
+		public void setStorage(boolean isStorage) {
+			super.setStorage(isStorage);
+			changed();
+		}
+
+		@Override
+		public void setDataRoot(boolean isDataRoot) {
+			super.setDataRoot(isDataRoot);
+			changed();
+		}
+
+		@Override
+		public void setNumOfFilesLimit(Integer numOfFilesLimit) {
+			super.setNumOfFilesLimit(numOfFilesLimit);
+			changed();
+		}
+
+		@Override
+		public void setStorageSize(Long storageSize) {
+			super.setStorageSize(storageSize);
+			changed();
+		}
+
+		@Override
+		public void setUnsupportedFiles(Set<String> unsupportedFiles) {
+			super.setUnsupportedFiles(unsupportedFiles);
+			changed();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(obj instanceof Frozen)
+				return obj.equals(this);
+
+			return obj instanceof Live && ((Live) obj).tree() == tree() && Objects.equals(((Live) obj).getFileID(), getFileID());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(getFileID());
+		}
+	}
+
+	/**
+	 * FileMetadata of the version given by snapshot(), which gives the attributes of that version and can only be read. 
+	 * It is equal to the FileMetadata with the same ID in the storage tree which is changed
+	 */
+	private final class Frozen extends FileMetadata {
+
+		private final Value value;
+
+		private Frozen(Value value) {
+			this.value = value;
+		}
+
+		private PersistentStorageTree origin() {
+			return origin;
+		}
+
+		private UnsupportedOperationException readOnly() {
+			return new UnsupportedOperationException("Version of the storage tree can not be changed!");
+		}
+
+		@Override
+		public String getFileID() {
+			return value.id();
+		}
+
+		@Override
+		public void setFileID(String fileID) {
+			throw readOnly();
+		}
+
+		@Override
+		public String getName() {
+			return value.name;
+		}
+
+		@Override
+		public void setName(String name) {
+			throw readOnly();
+		}
+
+		@Override
+		public Date getTimeCreated() {
+			return value.attributes.getTimeCreated();
+		}
+
+		@Override
+		public void setTimeCreated(Date timeCreated) {
+			throw readOnly();
+		}
+
+		@Override
+		public Date getTimeModified() {
+			return value.attributes.getTimeModified();
+		}
+
+		@Override
+		public void setTimeModified(Date timeModified) {
+			throw readOnly();
+		}
+
+		@Override
+		public long getTimeCreatedMillis() {
+			return value.attributes.getTimeCreatedMillis();
+		}
+
+		@Override
+		public long getTimeModifiedMillis() {
+			return value.attributes.getTimeModifiedMillis();
+		}
+
+		@Override
+		public void setTimeCreatedMillis(long timeCreated) {
+			throw readOnly();
+		}
+
+		@Override
+		public void setTimeModifiedMillis(long timeModified) {
+			throw readOnly();
+		}
+
+		@Override
+		public String getAbsolutePath() {
+			return appendPath(new StringBuilder(), true).toString();
+		}
+
+		@Override
+		public void setAbsolutePath(String absolutePath) {
+			throw readOnly();
+		}
+
+		@Override
+		public String getRelativePath() {
+			return appendPath(new StringBuilder(), false).toString();
+		}
+
+		@Override
+		public void setRelativePath(String relativePath) {
+			throw readOnly();
+		}
+
+		@Override
+		protected StringBuilder appendPath(StringBuilder sb, boolean absolute) {
+			Value parent = (value.parentID == null) ? null : snapshot.values.get(value.parentID);
+			if(parent == null)
+				return sb.append(absolute ? value.attributes.getAbsolutePath() : value.attributes.getRelativePath());
+
+			return new Frozen(parent).appendPath(sb, absolute).append(File.separator).append(value.name);
+		}
+
+		@Override
+		public Long getSize() {
+			return value.attributes.getSize();
+		}
+
+		@Override
+		public void setSize(Long size) {
+			throw readOnly();
+		}
+
+		@Override
+		public FileMetadata getParent() {
+			Value parent = (value.parentID == null) ? null : snapshot.values.get(value.parentID);
+			return (parent == null) ? null : new Frozen(parent);
+		}
+
+		@Override
+		public void setParent(FileMetadata parent) {
+			throw readOnly();
+		}
+
+		@Override
+		public boolean isFile() {
+			return value.attributes.isFile();
+		}
+
+		@Override
+		public void setFile(boolean isFile) {
+			throw readOnly();
+		}
+
+		@Override
+		public boolean isDirectory() {
+			return value.attributes.isDirectory();
+		}
+
+		@Override
+		public void setDirectory(boolean isDirectory) {
+			throw readOnly();
+		}
+
+		@Override
+		public boolean isStorage() {
+			return value.attributes.isStorage();
+		}
+
+		@Override
+		public void setStorage(boolean isStorage) {
+			throw readOnly();
+		}
+
+		@Override
+		public boolean isDataRoot() {
+			return value.attributes.isDataRoot();
+		}
+
+		@Override
+		public void setDataRoot(boolean isDataRoot) {
+			throw readOnly();
+		}
+
+		@Override
+		public Integer getNumOfFilesLimit() {
+			return value.attributes.getNumOfFilesLimit();
+		}
+
+		@Override
+		public void setNumOfFilesLimit(Integer numOfFilesLimit) {
+			throw readOnly();
+		}
+
+		@Override
+		public Long getStorageSize() {
+			return value.attributes.getStorageSize();
+		}
+
+		@Override
+		public void setStorageSize(Long storageSize) {
+			throw readOnly();
+		}
+
+		@Override
+		public Set<String> getUnsupportedFiles() {
+			return value.attributes.getUnsupportedFiles();
+		}
+
+		@Override
+		public void setUnsupportedFiles(Set<String> unsupportedFiles) {
+			throw readOnly();
+		}
+
+		/**
+		 * @return copy of the attributes of this version on the heap
+		 */
+		@Override
+		public FileMetadata clone() {
+			FileMetadata file = StorageInformation.copyFileMetadata(value.attributes);
+			file.setName(value.name);
+			file.setParent(getParent());
+			return file;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(obj instanceof Frozen)
+				return ((Frozen) obj).origin() == origin() && Objects.equals(((Frozen) obj).getFileID(), getFileID());
+
+			return obj instanceof Live && ((Live) obj).tree() == origin() && Objects.equals(((Live) obj).getFileID(), getFileID());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(getFileID());
+		}
+	}
+
+	private static final class Entry {
+
+		private final int position;
+		private final FileMetadata fileMetadata;
+
+		private Entry(int position, FileMetadata fileMetadata) {
+			this.position = position;
+			this.fileMetadata = fileMetadata;
+		}
+	}
+
+	private static final class Changes {
+
+		// version on which the changes were started
+		private final Version base;
+		private final List<UnaryOperator<Version>> list = new ArrayList<>();
+		private Version version;
+
+		private Changes(Version base) {
+			this.base = base;
+			this.version = base;
+		}
+	}
+
+	private static final class Version {
+
+		// directory ID -> directory
+		private final PersistentMap<String, Directory> directories;
+		// name -> (ID -> FileMetadata with that name)
+		private final PersistentMap<String, PersistentMap<String, FileMetadata>> names;
+		// ID -> attributes of the FileMetadata in this version
+		private final PersistentMap<String, Value> values;
+		private final int size;
+
+		private Version(PersistentMap<String, Directory> directories, PersistentMap<String, PersistentMap<String, FileMetadata>> names, 
+				PersistentMap<String, Value> values, int size) {
+			this.directories = directories;
+			this.names = names;
+			this.values = values;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Attributes of the FileMetadata in one version, which are never changed
+	 */
+	private static final class Value {
+
+		// FileMetadata which the tree keeps and which the writers change
+		private final FileMetadata live;
+		// copy of the attributes without the parent
+		private final FileMetadata attributes;
+		private final String name;
+		// null for the storage directory
+		private final String parentID;
+
+		private Value(FileMetadata live, String name, String parentID) {
+			this(live, StorageInformation.copyFileMetadata(live), name, parentID);
+		}
+
+		private Value(FileMetadata live, FileMetadata attributes, String name, String parentID) {
+			this.live = live;
+			this.attributes = attributes;
+			this.name = name;
+			this.parentID = parentID;
+		}
+
+		private String id() {
+			return attributes.getFileID();
+		}
+	}
+
+	/**
+	 * Content of one directory, kept under the positions in the order in which it was added
+	 */
+	private static final class Directory {
+
+		private static final Directory EMPTY = new Directory(PersistentMap.<FileMetadata>sorted(), PersistentMap.<String, Entry>empty(),
+				PersistentMap.<FileMetadata>sorted(), 0);
+
+		// position -> FileMetadata
+		private final PersistentMap<Integer, FileMetadata> content;
+		// name -> FileMetadata with its position
+		private final PersistentMap<String, Entry> names;
+		// position -> subdirectory
+		private final PersistentMap<Integer, FileMetadata> subdirectories;
+		private final int nextPosition;
+		// lists are made on the first read, the directory itself is never changed
+		private volatile List<FileMetadata> contentList;
+		private volatile List<FileMetadata> subdirectoriesList;
+
+		private Directory(PersistentMap<Integer, FileMetadata> content, PersistentMap<String, Entry> names,
+				PersistentMap<Integer, FileMetadata> subdirectories, int nextPosition) {
+			this.content = content;
+			this.names = names;
+			this.subdirectories = subdirectories;
+			this.nextPosition = nextPosition;
+		}
+
+		private FileMetadata get(String name) {
+			Entry entry = names.get(name);
+			return (entry == null) ? null : entry.fileMetadata;
+		}
+
+		private Directory add(FileMetadata fileMetadata, String name) {
+			if(nextPosition == Integer.MAX_VALUE)
+				return renumbered().add(fileMetadata, name);
+
+			return new Directory(content.put(nextPosition, fileMetadata), names.put(name, new Entry(nextPosition, fileMetadata)),
+					fileMetadata.isDirectory() ? subdirectories.put(nextPosition, fileMetadata) : subdirectories, nextPosition + 1);
+		}
+
+		private Directory remove(FileMetadata fileMetadata, String name) {
+			Integer position = positionOf(fileMetadata, name);
+			if(position == null)
+				return this;
+
+			Entry entry = names.get(name);
+			PersistentMap<String, Entry> changed = (entry != null && entry.position == position) ? names.remove(name) : names;
+			return new Directory(content.remove(position), changed, subdirectories.remove(position), nextPosition);
+		}
+
+		private Directory rename(FileMetadata fileMetadata, String oldName, String name) {
+			Integer position = positionOf(fileMetadata, oldName);
+			if(position == null)
+				return this;
+
+			return new Directory(content, names.remove(oldName).put(name, new Entry(position, fileMetadata)), subdirectories, nextPosition);
+		}
+
+		private Integer positionOf(FileMetadata fileMetadata, String name) {
+			Entry entry = names.get(name);
+			if(entry != null && fileMetadata.equals(entry.fileMetadata))
+				return entry.position;
+
+			// ime je vec promenjeno, pa se FileMetadata trazi u sadrzaju
+			Integer[] found = new Integer[1];
+			content.forEach((p, f) -> {
+				if(f.equals(fileMetadata))
+					found[0] = p;
+			});
+			return found[0];
+		}
+
+		// pozicije se dodeljuju ponovo tek kada se potrose sve, pa se to skoro nikada ne desava
+		private Directory renumbered() {
+			Directory[] renumbered = { EMPTY };
+			Map<Integer, String> byPosition = new HashMap<>();
+			names.forEach((name, entry) -> byPosition.put(entry.position, name));
+			content.forEach((position, f) -> renumbered[0] = renumbered[0].add(f, byPosition.get(position)));
+			return renumbered[0];
+		}
+
+		private List<FileMetadata> getContent() {
+			List<FileMetadata> list = contentList;
+			if(list == null) {
+				List<FileMetadata> values = new ArrayList<>(content.size());
+				content.forEach((position, f) -> values.add(f));
+				contentList = list = Collections.unmodifiableList(values);
+			}
+
+			return list;
+		}
+
+		private List<FileMetadata> getSubdirectories() {
+			List<FileMetadata> list = subdirectoriesList;
+			if(list == null) {
+				List<FileMetadata> values = new ArrayList<>(subdirectories.size());
+				subdirectories.forEach((position, f) -> values.add(f));
+				subdirectoriesList = list = Collections.unmodifiableList(values);
+			}
+
+			return list;
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package storageInformation;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Space taken from the storage size before the operation is done. If the operation succeeds the reservation is committed,
+ * otherwise it is released and the space is given back. Closing the reservation which is not committed releases it,
+ * so it can be used in try-with-resources
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class QuotaReservation implements AutoCloseable {
+
+	// null ako velicina skladista nije ogranicena
+	private final AtomicLong storageSize;
+	private final long bytes;
+	// called when the space is given back, null if nothing has to be done
+	private final Runnable released;
+	private final AtomicBoolean done = new AtomicBoolean(false);
+
+	QuotaReservation(AtomicLong storageSize, long bytes, Runnable released) {
+		this.storageSize = storageSize;
+		this.bytes = bytes;
+		this.released = released;
+	}
+
+	/**
+	 * @return number of reserved bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Keeps the reserved space taken. Does nothing if the reservation is already committed or released
+	 */
+	public void commit() {
+		done.set(true);
+	}
+
+	/**
+	 * Gives the reserved space back to the storage. Does nothing if the reservation is already committed or released
+	 */
+	public void release() {
+		if(done.compareAndSet(false, true) && storageSize != null) {
+			storageSize.addAndGet(bytes);
+			if(released != null)
+				released.run();
+		}
+	}
+
+	@Override
+	public void close() {
+		release();
+	}
+
+}
@@ -1,35 +1,89 @@
 package storageInformation;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import exception.StorageSizeException;
 import fileMetadata.FileMetadata;
 
 /**
- * Holds all necessery information about the storage
+ * Holds all necessery information about the storage. When the concurrent access is enabled, callers lock the directories 
+ * which they read or change (see StorageLocks), while the indexes shared by all directories are changed under their own lock 
+ * and built only while the storage is locked exclusively
  * 
  * @author Luka Pavlovic
  *
  */
 
+// brave se drze kao resurs try bloka (StorageLocks.Held), telo bloka ga ne koristi i ne treba da ga koristi
+@SuppressWarnings("try")
 public class StorageInformation {
 	
 	public static final String datarootDirName = "dataRootDirectory";
 	public static final String storageInformationJSONFileName = "storageInformation.json";
+	public static final String journalFileName = "storageInformation.journal";
+	public static final String snapshotFileName = "storageInformation.snapshot";
+	
+	public static final int STORAGE_TREE_VERSION = 1;
+	
+	private static final String HEAP = "heap";
+	private static final String OFF_HEAP = "offHeap";
+	private static final String PERSISTENT = "persistent";
 	
 	private boolean storageConnected = false;
 	
-	private Map<String, List<FileMetadata>> storageTreeStructure = new HashMap<String, List<FileMetadata>>();
+	// directory ID -> content of the directory
+	private Map<String, List<FileMetadata>> storageTreeStructure = new ConcurrentHashMap<String, List<FileMetadata>>();
+	private int storageTreeVersion;
+	private AtomicLong nextFileID = new AtomicLong();
+	// sequence of the journal whose changes come after this snapshot
+	private int journalSequence = 0;
+	
+	// storageTreeStructure is kept in the storageTree, on the heap or outside of it
+	private transient volatile StorageTree storageTree;
+	// built on the first search by the part of the name
+	private transient volatile NameSearchIndex nameSearchIndex;
+	// built on the first search by time or size
+	private transient volatile AttributeIndex attributeIndex;
+	// directory ID -> (base name -> next suffix to try), names of one directory are changed under the lock of that directory
+	private transient Map<String, Map<String, Integer>> nameSuffixes;
+	// built on the first check of the path, and again when too many paths are added to it
+	private transient volatile PathFilter pathFilter;
+	// built on the first question about the size of the directory
+	private transient volatile SubtreeTotals subtreeTotals;
+	// indexes above are read and changed under it
+	private final transient Object indexLock = new Object();
+	private final transient StorageLocks storageLocks = new StorageLocks();
+	// null until the journal is opened
+	private transient volatile MetadataJournal journal;
 	
 	// configuration
-	private Long storageSize = 1024L; // 1KB
+	// number of bytes which storage can still hold, null if it is not limited. Changed only atomically, so concurrent writers do not lose or oversubscribe it
+	private volatile AtomicLong storageSize = new AtomicLong(1024L); // 1KB
 	private Set<String> unsupportedFiles = new HashSet<>();
 	private Map<String, Integer> dirNumberOfFilesLimit = new HashMap<>();
+	private boolean offHeapStorageTree = false;
+	private boolean persistentStorageTree = false;
+	// snapshot is written to the JSON file instead of the binary snapshot file
+	private boolean jsonSnapshot = false;
+	// storage tree is read from the binary snapshot one directory at a time, optionally loaded on the other thread after the connection
+	private boolean lazyStorageTree = false;
+	private boolean warmUpStorageTree = false;
 	// ================================================================================
 
 	private FileMetadata storageDirectory;
@@ -51,22 +105,1329 @@ public class StorageInformation {
 		this.storageConnected = storageConnected;
 	}
 	public Map<String, List<FileMetadata>> getStorageTreeStructure() {
-		return storageTreeStructure;
+		return getStorageTree().getStorageTreeStructure();
 	}
 	public void setStorageTreeStructure(Map<String, List<FileMetadata>> storageTreeStructure) {
 		this.storageTreeStructure = storageTreeStructure;
+		this.storageTree = null;
+		this.nameSuffixes = null;
+		this.nameSearchIndex = null;
+		this.attributeIndex = null;
+		this.pathFilter = null;
+		this.subtreeTotals = null;
+	}
+	
+	/**
+	 * @return the storage tree which holds the storage tree structure
+	 */
+	public StorageTree getStorageTree() {
+		StorageTree storageTree = this.storageTree;
+		return (storageTree != null) ? storageTree : createStorageTree();
+	}
+	
+	private synchronized StorageTree createStorageTree() {
+		if(storageTree == null) {
+			HeapStorageTree heapStorageTree = new HeapStorageTree(storageTreeStructure);
+			if(storageLocks.isEnabled())
+				heapStorageTree.buildIndexes();
+			storageTree = heapStorageTree;
+		}
+		
+		return storageTree;
+	}
+	
+	/**
+	 * @return locks of the storage tree, which do nothing until the concurrent access is enabled
+	 */
+	public StorageLocks getStorageLocks() {
+		return storageLocks;
+	}
+	
+	public boolean isConcurrentAccess() {
+		return storageLocks.isEnabled();
+	}
+	
+	/**
+	 * Enables or disables the concurrent access to the storage tree. Indexes of the storage tree which are otherwise built 
+	 * on the first use are built right away. Off-heap storage tree is not changed concurrently, so every operation locks it exclusively, 
+	 * while persistent storage tree is read without the locks
+	 * @param concurrentAccess if true locks of the storage tree are taken, otherwise they do nothing
+	 */
+	public synchronized void setConcurrentAccess(boolean concurrentAccess) {
+		if(concurrentAccess == storageLocks.isEnabled())
+			return;
+		
+		StorageTree storageTree = getStorageTree();
+		if(concurrentAccess && storageTree instanceof HeapStorageTree)
+			((HeapStorageTree) storageTree).buildIndexes();
+		else if(concurrentAccess && storageTree instanceof LazyStorageTree)
+			((LazyStorageTree) storageTree).buildIndexes();
+		getNameSuffixes();
+		
+		storageLocks.setEnabled(concurrentAccess, storageTree instanceof OffHeapStorageTree, persistent(storageTree));
+	}
+	
+	/**
+	 * Returns the storage tree which one reading operation goes through. If the storage tree gives the versions which are never changed, 
+	 * its current version is returned, so the whole operation sees the same storage tree and reads it without the locks. 
+	 * Otherwise the storage tree itself is returned
+	 * @return storage tree to be read
+	 */
+	public StorageTree readStorageTree() {
+		StorageTree storageTree = getStorageTree();
+		StorageTree snapshot = storageTree.snapshot();
+		return (snapshot != null) ? snapshot : storageTree;
+	}
+	
+	/**
+	 * Returns the content of the directory
+	 * @param directory is the directory
+	 * @return list of the FileMetadata which reside in the directory, null if directory is not in the storage tree structure
+	 */
+	public List<FileMetadata> getDirectoryContent(FileMetadata directory) {
+		return getStorageTree().getDirectoryContent(directory);
+	}
+	
+	/**
+	 * Returns the content of the directory which stays the same while the directory is changed. With the concurrent access 
+	 * the content is copied under the read lock of the directory, unless the storage tree is read without the locks. 
+	 * Otherwise the content itself is returned
+	 * @param storageTree is the storage tree to be read (see readStorageTree)
+	 * @param directory is the directory
+	 * @return list of the FileMetadata which reside in the directory, null if directory is not in the storage tree structure
+	 */
+	public List<FileMetadata> readDirectoryContent(StorageTree storageTree, FileMetadata directory) {
+		if(!storageLocks.isEnabled() || storageLocks.isLockFreeReads())
+			return storageTree.getDirectoryContent(directory);
+		
+		try(StorageLocks.Held held = storageLocks.readDirectories(directory)) {
+			List<FileMetadata> content = storageTree.getDirectoryContent(directory);
+			return (content == null) ? null : new ArrayList<>(content);
+		}
+	}
+	
+	/**
+	 * Returns the subdirectories of the directory which stay the same while the directory is changed, 
+	 * in the same way as readDirectoryContent
+	 * @param storageTree is the storage tree to be read (see readStorageTree)
+	 * @param directory is the directory
+	 * @return list of the subdirectories, null if directory is not in the storage tree structure
+	 */
+	public List<FileMetadata> readSubdirectories(StorageTree storageTree, FileMetadata directory) {
+		if(!storageLocks.isEnabled() || storageLocks.isLockFreeReads())
+			return storageTree.getSubdirectories(directory);
+		
+		try(StorageLocks.Held held = storageLocks.readDirectories(directory)) {
+			List<FileMetadata> subdirectories = storageTree.getSubdirectories(directory);
+			return (subdirectories == null) ? null : new ArrayList<>(subdirectories);
+		}
+	}
+	
+	/**
+	 * Finds the FileMetadata with the given name in the directory without scanning directory content
+	 * @param directory is the directory
+	 * @param name is the name of the FileMetadata
+	 * @return FileMetadata with the given name, null if directory or name does not exist
+	 */
+	public FileMetadata getFileMetadata(FileMetadata directory, String name) {
+		return getStorageTree().getFileMetadata(directory, name);
+	}
+	
+	/**
+	 * Finds all FileMetadata in the storage tree structure with the given name, without scanning the storage tree structure
+	 * @param name is the name
+	 * @return list of the FileMetadata with the given name, empty if there are none
+	 */
+	public List<FileMetadata> getFileMetadataByName(String name) {
+		return getStorageTree().getFileMetadataByName(name);
+	}
+	
+	/**
+	 * @return number of FileMetadata in the storage tree structure
+	 */
+	public int getStorageTreeSize() {
+		return getStorageTree().size();
+	}
+	
+	/**
+	 * Returns the number of FileMetadata which reside in the directory
+	 * @param directory is the directory
+	 * @return number of FileMetadata in the directory, 0 if directory is not in the storage tree structure
+	 */
+	public int getDirectorySize(FileMetadata directory) {
+		return getStorageTree().getDirectorySize(directory);
+	}
+	
+	/**
+	 * Returns the directories which reside in the directory, without going through the files in it
+	 * @param directory is the directory
+	 * @return list of the subdirectories, null if directory is not in the storage tree structure
+	 */
+	public List<FileMetadata> getSubdirectories(FileMetadata directory) {
+		return getStorageTree().getSubdirectories(directory);
+	}
+	
+	/**
+	 * Finds the FileMetadata in the directory, or in its whole subtree, whose names satisfy all given conditions. 
+	 * Only the FileMetadata whose names satisfy the conditions are visited
+	 * @param directory is the directory
+	 * @param searchSubDirectories if true FileMetadata from the whole subtree are found, otherwise only from the directory
+	 * @param prefix if not null names start with it
+	 * @param suffixes names end with all of them, null elements are skipped
+	 * @param subWord if not null names contain it
+	 * @param limit is the maximum number of FileMetadata with matching names to be checked
+	 * @return FileMetadata which satisfy the conditions, in no particular order. Null if there are more than limit candidates
+	 */
+	public List<FileMetadata> searchNames(FileMetadata directory, boolean searchSubDirectories, String prefix, String[] suffixes, String subWord, int limit) {
+		
+		if(nameSearchIndex == null) {
+			try(StorageLocks.Held held = storageLocks.exclusive()) {
+				if(nameSearchIndex == null) {
+					NameSearchIndex index = new NameSearchIndex();
+					
+					Queue<FileMetadata> directories = new LinkedList<>();
+					directories.add(storageDirectory);
+					while(!directories.isEmpty()) {
+						for(FileMetadata f : getDirectoryContent(directories.poll())) {
+							index.add(f.getName());
+							if(f.isDirectory())
+								directories.add(f);
+						}
+					}
+					nameSearchIndex = index;
+				}
+			}
+		}
+		
+		// roditelji se ne menjaju dok se proverava da li je pogodak u direktorijumu
+		try(StorageLocks.Held held = storageLocks.readDirectories()) {
+			
+			List<String> names;
+			synchronized(indexLock) {
+				names = nameSearchIndex.find(prefix, suffixes, subWord);
+			}
+			
+			List<FileMetadata> found = new ArrayList<>();
+			int candidates = 0;
+			for(String name : names) {
+				
+				List<FileMetadata> withName = getFileMetadataByName(name);
+				if(withName.isEmpty()) {
+					synchronized(indexLock) {
+						nameSearchIndex.remove(name);
+					}
+				}
+				
+				candidates += withName.size();
+				if(candidates > limit)
+					return null;
+				
+				for(FileMetadata f : withName) {
+					if(searchSubDirectories ? isInSubtree(f, directory) : directory.equals(f.getParent()))
+						found.add(f);
+				}
+			}
+			
+			return found;
+		}
+	}
+	
+	/**
+	 * Finds FileMetadata created in the given period, without scanning the storage tree structure
+	 * @param from is the lower bound in epoch millis, inclusive
+	 * @param to is the upper bound in epoch millis, inclusive
+	 * @return FileMetadata sorted by the time of creation
+	 */
+	public List<FileMetadata> getTimeCreatedRange(long from, long to) {
+		AttributeIndex attributeIndex = getAttributeIndex();
+		synchronized(indexLock) {
+			return attributeIndex.getTimeCreatedRange(from, to);
+		}
+	}
+	
+	/**
+	 * Finds FileMetadata modified in the given period, without scanning the storage tree structure
+	 * @param from is the lower bound in epoch millis, inclusive
+	 * @param to is the upper bound in epoch millis, inclusive
+	 * @return FileMetadata sorted by the time of modification
+	 */
+	public List<FileMetadata> getTimeModifiedRange(long from, long to) {
+		AttributeIndex attributeIndex = getAttributeIndex();
+		synchronized(indexLock) {
+			return attributeIndex.getTimeModifiedRange(from, to);
+		}
+	}
+	
+	/**
+	 * Finds FileMetadata whose size is in the given range, without scanning the storage tree structure
+	 * @param from is the lower bound in bytes, inclusive
+	 * @param to is the upper bound in bytes, inclusive
+	 * @return FileMetadata sorted by the size
+	 */
+	public List<FileMetadata> getSizeRange(long from, long to) {
+		AttributeIndex attributeIndex = getAttributeIndex();
+		synchronized(indexLock) {
+			return attributeIndex.getSizeRange(from, to);
+		}
+	}
+	
+	/**
+	 * Storage tree structure must not be changed while the result is being iterated, 
+	 * so with the concurrent access the storage is locked exclusively until then
+	 * @return all FileMetadata from the largest to the smallest one
+	 */
+	public Iterable<FileMetadata> getFileMetadataBySizeDescending() {
+		return getAttributeIndex().descendingBySize();
+	}
+	
+	/**
+	 * Sets the size of the FileMetadata and keeps it in the right place of the size index
+	 * @param fileMetadata is the FileMetadata
+	 * @param size is the new size in bytes
+	 */
+	public void setSize(FileMetadata fileMetadata, long size) {
+		synchronized(indexLock) {
+			if(attributeIndex != null)
+				attributeIndex.remove(fileMetadata);
+			if(subtreeTotals != null && !fileMetadata.isDirectory())
+				addToTotals(fileMetadata.getParent(), size - fileMetadata.getSize(), 0);
+			
+			fileMetadata.setSize(size);
+			
+			if(attributeIndex != null)
+				attributeIndex.add(fileMetadata);
+		}
+		journal(MetadataJournal.Record.SIZE, fileMetadata.getFileID(), size);
+	}
+	
+	/**
+	 * Sets the time of modification of the FileMetadata and keeps it in the right place of the time index
+	 * @param fileMetadata is the FileMetadata
+	 * @param timeModified is the new time of modification
+	 */
+	public void setTimeModified(FileMetadata fileMetadata, Date timeModified) {
+		synchronized(indexLock) {
+			if(attributeIndex != null)
+				attributeIndex.remove(fileMetadata);
+			
+			fileMetadata.setTimeModified(timeModified);
+			
+			if(attributeIndex != null)
+				attributeIndex.add(fileMetadata);
+		}
+		journal(MetadataJournal.Record.TIME_MODIFIED, fileMetadata.getFileID(), fileMetadata.getTimeModifiedMillis());
+	}
+	
+	/**
+	 * Sets the number of files and directories which the directory can still hold
+	 * @param directory is the directory
+	 * @param numOfFilesLimit is the number of files, null if it is not limited
+	 */
+	public void setNumOfFilesLimit(FileMetadata directory, Integer numOfFilesLimit) {
+		directory.setNumOfFilesLimit(numOfFilesLimit);
+		journal(MetadataJournal.Record.FILES_LIMIT, directory.getFileID(), (numOfFilesLimit == null) ? null : (long) numOfFilesLimit);
+	}
+	
+	/**
+	 * Keeps the number of files and directories which the directory was created with
+	 * @param directory is the directory
+	 * @param numOfFilesLimit is the number of files
+	 */
+	public void putDirNumberOfFilesLimit(FileMetadata directory, Integer numOfFilesLimit) {
+		synchronized(dirNumberOfFilesLimit) {
+			dirNumberOfFilesLimit.put(directory.getFileID(), numOfFilesLimit);
+		}
+		journal(MetadataJournal.Record.DIR_FILES_LIMIT, directory.getFileID(), (numOfFilesLimit == null) ? null : (long) numOfFilesLimit);
+	}
+	
+	/**
+	 * Returns the total size of the files under the directory, without going through its subtree
+	 * @param directory is the directory
+	 * @return sum of the sizes of all files in the directory and its subdirectories, in bytes
+	 */
+	public long getSubtreeSize(FileMetadata directory) {
+		for(;;) {
+			synchronized(indexLock) {
+				if(subtreeTotals != null)
+					return subtreeTotals.getSize(directory.getFileID());
+			}
+			buildSubtreeTotals();
+		}
+	}
+	
+	/**
+	 * Returns the number of the files under the directory, without going through its subtree
+	 * @param directory is the directory
+	 * @return number of files in the directory and its subdirectories
+	 */
+	public long getSubtreeNumberOfFiles(FileMetadata directory) {
+		for(;;) {
+			synchronized(indexLock) {
+				if(subtreeTotals != null)
+					return subtreeTotals.getNumberOfFiles(directory.getFileID());
+			}
+			buildSubtreeTotals();
+		}
+	}
+	
+	// zbirovi mogu biti odbaceni dok se stablo menja, pa se posle pravljenja ponovo proverava da li postoje
+	private void buildSubtreeTotals() {
+		try(StorageLocks.Held held = storageLocks.exclusive()) {
+			if(subtreeTotals != null)
+				return;
+			SubtreeTotals built = new SubtreeTotals();
+			
+			// direktorijumi u BFS redosledu, pa se obilaze od poslednjeg da bi poddirektorijumi bili sabrani pre roditelja
+			List<FileMetadata> directories = new ArrayList<>();
+			directories.add(storageDirectory);
+			for(int i = 0 ; i < directories.size() ; i++) {
+				List<FileMetadata> subdirectories = getSubdirectories(directories.get(i));
+				if(subdirectories != null)
+					directories.addAll(subdirectories);
+			}
+			
+			for(int i = directories.size() - 1 ; i >= 0 ; i--) {
+				FileMetadata directory = directories.get(i);
+				List<FileMetadata> content = getDirectoryContent(directory);
+				if(content == null)
+					continue;
+				
+				long size = 0;
+				long numberOfFiles = 0;
+				
+				for(FileMetadata f : content) {
+					long[] totals = totalsOf(built, f);
+					size += totals[0];
+					numberOfFiles += totals[1];
+				}
+				
+				if(numberOfFiles > 0)
+					built.add(directory.getFileID(), size, numberOfFiles);
+			}
+			
+			synchronized(indexLock) {
+				subtreeTotals = built;
+			}
+		}
+	}
+	
+	// [velicina, broj fajlova] koje FileMetadata donosi direktorijumu u kome se nalazi
+	private static long[] totalsOf(SubtreeTotals subtreeTotals, FileMetadata fileMetadata) {
+		if(fileMetadata.isDirectory())
+			return new long[] { subtreeTotals.getSize(fileMetadata.getFileID()), subtreeTotals.getNumberOfFiles(fileMetadata.getFileID()) };
+		
+		return new long[] { fileMetadata.getSize(), 1 };
+	}
+	
+	// promena se dodaje direktorijumu i svim njegovim precima
+	private void addToTotals(FileMetadata directory, long size, long numberOfFiles) {
+		if(size == 0 && numberOfFiles == 0)
+			return;
+		
+		for(FileMetadata d = directory ; d != null ; d = d.getParent())
+			subtreeTotals.add(d.getFileID(), size, numberOfFiles);
+	}
+	
+	private AttributeIndex getAttributeIndex() {
+		if(attributeIndex == null) {
+			try(StorageLocks.Held held = storageLocks.exclusive()) {
+				if(attributeIndex == null) {
+					AttributeIndex index = new AttributeIndex();
+					
+					Queue<FileMetadata> directories = new LinkedList<>();
+					directories.add(storageDirectory);
+					while(!directories.isEmpty()) {
+						for(FileMetadata f : getDirectoryContent(directories.poll())) {
+							index.add(f);
+							if(f.isDirectory())
+								directories.add(f);
+						}
+					}
+					attributeIndex = index;
+				}
+			}
+		}
+		
+		return attributeIndex;
+	}
+	
+	/**
+	 * Checks the name in the directory against the filter of all FileMetadata in the storage, without going through the storage tree 
+	 * structure. Path is checked name by name while it is looked up, so the lookup stops at the first name which surely does not exist
+	 * @param directory is the directory
+	 * @param name is the name in the directory
+	 * @return false if the directory surely does not hold the name, true if it might hold it. While the storage tree which is read 
+	 * one directory at a time is not loaded, the filter is not built and the name might always exist
+	 */
+	public boolean mightContain(FileMetadata directory, String name) {
+		
+		// filter se pravi od celog stabla, pa bi ucitao sve direktorijume lenjog stabla, ime se tada trazi samo u direktorijumu
+		StorageTree storageTree = getStorageTree();
+		if(storageTree instanceof LazyStorageTree && !((LazyStorageTree) storageTree).isLoaded())
+			return true;
+		
+		long hash = PathFilter.hash(directory.getFileID(), name);
+		// filter koji se odbaci kada se napuni pravi se ponovo
+		for(;;) {
+			synchronized(indexLock) {
+				if(pathFilter != null)
+					return pathFilter.mightContain(hash);
+			}
+			buildPathFilter();
+		}
+	}
+	
+	private void buildPathFilter() {
+		try(StorageLocks.Held held = storageLocks.exclusive()) {
+			if(pathFilter != null)
+				return;
+			
+			// mesta za duplo vise, da bi se filter sto redje pravio ponovo
+			PathFilter built = new PathFilter(2 * getStorageTreeSize());
+			Queue<FileMetadata> directories = new LinkedList<>();
+			directories.add(storageDirectory);
+			while(!directories.isEmpty()) {
+				FileMetadata directory = directories.poll();
+				List<FileMetadata> content = getDirectoryContent(directory);
+				if(content == null)
+					continue;
+				
+				for(FileMetadata f : content) {
+					built.add(PathFilter.hash(directory.getFileID(), f.getName()));
+					if(f.isDirectory())
+						directories.add(f);
+				}
+			}
+			
+			synchronized(indexLock) {
+				pathFilter = built;
+			}
+		}
+	}
+	
+	// ime u direktorijumu se dodaje u filter posle promene u stablu, ono sto je ispod njega ostaje pod istim ID-jem
+	private void filterPath(FileMetadata directory, String name) {
+		
+		if(pathFilter == null)
+			return;
+		
+		pathFilter.add(PathFilter.hash(directory.getFileID(), name));
+		if(pathFilter.isFull())
+			pathFilter = null;
+	}
+	
+	// uklanja iz indeksa sve sto se nalazi ispod direktorijuma, dok je jos u stablu
+	private void unindexContent(FileMetadata directory) {
+		
+		Queue<FileMetadata> directories = new LinkedList<>();
+		directories.add(directory);
+		while(!directories.isEmpty()) {
+			List<FileMetadata> content = getDirectoryContent(directories.poll());
+			if(content == null)
+				continue;
+			
+			for(FileMetadata f : content) {
+				attributeIndex.remove(f);
+				if(f.isDirectory())
+					directories.add(f);
+			}
+		}
+	}
+	
+	private static boolean isInSubtree(FileMetadata fileMetadata, FileMetadata directory) {
+		for(FileMetadata f = fileMetadata.getParent() ; f != null ; f = f.getParent()) {
+			if(f.equals(directory))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks whether the directory contains FileMetadata with the given name
+	 * @param directory is the directory
+	 * @param name is the name to be checked
+	 * @return true if the name exists in the directory, false otherwise
+	 */
+	public boolean containsName(FileMetadata directory, String name) {
+		return getFileMetadata(directory, name) != null;
+	}
+	
+	/**
+	 * Returns the name which does not exist in the directory. If the name is already taken, it is concatenated with the first 
+	 * free number after the last one given for that name, so repeated collisions do not scan the directory again
+	 * @param directory is the directory
+	 * @param name is the wanted name
+	 * @return the name if it is free, otherwise name(k)
+	 */
+	public String getUniqueName(FileMetadata directory, String name) {
+		
+		if(!containsName(directory, name))
+			return name;
+		
+		Map<String, Integer> suffixes = getNameSuffixes().computeIfAbsent(directory.getFileID(), k -> new HashMap<>());
+		int k = suffixes.getOrDefault(name, 1);
+		String ans = name + "(" + k + ")";
+		
+		while(containsName(directory, ans))
+			ans = name + "(" + (++k) + ")";
+		
+		suffixes.put(name, k + 1);
+		return ans;
+	}
+	
+	/**
+	 * Generates the ID which is unique within the storage tree structure
+	 * @return new file ID
+	 */
+	public String generateFileID() {
+		return String.valueOf(nextFileID.getAndIncrement());
+	}
+	
+	/**
+	 * Registers an empty directory in the storage tree structure. Existing content of the directory is discarded
+	 * @param directory is the directory
+	 */
+	public void addDirectory(FileMetadata directory) {
+		synchronized(indexLock) {
+			if(attributeIndex != null)
+				unindexContent(directory);
+			// sadrzaj koji se odbacuje je vec sabran u pretke, zbirovi se racunaju ponovo
+			if(subtreeTotals != null && subtreeTotals.getNumberOfFiles(directory.getFileID()) > 0)
+				subtreeTotals = null;
+		}
+		getStorageTree().addDirectory(directory);
+		getNameSuffixes().remove(directory.getFileID());
+		journal(MetadataJournal.Record.ADD_DIRECTORY, directory.getFileID(), copyFileMetadata(directory));
+	}
+	
+	/**
+	 * Removes the directory and all of its subdirectories from the storage tree structure
+	 * @param directory is the directory
+	 */
+	public void removeDirectory(FileMetadata directory) {
+		getNameSuffixes().remove(directory.getFileID());
+		synchronized(indexLock) {
+			if(attributeIndex != null)
+				unindexContent(directory);
+			if(subtreeTotals != null) {
+				List<FileMetadata> directories = new ArrayList<>();
+				directories.add(directory);
+				for(int i = 0 ; i < directories.size() ; i++) {
+					subtreeTotals.remove(directories.get(i).getFileID());
+					List<FileMetadata> subdirectories = getSubdirectories(directories.get(i));
+					if(subdirectories != null)
+						directories.addAll(subdirectories);
+				}
+			}
+		}
+		getStorageTree().removeDirectory(directory);
+		journal(MetadataJournal.Record.REMOVE_DIRECTORY, directory.getFileID(), (FileMetadata) null);
+	}
+	
+	/**
+	 * Adds FileMetadata to the directory content and sets the directory as its parent. FileMetadata name and ID must already be set
+	 * @param directory is the directory
+	 * @param fileMetadata is the FileMetadata to be added
+	 */
+	public void addToDirectory(FileMetadata directory, FileMetadata fileMetadata) {
+		getStorageTree().addToDirectory(directory, fileMetadata);
+		synchronized(indexLock) {
+			if(nameSearchIndex != null)
+				nameSearchIndex.add(fileMetadata.getName());
+			// stablo van heap-a cuva kopiju, u indeks ide ono sto je u stablu
+			if(attributeIndex != null || subtreeTotals != null) {
+				FileMetadata added = getFileMetadata(directory, fileMetadata.getName());
+				if(attributeIndex != null)
+					attributeIndex.add(added);
+				if(subtreeTotals != null) {
+					long[] totals = totalsOf(subtreeTotals, added);
+					addToTotals(added.getParent(), totals[0], totals[1]);
+				}
+			}
+			filterPath(directory, fileMetadata.getName());
+		}
+		journal(MetadataJournal.Record.ADD, directory.getFileID(), copyFileMetadata(fileMetadata));
+	}
+	
+	/**
+	 * Removes FileMetadata from the content of its parent directory
+	 * @param fileMetadata is the FileMetadata to be removed
+	 */
+	public void removeFromDirectory(FileMetadata fileMetadata) {
+		synchronized(indexLock) {
+			if(attributeIndex != null)
+				attributeIndex.remove(fileMetadata);
+			if(subtreeTotals != null) {
+				long[] totals = totalsOf(subtreeTotals, fileMetadata);
+				addToTotals(fileMetadata.getParent(), -totals[0], -totals[1]);
+			}
+		}
+		getStorageTree().removeFromDirectory(fileMetadata);
+		journal(MetadataJournal.Record.REMOVE, fileMetadata.getFileID(), (FileMetadata) null);
+	}
+	
+	/**
+	 * Moves FileMetadata to the other directory. Content of the moved directory stays under the same key, 
+	 * so the cost does not depend on the size of the subtree. 
+	 * Totals of the moved subtree are taken from the old ancestors and added to the new ones
+	 * @param fileMetadata is the FileMetadata to be moved
+	 * @param directory is the destination directory
+	 * @param name is the name which FileMetadata will have in the destination directory
+	 */
+	public void moveToDirectory(FileMetadata fileMetadata, FileMetadata directory, String name) {
+		long[] totals = null;
+		synchronized(indexLock) {
+			if(subtreeTotals != null) {
+				totals = totalsOf(subtreeTotals, fileMetadata);
+				addToTotals(fileMetadata.getParent(), -totals[0], -totals[1]);
+			}
+		}
+		
+		getStorageTree().moveToDirectory(fileMetadata, directory, name);
+		synchronized(indexLock) {
+			if(nameSearchIndex != null)
+				nameSearchIndex.add(name);
+			// zbirovi su mogli biti odbaceni u medjuvremenu
+			if(totals != null && subtreeTotals != null)
+				addToTotals(getFileMetadata(directory, name).getParent(), totals[0], totals[1]);
+			filterPath(directory, name);
+		}
+		MetadataJournal.Record record = new MetadataJournal.Record(MetadataJournal.Record.MOVE, fileMetadata.getFileID());
+		record.to = directory.getFileID();
+		record.name = name;
+		journal(record);
+	}
+	
+	/**
+	 * Renames FileMetadata in its parent directory
+	 * @param fileMetadata is the FileMetadata to be renamed
+	 * @param name is the new name
+	 */
+	public void renameInDirectory(FileMetadata fileMetadata, String name) {
+		FileMetadata directory = fileMetadata.getParent();
+		getStorageTree().renameInDirectory(fileMetadata, name);
+		synchronized(indexLock) {
+			if(nameSearchIndex != null)
+				nameSearchIndex.add(name);
+			filterPath(directory, name);
+		}
+		MetadataJournal.Record record = new MetadataJournal.Record(MetadataJournal.Record.RENAME, fileMetadata.getFileID());
+		record.name = name;
+		journal(record);
+	}
+	
+	/**
+	 * Links the storage tree structure after it is read from the JSON file. Storage tree structure from the older versions 
+	 * (where directories were kept under their relative paths) is migrated first. Every FileMetadata gets the directory 
+	 * which holds it as a parent, so all FileMetadata share the same parents. Names and directory keys read from the file 
+	 * are replaced with the shared instances
+	 */
+	public void linkStorageTree() {
+		
+		if(storageTreeVersion < STORAGE_TREE_VERSION)
+			migrateStorageTree();
+		
+		Map<String, FileMetadata> directories = new HashMap<>();
+		directories.put(storageDirectory.getFileID(), storageDirectory);
+		
+		for(List<FileMetadata> content : storageTreeStructure.values()) {
+			for(FileMetadata f : content) {
+				f.setName(f.getName());
+				if(f.isDirectory())
+					directories.put(f.getFileID(), f);
+			}
+		}
+		
+		Map<String, List<FileMetadata>> linked = new ConcurrentHashMap<>(storageTreeStructure.size() * 4 / 3 + 1);
+		
+		for(String key : storageTreeStructure.keySet()) {
+			FileMetadata directory = directories.get(key);
+			if(directory == null)
+				continue;
+			
+			List<FileMetadata> content = storageTreeStructure.get(key);
+			for(FileMetadata f : content)
+				f.setParent(directory);
+			
+			if(content instanceof ArrayList)
+				((ArrayList<FileMetadata>) content).trimToSize();
+			
+			linked.put(directory.getFileID(), content);
+		}
+		
+		linkStorageTree(linked, null);
+	}
+	
+	/**
+	 * Reads the storage information from the binary snapshot (see StorageSnapshot). Nodes are read in the order they are written, 
+	 * so every FileMetadata gets the shared parent as soon as it is read and the storage tree structure is built in one pass
+	 * @param path is the path of the snapshot file
+	 * @return the storage information, with its storage tree linked
+	 * @throws IOException if the snapshot can not be read
+	 */
+	public static StorageInformation readSnapshot(Path path) throws IOException {
+		
+		StorageSnapshot snapshot = StorageSnapshot.open(path);
+		StorageInformation storageInformation = new StorageInformation();
+		
+		storageInformation.storageTreeVersion = snapshot.getStorageTreeVersion();
+		storageInformation.journalSequence = snapshot.getJournalSequence();
+		storageInformation.nextFileID.set(snapshot.getNextFileID());
+		Long storageSize = snapshot.getStorageSize();
+		storageInformation.storageSize = (storageSize == null) ? null : new AtomicLong(storageSize);
+		storageInformation.offHeapStorageTree = snapshot.isOffHeapStorageTree();
+		storageInformation.persistentStorageTree = snapshot.isPersistentStorageTree();
+		
+		storageInformation.lazyStorageTree = snapshot.isLazyStorageTree();
+		storageInformation.warmUpStorageTree = snapshot.isWarmUpStorageTree();
+		
+		String[] ids = new String[3];
+		snapshot.readConfiguration(storageInformation.unsupportedFiles, storageInformation.dirNumberOfFilesLimit, ids);
+		storageInformation.storageDirectoryID = ids[0];
+		storageInformation.datarootDirectoryID = ids[1];
+		storageInformation.configJSOnID = ids[2];
+		
+		// stablo van heap-a i postojano stablo se grade od celog stabla, pa se ne citaju lenjo
+		if(storageInformation.lazyStorageTree && snapshot.hasIDs() && !storageInformation.offHeapStorageTree && !storageInformation.persistentStorageTree) {
+			FileMetadata storageDirectory = snapshot.getFileMetadata(0, null);
+			LazyStorageTree lazyStorageTree = new LazyStorageTree(snapshot, storageDirectory);
+			storageInformation.storageDirectory = storageDirectory;
+			storageInformation.linkStorageTree(lazyStorageTree.getLoadedStorageTreeStructure(), lazyStorageTree);
+			return storageInformation;
+		}
+		
+		int nodeCount = snapshot.getNodeCount();
+		FileMetadata[] nodes = new FileMetadata[nodeCount];
+		Map<String, List<FileMetadata>> linked = new ConcurrentHashMap<>();
+		
+		for(int i = 0 ; i < nodeCount ; i++) {
+			int parent = snapshot.getParent(i);
+			nodes[i] = snapshot.getFileMetadata(i, (parent < 0) ? null : nodes[parent]);
+		}
+		for(int i = 0 ; i < nodeCount ; i++) {
+			int children = snapshot.getChildCount(i);
+			if(children < 0)
+				continue;
+			
+			int firstChild = snapshot.getFirstChild(i);
+			List<FileMetadata> content = new ArrayList<>(children);
+			for(int child = firstChild ; child < firstChild + children ; child++)
+				content.add(nodes[child]);
+			linked.put(nodes[i].getFileID(), content);
+		}
+		
+		storageInformation.storageDirectory = nodes[0];
+		storageInformation.linkStorageTree(linked, null);
+		return storageInformation;
+	}
+	
+	/**
+	 * Writes the binary snapshot of the storage information (see StorageSnapshot)
+	 * @param path is the path of the snapshot file
+	 * @throws IOException if the snapshot can not be written
+	 */
+	public void writeSnapshot(Path path) throws IOException {
+		StorageSnapshot.write(this, path);
+	}
+	
+	// FileMetadata iz strukture vec imaju roditelje, lenjo stablo drzi samo direktorijume koji su ucitani
+	private void linkStorageTree(Map<String, List<FileMetadata>> linked, LazyStorageTree lazyStorageTree) {
+		
+		storageTreeStructure = linked;
+		storageTree = lazyStorageTree;
+		nameSuffixes = null;
+		nameSearchIndex = null;
+		attributeIndex = null;
+		pathFilter = null;
+		subtreeTotals = null;
+		
+		for(FileMetadata f : getStorageTree().getDirectoryContent(storageDirectory)) {
+			if(f.isDataRoot())
+				datarootDirectory = f;
+			else if(f.isFile() && f.getName().equals(storageInformationJSONFileName))
+				storageInformationJSONfile = f;
+		}
+		
+		currentDirectory = datarootDirectory;
+		
+		if(offHeapStorageTree)
+			transferStorageTree(new OffHeapStorageTree());
+		else if(persistentStorageTree)
+			transferStorageTree(new PersistentStorageTree());
+	}
+	
+	/**
+	 * Moves the storage tree structure to the given storage tree. FileMetadata which StorageInformation refers to are replaced 
+	 * with the ones from the new tree, FileMetadata taken from the old tree before the transfer must not be used afterwards
+	 * @param target is the empty storage tree
+	 */
+	private void transferStorageTree(StorageTree target) {
+		
+		StorageTree source = getStorageTree();
+		Map<String, FileMetadata> referenced = new HashMap<>();
+		for(FileMetadata f : new FileMetadata[] { datarootDirectory, storageInformationJSONfile, currentDirectory, downloadFile, configJSONfile }) {
+			if(f != null && f.getFileID() != null)
+				referenced.put(f.getFileID(), null);
+		}
+		
+		FileMetadata root = copyFileMetadata(storageDirectory);
+		target.addDirectory(root);
+		if(target instanceof OffHeapStorageTree)
+			root = ((OffHeapStorageTree) target).getStorageDirectory();
+		else if(target instanceof PersistentStorageTree)
+			root = ((PersistentStorageTree) target).getStorageDirectory();
+		if(referenced.containsKey(storageDirectory.getFileID()))
+			referenced.put(storageDirectory.getFileID(), root);
+		
+		Queue<FileMetadata> from = new LinkedList<>();
+		Queue<FileMetadata> to = new LinkedList<>();
+		from.add(storageDirectory);
+		to.add(root);
+		
+		while(!from.isEmpty()) {
+			
+			FileMetadata directory = from.poll();
+			FileMetadata copy = to.poll();
+			target.addDirectory(copy);
+			
+			for(FileMetadata f : source.getDirectoryContent(directory)) {
+				target.addToDirectory(copy, copyFileMetadata(f));
+				
+				FileMetadata added = target.getFileMetadata(copy, f.getName());
+				if(referenced.containsKey(f.getFileID()))
+					referenced.put(f.getFileID(), added);
+				
+				if(f.isDirectory()) {
+					from.add(f);
+					to.add(added);
+				}
+			}
+		}
+		
+		storageTree = target;
+		storageTreeStructure = target.getStorageTreeStructure();
+		attributeIndex = null;
+		pathFilter = null;
+		subtreeTotals = null;
+		storageDirectory = root;
+		datarootDirectory = transferred(referenced, datarootDirectory);
+		storageInformationJSONfile = transferred(referenced, storageInformationJSONfile);
+		currentDirectory = transferred(referenced, currentDirectory);
+		downloadFile = transferred(referenced, downloadFile);
+		configJSONfile = transferred(referenced, configJSONfile);
+	}
+	
+	private static FileMetadata transferred(Map<String, FileMetadata> referenced, FileMetadata f) {
+		if(f == null || referenced.get(f.getFileID()) == null)
+			return f;
+		
+		return referenced.get(f.getFileID());
+	}
+	
+	// kopija na heap-u, bez roditelja, koju novo stablo preuzima
+	static FileMetadata copyFileMetadata(FileMetadata f) {
+		FileMetadata copy = f.clone();
+		copy.setParent(null);
+		if(f.isStorage()) {
+			copy.setAbsolutePath(f.getAbsolutePath());
+			copy.setRelativePath(f.getRelativePath());
+			if(f.getStorageSize() != null)
+				copy.setStorageSize(f.getStorageSize());
+			if(!f.getUnsupportedFiles().isEmpty())
+				copy.setUnsupportedFiles(f.getUnsupportedFiles());
+		}
+		
+		return copy;
+	}
+	
+	// stara struktura: relativna putanja direktorijuma -> sadrzaj, nova: ID direktorijuma -> sadrzaj
+	private void migrateStorageTree() {
+		
+		Map<String, List<FileMetadata>> oldStructure = storageTreeStructure;
+		storageTreeStructure = new ConcurrentHashMap<String, List<FileMetadata>>();
+		
+		if(storageDirectory.getFileID() == null)
+			storageDirectory.setFileID(generateFileID());
+		
+		Queue<String> oldKeys = new LinkedList<>();
+		Queue<FileMetadata> directories = new LinkedList<>();
+		oldKeys.add(storageDirectory.getRelativePath());
+		directories.add(storageDirectory);
+		
+		while(!oldKeys.isEmpty()) {
+			
+			String oldKey = oldKeys.poll();
+			FileMetadata directory = directories.poll();
+			List<FileMetadata> content = oldStructure.get(oldKey);
+			
+			if(content == null)
+				content = new ArrayList<FileMetadata>();
+			
+			if(dirNumberOfFilesLimit.containsKey(oldKey))
+				dirNumberOfFilesLimit.put(directory.getFileID(), dirNumberOfFilesLimit.remove(oldKey));
+			
+			for(FileMetadata f : content) {
+				
+				if(f.getFileID() == null)
+					f.setFileID(generateFileID());
+				
+				// putanje se vise ne cuvaju, racunaju se preko roditelja
+				f.setAbsolutePath(null);
+				f.setRelativePath(null);
+				f.setParent(directory);
+				
+				if(f.isDirectory()) {
+					oldKeys.add(oldKey + File.separator + f.getName());
+					directories.add(f);
+				}
+			}
+			
+			storageTreeStructure.put(directory.getFileID(), content);
+		}
+		
+		storageTreeVersion = STORAGE_TREE_VERSION;
+	}
+	
+	/**
+	 * Takes the space from the storage size, without locking. Space stays taken only if the reservation is committed
+	 * @param bytes is the number of bytes to be reserved
+	 * @return the reservation, which does not take anything if storage size is not limited
+	 * @throws StorageSizeException if the storage does not have enough free space
+	 */
+	public QuotaReservation reserveStorageSize(long bytes) throws StorageSizeException {
+		
+		AtomicLong storageSize = this.storageSize;
+		if(storageSize == null)
+			return new QuotaReservation(null, bytes, null);
+		
+		for(;;) {
+			long free = storageSize.get();
+			if(free - bytes < 0)
+				throw new StorageSizeException("Storage size limit has been reached!");
+			
+			// zauzeti prostor ide u dnevnik odmah, a vraceni kada se vrati, pa snimak napravljen usred operacije ostaje tacan
+			if(storageSize.compareAndSet(free, free - bytes)) {
+				if(bytes == 0)
+					return new QuotaReservation(storageSize, bytes, null);
+				
+				journal(MetadataJournal.Record.STORAGE_SIZE, null, -bytes);
+				return new QuotaReservation(storageSize, bytes, () -> journal(MetadataJournal.Record.STORAGE_SIZE, null, bytes));
+			}
+		}
+	}
+	
+	/**
+	 * Gives the space back to the storage size, e.g. when the file gets smaller
+	 * @param bytes is the number of bytes
+	 */
+	public void releaseStorageSize(long bytes) {
+		AtomicLong storageSize = this.storageSize;
+		if(storageSize != null) {
+			storageSize.addAndGet(bytes);
+			journal(MetadataJournal.Record.STORAGE_SIZE, null, bytes);
+		}
+	}
+	
+	/**
+	 * Writes the snapshot of the storage information, e.g. to the JSON file
+	 */
+	public interface SnapshotWriter {
+		void write() throws IOException;
+	}
+	
+	/**
+	 * Applies the changes from the journal which were written after this snapshot was written, then keeps writing the changes 
+	 * to the end of the journal. Every change of the storage tree structure, of the sizes, limits and the configuration is written 
+	 * to the journal as soon as it is made. When the journal grows long, the snapshot is written again and the journal starts over. 
+	 * With the concurrent access the snapshot is written on the other thread, while the storage is locked exclusively, 
+	 * otherwise it is written when the operation in progress ends. Snapshot which can not be written is tried again when the journal grows twice as long. 
+	 * Change which can not be written to the journal is kept in the memory, but the method which made it throws UncheckedIOException, 
+	 * and the journal accepts no changes until the snapshot, which holds that change as well, is written
+	 * @param journalFile is the path of the journal file
+	 * @param snapshotWriter writes the snapshot of this storage information
+	 * @return number of changes read from the journal
+	 * @throws IOException if the journal can not be read or opened
+	 */
+	public int openJournal(Path journalFile, SnapshotWriter snapshotWriter) throws IOException {
+		
+		Map<String, FileMetadata> files = new HashMap<>();
+		MetadataJournal.Replayed replayed = MetadataJournal.replay(journalFile, journalSequence, record -> replay(record, files));
+		
+		this.journal = MetadataJournal.open(journalFile, journalSequence, replayed, snapshotWriter);
+		return replayed.records;
+	}
+	
+	public boolean isJournalOpen() {
+		return journal != null;
+	}
+	
+	/**
+	 * Writes the snapshot and starts the journal again, while the storage is locked exclusively. Does nothing if the journal is not open
+	 * @throws IOException if the snapshot can not be written, the journal then stays as it was
+	 */
+	public void compactJournal() throws IOException {
+		
+		try(StorageLocks.Held held = storageLocks.exclusive()) {
+			MetadataJournal journal = this.journal;
+			if(journal == null)
+				return;
+			
+			// snimak se pise sa sledecim brojem dnevnika, koji vazi tek kada novi dnevnik pocne
+			journalSequence++;
+			try {
+				journal.compact(journalSequence);
+			} catch (IOException e) {
+				journalSequence--;
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Flushes the journal to the disk and closes it. Snapshot is not written, changes are applied from the journal on the next connection
+	 */
+	public void closeJournal() {
+		MetadataJournal journal = this.journal;
+		this.journal = null;
+		if(journal != null)
+			journal.close();
+	}
+	
+	private void journal(String op, String id, FileMetadata file) {
+		if(journal == null)
+			return;
+		
+		MetadataJournal.Record record = new MetadataJournal.Record(op, id);
+		record.file = file;
+		journal(record);
+	}
+	
+	private void journal(String op, String id, Long value) {
+		if(journal == null)
+			return;
+		
+		MetadataJournal.Record record = new MetadataJournal.Record(op, id);
+		record.value = value;
+		journal(record);
+	}
+	
+	private void journalConfiguration() {
+		if(journal == null)
+			return;
+		
+		MetadataJournal.Record record = new MetadataJournal.Record(MetadataJournal.Record.CONFIGURATION, null);
+		record.value = getStorageSize();
+		record.unsupportedFiles = unsupportedFiles;
+		journal(record);
+	}
+	
+	private void journal(MetadataJournal.Record record) {
+		MetadataJournal journal = this.journal;
+		if(journal == null)
+			return;
+		
+		try {
+			if(journal.append(record))
+				scheduleCompaction(journal);
+		} catch (IOException e) {
+			// novi snimak cuva i promenu koja nije upisana u dnevnik
+			if(journal.startCompaction())
+				scheduleCompaction(journal);
+			throw new UncheckedIOException("Change can not be written to the journal", e);
+		}
+	}
+	
+	private void scheduleCompaction(MetadataJournal journal) {
+		// sa bravama snimak ceka da se zavrse operacije koje su u toku, bez njih se pravi kada se zavrsi operacija koja je u toku
+		if(storageLocks.isEnabled())
+			journal.scheduleCompaction(this::compactJournalQuietly);
+		else
+			storageLocks.afterOperation(this::compactJournalQuietly);
+	}
+	
+	private void compactJournalQuietly() {
+		try {
+			compactJournal();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	// primenjuje jednu promenu iz dnevnika, false ako promena ne moze da se primeni
+	private boolean replay(MetadataJournal.Record record, Map<String, FileMetadata> files) {
+		
+		// lenjo stablo ucitava samo direktorijume na putu do FileMetadata iz dnevnika
+		if(files.isEmpty() && !(getStorageTree() instanceof LazyStorageTree))
+			collectFiles(files);
+		
+		FileMetadata f = replayed(files, record.id);
+		switch(record.op) {
+		
+		case MetadataJournal.Record.ADD_DIRECTORY:
+			FileMetadata directory = (f != null) ? f : record.file;
+			if(directory == null)
+				return false;
+			addDirectory(directory);
+			files.put(record.id, directory);
+			usedFileID(record.id);
+			return true;
+			
+		case MetadataJournal.Record.ADD:
+			if(f == null || record.file == null)
+				return false;
+			FileMetadata added = files.getOrDefault(record.file.getFileID(), record.file);
+			addToDirectory(f, added);
+			files.put(added.getFileID(), getStorageTree().getFileMetadata(f, added.getName()));
+			usedFileID(added.getFileID());
+			return true;
+			
+		case MetadataJournal.Record.REMOVE_DIRECTORY:
+			if(f != null)
+				removeDirectory(f);
+			return f != null;
+			
+		case MetadataJournal.Record.REMOVE:
+			if(f != null)
+				removeFromDirectory(f);
+			return f != null;
+			
+		case MetadataJournal.Record.MOVE:
+			FileMetadata destination = replayed(files, record.to);
+			if(f == null || destination == null)
+				return false;
+			moveToDirectory(f, destination, record.name);
+			files.put(record.id, getStorageTree().getFileMetadata(destination, record.name));
+			return true;
+			
+		case MetadataJournal.Record.RENAME:
+			if(f == null)
+				return false;
+			FileMetadata parent = f.getParent();
+			renameInDirectory(f, record.name);
+			files.put(record.id, getStorageTree().getFileMetadata(parent, record.name));
+			return true;
+			
+		case MetadataJournal.Record.SIZE:
+			if(f != null)
+				setSize(f, record.value);
+			return f != null;
+			
+		case MetadataJournal.Record.TIME_MODIFIED:
+			if(f != null)
+				setTimeModified(f, new Date(record.value));
+			return f != null;
+			
+		case MetadataJournal.Record.FILES_LIMIT:
+			if(f != null)
+				setNumOfFilesLimit(f, (record.value == null) ? null : record.value.intValue());
+			return f != null;
+			
+		case MetadataJournal.Record.DIR_FILES_LIMIT:
+			if(f != null)
+				putDirNumberOfFilesLimit(f, (record.value == null) ? null : record.value.intValue());
+			return f != null;
+			
+		case MetadataJournal.Record.STORAGE_SIZE:
+			releaseStorageSize(record.value);
+			return true;
+			
+		case MetadataJournal.Record.CONFIGURATION:
+			setStorageSize(record.value);
+			setUnsupportedFiles(record.unsupportedFiles);
+			return true;
+			
+		case MetadataJournal.Record.STORAGE_TREE:
+			if(OFF_HEAP.equals(record.name))
+				setOffHeapStorageTree(true);
+			else if(PERSISTENT.equals(record.name))
+				setPersistentStorageTree(true);
+			else {
+				setOffHeapStorageTree(false);
+				setPersistentStorageTree(false);
+			}
+			// prebacivanjem stabla FileMetadata su zamenjeni
+			files.clear();
+			return true;
+			
+		default:
+			return false;
+		}
+	}
+	
+	private FileMetadata replayed(Map<String, FileMetadata> files, String fileID) {
+		if(fileID == null)
+			return null;
+		
+		FileMetadata f = files.get(fileID);
+		StorageTree storageTree = getStorageTree();
+		if(f == null && storageTree instanceof LazyStorageTree) {
+			f = ((LazyStorageTree) storageTree).getFileMetadata(fileID);
+			if(f != null)
+				files.put(fileID, f);
+		}
+		
+		return f;
+	}
+	
+	private void collectFiles(Map<String, FileMetadata> files) {
+		Queue<FileMetadata> directories = new LinkedList<>();
+		directories.add(storageDirectory);
+		files.put(storageDirectory.getFileID(), storageDirectory);
+		
+		while(!directories.isEmpty()) {
+			List<FileMetadata> content = getStorageTree().getDirectoryContent(directories.poll());
+			if(content == null)
+				continue;
+			
+			for(FileMetadata f : content) {
+				files.put(f.getFileID(), f);
+				if(f.isDirectory())
+					directories.add(f);
+			}
+		}
+	}
+	
+	// ID-evi koji se generisu posle ucitavanja dnevnika moraju biti veci od procitanih
+	private void usedFileID(String fileID) {
+		try {
+			long id = Long.parseLong(fileID);
+			nextFileID.accumulateAndGet(id + 1, Math::max);
+		} catch (NumberFormatException e) {
+		}
+	}
+	
+	private Map<String, Map<String, Integer>> getNameSuffixes() {
+		if(nameSuffixes == null)
+			nameSuffixes = new ConcurrentHashMap<>();
+		
+		return nameSuffixes;
+	}
+	long getNextFileID() {
+		return nextFileID.get();
+	}
+	int getJournalSequence() {
+		return journalSequence;
+	}
+	public int getStorageTreeVersion() {
+		return storageTreeVersion;
+	}
+	public void setStorageTreeVersion(int storageTreeVersion) {
+		this.storageTreeVersion = storageTreeVersion;
 	}
 	public Long getStorageSize() {
-		return storageSize;
+		AtomicLong storageSize = this.storageSize;
+		return (storageSize == null) ? null : storageSize.get();
 	}
 	public void setStorageSize(Long storageSize) {
-		this.storageSize = storageSize;
+		this.storageSize = (storageSize == null) ? null : new AtomicLong(storageSize);
+		journalConfiguration();
 	}
 	public Set<String> getUnsupportedFiles() {
 		return unsupportedFiles;
 	}
 	public void setUnsupportedFiles(Set<String> unsupportedFiles) {
 		this.unsupportedFiles = unsupportedFiles;
+		journalConfiguration();
 	}
 	public Map<String, Integer> getDirNumberOfFilesLimit() {
 		return dirNumberOfFilesLimit;
@@ -74,6 +1435,137 @@ public class StorageInformation {
 	public void setDirNumberOfFilesLimit(Map<String, Integer> dirNumberOfFilesLimit) {
 		this.dirNumberOfFilesLimit = dirNumberOfFilesLimit;
 	}
+	public boolean isOffHeapStorageTree() {
+		return offHeapStorageTree;
+	}
+	/**
+	 * Chooses where the storage tree structure is kept. Off-heap storage tree keeps FileMetadata outside of the heap 
+	 * and hands out the views of them, which is meant for the storages with millions of files. 
+	 * Storage tree of the connected storage is moved right away, FileMetadata taken from it before must not be used afterwards
+	 * @param offHeapStorageTree true if the storage tree should be kept outside of the heap
+	 */
+	public synchronized void setOffHeapStorageTree(boolean offHeapStorageTree) {
+		this.offHeapStorageTree = offHeapStorageTree;
+		if(offHeapStorageTree)
+			this.persistentStorageTree = false;
+		
+		changeStorageTree();
+	}
+	public boolean isJsonSnapshot() {
+		return jsonSnapshot;
+	}
+	/**
+	 * Chooses whether the snapshot of the storage information is written to the JSON file, which can be read and edited, 
+	 * or to the binary snapshot file, which is read much faster. If the journal is open, the snapshot is written right away in the chosen format
+	 * @param jsonSnapshot true if the snapshot should be written to the JSON file
+	 * @throws IOException if the snapshot can not be written
+	 */
+	public void setJsonSnapshot(boolean jsonSnapshot) throws IOException {
+		if(this.jsonSnapshot == jsonSnapshot)
+			return;
+		
+		this.jsonSnapshot = jsonSnapshot;
+		compactJournal();
+	}
+	public boolean isLazyStorageTree() {
+		return lazyStorageTree;
+	}
+	/**
+	 * Chooses whether the storage tree is read from the binary snapshot one directory at a time. On the connection only the content 
+	 * of the storage directory is loaded, the content of other directories is loaded the first time the directory is used. 
+	 * It is used only with the storage tree on the heap and takes effect on the next connection. If the journal is open, 
+	 * the snapshot is written right away, so the choice is kept
+	 * @param lazyStorageTree true if the storage tree should be read one directory at a time
+	 * @throws IOException if the snapshot can not be written
+	 */
+	public void setLazyStorageTree(boolean lazyStorageTree) throws IOException {
+		if(this.lazyStorageTree == lazyStorageTree)
+			return;
+		
+		this.lazyStorageTree = lazyStorageTree;
+		compactJournal();
+	}
+	public boolean isWarmUpStorageTree() {
+		return warmUpStorageTree;
+	}
+	/**
+	 * Chooses whether the storage tree which is read one directory at a time is loaded on the other thread after the connection 
+	 * (see loadStorageTree). It takes effect on the next connection, in the same way as setLazyStorageTree
+	 * @param warmUpStorageTree true if the storage tree should be loaded on the other thread
+	 * @throws IOException if the snapshot can not be written
+	 */
+	public void setWarmUpStorageTree(boolean warmUpStorageTree) throws IOException {
+		if(this.warmUpStorageTree == warmUpStorageTree)
+			return;
+		
+		this.warmUpStorageTree = warmUpStorageTree;
+		compactJournal();
+	}
+	
+	/**
+	 * Loads the content of all directories of the storage tree which is read one directory at a time. 
+	 * Does nothing if the storage tree is already loaded
+	 * @param inBackground if true the storage tree is loaded on the other thread, which does not stop the process from exiting
+	 */
+	public void loadStorageTree(boolean inBackground) {
+		StorageTree storageTree = getStorageTree();
+		if(!(storageTree instanceof LazyStorageTree) || ((LazyStorageTree) storageTree).isLoaded())
+			return;
+		
+		LazyStorageTree lazyStorageTree = (LazyStorageTree) storageTree;
+		if(!inBackground) {
+			lazyStorageTree.loadAll();
+			return;
+		}
+		
+		// indeksi se prave pre nego sto druga nit pocne da ucitava direktorijume, posle se samo dopunjuju
+		lazyStorageTree.buildIndexes();
+		Thread thread = new Thread(lazyStorageTree::loadAll, "storage-tree-warm-up");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	public boolean isPersistentStorageTree() {
+		return persistentStorageTree;
+	}
+	/**
+	 * Chooses whether the storage tree is kept in the versions which are never changed. Every change of the persistent storage tree 
+	 * makes a new version, so the operations which only read the storage are never locked, which is meant for the storages which are 
+	 * mostly read by many threads at once. 
+	 * Storage tree of the connected storage is moved right away, FileMetadata taken from it before must not be used afterwards
+	 * @param persistentStorageTree true if the storage tree should be kept in the versions which are never changed
+	 */
+	public synchronized void setPersistentStorageTree(boolean persistentStorageTree) {
+		this.persistentStorageTree = persistentStorageTree;
+		if(persistentStorageTree)
+			this.offHeapStorageTree = false;
+		
+		changeStorageTree();
+	}
+	
+	// prebacuje stablo u vrstu koja je izabrana u konfiguraciji
+	private void changeStorageTree() {
+		
+		StorageTree storageTree = (storageDirectory == null) ? null : getStorageTree();
+		if(storageTree == null || (offHeapStorageTree == (storageTree instanceof OffHeapStorageTree) 
+				&& persistentStorageTree == (storageTree instanceof PersistentStorageTree)))
+			return;
+		
+		try(StorageLocks.Held held = storageLocks.exclusive()) {
+			HeapStorageTree heapStorageTree = new HeapStorageTree(new ConcurrentHashMap<String, List<FileMetadata>>());
+			transferStorageTree(offHeapStorageTree ? new OffHeapStorageTree() : persistentStorageTree ? new PersistentStorageTree() : heapStorageTree);
+			if(!offHeapStorageTree && !persistentStorageTree && storageLocks.isEnabled())
+				heapStorageTree.buildIndexes();
+			
+			storageLocks.setEnabled(storageLocks.isEnabled(), offHeapStorageTree, persistent(getStorageTree()));
+			MetadataJournal.Record record = new MetadataJournal.Record(MetadataJournal.Record.STORAGE_TREE, null);
+			record.name = offHeapStorageTree ? OFF_HEAP : persistentStorageTree ? PERSISTENT : HEAP;
+			journal(record);
+		}
+	}
+	
+	private static PersistentStorageTree persistent(StorageTree storageTree) {
+		return (storageTree instanceof PersistentStorageTree) ? (PersistentStorageTree) storageTree : null;
+	}
 	public FileMetadata getStorageInformationJSONfile() {
 		return storageInformationJSONfile;
 	}
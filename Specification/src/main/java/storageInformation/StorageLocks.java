@@ -0,0 +1,254 @@
+package storageInformation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Read/write locks of the storage tree for the concurrent access. Every directory is guarded by one of the striped locks, chosen by
+ * its ID. The content of the directory and the attributes of the FileMetadata in it are read under its read lock and changed under
+ * its write lock. Operations which go through more directories take all of their locks at once, always in the order of the stripes,
+ * so two operations can not wait for each other. All striped locks are taken together with the shared storage lock, while the operations
+ * which change the whole subtree or the whole storage take the storage lock exclusively.
+ * Locks do nothing until the concurrent access is enabled. Persistent storage tree is read without the locks, so only the operations 
+ * which change it lock each other, and the changes made while the locks are held are published as one version when they are released
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class StorageLocks {
+
+	private static final int STRIPES = 64;
+
+	private static final Held NOTHING = new Held(new Lock[0], 0, null);
+
+	private final ReentrantReadWriteLock storage = new ReentrantReadWriteLock();
+	private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+	private volatile boolean enabled = false;
+	// stablo van heap-a nije bezbedno za istovremene izmene, pa se svaka operacija izvrsava sama
+	private volatile boolean exclusiveOnly = false;
+	// verzije postojanog stabla se citaju bez zakljucavanja, pa se zakljucava samo pisanje
+	private volatile PersistentStorageTree persistentStorageTree;
+	// dok su brave iskljucene samo se broji koliko je operacija zapoceto jedna u drugoj, da bi se posle spoljasnje 
+	// izvrsilo ono sto ceka njen kraj
+	private final AtomicInteger depth = new AtomicInteger();
+	private Runnable afterOperation;
+	private final Held unlocked = new Held(new Lock[0], 0, null) {
+
+		@Override
+		public void close() {
+			if(depth.decrementAndGet() > 0 || afterOperation == null)
+				return;
+
+			Runnable action = afterOperation;
+			afterOperation = null;
+			action.run();
+		}
+	};
+
+	StorageLocks() {
+		for(int i = 0 ; i < STRIPES ; i++)
+			stripes[i] = new ReentrantReadWriteLock();
+	}
+
+	/**
+	 * @return true if the locks are taken, false if they do nothing
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	boolean isLockFreeReads() {
+		return enabled && persistentStorageTree != null;
+	}
+
+	/**
+	 * @param enabled if false locks do nothing
+	 * @param exclusiveOnly if true every operation locks the whole storage
+	 * @param persistentStorageTree is the storage tree which is read without the locks, null if the storage tree is not persistent
+	 */
+	void setEnabled(boolean enabled, boolean exclusiveOnly, PersistentStorageTree persistentStorageTree) {
+		this.exclusiveOnly = exclusiveOnly;
+		this.persistentStorageTree = persistentStorageTree;
+		this.enabled = enabled;
+
+		// ukljucuje se izmedju operacija, pa ono sto je cekalo kraj operacije ne sme da ostane da ceka
+		Runnable action = afterOperation;
+		if(enabled && action != null) {
+			afterOperation = null;
+			action.run();
+		}
+	}
+
+	/**
+	 * Runs the action when the operation in progress releases its locks, or at once if no operation is in progress. 
+	 * Used only while the locks are disabled, when the storage is used from one thread at a time
+	 * @param action is the action, only the last one given before the operation ends is run
+	 */
+	void afterOperation(Runnable action) {
+		if(depth.get() == 0)
+			action.run();
+		else
+			afterOperation = action;
+	}
+
+	/**
+	 * Locks the directories for reading
+	 * @param directories are the directories, null elements are skipped
+	 * @return the held locks, which are released when closed
+	 */
+	public Held readDirectories(FileMetadata... directories) {
+		return lock(directories, null);
+	}
+
+	/**
+	 * Locks the directories for writing
+	 * @param directories are the directories, null elements are skipped
+	 * @return the held locks, which are released when closed
+	 */
+	public Held writeDirectories(FileMetadata... directories) {
+		return lock(null, directories);
+	}
+
+	/**
+	 * Locks some directories for reading and the others for writing. Directory which is given in both is locked for writing. 
+	 * Directories are not locked for reading when the reads are lock-free
+	 * @param read are the directories to be read, null elements are skipped
+	 * @param write are the directories to be changed, null elements are skipped
+	 * @return the held locks, which are released when closed
+	 */
+	public Held lock(FileMetadata[] read, FileMetadata[] write) {
+
+		if(!enabled)
+			return unlocked();
+		if(persistentStorageTree != null) {
+			if(length(write) == 0)
+				return NOTHING;
+			read = null;
+		}
+		if(exclusiveOnly)
+			return exclusive();
+
+		// za svaki stripe: 1 - citanje, 2 - pisanje
+		int count = 0;
+		int[] stripeOf = new int[length(read) + length(write)];
+		int[] modeOf = new int[stripeOf.length];
+
+		for(int pass = 0 ; pass < 2 ; pass++) {
+			FileMetadata[] directories = (pass == 0) ? read : write;
+			if(directories == null)
+				continue;
+
+			for(FileMetadata directory : directories) {
+				if(directory == null)
+					continue;
+
+				int stripe = stripe(directory);
+				int i = 0;
+				while(i < count && stripeOf[i] != stripe)
+					i++;
+
+				if(i == count) {
+					stripeOf[count] = stripe;
+					count++;
+				}
+				modeOf[i] = Math.max(modeOf[i], pass + 1);
+			}
+		}
+
+		// redosled zakljucavanja je uvek po rednom broju stripe-a
+		for(int i = 1 ; i < count ; i++) {
+			for(int j = i ; j > 0 && stripeOf[j - 1] > stripeOf[j] ; j--) {
+				int s = stripeOf[j]; stripeOf[j] = stripeOf[j - 1]; stripeOf[j - 1] = s;
+				int m = modeOf[j]; modeOf[j] = modeOf[j - 1]; modeOf[j - 1] = m;
+			}
+		}
+
+		Lock[] locks = new Lock[count + 1];
+		locks[0] = storage.readLock();
+		for(int i = 0 ; i < count ; i++)
+			locks[i + 1] = (modeOf[i] == 2) ? stripes[stripeOf[i]].writeLock() : stripes[stripeOf[i]].readLock();
+
+		return acquire(locks, persistentStorageTree);
+	}
+
+	/**
+	 * Locks the whole storage, so no other operation is in progress until the locks are released.
+	 * Must not be called while the same thread holds the locks of the directories
+	 * @return the held lock, which is released when closed
+	 * @throws IllegalStateException if the thread holds the locks of the directories
+	 */
+	public Held exclusive() {
+
+		if(!enabled)
+			return unlocked();
+		if(storage.getReadHoldCount() > 0)
+			throw new IllegalStateException("Storage can not be locked exclusively while its directories are locked by the same thread!");
+
+		return acquire(new Lock[] { storage.writeLock() }, persistentStorageTree);
+	}
+
+	private static Held acquire(Lock[] locks, PersistentStorageTree changed) {
+		int acquired = 0;
+		try {
+			for( ; acquired < locks.length ; acquired++)
+				locks[acquired].lock();
+		}
+		finally {
+			if(acquired < locks.length)
+				new Held(locks, acquired, null).close();
+		}
+
+		// promene se objavljuju samo na kraju spoljasnjeg zakljucavanja
+		if(changed != null && !changed.startChanges())
+			changed = null;
+
+		return new Held(locks, acquired, changed);
+	}
+
+	private Held unlocked() {
+		depth.incrementAndGet();
+		return unlocked;
+	}
+
+	private int stripe(FileMetadata directory) {
+		int h = directory.getFileID().hashCode();
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+
+	private static int length(FileMetadata[] directories) {
+		return (directories == null) ? 0 : directories.length;
+	}
+
+	/**
+	 * Locks taken by one operation, released in the reverse order after the changes of the persistent storage tree are published
+	 */
+	public static class Held implements AutoCloseable {
+
+		private final Lock[] locks;
+		private final int count;
+		// null if the changes are not collected under these locks
+		private final PersistentStorageTree changed;
+
+		private Held(Lock[] locks, int count, PersistentStorageTree changed) {
+			this.locks = locks;
+			this.count = count;
+			this.changed = changed;
+		}
+
+		@Override
+		public void close() {
+			try {
+				if(changed != null)
+					changed.publishChanges();
+			}
+			finally {
+				for(int i = count - 1 ; i >= 0 ; i--)
+					locks[i].unlock();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,575 @@
+package storageInformation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Binary snapshot of the storage information, read through the memory-mapped file, so only the parts of the file which are read are loaded.
+ * The file is made of the sections below:
+ * <ul>
+ * <li>header: magic number, version of the format, configuration of the storage and the offsets of the sections below</li>
+ * <li>strings: offsets of the strings, then UTF-8 bytes of all names and IDs, every distinct string is written once</li>
+ * <li>nodes: records of the same width, the storage directory first, then the content of every directory one after the other.
+ * Every record holds the index of its parent and the range of its content, so one directory can be read without reading the others</li>
+ * <li>attributes: paths and attributes of the storage directory and the configuration which does not have the fixed width</li>
+ * <li>IDs (since version 2): nodes sorted by their IDs, so the node with the given ID is found by the binary search</li>
+ * </ul>
+ * Numbers are written in big-endian order
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class StorageSnapshot {
+
+	public static final int MAGIC = 0x534B5354; // "SKST"
+	public static final int VERSION = 2;
+
+	private static final int NONE = -1;
+	private static final long NO_SIZE = Long.MIN_VALUE;
+
+	// header
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_VERSION = 4;
+	private static final int HEADER_FLAGS = 8;
+	private static final int HEADER_STORAGE_TREE_VERSION = 12;
+	private static final int HEADER_JOURNAL_SEQUENCE = 16;
+	private static final int HEADER_NEXT_FILE_ID = 20;
+	private static final int HEADER_STORAGE_SIZE = 28;
+	private static final int HEADER_STRING_COUNT = 36;
+	private static final int HEADER_NODE_COUNT = 40;
+	private static final int HEADER_STRINGS = 44;
+	private static final int HEADER_NODES = 48;
+	private static final int HEADER_ATTRIBUTES = 52;
+	private static final int HEADER_IDS = 56; // since version 2
+	private static final int HEADER_SIZE = 60;
+	private static final int HEADER_SIZE_V1 = 56;
+
+	// flags of the header
+	private static final int OFF_HEAP_STORAGE_TREE = 1;
+	private static final int PERSISTENT_STORAGE_TREE = 1 << 1;
+	private static final int LAZY_STORAGE_TREE = 1 << 2;
+	private static final int WARM_UP_STORAGE_TREE = 1 << 3;
+
+	// node record
+	private static final int NODE_ID = 0;
+	private static final int NODE_NAME = 4;
+	private static final int NODE_PARENT = 8;
+	private static final int NODE_FLAGS = 12;
+	private static final int NODE_FILES_LIMIT = 16;
+	private static final int NODE_FIRST_CHILD = 20;
+	private static final int NODE_CHILDREN = 24; // NONE if the node is not a directory of the storage tree
+	private static final int NODE_SIZE_BYTES = 28;
+	private static final int NODE_TIME_CREATED = 36;
+	private static final int NODE_TIME_MODIFIED = 44;
+	private static final int NODE_SIZE = 52;
+
+	// flags of the node
+	private static final int FILE = 1;
+	private static final int DIRECTORY = 1 << 1;
+	private static final int STORAGE = 1 << 2;
+	private static final int DATA_ROOT = 1 << 3;
+
+	private final ByteBuffer buffer;
+	private final int stringCount;
+	private final int nodeCount;
+	private final int strings;
+	private final int nodes;
+	private final int attributes;
+	private final int ids; // NONE if the snapshot does not have the IDs section
+	// strings are decoded on the first use
+	private final String[] decoded;
+
+
+	private StorageSnapshot(ByteBuffer buffer) throws IOException {
+		if(buffer.capacity() < HEADER_SIZE_V1 || buffer.getInt(HEADER_MAGIC) != MAGIC)
+			throw new IOException("File is not the storage snapshot!");
+		int version = buffer.getInt(HEADER_VERSION);
+		if(version < 1 || version > VERSION)
+			throw new IOException(String.format("Storage snapshot version %d is not supported!", version));
+
+		this.buffer = buffer;
+		this.stringCount = buffer.getInt(HEADER_STRING_COUNT);
+		this.nodeCount = buffer.getInt(HEADER_NODE_COUNT);
+		this.strings = buffer.getInt(HEADER_STRINGS);
+		this.nodes = buffer.getInt(HEADER_NODES);
+		this.attributes = buffer.getInt(HEADER_ATTRIBUTES);
+		this.ids = (version >= 2) ? buffer.getInt(HEADER_IDS) : NONE;
+		this.decoded = new String[stringCount];
+	}
+
+	/**
+	 * Maps the snapshot file to the memory. Only the header is read
+	 * @param path is the path of the snapshot file
+	 * @return the snapshot
+	 * @throws IOException if the file can not be read or is not the storage snapshot
+	 */
+	public static StorageSnapshot open(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// mapiranje ostaje vazece i posle zatvaranja kanala
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new StorageSnapshot(buffer);
+		}
+	}
+
+	/**
+	 * Writes the snapshot of the storage information. Storage tree is read from the storage directory down,
+	 * FileMetadata which can not be reached from the storage directory are not written
+	 * @param storageInformation is the storage information
+	 * @param path is the path of the snapshot file
+	 * @throws IOException if the file can not be written
+	 */
+	public static void write(StorageInformation storageInformation, Path path) throws IOException {
+		new Writer(storageInformation).write(path);
+	}
+
+	/**
+	 * Finds the snapshots in the directory, the oldest first. The first snapshot has the given file name, every later one is written 
+	 * under the same name followed by the number of its generation (see nextGeneration), so the snapshot which is mapped to the memory 
+	 * is never replaced while it is read (on Windows the mapped file can not be replaced nor deleted)
+	 * @param directory is the directory of the snapshots
+	 * @param fileName is the file name of the first snapshot
+	 * @return paths of the snapshots, empty if the directory has no snapshot
+	 * @throws IOException if the directory can not be read
+	 */
+	public static List<Path> generations(Path directory, String fileName) throws IOException {
+		List<Path> generations = new ArrayList<>();
+		try(Stream<Path> files = Files.list(directory)) {
+			files.filter(path -> generation(path, fileName) >= 0).forEach(generations::add);
+		}
+		generations.sort(Comparator.comparingLong(path -> generation(path, fileName)));
+		return generations;
+	}
+
+	/**
+	 * @param directory is the directory of the snapshots
+	 * @param fileName is the file name of the first snapshot
+	 * @return path under which the next snapshot is written, it does not exist yet
+	 * @throws IOException if the directory can not be read
+	 */
+	public static Path nextGeneration(Path directory, String fileName) throws IOException {
+		List<Path> generations = generations(directory, fileName);
+		long latest = generations.isEmpty() ? -1 : generation(generations.get(generations.size() - 1), fileName);
+		return directory.resolve(fileName + "." + (latest + 1));
+	}
+
+	// -1 ako putanja nije snimak
+	private static long generation(Path path, String fileName) {
+		String name = path.getFileName().toString();
+		if(name.equals(fileName))
+			return 0;
+		if(!name.startsWith(fileName + ".") || name.length() == fileName.length() + 1 || name.length() > fileName.length() + 19)
+			return -1;
+
+		for(int i = fileName.length() + 1 ; i < name.length() ; i++) {
+			if(name.charAt(i) < '0' || name.charAt(i) > '9')
+				return -1;
+		}
+		return Long.parseLong(name.substring(fileName.length() + 1));
+	}
+
+	public int getVersion() {
+		return buffer.getInt(HEADER_VERSION);
+	}
+
+	int getStorageTreeVersion() {
+		return buffer.getInt(HEADER_STORAGE_TREE_VERSION);
+	}
+
+	int getJournalSequence() {
+		return buffer.getInt(HEADER_JOURNAL_SEQUENCE);
+	}
+
+	long getNextFileID() {
+		return buffer.getLong(HEADER_NEXT_FILE_ID);
+	}
+
+	Long getStorageSize() {
+		long storageSize = buffer.getLong(HEADER_STORAGE_SIZE);
+		return (storageSize == NO_SIZE) ? null : storageSize;
+	}
+
+	boolean isOffHeapStorageTree() {
+		return (buffer.getInt(HEADER_FLAGS) & OFF_HEAP_STORAGE_TREE) != 0;
+	}
+
+	boolean isPersistentStorageTree() {
+		return (buffer.getInt(HEADER_FLAGS) & PERSISTENT_STORAGE_TREE) != 0;
+	}
+
+	boolean isLazyStorageTree() {
+		return (buffer.getInt(HEADER_FLAGS) & LAZY_STORAGE_TREE) != 0;
+	}
+
+	boolean isWarmUpStorageTree() {
+		return (buffer.getInt(HEADER_FLAGS) & WARM_UP_STORAGE_TREE) != 0;
+	}
+
+	/**
+	 * @return true if the nodes can be found by their IDs (see findNode)
+	 */
+	boolean hasIDs() {
+		return ids != NONE;
+	}
+
+	/**
+	 * Finds the node with the given ID by the binary search through the IDs section
+	 * @param fileID is the ID
+	 * @return index of the node, NONE if there is no node with the given ID or the snapshot does not have the IDs section
+	 */
+	int findNode(String fileID) {
+		if(ids == NONE || fileID == null)
+			return NONE;
+
+		int low = 0;
+		int high = nodeCount - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			int node = buffer.getInt(ids + middle * 4);
+			String id = getString(buffer.getInt(nodes + node * NODE_SIZE + NODE_ID));
+			int compared = (id == null) ? -1 : id.compareTo(fileID);
+			if(compared < 0)
+				low = middle + 1;
+			else if(compared > 0)
+				high = middle - 1;
+			else
+				return node;
+		}
+
+		return NONE;
+	}
+
+	/**
+	 * @param node is the index of the node
+	 * @return ID of the node
+	 */
+	String getFileID(int node) {
+		return getString(buffer.getInt(nodes + node * NODE_SIZE + NODE_ID));
+	}
+
+	/**
+	 * @return number of FileMetadata in the snapshot, together with the storage directory
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Reads the FileMetadata of the node. Storage directory (node 0) gets its paths and attributes as well
+	 * @param node is the index of the node
+	 * @param parent is the FileMetadata of the parent node, null for the storage directory
+	 * @return new FileMetadata
+	 */
+	FileMetadata getFileMetadata(int node, FileMetadata parent) {
+		int record = nodes + node * NODE_SIZE;
+		int flags = buffer.getInt(record + NODE_FLAGS);
+
+		FileMetadata f = new FileMetadata();
+		f.setFileID(getString(buffer.getInt(record + NODE_ID)));
+		f.setName(getString(buffer.getInt(record + NODE_NAME)));
+		f.setParent(parent);
+		f.setFile((flags & FILE) != 0);
+		f.setDirectory((flags & DIRECTORY) != 0);
+		f.setStorage((flags & STORAGE) != 0);
+		f.setDataRoot((flags & DATA_ROOT) != 0);
+		f.setNumOfFilesLimit(buffer.getInt(record + NODE_FILES_LIMIT));
+		f.setSize(buffer.getLong(record + NODE_SIZE_BYTES));
+		f.setTimeCreatedMillis(buffer.getLong(record + NODE_TIME_CREATED));
+		f.setTimeModifiedMillis(buffer.getLong(record + NODE_TIME_MODIFIED));
+
+		if(node == 0) {
+			int offset = attributes;
+			f.setAbsolutePath(getString(buffer.getInt(offset)));
+			f.setRelativePath(getString(buffer.getInt(offset + 4)));
+			long storageSize = buffer.getLong(offset + 8);
+			if(storageSize != NO_SIZE)
+				f.setStorageSize(storageSize);
+			Set<String> unsupportedFiles = new HashSet<>();
+			readStrings(offset + 16, unsupportedFiles);
+			if(!unsupportedFiles.isEmpty())
+				f.setUnsupportedFiles(unsupportedFiles);
+		}
+
+		return f;
+	}
+
+	/**
+	 * @param node is the index of the node
+	 * @return index of the parent node, NONE for the storage directory
+	 */
+	int getParent(int node) {
+		return buffer.getInt(nodes + node * NODE_SIZE + NODE_PARENT);
+	}
+
+	/**
+	 * @param node is the index of the directory
+	 * @return index of the first node of the directory content
+	 */
+	int getFirstChild(int node) {
+		return buffer.getInt(nodes + node * NODE_SIZE + NODE_FIRST_CHILD);
+	}
+
+	/**
+	 * @param node is the index of the node
+	 * @return number of the nodes in the directory content, NONE if the node is not a directory of the storage tree
+	 */
+	int getChildCount(int node) {
+		return buffer.getInt(nodes + node * NODE_SIZE + NODE_CHILDREN);
+	}
+
+	/**
+	 * Reads the configuration which follows the storage directory attributes
+	 * @param unsupportedFiles receives the unsupported files of the storage
+	 * @param dirNumberOfFilesLimit receives the files limits of the directories
+	 * @param ids receives the storage directory ID, the data root directory ID and the config file ID, in that order
+	 */
+	void readConfiguration(Set<String> unsupportedFiles, Map<String, Integer> dirNumberOfFilesLimit, String[] ids) {
+		int offset = attributes + 16;
+		offset = skipStrings(offset);
+		offset = readStrings(offset, unsupportedFiles);
+
+		int limits = buffer.getInt(offset);
+		offset += 4;
+		for(int i = 0 ; i < limits ; i++, offset += 8)
+			dirNumberOfFilesLimit.put(getString(buffer.getInt(offset)), buffer.getInt(offset + 4));
+
+		for(int i = 0 ; i < ids.length ; i++, offset += 4)
+			ids[i] = getString(buffer.getInt(offset));
+	}
+
+	private int readStrings(int offset, Set<String> strings) {
+		int count = buffer.getInt(offset);
+		offset += 4;
+		for(int i = 0 ; i < count ; i++, offset += 4)
+			strings.add(getString(buffer.getInt(offset)));
+		return offset;
+	}
+
+	private int skipStrings(int offset) {
+		return offset + 4 + buffer.getInt(offset) * 4;
+	}
+
+	private String getString(int index) {
+		if(index == NONE)
+			return null;
+
+		String string = decoded[index];
+		if(string == null) {
+			int start = buffer.getInt(strings + index * 4);
+			int end = buffer.getInt(strings + (index + 1) * 4);
+			byte[] bytes = new byte[end - start];
+			buffer.get(strings + (stringCount + 1) * 4 + start, bytes);
+			string = new String(bytes, StandardCharsets.UTF_8);
+			decoded[index] = string;
+		}
+
+		return string;
+	}
+
+	/**
+	 * Collects the nodes and strings first, so the offsets of all sections are known before the file is written
+	 */
+	private static class Writer {
+
+		private final StorageInformation storageInformation;
+		private final List<FileMetadata> nodes = new ArrayList<>();
+		private int[] parents;
+		private int[] firstChildren;
+		private int[] children;
+		private final Map<String, Integer> stringIndexes = new HashMap<>();
+		private final List<byte[]> strings = new ArrayList<>();
+		private int stringBytes = 0;
+
+		Writer(StorageInformation storageInformation) {
+			this.storageInformation = storageInformation;
+		}
+
+		void write(Path path) throws IOException {
+			collectNodes();
+
+			int[] ids = new int[nodes.size()];
+			int[] names = new int[nodes.size()];
+			for(int i = 0 ; i < nodes.size() ; i++) {
+				ids[i] = string(nodes.get(i).getFileID());
+				names[i] = string(nodes.get(i).getName());
+			}
+
+			FileMetadata storageDirectory = nodes.get(0);
+			int[] storageUnsupportedFiles = strings(storageDirectory.getUnsupportedFiles());
+			int[] unsupportedFiles = strings(storageInformation.getUnsupportedFiles());
+			Map<String, Integer> dirNumberOfFilesLimit = storageInformation.getDirNumberOfFilesLimit();
+			int[] limitKeys = new int[dirNumberOfFilesLimit.size()];
+			int[] limitValues = new int[dirNumberOfFilesLimit.size()];
+			int limit = 0;
+			for(Map.Entry<String, Integer> entry : dirNumberOfFilesLimit.entrySet()) {
+				limitKeys[limit] = string(entry.getKey());
+				limitValues[limit++] = (entry.getValue() != null) ? entry.getValue() : NONE;
+			}
+			int[] configurationIDs = { string(storageInformation.getStorageDirectoryID()), string(storageInformation.getDatarootDirectoryID()),
+					string(storageInformation.getConfigJSOnID()) };
+			int absolutePath = string(storageDirectory.getAbsolutePath());
+			int relativePath = string(storageDirectory.getRelativePath());
+
+			int stringsOffset = HEADER_SIZE;
+			int nodesOffset = stringsOffset + (strings.size() + 1) * 4 + stringBytes;
+			int attributesOffset = nodesOffset + nodes.size() * NODE_SIZE;
+			int idsOffset = attributesOffset + 8 + 8 + (1 + storageUnsupportedFiles.length) * 4 + (1 + unsupportedFiles.length) * 4
+					+ 4 + limitKeys.length * 8 + configurationIDs.length * 4;
+			Integer[] sorted = new Integer[nodes.size()];
+			for(int i = 0 ; i < sorted.length ; i++)
+				sorted[i] = i;
+			Arrays.sort(sorted, Comparator.comparing((Integer node) -> nodes.get(node).getFileID(), Comparator.nullsFirst(Comparator.naturalOrder())));
+
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+
+				Long storageSize = storageInformation.getStorageSize();
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt((storageInformation.isOffHeapStorageTree() ? OFF_HEAP_STORAGE_TREE : 0)
+						| (storageInformation.isPersistentStorageTree() ? PERSISTENT_STORAGE_TREE : 0)
+						| (storageInformation.isLazyStorageTree() ? LAZY_STORAGE_TREE : 0)
+						| (storageInformation.isWarmUpStorageTree() ? WARM_UP_STORAGE_TREE : 0));
+				out.writeInt(storageInformation.getStorageTreeVersion());
+				out.writeInt(storageInformation.getJournalSequence());
+				out.writeLong(storageInformation.getNextFileID());
+				out.writeLong((storageSize != null) ? storageSize : NO_SIZE);
+				out.writeInt(strings.size());
+				out.writeInt(nodes.size());
+				out.writeInt(stringsOffset);
+				out.writeInt(nodesOffset);
+				out.writeInt(attributesOffset);
+				out.writeInt(idsOffset);
+
+				int offset = 0;
+				for(byte[] string : strings) {
+					out.writeInt(offset);
+					offset += string.length;
+				}
+				out.writeInt(offset);
+				for(byte[] string : strings)
+					out.write(string);
+
+				for(int i = 0 ; i < nodes.size() ; i++) {
+					FileMetadata f = nodes.get(i);
+					Integer numOfFilesLimit = f.getNumOfFilesLimit();
+					out.writeInt(ids[i]);
+					out.writeInt(names[i]);
+					out.writeInt(parents[i]);
+					out.writeInt((f.isFile() ? FILE : 0) | (f.isDirectory() ? DIRECTORY : 0) | (f.isStorage() ? STORAGE : 0) | (f.isDataRoot() ? DATA_ROOT : 0));
+					out.writeInt((numOfFilesLimit != null) ? numOfFilesLimit : NONE);
+					out.writeInt(firstChildren[i]);
+					out.writeInt(children[i]);
+					out.writeLong(f.getSize());
+					out.writeLong(f.getTimeCreatedMillis());
+					out.writeLong(f.getTimeModifiedMillis());
+				}
+
+				Long storageDirectorySize = storageDirectory.getStorageSize();
+				out.writeInt(absolutePath);
+				out.writeInt(relativePath);
+				out.writeLong((storageDirectorySize != null) ? storageDirectorySize : NO_SIZE);
+				writeInts(out, storageUnsupportedFiles);
+				writeInts(out, unsupportedFiles);
+				out.writeInt(limitKeys.length);
+				for(int i = 0 ; i < limitKeys.length ; i++) {
+					out.writeInt(limitKeys[i]);
+					out.writeInt(limitValues[i]);
+				}
+				for(int id : configurationIDs)
+					out.writeInt(id);
+
+				for(int node : sorted)
+					out.writeInt(node);
+			}
+		}
+
+		// sadrzaj svakog direktorijuma dobija uzastopne indekse, redom po sirini
+		private void collectNodes() {
+			StorageTree storageTree = storageInformation.readStorageTree();
+			List<Integer> parentList = new ArrayList<>();
+			List<Integer> firstChildList = new ArrayList<>();
+			List<Integer> childrenList = new ArrayList<>();
+
+			nodes.add(storageInformation.getStorageDirectory());
+			parentList.add(NONE);
+
+			for(int i = 0 ; i < nodes.size() ; i++) {
+				FileMetadata f = nodes.get(i);
+				List<FileMetadata> content = f.isDirectory() ? storageTree.getDirectoryContent(f) : null;
+
+				firstChildList.add((content == null) ? NONE : nodes.size());
+				childrenList.add((content == null) ? NONE : content.size());
+				if(content == null)
+					continue;
+
+				for(FileMetadata child : content) {
+					nodes.add(child);
+					parentList.add(i);
+				}
+			}
+
+			parents = toArray(parentList);
+			firstChildren = toArray(firstChildList);
+			children = toArray(childrenList);
+		}
+
+		private int string(String string) {
+			if(string == null)
+				return NONE;
+
+			Integer index = stringIndexes.get(string);
+			if(index == null) {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				index = strings.size();
+				strings.add(bytes);
+				stringBytes += bytes.length;
+				stringIndexes.put(string, index);
+			}
+
+			return index;
+		}
+
+		private int[] strings(Set<String> set) {
+			if(set == null)
+				return new int[0];
+
+			int[] indexes = new int[set.size()];
+			int i = 0;
+			for(String string : set)
+				indexes[i++] = string(string);
+			return indexes;
+		}
+
+		private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+			out.writeInt(values.length);
+			for(int value : values)
+				out.writeInt(value);
+		}
+
+		private static int[] toArray(List<Integer> list) {
+			int[] array = new int[list.size()];
+			for(int i = 0 ; i < array.length ; i++)
+				array[i] = list.get(i);
+			return array;
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+package storageInformation;
+
+import java.util.List;
+import java.util.Map;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Holds the storage tree structure: the content of every directory in the storage. 
+ * StorageInformation keeps the tree behind this interface, so the tree can be held on the heap, outside of it or in the versions which are never changed
+ * 
+ * @author Luka Pavlovic
+ *
+ */
+public interface StorageTree {
+	
+	/**
+	 * Returns the content of the directory
+	 * @param directory is the directory
+	 * @return list of the FileMetadata which reside in the directory, null if directory is not in the storage tree structure
+	 */
+	List<FileMetadata> getDirectoryContent(FileMetadata directory);
+	
+	/**
+	 * @return number of FileMetadata in the storage tree structure
+	 */
+	int size();
+	
+	/**
+	 * Returns the number of FileMetadata which reside in the directory
+	 * @param directory is the directory
+	 * @return number of FileMetadata in the directory, 0 if directory is not in the storage tree structure
+	 */
+	int getDirectorySize(FileMetadata directory);
+	
+	/**
+	 * Returns the directories which reside in the directory, without going through the files in it
+	 * @param directory is the directory
+	 * @return list of the subdirectories, null if directory is not in the storage tree structure
+	 */
+	List<FileMetadata> getSubdirectories(FileMetadata directory);
+	
+	/**
+	 * Finds the FileMetadata with the given name in the directory
+	 * @param directory is the directory
+	 * @param name is the name of the FileMetadata
+	 * @return FileMetadata with the given name, null if directory or name does not exist
+	 */
+	FileMetadata getFileMetadata(FileMetadata directory, String name);
+	
+	/**
+	 * Finds all FileMetadata with the given name, in time proportional to the number of them
+	 * @param name is the name
+	 * @return list of the FileMetadata with the given name, empty if there are none
+	 */
+	List<FileMetadata> getFileMetadataByName(String name);
+	
+	/**
+	 * Registers an empty directory. Existing content of the directory is discarded
+	 * @param directory is the directory
+	 */
+	void addDirectory(FileMetadata directory);
+	
+	/**
+	 * Removes the directory and all of its subdirectories
+	 * @param directory is the directory
+	 */
+	void removeDirectory(FileMetadata directory);
+	
+	/**
+	 * Adds FileMetadata to the directory content and sets the directory as its parent
+	 * @param directory is the directory
+	 * @param fileMetadata is the FileMetadata to be added
+	 */
+	void addToDirectory(FileMetadata directory, FileMetadata fileMetadata);
+	
+	/**
+	 * Removes FileMetadata from the content of its parent directory
+	 * @param fileMetadata is the FileMetadata to be removed
+	 */
+	void removeFromDirectory(FileMetadata fileMetadata);
+	
+	/**
+	 * Moves FileMetadata to the other directory under the given name
+	 * @param fileMetadata is the FileMetadata to be moved
+	 * @param directory is the destination directory
+	 * @param name is the name which FileMetadata will have in the destination directory
+	 */
+	void moveToDirectory(FileMetadata fileMetadata, FileMetadata directory, String name);
+	
+	/**
+	 * Renames FileMetadata in its parent directory
+	 * @param fileMetadata is the FileMetadata to be renamed
+	 * @param name is the new name
+	 */
+	void renameInDirectory(FileMetadata fileMetadata, String name);
+	
+	/**
+	 * @return map of directory ID -> content of the directory, which is written to the JSON file
+	 */
+	Map<String, List<FileMetadata>> getStorageTreeStructure();
+	
+	/**
+	 * Returns the version of the storage tree which is not changed by the later changes, so it can be read without the locks. 
+	 * Storage trees which are changed in place can not give it
+	 * @return version of the storage tree which is only read, null if the storage tree is changed in place
+	 */
+	default StorageTree snapshot() {
+		return null;
+	}
+
+}
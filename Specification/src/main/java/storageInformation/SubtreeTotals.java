@@ -0,0 +1,39 @@
+package storageInformation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Total size and number of files under every directory, including the files in its subdirectories. Directories are kept
+ * by their IDs, directory which is not in the totals has no files under it. Every change is added by the caller to the directory
+ * where it happened and to all of its ancestors
+ *
+ * @author Luka Pavlovic
+ *
+ */
+class SubtreeTotals {
+
+	// directory ID -> [size, number of files]
+	private final Map<String, long[]> totals = new HashMap<>();
+
+	long getSize(String directoryID) {
+		long[] total = totals.get(directoryID);
+		return (total == null) ? 0L : total[0];
+	}
+
+	long getNumberOfFiles(String directoryID) {
+		long[] total = totals.get(directoryID);
+		return (total == null) ? 0L : total[1];
+	}
+
+	void add(String directoryID, long size, long numberOfFiles) {
+		long[] total = totals.computeIfAbsent(directoryID, k -> new long[2]);
+		total[0] += size;
+		total[1] += numberOfFiles;
+	}
+
+	void remove(String directoryID) {
+		totals.remove(directoryID);
+	}
+
+}
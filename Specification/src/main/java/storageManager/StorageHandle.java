@@ -0,0 +1,73 @@
+package storageManager;
+
+import storageInformation.StorageInformation;
+
+/**
+ * Handle of one open storage. While the handle is selected, operations of the Storage called by the same thread work with its storage,
+ * so one process can work with more storages at the same time, each from its own threads
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class StorageHandle {
+
+	private final String storagePath;
+	private final StorageInformation storageInformation;
+
+	StorageHandle(String storagePath, StorageInformation storageInformation) {
+		this.storagePath = storagePath;
+		this.storageInformation = storageInformation;
+	}
+
+	/**
+	 * Selects the storage for the current thread, until the returned selection is closed. Relative paths are resolved against
+	 * the current directory of the storage
+	 * @return the selection, which selects again the previously selected storage when closed
+	 */
+	public Selection select() {
+		return StorageManager.getInstance().select(this, null);
+	}
+
+	/**
+	 * @return new session of the storage, with the data root directory as its current directory
+	 */
+	public StorageSession openSession() {
+		return new StorageSession(this);
+	}
+
+	public String getStoragePath() {
+		return storagePath;
+	}
+
+	public StorageInformation getStorageInformation() {
+		return storageInformation;
+	}
+
+	public boolean isOpen() {
+		return StorageManager.getInstance().getOpenStorage(storagePath) == this;
+	}
+
+	@Override
+	public String toString() {
+		return storagePath;
+	}
+
+	/**
+	 * Storage and session selected for the current thread
+	 */
+	public static class Selection implements AutoCloseable {
+
+		private final StorageHandle previousHandle;
+		private final StorageSession previousSession;
+
+		Selection(StorageHandle previousHandle, StorageSession previousSession) {
+			this.previousHandle = previousHandle;
+			this.previousSession = previousSession;
+		}
+
+		@Override
+		public void close() {
+			StorageManager.getInstance().select(previousHandle, previousSession);
+		}
+	}
+}
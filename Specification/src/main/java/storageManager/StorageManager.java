@@ -1,40 +1,55 @@
 package storageManager;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fileMetadata.FileMetadata;
 import specification.Storage;
 import storageInformation.StorageInformation;
 
 /**
- * 
+ * Keeps the storages which are open, each with its own StorageInformation, so they are read once and kept in memory until they are closed.
+ * Operations of the Storage work with the storage which is selected for the current thread (see StorageHandle),
+ * otherwise with the default storage, which is the last one created or connected to. Relative paths are resolved against 
+ * the current directory of the session selected for the current thread (see StorageSession), otherwise against the current directory of the storage
+ *
  * @author Luka Pavlovic
  *
  */
 public class StorageManager {
-	
+
 	private static StorageManager instance = null;
 	private static Storage storage = null;
-	private StorageInformation storageInformation;
-	
-	
+	private volatile StorageInformation storageInformation;
+	// absolute path of the storage -> handle of the open storage
+	private final Map<String, StorageHandle> openStorages = new ConcurrentHashMap<>();
+	private final ThreadLocal<StorageHandle> selectedStorage = new ThreadLocal<>();
+	private final ThreadLocal<StorageSession> selectedSession = new ThreadLocal<>();
+
+
     public static void registerStorage(Storage storageImplementation) {
     	storage = storageImplementation;
     }
-    
+
 	private StorageManager() {
 		this.storageInformation = new StorageInformation();
 	}
-	
+
 	public static StorageManager getInstance() {
 		if(instance == null) {
-			
+
 			synchronized (StorageManager.class) {
 				if(instance == null)
 					instance = new StorageManager();
 			}
 		}
-		
+
 		return instance;
 	}
-	
+
 	public static Storage getStorage() {
 		return storage;
 	}
@@ -42,10 +57,91 @@ public class StorageManager {
 	public static void setStorage(Storage storage) {
 		StorageManager.storage = storage;
 	}
+
+	/**
+	 * @return information of the storage selected for the current thread, otherwise of the default storage
+	 */
 	public StorageInformation getStorageInformation() {
-		return storageInformation;
+		StorageHandle selected = selectedStorage.get();
+		return (selected != null) ? selected.getStorageInformation() : storageInformation;
 	}
+
+	/**
+	 * @param storageInformation is the information of the new default storage
+	 */
 	public void setStorageInformation(StorageInformation storageInformation) {
 		this.storageInformation = storageInformation;
 	}
+
+	/**
+	 * @return current directory of the session selected for the current thread, otherwise of the storage
+	 */
+	public FileMetadata getCurrentDirectory() {
+		StorageSession session = selectedSession.get();
+		return (session != null) ? session.getCurrentDirectory() : getStorageInformation().getCurrentDirectory();
+	}
+
+	/**
+	 * Changes the current directory of the session selected for the current thread, otherwise of the storage
+	 * @param currentDirectory is the new current directory
+	 */
+	public void setCurrentDirectory(FileMetadata currentDirectory) {
+		StorageSession session = selectedSession.get();
+		if(session != null)
+			session.setCurrentDirectory(currentDirectory);
+		else
+			getStorageInformation().setCurrentDirectory(currentDirectory);
+	}
+
+	/**
+	 * Adds the storage to the open storages. If the storage on the same path is already open, its handle is returned
+	 * @param storagePath is the path of the storage
+	 * @param storageInformation is the information of the storage
+	 * @return handle of the open storage
+	 */
+	public StorageHandle openStorage(String storagePath, StorageInformation storageInformation) {
+		String key = storageKey(storagePath);
+		return openStorages.computeIfAbsent(key, k -> new StorageHandle(k, storageInformation));
+	}
+
+	/**
+	 * @param storagePath is the path of the storage
+	 * @return handle of the storage, null if the storage is not open
+	 */
+	public StorageHandle getOpenStorage(String storagePath) {
+		return openStorages.get(storageKey(storagePath));
+	}
+
+	/**
+	 * @return handles of all open storages
+	 */
+	public List<StorageHandle> getOpenStorages() {
+		return new ArrayList<>(openStorages.values());
+	}
+
+	/**
+	 * Removes the storage from the open storages
+	 * @param storageInformation is the information of the storage
+	 */
+	public void closeStorage(StorageInformation storageInformation) {
+		openStorages.values().removeIf(handle -> handle.getStorageInformation() == storageInformation);
+	}
+
+	StorageHandle.Selection select(StorageHandle handle, StorageSession session) {
+		StorageHandle.Selection previous = new StorageHandle.Selection(selectedStorage.get(), selectedSession.get());
+		set(selectedStorage, handle);
+		set(selectedSession, session);
+		return previous;
+	}
+
+	private static <T> void set(ThreadLocal<T> selected, T value) {
+		if(value == null)
+			selected.remove();
+		else
+			selected.set(value);
+	}
+
+	private static String storageKey(String storagePath) {
+		return Paths.get(storagePath).toAbsolutePath().normalize().toString();
+	}
 }
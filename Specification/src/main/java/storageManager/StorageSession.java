@@ -0,0 +1,47 @@
+package storageManager;
+
+import fileMetadata.FileMetadata;
+import storageInformation.StorageInformation;
+
+/**
+ * Session of one client of the open storage. Sessions of the same storage share its storage tree, but every session has
+ * its own current directory, so clients which work with the storage at the same time do not change each other's current directory
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class StorageSession {
+
+	private final StorageHandle storageHandle;
+	private volatile FileMetadata currentDirectory;
+
+	StorageSession(StorageHandle storageHandle) {
+		this.storageHandle = storageHandle;
+		this.currentDirectory = storageHandle.getStorageInformation().getDatarootDirectory();
+	}
+
+	/**
+	 * Selects the session and its storage for the current thread, until the returned selection is closed.
+	 * Relative paths are resolved against the current directory of the session, and changing the directory changes only it
+	 * @return the selection, which selects again the previously selected storage and session when closed
+	 */
+	public StorageHandle.Selection select() {
+		return StorageManager.getInstance().select(storageHandle, this);
+	}
+
+	public StorageHandle getStorageHandle() {
+		return storageHandle;
+	}
+
+	public StorageInformation getStorageInformation() {
+		return storageHandle.getStorageInformation();
+	}
+
+	public FileMetadata getCurrentDirectory() {
+		return currentDirectory;
+	}
+
+	public void setCurrentDirectory(FileMetadata currentDirectory) {
+		this.currentDirectory = currentDirectory;
+	}
+}
@@ -0,0 +1,116 @@
+package fileMetadata;
+
+import java.io.StringReader;
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import storageInformation.StorageInformation;
+import storageInformation.StorageInformationFixtures;
+
+/**
+ * Memory benchmark of the interned path segments. Builds the storage tree, writes it to JSON and reads it back, and measures
+ * the heap held by the tree whose names are interned (PathSegments) and by the same tree after every FileMetadata gets
+ * its own copy of the name, which is how FileMetadata read from JSON held them before PathSegments.
+ * Then measures the time of PathSegments.intern called from several threads at once, the way the names are set 
+ * while the storage is used concurrently. 
+ * Not a test, run it with: java -Xmx2g fileMetadata.PathSegmentsBenchmark [directories] [files per directory] [threads]
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class PathSegmentsBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int directories = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+		int files = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+		int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+
+		long empty = usedMemory();
+		StorageInformation built = StorageInformationFixtures.createStorage("/benchmark/storage");
+		StorageInformationFixtures.addStorageTree(built, directories, files, new Random(1));
+		int entries = built.getStorageTreeSize();
+		long builtBytes = usedMemory() - empty;
+
+		Gson gson = new GsonBuilder().registerTypeAdapterFactory(new FileMetadataTypeAdapterFactory()).create();
+		String json = gson.toJson(built);
+		built = null;
+
+		StorageInformation reloaded = gson.fromJson(new StringReader(json), StorageInformation.class);
+		reloaded.linkStorageTree();
+		json = null;
+		long internedBytes = usedMemory() - empty;
+
+		// isto stablo, ali svaki FileMetadata ima svoju kopiju imena
+		Field name = FileMetadata.class.getDeclaredField("name");
+		name.setAccessible(true);
+		for(FileMetadata f : allFileMetadata(reloaded))
+			name.set(f, new String(f.getName()));
+		long copiedBytes = usedMemory() - empty;
+
+		System.out.printf("entries=%d%n", entries);
+		System.out.printf("built through StorageInformation   %5d B/entry%n", builtBytes / entries);
+		System.out.printf("after JSON reload, names interned  %5d B/entry%n", internedBytes / entries);
+		System.out.printf("after JSON reload, names copied    %5d B/entry%n", copiedBytes / entries);
+		// stablo mora da ostane dostupno dok se ne izmeri
+		Reference.reachabilityFence(reloaded);
+
+		// zagrevanje, pa merenje
+		internConcurrently(threads, files);
+		System.out.printf("intern from %d threads             %5.1f ns/call%n", threads, internConcurrently(threads, files));
+	}
+
+	// imena kakva dobijaju fajlovi u direktorijumima, svaki poziv sa novim String-om kao posle citanja iz JSON-a
+	private static double internConcurrently(int threads, int files) throws InterruptedException {
+		int calls = 2_000_000;
+		String[] names = new String[files * 20];
+		for(int i = 0 ; i < names.length ; i++)
+			names[i] = "file" + i + ".txt";
+
+		Thread[] workers = new Thread[threads];
+		long start = System.nanoTime();
+		for(int t = 0 ; t < threads ; t++) {
+			int seed = t;
+			workers[t] = new Thread(() -> {
+				for(int i = 0 ; i < calls ; i++)
+					PathSegments.intern(new String(names[(i + seed * 7919) % names.length]));
+			});
+			workers[t].start();
+		}
+		for(Thread worker : workers)
+			worker.join();
+
+		return (System.nanoTime() - start) / ((double) calls * threads);
+	}
+
+	private static List<FileMetadata> allFileMetadata(StorageInformation storageInformation) {
+		List<FileMetadata> all = new ArrayList<>();
+		Deque<FileMetadata> directories = new ArrayDeque<>();
+		directories.add(storageInformation.getStorageDirectory());
+		while(!directories.isEmpty()) {
+			for(FileMetadata f : storageInformation.getDirectoryContent(directories.poll())) {
+				all.add(f);
+				if(f.isDirectory())
+					directories.add(f);
+			}
+		}
+		return all;
+	}
+
+	private static long usedMemory() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0 ; i < 4 ; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,253 @@
+package specification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import exception.NotFound;
+import exception.OperationNotAllowed;
+import storageInformation.StorageInformation;
+import storageManager.StorageManager;
+
+/**
+ * Many threads change and read the same storage while the concurrent access is on, after that the storage tree
+ * and all indexes kept next to it must agree with each other
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class ConcurrentStorageStressTest {
+
+	static final String STORAGE = "/home/user/storages/stress";
+	static final String DATA_ROOT = STORAGE + "/" + StorageInformation.datarootDirName;
+	static final String[] NAMES = { "a", "b", "c.txt", "d.java", "ab.txt", "abc", "x.md", "readme" };
+
+	private static final int THREADS = 8;
+	private static final int OPERATIONS = 3000;
+
+	private MetadataStorage storage;
+
+	@AfterEach
+	public void tearDown() {
+		if(storage != null)
+			storage.setConcurrentAccess(false);
+	}
+
+	@Test
+	public void heapStorageTreeKeepsInvariants() throws Exception {
+		for(long seed = 1 ; seed <= 3 ; seed++)
+			stress(false, seed);
+	}
+
+	@Test
+	public void offHeapStorageTreeKeepsInvariants() throws Exception {
+		for(long seed = 1 ; seed <= 3 ; seed++)
+			stress(true, seed);
+	}
+
+	@Test
+	public void persistentStorageTreeKeepsEveryVersionWhole() throws Exception {
+		for(long seed = 1 ; seed <= 5 ; seed++) {
+			Set<String> directories = ConcurrentHashMap.newKeySet();
+			Set<String> files = ConcurrentHashMap.newKeySet();
+			storage = createStorage(directories, files);
+			StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+			storageInformation.setPersistentStorageTree(true);
+			storage.setConcurrentAccess(true);
+
+			// svaka verzija koju citaoci dobiju bez brava mora sama za sebe da bude cela
+			AtomicBoolean running = new AtomicBoolean(true);
+			AtomicReference<Throwable> versionError = new AtomicReference<>();
+			AtomicInteger versions = new AtomicInteger();
+			Thread reader = new Thread(() -> {
+				try {
+					while(running.get()) {
+						StorageInvariants.checkVersion(storageInformation, storageInformation.readStorageTree());
+						versions.incrementAndGet();
+					}
+				} catch (Throwable e) {
+					versionError.set(e);
+				}
+			});
+			reader.start();
+			List<Throwable> errors;
+			try {
+				errors = run(storage, directories, files, THREADS, 40000 / THREADS, seed);
+			}
+			finally {
+				running.set(false);
+				reader.join();
+			}
+			storage.setConcurrentAccess(false);
+
+			long failedSeed = seed;
+			assertTrue(errors.isEmpty(), () -> "seed " + failedSeed + ": " + errors.get(0));
+			assertNull(versionError.get(), () -> "seed " + failedSeed + ": " + versionError.get());
+			assertTrue(versions.get() > 0);
+			assertEquals(storageInformation.getStorageTreeSize(), StorageInvariants.check(storage, DATA_ROOT, NAMES));
+		}
+	}
+
+	private void stress(boolean offHeap, long seed) throws Exception {
+		Set<String> directories = ConcurrentHashMap.newKeySet();
+		Set<String> files = ConcurrentHashMap.newKeySet();
+		storage = createStorage(directories, files);
+		if(offHeap)
+			StorageManager.getInstance().getStorageInformation().setOffHeapStorageTree(true);
+		storage.setConcurrentAccess(true);
+
+		List<Throwable> errors = run(storage, directories, files, THREADS, OPERATIONS, seed);
+		storage.setConcurrentAccess(false);
+
+		assertTrue(errors.isEmpty(), () -> "seed " + seed + ": " + errors.get(0));
+		assertEquals(StorageManager.getInstance().getStorageInformation().getStorageTreeSize(),
+				StorageInvariants.check(storage, DATA_ROOT, NAMES));
+	}
+
+	/**
+	 * Creates the storage with 16 directories under the data root, each one with 4 subdirectories and 4 files,
+	 * and builds the indexes before the threads start, so they are kept while the storage is changed
+	 */
+	static MetadataStorage createStorage(Set<String> directories, Set<String> files) throws Exception {
+		MetadataStorage storage = new MetadataStorage();
+		storage.createStorage(STORAGE);
+		directories.add(DATA_ROOT);
+		for(int i = 0 ; i < 16 ; i++) {
+			String directory = storage.create(DATA_ROOT + "/top" + i, true);
+			directories.add(directory);
+			for(int j = 0 ; j < 4 ; j++) {
+				directories.add(storage.create(directory + "/sub" + j, true));
+				files.add(storage.create(directory + "/f" + j + ".txt", false));
+			}
+		}
+
+		storage.diskUsage(DATA_ROOT);
+		storage.find(DATA_ROOT + "/top0");
+		storage.findCreatedBetween(new Date(0), new Date());
+		storage.listDirectory(DATA_ROOT, false, false, true, null, "ab", null, null);
+		storage.findDestinantions("a");
+		return storage;
+	}
+
+	/**
+	 * Runs the random operations of the storage on the threads
+	 * @return errors thrown by the operations, the expected exceptions (NotFound, OperationNotAllowed) are not counted
+	 */
+	static List<Throwable> run(MetadataStorage storage, Set<String> directories, Set<String> files, int threads, int operations, long seed)
+			throws Exception {
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<>();
+		for(int t = 0 ; t < threads ; t++) {
+			Random random = new Random(seed * 1000 + t);
+			futures.add(pool.submit(() -> {
+				for(int i = 0 ; i < operations && errors.size() <= 20 ; i++) {
+					try {
+						operation(storage, directories, files, random);
+					} catch (Throwable e) {
+						errors.add(e);
+					}
+				}
+			}));
+		}
+		for(Future<?> future : futures)
+			future.get();
+		pool.shutdown();
+		return errors;
+	}
+
+	private static void operation(MetadataStorage storage, Set<String> directories, Set<String> files, Random random) throws Exception {
+		String directory = pick(directories, random);
+		String file = pick(files, random);
+		String name = NAMES[random.nextInt(NAMES.length)];
+		int operation = random.nextInt(100);
+
+		if(operation < 12) {
+			String path = storage.create(directory + "/" + name, true);
+			if(path != null)
+				directories.add(path);
+		}
+		else if(operation < 30) {
+			String path = storage.create(directory + "/" + name, false);
+			if(path != null)
+				files.add(path);
+		}
+		else if(operation < 40)
+			storage.writeToFile(file, "x".repeat(random.nextInt(40)), random.nextBoolean());
+		else if(operation < 47)
+			storage.move(file, directory);
+		else if(operation < 52)
+			storage.rename(file, name);
+		else if(operation < 55)
+			storage.remove(file);
+		else if(operation < 58)
+			storage.copyFile(file, directory);
+		else if(operation < 60) {
+			// direktorijumi se menjaju redje, jer sa sobom nose celo podstablo
+			String other = pick(directories, random);
+			if(other.equals(DATA_ROOT) || random.nextInt(2) == 0)
+				return;
+			int change = random.nextInt(8);
+			if(change < 3)
+				storage.move(other, directory);
+			else if(change < 6)
+				storage.rename(other, name);
+			else if(change < 7)
+				storage.remove(other);
+			else
+				storage.copyFile(other, directory);
+		}
+		else if(operation < 75) {
+			storage.find(file);
+			storage.find(directory + "/" + name);
+		}
+		else if(operation < 80)
+			storage.find(Arrays.asList(file, directory, directory + "/" + name, directory + "/zz"));
+		else {
+			try {
+				if(operation < 85)
+					storage.listDirectory(directory, false, false, random.nextBoolean(), null, null, null, null);
+				else if(operation < 88)
+					storage.listDirectory(directory, false, false, true, null, random.nextBoolean() ? "ab" : null, null, random.nextBoolean() ? "e" : null);
+				else if(operation < 90)
+					storage.listDirectoryStream(directory, false, true, true, null, null, null, null).count();
+				else if(operation < 94)
+					storage.diskUsage(directory);
+				else if(operation < 96)
+					storage.findDestinantions(name);
+				else if(operation < 98)
+					storage.findSizeBetween(1, 30);
+				else if(operation < 99)
+					storage.findLargestFiles(5);
+				else
+					storage.setParallelTraversal(random.nextBoolean());
+			} catch (NotFound | OperationNotAllowed e) {
+				// direktorijum je u medjuvremenu obrisan ili premesten
+			}
+		}
+	}
+
+	private static String pick(Set<String> set, Random random) {
+		Object[] elements = set.toArray();
+		return (String) elements[random.nextInt(elements.length)];
+	}
+
+}
@@ -0,0 +1,90 @@
+package specification;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import fileMetadata.FileMetadata;
+import storageInformation.StorageInformation;
+import storageManager.StorageManager;
+
+/**
+ * Benchmark of the recursive ls with the name filters. Every filter is run through the scan of the storage tree, through the name index
+ * and with the default choice between them, so it shows where the name index wins for the given storage tree.
+ * Storage has 50 projects with 2000 modules, every module has src/main with 50 .java files.
+ * Not a test, run it with: java -Xmx2g specification.ListDirectoryBenchmark [heap|offHeap|persistent]
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class ListDirectoryBenchmark {
+
+	private static final String STORAGE = "/home/user/storages/benchmark";
+	private static final String DATA_ROOT = STORAGE + "/" + StorageInformation.datarootDirName;
+
+	// extension, prefix, sufix, subWord
+	private static final String[][] FILTERS = {
+		{ ".java", null, null, null },
+		{ null, "file4", null, null },
+		{ null, null, "9.java", null },
+		{ null, null, "49.java", null },
+		{ null, null, null, "le42" },
+		{ null, null, null, "module1999" }
+	};
+
+	public static void main(String[] args) throws Exception {
+		String storageTree = (args.length > 0) ? args[0] : "heap";
+
+		MetadataStorage storage = new MetadataStorage();
+		storage.createStorage(STORAGE);
+		StorageInformation storageInformation = StorageManager.getInstance().getStorageInformation();
+		if(storageTree.equals("offHeap"))
+			storageInformation.setOffHeapStorageTree(true);
+		if(storageTree.equals("persistent"))
+			storageInformation.setPersistentStorageTree(true);
+
+		for(int module = 0 ; module < 2000 ; module++) {
+			String project = DATA_ROOT + "/project" + (module % 50);
+			if(module < 50)
+				storage.createDirectory(project);
+			String main = project + "/module" + module + "/src/main";
+			storage.createDirectory(project + "/module" + module);
+			storage.createDirectory(project + "/module" + module + "/src");
+			storage.createDirectory(main);
+			for(int file = 0 ; file < 50 ; file++)
+				storage.createFile(main + "/file" + file + ".java");
+		}
+		System.out.printf("%s storage tree, %d entries%n", storageTree, storageInformation.getStorageTreeSize());
+
+		int nameIndexRatio = storage.nameIndexRatio, offHeapNameIndexRatio = storage.offHeapNameIndexRatio;
+		// scan: indeks nikad ne prolazi granicu, index: indeks je uvek dovoljno selektivan
+		int[][] ratios = { { Integer.MAX_VALUE, Integer.MAX_VALUE }, { 1, 1 }, { nameIndexRatio, offHeapNameIndexRatio } };
+
+		for(String[] filter : FILTERS) {
+			double[] best = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+			int matches = 0;
+			for(int round = 0 ; round < 8 ; round++) {
+				for(int mode = 0 ; mode < ratios.length ; mode++) {
+					storage.nameIndexRatio = ratios[mode][0];
+					storage.offHeapNameIndexRatio = ratios[mode][1];
+					long start = System.nanoTime();
+					for(int i = 0 ; i < 20 ; i++)
+						matches = count(storage.listDirectory(DATA_ROOT, false, false, true, filter[0], filter[1], filter[2], filter[3]));
+					best[mode] = Math.min(best[mode], (System.nanoTime() - start) / 20e6);
+				}
+			}
+			System.out.printf("%-32s matches %6d   scan %6.2f ms   index %6.2f ms   default %6.2f ms%n",
+					Arrays.toString(filter), matches, best[0], best[1], best[2]);
+		}
+	}
+
+	private static int count(List<Map<String, List<FileMetadata>>> result) {
+		int count = 0;
+		for(Map<String, List<FileMetadata>> level : result) {
+			for(List<FileMetadata> content : level.values())
+				count += content.size();
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,139 @@
+package specification;
+
+import exception.DirectoryException;
+import exception.NotFound;
+import exception.OperationNotAllowed;
+import exception.StorageSizeException;
+import exception.UnsupportedFileException;
+import fileMetadata.FileMetadata;
+import storageInformation.StorageInformation;
+import storageManager.StorageManager;
+
+/**
+ * Storage which changes only the storage information, without the files on the disk and without the JSON file.
+ * Used by the tests and benchmarks of the operations which Storage implements for all storages
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class MetadataStorage extends Storage {
+
+	/**
+	 * Creates the storage as the new default storage, whose size is not limited
+	 */
+	@Override
+	public boolean createStorage(String dest) {
+		StorageInformation storageInformation = new StorageInformation();
+		storageInformation.setStorageSize(null);
+		StorageManager.getInstance().setStorageInformation(storageInformation);
+		createStorageTreeStructure(dest);
+		storageInformation.setStorageConnected(true);
+		return true;
+	}
+
+	@Override
+	public boolean connectToStorage(String src) {
+		return true;
+	}
+
+	@Override
+	public boolean disconnectFromStorage() {
+		StorageManager.getInstance().getStorageInformation().setStorageConnected(false);
+		return true;
+	}
+
+	@Override
+	public boolean createDirectory(String dest, Integer... filesLimit) {
+		return create(dest, true) != null;
+	}
+
+	@Override
+	public boolean createFile(String dest) {
+		return create(dest, false) != null;
+	}
+
+	/**
+	 * @param dest is the path of the new file or directory
+	 * @param directory true if the directory is created
+	 * @return absolute path of the created file or directory, null if it can not be created
+	 */
+	public String create(String dest, boolean directory) {
+		FileMetadata fileMetadata = new FileMetadata();
+		fileMetadata.setDirectory(directory);
+		fileMetadata.setFile(!directory);
+		try {
+			return addFileMetadataToStorage(dest, fileMetadata);
+		} catch (NotFound | StorageSizeException | DirectoryException | UnsupportedFileException | OperationNotAllowed e) {
+			return null;
+		}
+	}
+
+	@Override
+	public boolean move(String filePath, String newDest) {
+		try {
+			moveFileMetadata(filePath, newDest);
+			return true;
+		} catch (NotFound | DirectoryException | OperationNotAllowed e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean remove(String filePath) {
+		try {
+			return removeFileMetadataFromStorage(filePath);
+		} catch (NotFound e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean rename(String filePath, String newName) {
+		try {
+			renameFileMetadata(filePath, newName);
+			return true;
+		} catch (NotFound e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean download(String filePath, String downloadDest) {
+		return false;
+	}
+
+	@Override
+	public boolean copyFile(String filePath, String dest) {
+		try {
+			copyFileMetadata(filePath, dest);
+			return true;
+		} catch (NotFound | DirectoryException | StorageSizeException | OperationNotAllowed e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean writeToFile(String filePath, String text, boolean append) {
+		try {
+			return writeToFileMetadata(filePath, text, append);
+		} catch (NotFound | OperationNotAllowed | StorageSizeException e) {
+			return false;
+		}
+	}
+
+	@Override
+	protected boolean checkStorageExistence(String path) {
+		return false;
+	}
+
+	@Override
+	protected void saveToJSON(Object obj) {
+
+	}
+
+	@Override
+	protected void readFromJSON(Object obj, String path) {
+
+	}
+
+}
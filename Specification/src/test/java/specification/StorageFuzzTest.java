@@ -0,0 +1,496 @@
+package specification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import fileMetadata.FileMetadata;
+import storageInformation.StorageInformation;
+import storageManager.StorageManager;
+
+/**
+ * Random changes of the storage from one thread. After every change the results of the operations which go through the indexes
+ * (name index, attribute indexes, subtree totals, path filter, parallel traversal) are compared with the results computed
+ * by going through the whole storage tree
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class StorageFuzzTest {
+
+	private static final String STORAGE = "/home/user/storages/fuzz";
+	private static final String DATA_ROOT = STORAGE + "/" + StorageInformation.datarootDirName;
+	private static final String[] NAMES = { "a", "b", "c.txt", "d.java", "ab.txt", "abc", "x.md", "readme" };
+	// delovi imena za filtere
+	private static final String[] QUERIES = { null, "", "a", "ab", ".txt", "t", "b", "abc", "c.t", "re", "readme", "zz", ".java", "x" };
+
+	private static final int STEPS = 300;
+
+	private MetadataStorage storage;
+	private StorageInformation storageInformation;
+	private Random random;
+
+	@Test
+	public void heapStorageTreeAgreesWithTheIndexes() throws Exception {
+		for(long seed = 1 ; seed <= 2 ; seed++)
+			fuzz("heap", seed);
+	}
+
+	@Test
+	public void offHeapStorageTreeAgreesWithTheIndexes() throws Exception {
+		for(long seed = 1 ; seed <= 2 ; seed++)
+			fuzz("offHeap", seed);
+	}
+
+	@Test
+	public void persistentStorageTreeAgreesWithTheIndexes() throws Exception {
+		for(long seed = 1 ; seed <= 2 ; seed++)
+			fuzz("persistent", seed);
+	}
+
+	private void fuzz(String storageTree, long seed) throws Exception {
+		storage = new MetadataStorage();
+		storage.createStorage(STORAGE);
+		storageInformation = StorageManager.getInstance().getStorageInformation();
+		if(storageTree.equals("offHeap"))
+			storageInformation.setOffHeapStorageTree(true);
+		if(storageTree.equals("persistent"))
+			storageInformation.setPersistentStorageTree(true);
+		random = new Random(seed);
+
+		for(int step = 0 ; step < STEPS ; step++) {
+			change();
+			String at = storageTree + " seed " + seed + " step " + step;
+			List<FileMetadata> data = dataFileMetadata();
+			checkDestinations(data, at);
+			checkListing(data, at);
+			if(data.isEmpty())
+				continue;
+			checkAttributes(data, at);
+			checkPaths(data, at);
+			checkStream(data, at);
+			checkParallelTraversal(data, at);
+			checkSort(data, at);
+		}
+	}
+
+	private void change() {
+		List<FileMetadata> data = dataFileMetadata();
+		List<String> directories = new ArrayList<>();
+		List<String> paths = new ArrayList<>();
+		directories.add(DATA_ROOT);
+		for(FileMetadata f : data) {
+			paths.add(f.getAbsolutePath());
+			if(f.isDirectory())
+				directories.add(f.getAbsolutePath());
+		}
+
+		String directory = directories.get(random.nextInt(directories.size()));
+		String path = paths.isEmpty() ? null : paths.get(random.nextInt(paths.size()));
+		String name = NAMES[random.nextInt(NAMES.length)];
+		int operation = random.nextInt(10);
+
+		if(operation < 3)
+			storage.createDirectory(directory + "/" + name);
+		else if(operation < 6)
+			storage.createFile(directory + "/" + name);
+		else if(path == null)
+			return;
+		else if(operation == 6)
+			storage.move(path, directory);
+		else if(operation == 7)
+			storage.rename(path, name);
+		else if(operation == 8) {
+			if(random.nextInt(3) == 0)
+				storage.remove(path);
+		}
+		else if(random.nextBoolean())
+			storage.copyFile(path, directory);
+		else
+			storage.writeToFile(path, "x".repeat(random.nextInt(50)), random.nextBoolean());
+	}
+
+	private void checkDestinations(List<FileMetadata> data, String at) throws Exception {
+		for(String name : NAMES) {
+			Set<String> expected = new TreeSet<>();
+			for(FileMetadata f : allFileMetadata()) {
+				if(f.getName().equals(name))
+					expected.add(f.getAbsolutePath());
+			}
+			assertEquals(expected, new TreeSet<>(storage.findDestinantions(name)), at + " findDestinantions " + name);
+		}
+	}
+
+	private void checkListing(List<FileMetadata> data, String at) throws Exception {
+		List<FileMetadata> directories = directories(data);
+		for(int i = 0 ; i < 4 ; i++) {
+			FileMetadata directory = directories.get(random.nextInt(directories.size()));
+			boolean onlyDirs = random.nextInt(4) == 0, onlyFiles = random.nextInt(4) == 0, searchSubDirectories = random.nextBoolean();
+			String extension = query(1), prefix = query(3), sufix = query(3), subWord = query(2);
+
+			List<Map<String, List<FileMetadata>>> expected = listDirectory(directory, onlyDirs, onlyFiles, searchSubDirectories, extension, prefix, sufix, subWord);
+			List<Map<String, List<FileMetadata>>> listed = storage.listDirectory(directory.getAbsolutePath(), onlyDirs, onlyFiles, searchSubDirectories,
+					extension, prefix, sufix, subWord);
+			assertEquals(expected, listed, at + " listDirectory " + directory.getRelativePath());
+		}
+	}
+
+	private void checkAttributes(List<FileMetadata> data, String at) throws Exception {
+		long low = Long.MAX_VALUE, high = Long.MIN_VALUE;
+		for(FileMetadata f : data) {
+			low = Math.min(low, Math.min(f.getTimeCreatedMillis(), f.getTimeModifiedMillis()));
+			high = Math.max(high, Math.max(f.getTimeCreatedMillis(), f.getTimeModifiedMillis()));
+		}
+
+		for(int i = 0 ; i < 3 ; i++) {
+			long first = low + (long) (random.nextDouble() * (high - low + 1)), second = low + (long) (random.nextDouble() * (high - low + 1));
+			long from = Math.min(first, second), to = Math.max(first, second);
+			long minSize = random.nextInt(30), maxSize = minSize + random.nextInt(80);
+
+			Set<String> created = new TreeSet<>(), modified = new TreeSet<>(), sized = new TreeSet<>();
+			for(FileMetadata f : data) {
+				if(f.getTimeCreatedMillis() >= from && f.getTimeCreatedMillis() <= to)
+					created.add(f.getAbsolutePath());
+				if(f.getTimeModifiedMillis() >= from && f.getTimeModifiedMillis() <= to)
+					modified.add(f.getAbsolutePath());
+				if(f.isFile() && f.getSize() >= minSize && f.getSize() <= maxSize)
+					sized.add(f.getAbsolutePath());
+			}
+
+			List<FileMetadata> foundCreated = storage.findCreatedBetween(new Date(from), new Date(to));
+			List<FileMetadata> foundModified = storage.findModifiedBetween(new Date(from), new Date(to));
+			List<FileMetadata> foundSized = storage.findSizeBetween(minSize, maxSize);
+			assertEquals(created, paths(foundCreated), at + " findCreatedBetween");
+			assertEquals(modified, paths(foundModified), at + " findModifiedBetween");
+			assertEquals(sized, paths(foundSized), at + " findSizeBetween");
+			assertTrue(sorted(foundCreated, Comparator.comparingLong(FileMetadata::getTimeCreatedMillis)), at + " order of findCreatedBetween");
+			assertTrue(sorted(foundModified, Comparator.comparingLong(FileMetadata::getTimeModifiedMillis)), at + " order of findModifiedBetween");
+			assertTrue(sorted(foundSized, Comparator.comparingLong(FileMetadata::getSize)), at + " order of findSizeBetween");
+		}
+
+		List<Long> sizes = new ArrayList<>();
+		for(FileMetadata f : data) {
+			if(f.isFile())
+				sizes.add(f.getSize());
+		}
+		sizes.sort(Collections.reverseOrder());
+		int n = 1 + random.nextInt(8);
+		List<Long> largest = new ArrayList<>();
+		for(FileMetadata f : storage.findLargestFiles(n))
+			largest.add(f.getSize());
+		assertEquals(sizes.subList(0, Math.min(n, sizes.size())), largest, at + " findLargestFiles");
+	}
+
+	private void checkPaths(List<FileMetadata> data, String at) throws Exception {
+		for(FileMetadata directory : directories(data)) {
+			long size = 0, files = 0;
+			for(FileMetadata f : data) {
+				if(f.isFile() && f.getAbsolutePath().startsWith(directory.getAbsolutePath() + "/")) {
+					size += f.getSize();
+					files++;
+				}
+			}
+			DiskUsage diskUsage = storage.diskUsage(directory.getAbsolutePath());
+			assertEquals(size, diskUsage.getSize(), at + " diskUsage " + directory.getAbsolutePath());
+			assertEquals(files, diskUsage.getNumberOfFiles(), at + " diskUsage " + directory.getAbsolutePath());
+		}
+
+		for(FileMetadata f : data) {
+			assertTrue(storage.find(f.getAbsolutePath()) && storage.find(f.getRelativePath()), at + " find " + f.getAbsolutePath());
+			if(f.isFile()) {
+				DiskUsage diskUsage = storage.diskUsage(f.getRelativePath());
+				assertEquals(f.getSize().longValue(), diskUsage.getSize(), at + " diskUsage " + f.getAbsolutePath());
+				assertEquals(1, diskUsage.getNumberOfFiles(), at + " diskUsage " + f.getAbsolutePath());
+			}
+		}
+
+		// postojece putanje, putanje koje ne postoje i putanje u drugim oblicima
+		List<String> paths = new ArrayList<>();
+		for(int i = 0 ; i < 60 ; i++) {
+			FileMetadata f = data.get(random.nextInt(data.size()));
+			switch(random.nextInt(7)) {
+			case 0: paths.add(f.getAbsolutePath()); break;
+			case 1: paths.add(f.getRelativePath()); break;
+			case 2: paths.add(f.getAbsolutePath() + "/" + QUERIES[random.nextInt(QUERIES.length)]); break;
+			case 3: paths.add(f.getRelativePath() + "/../" + f.getName()); break;
+			case 4: paths.add(f.getName()); break;
+			case 5: paths.add(random.nextBoolean() ? storageInformation.getDatarootDirectory().getRelativePath() : "/" + f.getRelativePath()); break;
+			default: paths.add(f.getAbsolutePath().substring(0, f.getAbsolutePath().length() - 1));
+			}
+		}
+		paths.add(paths.get(0));
+
+		Map<String, Boolean> found = storage.find(paths);
+		assertEquals(new HashSet<>(paths).size(), found.size(), at + " find of the list");
+		for(String path : paths)
+			assertEquals(storage.find(path), found.get(path), at + " find of the list " + path);
+	}
+
+	private void checkStream(List<FileMetadata> data, String at) throws Exception {
+		List<FileMetadata> directories = directories(data);
+		for(int i = 0 ; i < 3 ; i++) {
+			FileMetadata directory = directories.get(random.nextInt(directories.size()));
+			boolean onlyDirs = random.nextInt(4) == 0, onlyFiles = random.nextInt(4) == 0, searchSubDirectories = random.nextBoolean();
+			String extension = query(3), prefix = query(3), sufix = query(3), subWord = query(2);
+
+			List<Map<String, List<FileMetadata>>> streamed = new ArrayList<>();
+			int depth = 0;
+			for(Iterator<ListingEntry> it = storage.listDirectoryStream(directory.getAbsolutePath(), onlyDirs, onlyFiles, searchSubDirectories,
+					extension, prefix, sufix, subWord).iterator() ; it.hasNext() ; ) {
+				ListingEntry entry = it.next();
+				assertTrue(entry.getDepth() >= depth, at + " order of the depths in the stream");
+				assertEquals(entry.getFileMetadata().getParent().getRelativePath(), entry.getParentPath(), at + " parent in the stream");
+				depth = entry.getDepth();
+				while(streamed.size() <= depth)
+					streamed.add(new HashMap<>());
+				streamed.get(depth).computeIfAbsent(entry.getParentPath(), k -> new ArrayList<>()).add(entry.getFileMetadata());
+			}
+
+			// tok ne sadrzi direktorijume bez pogodaka
+			List<Map<String, List<FileMetadata>>> expected = listDirectory(directory, onlyDirs, onlyFiles, searchSubDirectories, extension, prefix, sufix, subWord);
+			for(int level = 0 ; level < expected.size() ; level++) {
+				Map<String, List<FileMetadata>> withMatches = new HashMap<>();
+				for(Map.Entry<String, List<FileMetadata>> entry : expected.get(level).entrySet()) {
+					if(!entry.getValue().isEmpty())
+						withMatches.put(entry.getKey(), entry.getValue());
+				}
+				assertEquals(withMatches, (level < streamed.size()) ? streamed.get(level) : new HashMap<>(), at + " listDirectoryStream " + directory.getRelativePath());
+			}
+		}
+	}
+
+	private void checkParallelTraversal(List<FileMetadata> data, String at) throws Exception {
+		List<FileMetadata> directories = directories(data);
+		long low = Long.MAX_VALUE, high = Long.MIN_VALUE;
+		for(FileMetadata f : data) {
+			low = Math.min(low, f.getTimeModifiedMillis());
+			high = Math.max(high, f.getTimeModifiedMillis());
+		}
+
+		for(int i = 0 ; i < 2 ; i++) {
+			FileMetadata directory = directories.get(random.nextInt(directories.size()));
+			boolean onlyDirs = random.nextInt(4) == 0, onlyFiles = random.nextInt(4) == 0;
+			String extension = query(3), subWord = query(3);
+			boolean[] attributes = new boolean[8];
+			for(int j = 0 ; j < attributes.length ; j++)
+				attributes[j] = random.nextBoolean();
+			Date[][] periods = { { new Date(low), new Date(low + (high - low) / 2) }, { null, null } };
+
+			try {
+				storage.setParallelTraversal(false);
+				List<Map<String, List<FileMetadata>>> sequential = storage.listDirectory(directory.getAbsolutePath(), onlyDirs, onlyFiles, true,
+						extension, null, null, subWord);
+				String listed = order(sequential);
+				String filtered = storage.filterAttributes(sequential, attributes, periods).toString();
+				assertEquals(listed, order(sequential), at + " filterAttributes changed the listing");
+
+				storage.setParallelTraversal(true);
+				List<Map<String, List<FileMetadata>>> parallel = storage.listDirectory(directory.getAbsolutePath(), onlyDirs, onlyFiles, true,
+						extension, null, null, subWord);
+				assertEquals(listed, order(parallel), at + " parallel listDirectory " + directory.getRelativePath());
+				assertEquals(filtered, storage.filterAttributes(parallel, attributes, periods).toString(), at + " parallel filterAttributes");
+			}
+			finally {
+				storage.setParallelTraversal(false);
+			}
+		}
+	}
+
+	private void checkSort(List<FileMetadata> data, String at) throws Exception {
+		List<FileMetadata> directories = directories(data);
+		for(int i = 0 ; i < 2 ; i++) {
+			boolean byName = random.nextBoolean(), byCreated = random.nextBoolean(), byModified = random.nextBoolean(), descending = random.nextBoolean();
+			Comparator<FileMetadata> comparator = null;
+			if(byName || (!byCreated && !byModified))
+				comparator = Comparator.comparing(FileMetadata::getName);
+			if(byCreated)
+				comparator = then(comparator, Comparator.comparingLong(FileMetadata::getTimeCreatedMillis));
+			if(byModified)
+				comparator = then(comparator, Comparator.comparingLong(FileMetadata::getTimeModifiedMillis));
+			if(descending)
+				comparator = comparator.reversed();
+
+			FileMetadata directory = directories.get(random.nextInt(directories.size()));
+			List<Map<String, List<FileMetadata>>> listed = storage.listDirectory(directory.getAbsolutePath(), false, random.nextBoolean(), true,
+					null, null, null, null);
+			List<FileMetadata> expected = new ArrayList<>();
+			for(Map<String, List<FileMetadata>> level : listed) {
+				for(List<FileMetadata> content : level.values())
+					expected.addAll(content);
+			}
+			expected.sort(comparator);
+
+			assertEquals(expected, storage.resultSortGlobal(listed, byName, byCreated, byModified, !descending, descending), at + " resultSortGlobal");
+			int n = 1 + random.nextInt(10);
+			assertEquals(expected.subList(0, Math.min(n, expected.size())),
+					storage.resultTop(listed, byName, byCreated, byModified, !descending, descending, n), at + " resultTop " + n);
+
+			Map<String, List<FileMetadata>> sortedContent = new HashMap<>();
+			for(Map<String, List<FileMetadata>> level : listed) {
+				for(Map.Entry<String, List<FileMetadata>> entry : level.entrySet()) {
+					List<FileMetadata> content = new ArrayList<>(entry.getValue());
+					content.sort(comparator);
+					sortedContent.put(entry.getKey(), content);
+				}
+			}
+			List<FileMetadata> directoryContent = new ArrayList<>(storageInformation.getDirectoryContent(directory));
+			storage.resultSort(listed, byName, byCreated, byModified, !descending, descending);
+			for(Map<String, List<FileMetadata>> level : listed) {
+				for(Map.Entry<String, List<FileMetadata>> entry : level.entrySet())
+					assertEquals(sortedContent.get(entry.getKey()), entry.getValue(), at + " resultSort " + entry.getKey());
+			}
+			assertEquals(directoryContent, storageInformation.getDirectoryContent(directory), at + " resultSort changed the storage tree");
+		}
+	}
+
+	/**
+	 * listDirectory as it was before the indexes: goes through the directories by levels and filters their content
+	 */
+	private List<Map<String, List<FileMetadata>>> listDirectory(FileMetadata directory, boolean onlyDirs, boolean onlyFiles, boolean searchSubDirecories,
+			String extension, String prefix, String sufix, String subWord) {
+
+		if(onlyDirs)
+			onlyFiles = false;
+		if(prefix != null && prefix.length() > 0) {
+			sufix = null;
+			subWord = null;
+		}
+		if(sufix != null && sufix.length() > 0)
+			subWord = null;
+
+		List<Map<String, List<FileMetadata>>> result = new ArrayList<>();
+		Queue<FileMetadata> directories = new LinkedList<>();
+		Queue<Integer> depths = new LinkedList<>();
+		directories.add(directory);
+		depths.add(0);
+		result.add(new HashMap<>());
+		while(!directories.isEmpty()) {
+			FileMetadata next = directories.poll();
+			int depth = depths.poll();
+			List<FileMetadata> content = storageInformation.getDirectoryContent(next);
+			result.get(depth).put(next.getRelativePath(), content);
+			if(!searchSubDirecories)
+				break;
+
+			boolean levelAdded = false;
+			for(FileMetadata f : content) {
+				if(!f.isDirectory())
+					continue;
+				directories.add(f);
+				depths.add(depth + 1);
+				if(!levelAdded) {
+					levelAdded = true;
+					result.add(new HashMap<>());
+				}
+			}
+		}
+
+		for(Map<String, List<FileMetadata>> level : result) {
+			for(Map.Entry<String, List<FileMetadata>> entry : level.entrySet()) {
+				List<FileMetadata> filtered = new ArrayList<>();
+				for(FileMetadata f : entry.getValue()) {
+					if((onlyDirs && !f.isDirectory()) || (onlyFiles && !f.isFile()))
+						continue;
+					if((extension != null && !f.getName().endsWith(extension)) || (prefix != null && !f.getName().startsWith(prefix)))
+						continue;
+					if((sufix != null && !f.getName().endsWith(sufix)) || (subWord != null && !f.getName().contains(subWord)))
+						continue;
+					filtered.add(f);
+				}
+				entry.setValue(filtered);
+			}
+		}
+		return result;
+	}
+
+	private List<FileMetadata> allFileMetadata() {
+		List<FileMetadata> all = new ArrayList<>();
+		Deque<FileMetadata> directories = new ArrayDeque<>();
+		directories.add(storageInformation.getStorageDirectory());
+		while(!directories.isEmpty()) {
+			for(FileMetadata f : storageInformation.getDirectoryContent(directories.poll())) {
+				all.add(f);
+				if(f.isDirectory())
+					directories.add(f);
+			}
+		}
+		return all;
+	}
+
+	private List<FileMetadata> dataFileMetadata() {
+		List<FileMetadata> data = new ArrayList<>();
+		for(FileMetadata f : allFileMetadata()) {
+			if(f.getAbsolutePath().startsWith(DATA_ROOT + "/"))
+				data.add(f);
+		}
+		return data;
+	}
+
+	private List<FileMetadata> directories(List<FileMetadata> data) {
+		List<FileMetadata> directories = new ArrayList<>();
+		directories.add(storageInformation.getDatarootDirectory());
+		for(FileMetadata f : data) {
+			if(f.isDirectory())
+				directories.add(f);
+		}
+		return directories;
+	}
+
+	// deo imena za filter, ili null sa verovatnocom 1 - 1/odds
+	private String query(int odds) {
+		return (random.nextInt(odds) == 0) ? QUERIES[random.nextInt(QUERIES.length)] : null;
+	}
+
+	private static Comparator<FileMetadata> then(Comparator<FileMetadata> comparator, Comparator<FileMetadata> next) {
+		return (comparator == null) ? next : comparator.thenComparing(next);
+	}
+
+	private static boolean sorted(List<FileMetadata> list, Comparator<FileMetadata> comparator) {
+		for(int i = 1 ; i < list.size() ; i++) {
+			if(comparator.compare(list.get(i - 1), list.get(i)) > 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static Set<String> paths(List<FileMetadata> list) {
+		Set<String> paths = new TreeSet<>();
+		for(FileMetadata f : list) {
+			if(!paths.add(f.getAbsolutePath()))
+				throw new AssertionError("duplicate " + f.getAbsolutePath());
+		}
+		return paths;
+	}
+
+	private static String order(List<Map<String, List<FileMetadata>>> listed) {
+		StringBuilder order = new StringBuilder();
+		for(Map<String, List<FileMetadata>> level : listed) {
+			order.append('|');
+			for(Map.Entry<String, List<FileMetadata>> entry : level.entrySet()) {
+				order.append(entry.getKey()).append('=');
+				for(FileMetadata f : entry.getValue())
+					order.append(f.getName()).append(',');
+			}
+		}
+		return order.toString();
+	}
+
+}
@@ -0,0 +1,183 @@
+package specification;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fileMetadata.FileMetadata;
+import storageInformation.StorageInformation;
+import storageInformation.StorageTree;
+
+/**
+ * Checks of the storage tree and of the indexes kept next to it, used after the storage was changed by many threads
+ *
+ * @author Luka Pavlovic
+ *
+ */
+final class StorageInvariants {
+
+	private StorageInvariants() {
+
+	}
+
+	/**
+	 * Checks the whole storage: names are unique in every directory, every FileMetadata has its directory as the parent, IDs are unique,
+	 * there are no directories which can not be reached from the storage directory, and the size of the tree, the name index,
+	 * the subdirectories, the subtree totals, the size index, the path filter and the name search agree with the tree
+	 * @param storage is the storage
+	 * @param dataRoot is the absolute path of the data root directory
+	 * @param names are the names which were used, the name index must not hold the ones which are not in the tree any more
+	 * @return number of FileMetadata in the tree
+	 * @throws Exception if the storage can not be read
+	 */
+	static int check(Storage storage, String dataRoot, String... names) throws Exception {
+		StorageInformation storageInformation = storageManager.StorageManager.getInstance().getStorageInformation();
+		List<FileMetadata> all = new ArrayList<>();
+		Map<String, FileMetadata> directories = new HashMap<>();
+		Set<String> ids = new HashSet<>();
+
+		Deque<FileMetadata> queue = new ArrayDeque<>();
+		queue.add(storageInformation.getStorageDirectory());
+		directories.put(storageInformation.getStorageDirectory().getFileID(), storageInformation.getStorageDirectory());
+		while(!queue.isEmpty()) {
+			FileMetadata directory = queue.poll();
+			List<FileMetadata> content = storageInformation.getDirectoryContent(directory);
+			if(content == null)
+				fail("directory without content " + directory.getAbsolutePath());
+
+			Set<String> namesInDirectory = new HashSet<>();
+			List<String> subdirectories = new ArrayList<>();
+			for(FileMetadata f : content) {
+				if(!namesInDirectory.add(f.getName()))
+					fail("duplicate name " + f.getName() + " in " + directory.getAbsolutePath());
+				if(!directory.equals(f.getParent()))
+					fail("wrong parent of " + f.getName() + " in " + directory.getAbsolutePath());
+				if(!f.equals(storageInformation.getFileMetadata(directory, f.getName())))
+					fail("index of " + directory.getAbsolutePath() + " misses " + f.getName());
+				if(!ids.add(f.getFileID()))
+					fail("duplicate ID " + f.getFileID());
+				all.add(f);
+				if(f.isDirectory()) {
+					queue.add(f);
+					subdirectories.add(f.getFileID());
+					directories.put(f.getFileID(), f);
+				}
+			}
+
+			if(storageInformation.getDirectorySize(directory) != content.size())
+				fail("size of " + directory.getAbsolutePath());
+			List<FileMetadata> found = storageInformation.getSubdirectories(directory);
+			if(found == null || found.size() != subdirectories.size() || !new HashSet<>(ids(found)).equals(new HashSet<>(subdirectories)))
+				fail("subdirectories of " + directory.getAbsolutePath());
+		}
+
+		for(String key : storageInformation.getStorageTreeStructure().keySet()) {
+			if(!directories.containsKey(key))
+				fail("directory " + key + " can not be reached from the storage directory");
+		}
+		if(storageInformation.getStorageTreeSize() != all.size())
+			fail("size of the tree " + storageInformation.getStorageTreeSize() + ", reachable " + all.size());
+
+		Map<String, Set<String>> byName = new HashMap<>();
+		for(FileMetadata f : all)
+			byName.computeIfAbsent(f.getName(), k -> new HashSet<>()).add(f.getFileID());
+		for(Map.Entry<String, Set<String>> entry : byName.entrySet()) {
+			if(!new HashSet<>(ids(storageInformation.getFileMetadataByName(entry.getKey()))).equals(entry.getValue()))
+				fail("name index of " + entry.getKey());
+		}
+		for(String name : names) {
+			if(!byName.containsKey(name) && !storageInformation.getFileMetadataByName(name).isEmpty())
+				fail("name index still holds " + name);
+		}
+
+		for(FileMetadata directory : directories.values()) {
+			long size = 0, files = 0;
+			Deque<FileMetadata> subtree = new ArrayDeque<>();
+			subtree.add(directory);
+			while(!subtree.isEmpty()) {
+				for(FileMetadata f : storageInformation.getDirectoryContent(subtree.poll())) {
+					if(f.isDirectory())
+						subtree.add(f);
+					else {
+						size += f.getSize();
+						files++;
+					}
+				}
+			}
+			if(storageInformation.getSubtreeSize(directory) != size || storageInformation.getSubtreeNumberOfFiles(directory) != files)
+				fail("totals of " + directory.getAbsolutePath());
+		}
+
+		Set<String> sized = new HashSet<>();
+		for(FileMetadata f : all) {
+			if(f.isFile() && f.getSize() >= 1 && f.getSize() <= 30 && f.getAbsolutePath().startsWith(dataRoot + "/"))
+				sized.add(f.getFileID());
+		}
+		if(!new HashSet<>(ids(storage.findSizeBetween(1, 30))).equals(sized))
+			fail("size index");
+
+		for(FileMetadata f : all) {
+			if(f.getAbsolutePath().startsWith(dataRoot + "/") && !storage.find(f.getAbsolutePath()))
+				fail("path filter misses " + f.getAbsolutePath());
+		}
+
+		Set<String> expected = new HashSet<>(), listed = new HashSet<>();
+		for(FileMetadata f : all) {
+			if(f.getName().startsWith("ab") && f.getAbsolutePath().startsWith(dataRoot + "/"))
+				expected.add(f.getFileID());
+		}
+		for(Map<String, List<FileMetadata>> level : storage.listDirectory(dataRoot, false, false, true, null, "ab", null, null)) {
+			for(List<FileMetadata> content : level.values())
+				listed.addAll(ids(content));
+		}
+		if(!expected.equals(listed))
+			fail("name search");
+
+		return all.size();
+	}
+
+	/**
+	 * Checks one version of the storage tree: every directory which can be reached has its content, and the number of FileMetadata
+	 * which can be reached is the size of the version
+	 * @param storageInformation is the storage information
+	 * @param storageTree is the version of the storage tree
+	 */
+	static void checkVersion(StorageInformation storageInformation, StorageTree storageTree) {
+		int reachable = 0;
+		Deque<FileMetadata> queue = new ArrayDeque<>();
+		queue.add(storageInformation.getStorageDirectory());
+		while(!queue.isEmpty()) {
+			FileMetadata directory = queue.poll();
+			List<FileMetadata> content = storageTree.getDirectoryContent(directory);
+			if(content == null)
+				fail("directory without content in the version");
+			for(FileMetadata f : content) {
+				reachable++;
+				// atributi u verziji odgovaraju mestu na kome je FileMetadata u toj verziji
+				if(!directory.equals(f.getParent()) || !f.equals(storageTree.getFileMetadata(directory, f.getName())))
+					fail("parent or name of " + f.getFileID() + " is not the one from the version");
+				if(f.isDirectory())
+					queue.add(f);
+			}
+		}
+		if(reachable != storageTree.size())
+			fail("size of the version " + storageTree.size() + ", reachable " + reachable);
+	}
+
+	static List<String> ids(List<FileMetadata> fileMetadata) {
+		List<String> ids = new ArrayList<>();
+		for(FileMetadata f : fileMetadata)
+			ids.add(f.getFileID());
+		return ids;
+	}
+
+	private static void fail(String message) {
+		throw new AssertionError(message);
+	}
+
+}
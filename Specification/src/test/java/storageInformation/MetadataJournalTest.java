@@ -0,0 +1,126 @@
+package storageInformation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Recovery of the journal after the process stopped while the last change was written: the line which is not whole is cut off,
+ * and the changes appended after it are read on the next connection
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class MetadataJournalTest {
+
+	private static final String TORN = "{\"op\":\"size\",\"i";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void tornLineIsCutOffBeforeAppending() throws IOException {
+		Path path = tempDir.resolve(StorageInformation.journalFileName);
+		MetadataJournal journal = MetadataJournal.open(path, 1, replay(path, 1, new ArrayList<>()), () -> { });
+		journal.append(new MetadataJournal.Record(MetadataJournal.Record.SIZE, "1"));
+		journal.close();
+		Files.write(path, TORN.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		List<String> ids = new ArrayList<>();
+		MetadataJournal.Replayed replayed = replay(path, 1, ids);
+		assertEquals(1, replayed.records);
+		journal = MetadataJournal.open(path, 1, replayed, () -> { });
+		assertEquals(1, journal.getRecords());
+		journal.append(new MetadataJournal.Record(MetadataJournal.Record.SIZE, "2"));
+		journal.append(new MetadataJournal.Record(MetadataJournal.Record.SIZE, "3"));
+		journal.close();
+
+		ids.clear();
+		assertEquals(3, replay(path, 1, ids).records);
+		assertEquals(List.of("1", "2", "3"), ids);
+		assertFalse(Files.readString(path).contains(TORN + "{"));
+		assertEquals(4, Files.readAllLines(path).size());
+	}
+
+	@Test
+	public void lineWithoutNewLineIsNotReplayed() throws IOException {
+		Path path = tempDir.resolve(StorageInformation.journalFileName);
+		MetadataJournal journal = MetadataJournal.open(path, 1, replay(path, 1, new ArrayList<>()), () -> { });
+		journal.append(new MetadataJournal.Record(MetadataJournal.Record.SIZE, "1"));
+		journal.close();
+		// zapis je ceo, ali novi red nije stigao da se upise
+		Files.write(path, "{\"op\":\"size\",\"id\":\"2\"}".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		List<String> ids = new ArrayList<>();
+		MetadataJournal.Replayed replayed = replay(path, 1, ids);
+		assertEquals(List.of("1"), ids);
+		MetadataJournal.open(path, 1, replayed, () -> { }).close();
+		assertEquals(replayed.end, Files.size(path));
+	}
+
+	@Test
+	public void tornHeaderStartsTheJournalAgain() throws IOException {
+		Path path = tempDir.resolve(StorageInformation.journalFileName);
+		Files.write(path, "{\"sequence\":1}".getBytes(StandardCharsets.UTF_8));
+
+		MetadataJournal.Replayed replayed = replay(path, 1, new ArrayList<>());
+		assertFalse(replayed.belongs);
+		MetadataJournal journal = MetadataJournal.open(path, 1, replayed, () -> { });
+		journal.append(new MetadataJournal.Record(MetadataJournal.Record.SIZE, "1"));
+		journal.close();
+
+		List<String> ids = new ArrayList<>();
+		assertEquals(1, replay(path, 1, ids).records);
+		assertEquals(List.of("1"), ids);
+	}
+
+	@Test
+	public void changesAfterTheCrashAreKeptOnTheNextConnection() throws IOException {
+		Path snapshot = tempDir.resolve(StorageInformation.snapshotFileName);
+		Path journalFile = tempDir.resolve(StorageInformation.journalFileName);
+		StorageInformation storageInformation = StorageInformationFixtures.createStorage("/storages/journal");
+		storageInformation.writeSnapshot(snapshot);
+
+		storageInformation = StorageInformation.readSnapshot(snapshot);
+		assertEquals(0, storageInformation.openJournal(journalFile, () -> { }));
+		addFile(storageInformation, "before.txt");
+		storageInformation.closeJournal();
+		// proces je stao dok je upisivao sledecu promenu
+		Files.write(journalFile, TORN.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		storageInformation = StorageInformation.readSnapshot(snapshot);
+		assertEquals(1, storageInformation.openJournal(journalFile, () -> { }));
+		addFile(storageInformation, "after.txt");
+		storageInformation.closeJournal();
+
+		storageInformation = StorageInformation.readSnapshot(snapshot);
+		assertEquals(2, storageInformation.openJournal(journalFile, () -> { }));
+		FileMetadata dataRoot = storageInformation.getDatarootDirectory();
+		assertNotNull(storageInformation.getFileMetadata(dataRoot, "before.txt"));
+		assertNotNull(storageInformation.getFileMetadata(dataRoot, "after.txt"));
+		assertEquals(2, storageInformation.getDirectorySize(dataRoot));
+		storageInformation.closeJournal();
+	}
+
+	private static MetadataJournal.Replayed replay(Path path, int sequence, List<String> ids) throws IOException {
+		return MetadataJournal.replay(path, sequence, record -> ids.add(record.id));
+	}
+
+	private static void addFile(StorageInformation storageInformation, String name) {
+		storageInformation.addToDirectory(storageInformation.getDatarootDirectory(), StorageInformationFixtures.file(storageInformation, name, 10));
+	}
+
+}
@@ -0,0 +1,104 @@
+package storageInformation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Off-heap storage tree takes back the space of the names and IDs which are changed or removed,
+ * and the view of the removed FileMetadata is not equal to the FileMetadata which gets its record afterwards
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class OffHeapStorageTreeTest {
+
+	private static final String ID_PREFIX = "file-with-an-id-which-is-not-a-number-";
+
+	@Test
+	public void renamedAndRemovedNamesDoNotGrowTheStrings() throws ReflectiveOperationException {
+		OffHeapStorageTree tree = new OffHeapStorageTree();
+		FileMetadata root = createRoot(tree);
+
+		for(int i = 0 ; i < 100 ; i++)
+			tree.addToDirectory(root, file(ID_PREFIX + i, "name-" + i));
+		int capacity = stringsCapacity(tree);
+
+		// svako ime se menja mnogo puta, a fajlovi se uklanjaju i dodaju ponovo
+		for(int round = 0 ; round < 200 ; round++) {
+			for(int i = 0 ; i < 100 ; i++) {
+				FileMetadata f = tree.getFileMetadata(ID_PREFIX + i);
+				if(round % 10 == 9) {
+					tree.removeFromDirectory(f);
+					tree.addToDirectory(root, file(ID_PREFIX + i, "name-" + round + "-" + i));
+				}
+				else
+					tree.renameInDirectory(f, "name-" + round + "-" + i);
+			}
+		}
+
+		int grown = stringsCapacity(tree);
+		assertTrue(grown <= 4 * capacity, () -> "strings grew to " + grown + " from " + capacity);
+		assertEquals(100, tree.size());
+		for(int i = 0 ; i < 100 ; i++) {
+			FileMetadata f = tree.getFileMetadata(root, "name-199-" + i);
+			assertNotNull(f);
+			assertEquals(ID_PREFIX + i, f.getFileID());
+		}
+	}
+
+	@Test
+	public void viewOfTheRemovedFileMetadataIsNotEqualToTheNewOne() {
+		OffHeapStorageTree tree = new OffHeapStorageTree();
+		FileMetadata root = createRoot(tree);
+
+		tree.addToDirectory(root, file("1", "removed.txt"));
+		FileMetadata removed = tree.getFileMetadata(root, "removed.txt");
+		tree.removeFromDirectory(removed);
+		tree.addToDirectory(root, file("2", "added.txt"));
+		FileMetadata added = tree.getFileMetadata(root, "added.txt");
+
+		assertFalse(removed.equals(added));
+		assertEquals(added, tree.getFileMetadata("2"));
+		// uklanjanje starog pogleda ne uklanja novu FileMetadata
+		tree.removeFromDirectory(removed);
+		assertNotNull(tree.getFileMetadata(root, "added.txt"));
+		assertNull(tree.getFileMetadata(root, "removed.txt"));
+	}
+
+	private static FileMetadata createRoot(OffHeapStorageTree tree) {
+		FileMetadata storage = new FileMetadata();
+		storage.setFileID("0");
+		storage.setName("storage");
+		storage.setAbsolutePath("/storages/storage");
+		storage.setRelativePath("storage");
+		storage.setDirectory(true);
+		storage.setStorage(true);
+		tree.addDirectory(storage);
+		return tree.getStorageDirectory();
+	}
+
+	private static FileMetadata file(String id, String name) {
+		FileMetadata file = new FileMetadata();
+		file.setFileID(id);
+		file.setName(name);
+		file.setFile(true);
+		return file;
+	}
+
+	private static int stringsCapacity(OffHeapStorageTree tree) throws ReflectiveOperationException {
+		Field strings = OffHeapStorageTree.class.getDeclaredField("strings");
+		strings.setAccessible(true);
+		return ((ByteBuffer) strings.get(tree)).capacity();
+	}
+
+}
@@ -0,0 +1,60 @@
+package storageInformation;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Filter of the names in the directories stays correct after the directory is moved or renamed, without adding
+ * what is under the directory again
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class PathFilterTest {
+
+	@Test
+	public void contentOfTheMovedDirectoryIsFoundUnderItsNewParent() {
+		StorageInformation storageInformation = StorageInformationFixtures.createStorage("/storages/filter");
+		FileMetadata dataRoot = storageInformation.getDatarootDirectory();
+		FileMetadata from = addDirectory(storageInformation, dataRoot, "from");
+		FileMetadata to = addDirectory(storageInformation, dataRoot, "to");
+		FileMetadata moved = addDirectory(storageInformation, from, "moved");
+		storageInformation.addToDirectory(moved, StorageInformationFixtures.file(storageInformation, "file.txt", 10));
+
+		// filter se pravi na prvoj proveri
+		assertFalse(storageInformation.mightContain(dataRoot, "missing.txt"));
+		storageInformation.moveToDirectory(moved, to, "moved");
+		storageInformation.renameInDirectory(moved, "renamed");
+
+		assertTrue(storageInformation.mightContain(to, "renamed"));
+		assertTrue(storageInformation.mightContain(moved, "file.txt"));
+		assertFalse(storageInformation.mightContain(moved, "missing.txt"));
+		assertFalse(storageInformation.mightContain(to, "missing"));
+	}
+
+	@Test
+	public void filterIsBuiltAgainWhenItIsFull() {
+		StorageInformation storageInformation = StorageInformationFixtures.createStorage("/storages/filter");
+		FileMetadata dataRoot = storageInformation.getDatarootDirectory();
+		FileMetadata directory = addDirectory(storageInformation, dataRoot, "dir");
+		assertFalse(storageInformation.mightContain(directory, "missing.txt"));
+
+		for(int i = 0 ; i < 5000 ; i++)
+			storageInformation.addToDirectory(directory, StorageInformationFixtures.file(storageInformation, "file" + i + ".txt", 1));
+
+		for(int i = 0 ; i < 5000 ; i++)
+			assertTrue(storageInformation.mightContain(directory, "file" + i + ".txt"));
+	}
+
+	private static FileMetadata addDirectory(StorageInformation storageInformation, FileMetadata parent, String name) {
+		storageInformation.addToDirectory(parent, StorageInformationFixtures.directory(storageInformation, name));
+		FileMetadata added = storageInformation.getFileMetadata(parent, name);
+		storageInformation.addDirectory(added);
+		return added;
+	}
+
+}
@@ -0,0 +1,74 @@
+package storageInformation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+import fileMetadata.FileMetadata;
+
+/**
+ * Version of the persistent storage tree keeps the attributes which the FileMetadata had when the version was taken,
+ * while the storage tree which is changed gives the current ones
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class PersistentStorageTreeTest {
+
+	@Test
+	public void versionKeepsTheAttributesOfTheChangedFileMetadata() {
+		StorageInformation storageInformation = StorageInformationFixtures.createStorage("/storages/persistent");
+		storageInformation.setPersistentStorageTree(true);
+		FileMetadata dataRoot = storageInformation.getDatarootDirectory();
+		storageInformation.addToDirectory(dataRoot, StorageInformationFixtures.directory(storageInformation, "dir"));
+		storageInformation.addToDirectory(dataRoot, StorageInformationFixtures.file(storageInformation, "file.txt", 10));
+		FileMetadata directory = storageInformation.getFileMetadata(dataRoot, "dir");
+		storageInformation.addDirectory(directory);
+		FileMetadata file = storageInformation.getFileMetadata(dataRoot, "file.txt");
+
+		StorageTree version = storageInformation.readStorageTree();
+		storageInformation.setSize(file, 20);
+		storageInformation.setTimeModified(file, new Date(1000L));
+		storageInformation.moveToDirectory(file, directory, "moved.txt");
+
+		FileMetadata read = version.getFileMetadata(dataRoot, "file.txt");
+		assertEquals(Long.valueOf(10L), read.getSize());
+		assertEquals("file.txt", read.getName());
+		assertEquals(dataRoot, read.getParent());
+		assertTrue(read.getAbsolutePath().endsWith(StorageInformation.datarootDirName + File.separator + "file.txt"));
+		assertTrue(read.getTimeModifiedMillis() != 1000L);
+		assertNull(version.getFileMetadata(directory, "moved.txt"));
+		// ista FileMetadata u verziji i u stablu koje se menja
+		assertEquals(file, read);
+		assertEquals(read, file);
+		assertEquals(file.hashCode(), read.hashCode());
+
+		assertEquals(Long.valueOf(20L), file.getSize());
+		assertEquals("moved.txt", file.getName());
+		assertEquals(1000L, file.getTimeModifiedMillis());
+		FileMetadata current = storageInformation.readStorageTree().getFileMetadata(directory, "moved.txt");
+		assertEquals(Long.valueOf(20L), current.getSize());
+		assertEquals(directory, current.getParent());
+	}
+
+	@Test
+	public void versionCanNotBeChanged() {
+		StorageInformation storageInformation = StorageInformationFixtures.createStorage("/storages/persistent");
+		storageInformation.setPersistentStorageTree(true);
+		FileMetadata dataRoot = storageInformation.getDatarootDirectory();
+		storageInformation.addToDirectory(dataRoot, StorageInformationFixtures.file(storageInformation, "file.txt", 10));
+
+		FileMetadata read = storageInformation.readStorageTree().getFileMetadata(dataRoot, "file.txt");
+		assertThrows(UnsupportedOperationException.class, () -> read.setSize(20L));
+		assertThrows(UnsupportedOperationException.class, () -> read.setName("other.txt"));
+		assertEquals(Long.valueOf(10L), read.clone().getSize());
+		assertEquals(Long.valueOf(10L), storageInformation.getFileMetadata(dataRoot, "file.txt").getSize());
+	}
+
+}
@@ -0,0 +1,119 @@
+package storageInformation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import fileMetadata.FileMetadataTypeAdapterFactory;
+
+/**
+ * Benchmark of the connection to the storage. Builds the storage tree, writes it to the JSON file and to the binary snapshots
+ * (read at once and read one directory at a time), and reads every one of them in the new JVM, so each read is measured cold,
+ * the way the storage information is read on the connection. JSON is read with Gson and linked (readFromJSON), the snapshots
+ * with StorageInformation.readSnapshot (readSnapshot). The lazy snapshot is measured once more with the whole tree loaded afterwards.
+ * Not a test, run it with: java -Xmx2g storageInformation.SnapshotConnectBenchmark [directories] [files per directory] [rounds]
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class SnapshotConnectBenchmark {
+
+	private static final String JSON = "json";
+	private static final String SNAPSHOT = "snapshot";
+	private static final String LAZY = "lazy";
+	private static final String LAZY_ALL = "lazyAll";
+
+	public static void main(String[] args) throws Exception {
+		if(args.length > 0 && args[0].equals("read")) {
+			read(args[1], Path.of(args[2]));
+			return;
+		}
+
+		int directories = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		int files = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+		int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+
+		Path directory = Files.createTempDirectory("snapshotBenchmark");
+		try {
+			StorageInformation storageInformation = StorageInformationFixtures.createStorage("/benchmark/storage");
+			StorageInformationFixtures.addStorageTree(storageInformation, directories, files, new Random(1));
+
+			Path json = directory.resolve(StorageInformation.storageInformationJSONFileName);
+			Path snapshot = directory.resolve(StorageInformation.snapshotFileName);
+			Path lazy = directory.resolve("lazy.snapshot");
+			try(FileWriter writer = new FileWriter(json.toFile())) {
+				gson().toJson(storageInformation, writer);
+			}
+			storageInformation.writeSnapshot(snapshot);
+			storageInformation.setLazyStorageTree(true);
+			storageInformation.writeSnapshot(lazy);
+
+			System.out.printf("%d entries, JSON %d KB, snapshot %d KB%n", storageInformation.getStorageTreeSize(),
+					Files.size(json) >> 10, Files.size(snapshot) >> 10);
+
+			String[] modes = { JSON, SNAPSHOT, LAZY, LAZY_ALL };
+			Path[] paths = { json, snapshot, lazy, lazy };
+			for(int mode = 0 ; mode < modes.length ; mode++) {
+				double best = Double.MAX_VALUE;
+				for(int round = 0 ; round < rounds ; round++)
+					best = Math.min(best, readInNewJvm(modes[mode], paths[mode]));
+				System.out.printf("%-10s connect %8.1f ms%n", modes[mode], best);
+			}
+		}
+		finally {
+			try(Stream<Path> written = Files.walk(directory)) {
+				written.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+
+	// novi JVM nema zagrejane klase ni JIT, kao i pri stvarnom povezivanju
+	private static double readInNewJvm(String mode, Path path) throws IOException, InterruptedException {
+		String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+		Process process = new ProcessBuilder(java, "-Xmx2g", "-cp", System.getProperty("java.class.path"),
+				SnapshotConnectBenchmark.class.getName(), "read", mode, path.toString())
+				.redirectErrorStream(true)
+				.start();
+
+		String line, result = null;
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+			while((line = reader.readLine()) != null)
+				result = line;
+		}
+		if(process.waitFor() != 0 || result == null)
+			throw new IOException(mode + " can not be read: " + result);
+		return Double.parseDouble(result);
+	}
+
+	private static void read(String mode, Path path) throws IOException {
+		long start = System.nanoTime();
+		StorageInformation storageInformation;
+		if(mode.equals(JSON)) {
+			try(BufferedReader reader = new BufferedReader(new FileReader(path.toFile()))) {
+				storageInformation = gson().fromJson(reader, StorageInformation.class);
+			}
+			storageInformation.linkStorageTree();
+		}
+		else
+			storageInformation = StorageInformation.readSnapshot(path);
+		if(mode.equals(LAZY_ALL))
+			storageInformation.loadStorageTree(false);
+		System.out.println((System.nanoTime() - start) / 1e6);
+	}
+
+	private static Gson gson() {
+		return new GsonBuilder().registerTypeAdapterFactory(new FileMetadataTypeAdapterFactory()).setPrettyPrinting().create();
+	}
+
+}
@@ -0,0 +1,124 @@
+package storageInformation;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import fileMetadata.FileMetadata;
+import fileMetadata.FileMetadata.FileMetadataBuilder;
+
+/**
+ * Storage information built in memory, the same way Storage.createStorageTree builds it, for the tests and benchmarks
+ * which do not need the files on the disk
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public final class StorageInformationFixtures {
+
+	private StorageInformationFixtures() {
+
+	}
+
+	/**
+	 * Creates the storage information with the storage directory, the data root directory and the JSON file. Storage size is not limited
+	 * @param dest is the absolute path of the storage
+	 * @return the storage information
+	 */
+	public static StorageInformation createStorage(String dest) {
+		StorageInformation storageInformation = new StorageInformation();
+		// velicina skladista nije ogranicena
+		storageInformation.setStorageSize(null);
+		String name = dest.substring(dest.lastIndexOf('/') + 1);
+
+		FileMetadata storage = new FileMetadataBuilder()
+			.withFileID(storageInformation.generateFileID())
+			.withName(name)
+			.withAbsolutePath(dest)
+			.withRelativePath(name)
+			.withTimeCreated(new Date())
+			.withTimeModified(new Date())
+			.withIsDirectory(true)
+			.withIsStorage(true)
+			.withStorageSize(storageInformation.getStorageSize())
+			.withUnsupportedFiles(storageInformation.getUnsupportedFiles())
+			.build();
+
+		FileMetadata dataRoot = new FileMetadataBuilder()
+			.withFileID(storageInformation.generateFileID())
+			.withName(StorageInformation.datarootDirName)
+			.withParent(storage)
+			.withTimeCreated(new Date())
+			.withTimeModified(new Date())
+			.withIsDirectory(true)
+			.withIsDataRoot(true)
+			.build();
+
+		FileMetadata storageInformationJSONfile = new FileMetadataBuilder()
+			.withFileID(storageInformation.generateFileID())
+			.withName(StorageInformation.storageInformationJSONFileName)
+			.withParent(storage)
+			.withTimeCreated(new Date())
+			.withTimeModified(new Date())
+			.withIsFile(true)
+			.build();
+
+		storageInformation.setStorageTreeVersion(StorageInformation.STORAGE_TREE_VERSION);
+		storageInformation.setStorageDirectory(storage);
+		storageInformation.addDirectory(storage);
+		storageInformation.addToDirectory(storage, dataRoot);
+		storageInformation.addToDirectory(storage, storageInformationJSONfile);
+		storageInformation.addDirectory(dataRoot);
+		storageInformation.setDatarootDirectory(dataRoot);
+		storageInformation.setStorageInformationJSONfile(storageInformationJSONfile);
+		storageInformation.setCurrentDirectory(dataRoot);
+		return storageInformation;
+	}
+
+	/**
+	 * Adds the directories under the data root directory, each one under the random directory added before it,
+	 * and the files to every directory. Files of all directories have the same names (file0.txt, file1.txt...)
+	 * @param storageInformation is the storage information
+	 * @param directories is the number of directories
+	 * @param filesPerDirectory is the number of files in every directory
+	 * @param random chooses the parent directories and the sizes of the files
+	 */
+	public static void addStorageTree(StorageInformation storageInformation, int directories, int filesPerDirectory, Random random) {
+		List<FileMetadata> parents = new ArrayList<>();
+		parents.add(storageInformation.getDatarootDirectory());
+
+		for(int d = 0 ; d < directories ; d++) {
+			FileMetadata directory = directory(storageInformation, "dir" + d);
+			storageInformation.addToDirectory(parents.get(random.nextInt(parents.size())), directory);
+			storageInformation.addDirectory(directory);
+			parents.add(directory);
+
+			for(int f = 0 ; f < filesPerDirectory ; f++)
+				storageInformation.addToDirectory(directory, file(storageInformation, "file" + f + ".txt", random.nextInt(100000)));
+		}
+	}
+
+	public static FileMetadata directory(StorageInformation storageInformation, String name) {
+		return new FileMetadataBuilder()
+			.withFileID(storageInformation.generateFileID())
+			.withName(name)
+			.withTimeCreated(new Date())
+			.withTimeModified(new Date())
+			.withIsDirectory(true)
+			.build();
+	}
+
+	public static FileMetadata file(StorageInformation storageInformation, String name, long size) {
+		FileMetadata file = new FileMetadataBuilder()
+			.withFileID(storageInformation.generateFileID())
+			.withName(name)
+			.withTimeCreated(new Date())
+			.withTimeModified(new Date())
+			.withIsFile(true)
+			.build();
+		file.setSize(size);
+		return file;
+	}
+
+}
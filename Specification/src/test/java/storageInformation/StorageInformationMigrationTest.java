@@ -0,0 +1,175 @@
+package storageInformation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import fileMetadata.FileMetadata;
+import fileMetadata.FileMetadataTypeAdapterFactory;
+
+/**
+ * Migration of the storageInformation.json written by the first version of the storage (directories kept under their relative paths,
+ * no file IDs, the whole chain of parents inside every node). The fixture is the JSON which that version wrote for a small storage
+ *
+ * @author Luka Pavlovic
+ *
+ */
+public class StorageInformationMigrationTest {
+
+	private static final String BASELINE_JSON = "baselineStorageInformation.json";
+
+	private final Gson gson = new GsonBuilder().registerTypeAdapterFactory(new FileMetadataTypeAdapterFactory()).create();
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void migratesPathsSizesAndDirectories() throws IOException {
+		StorageInformation storageInformation = readBaseline();
+
+		Map<String, String> expected = new TreeMap<>();
+		expected.put("oldStorage/dataRootDirectory", "directory");
+		expected.put("oldStorage/storageInformation.json", "file 0");
+		expected.put("oldStorage/dataRootDirectory/readme.txt", "file 13");
+		expected.put("oldStorage/dataRootDirectory/docs", "directory");
+		expected.put("oldStorage/dataRootDirectory/docs/a.txt", "file 0");
+		expected.put("oldStorage/dataRootDirectory/docs/notes", "directory");
+		expected.put("oldStorage/dataRootDirectory/docs/notes/b.md", "file 0");
+		expected.put("oldStorage/dataRootDirectory/src", "directory");
+		expected.put("oldStorage/dataRootDirectory/src/main", "directory");
+		expected.put("oldStorage/dataRootDirectory/src/main/App.java", "file 12");
+
+		Map<String, String> migrated = new TreeMap<>();
+		for(FileMetadata f : allFileMetadata(storageInformation))
+			migrated.put(f.getRelativePath().replace(File.separator, "/"), f.isDirectory() ? "directory" : "file " + f.getSize());
+
+		assertEquals(expected, migrated);
+		assertEquals(StorageInformation.STORAGE_TREE_VERSION, storageInformation.getStorageTreeVersion());
+		assertEquals("/root/oldStorage/dataRootDirectory/src/main/App.java".replace("/", File.separator),
+				find(storageInformation, "App.java").getAbsolutePath());
+	}
+
+	@Test
+	public void keysDirectoriesByGeneratedIDs() throws IOException {
+		StorageInformation storageInformation = readBaseline();
+
+		Set<String> ids = new HashSet<>();
+		ids.add(storageInformation.getStorageDirectory().getFileID());
+		for(FileMetadata f : allFileMetadata(storageInformation)) {
+			assertNotNull(f.getFileID(), f.getRelativePath());
+			assertTrue(ids.add(f.getFileID()), "duplicate ID " + f.getFileID());
+		}
+
+		Set<String> directoryIDs = new HashSet<>();
+		directoryIDs.add(storageInformation.getStorageDirectory().getFileID());
+		for(FileMetadata f : allFileMetadata(storageInformation)) {
+			if(f.isDirectory())
+				directoryIDs.add(f.getFileID());
+		}
+		assertEquals(directoryIDs, storageInformation.getStorageTreeStructure().keySet());
+		assertFalse(ids.contains(storageInformation.generateFileID()));
+	}
+
+	@Test
+	public void sharesParentsAndKeepsTheConfiguration() throws IOException {
+		StorageInformation storageInformation = readBaseline();
+
+		Deque<FileMetadata> directories = new ArrayDeque<>();
+		directories.add(storageInformation.getStorageDirectory());
+		while(!directories.isEmpty()) {
+			FileMetadata directory = directories.poll();
+			for(FileMetadata f : storageInformation.getDirectoryContent(directory)) {
+				assertSame(directory, f.getParent(), f.getRelativePath());
+				if(f.isDirectory())
+					directories.add(f);
+			}
+		}
+
+		FileMetadata notes = find(storageInformation, "notes");
+		assertEquals(Collections.singletonMap(notes.getFileID(), 3), storageInformation.getDirNumberOfFilesLimit());
+		assertEquals(Long.valueOf(4071L), storageInformation.getStorageSize());
+		assertEquals(Collections.singleton(".exe"), storageInformation.getUnsupportedFiles());
+		assertSame(find(storageInformation, StorageInformation.datarootDirName), storageInformation.getDatarootDirectory());
+		assertSame(storageInformation.getDatarootDirectory(), storageInformation.getCurrentDirectory());
+	}
+
+	@Test
+	public void migratedTreeIsWrittenAndReadAgain() throws IOException {
+		StorageInformation storageInformation = readBaseline();
+		List<String> migrated = describe(storageInformation);
+
+		StorageInformation fromJSON = gson.fromJson(new StringReader(gson.toJson(storageInformation)), StorageInformation.class);
+		fromJSON.linkStorageTree();
+		assertEquals(migrated, describe(fromJSON));
+
+		Path snapshot = tempDir.resolve(StorageInformation.snapshotFileName);
+		storageInformation.writeSnapshot(snapshot);
+		assertEquals(migrated, describe(StorageInformation.readSnapshot(snapshot)));
+	}
+
+	private StorageInformation readBaseline() throws IOException {
+		try(Reader reader = new InputStreamReader(getClass().getResourceAsStream(BASELINE_JSON), StandardCharsets.UTF_8)) {
+			StorageInformation storageInformation = gson.fromJson(reader, StorageInformation.class);
+			storageInformation.linkStorageTree();
+			return storageInformation;
+		}
+	}
+
+	private static List<FileMetadata> allFileMetadata(StorageInformation storageInformation) {
+		List<FileMetadata> all = new ArrayList<>();
+		Deque<FileMetadata> directories = new ArrayDeque<>();
+		directories.add(storageInformation.getStorageDirectory());
+		while(!directories.isEmpty()) {
+			for(FileMetadata f : storageInformation.getDirectoryContent(directories.poll())) {
+				all.add(f);
+				if(f.isDirectory())
+					directories.add(f);
+			}
+		}
+		return all;
+	}
+
+	private static FileMetadata find(StorageInformation storageInformation, String name) {
+		for(FileMetadata f : allFileMetadata(storageInformation)) {
+			if(f.getName().equals(name))
+				return f;
+		}
+		return null;
+	}
+
+	// relativna putanja, ID, velicina i ogranicenje broja fajlova svakog cvora, sortirano
+	private static List<String> describe(StorageInformation storageInformation) {
+		List<String> lines = new ArrayList<>();
+		for(FileMetadata f : allFileMetadata(storageInformation))
+			lines.add(f.getRelativePath() + "|" + f.getFileID() + "|" + f.getSize() + "|" + f.isDirectory() + "|" + f.getNumOfFilesLimit());
+		Collections.sort(lines);
+		lines.add("limits=" + new TreeMap<>(storageInformation.getDirNumberOfFilesLimit()) + " storageSize=" + storageInformation.getStorageSize());
+		return lines;
+	}
+
+}